@@ -0,0 +1,45 @@
+-- =============================================================================
+-- V1: Performance index pack
+-- Applied automatically at startup by SchemaMigrator. Each statement is one
+-- ALTER per table so a table is rebuilt (online, INPLACE) only once.
+-- =============================================================================
+
+-- ORDER: order history and search sort on OrderDate and filter it by range.
+--   OrderDAO.getAllOrders / streamAllOrders / searchOrders: ... ORDER BY o.OrderDate DESC
+--   Before: type=ALL on o, "Using filesort".  After: index scan on idx_order_date, no filesort.
+-- ORDER: shift reconciliation counts and sums completed orders of one shift.
+--   ShiftDAO: WHERE ShiftID = ? AND OrderStatus = 'Completed'
+--   Before: ref on the ShiftID foreign-key index, then OrderStatus checked row by row.
+--   After: ref on both columns of idx_order_shift_status, which also covers the ORDER side
+--   of the COUNT (the secondary index carries OrderID for the PAYMENT lookup).
+ALTER TABLE `ORDER`
+    ADD INDEX idx_order_date (OrderDate),
+    ADD INDEX idx_order_shift_status (ShiftID, OrderStatus);
+
+-- PRODUCT: the catalog list and product pickers read every product by name.
+--   ProductDAO.getAllProducts / streamAllProducts: ... ORDER BY p.Name
+--   Before: type=ALL, "Using filesort".  After: full index scan in name order, rows stream
+--   to the cursor without sorting the whole table first.
+ALTER TABLE PRODUCT
+    ADD INDEX idx_product_name (Name);
+
+-- CUSTOMER: the POS customer search.
+--   CustomerDAO.findCustomers: WHERE Name LIKE '%x%' OR ContactInfo LIKE '%x%' ORDER BY Name LIMIT 50
+--   The leading wildcard cannot seek, but walking idx_customer_name in order lets the server
+--   stop after 50 matches instead of sorting every match.  Before: ALL + filesort.
+--   After: index scan on idx_customer_name, no filesort.
+ALTER TABLE CUSTOMER
+    ADD INDEX idx_customer_name (Name);
+
+-- SHIFT: every till looks up the open shift on each sale, return and stock adjustment.
+--   ShiftDAO.findOpenShift: WHERE Status = 'Open' ORDER BY StartTime DESC LIMIT 1
+--   Before: ALL + filesort over every shift ever run.  After: ref on idx_shift_status_start,
+--   read backwards, first row only.
+ALTER TABLE SHIFT
+    ADD INDEX idx_shift_status_start (Status, StartTime);
+
+-- PURCHASE_ORDER: the PO history dialog.
+--   PurchaseOrderDAO.getAllPurchaseOrders: ... ORDER BY po.PODate DESC
+--   Before: ALL + filesort.  After: index scan on idx_po_date.
+ALTER TABLE PURCHASE_ORDER
+    ADD INDEX idx_po_date (PODate);
@@ -0,0 +1,13 @@
+-- =============================================================================
+-- V2: Catalog version counter
+-- One row, bumped after every committed product or stock change, so each
+-- till's in-memory catalog cache can tell cheaply that another till has
+-- changed the catalog (see CatalogVersion / CachedProductDAO).
+-- =============================================================================
+
+CREATE TABLE IF NOT EXISTS CATALOG_VERSION (
+    ID TINYINT PRIMARY KEY,
+    Version BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT IGNORE INTO CATALOG_VERSION (ID, Version) VALUES (1, 0);
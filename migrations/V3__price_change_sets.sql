@@ -0,0 +1,37 @@
+-- =============================================================================
+-- V3: Price change sets
+-- Bulk repricing (PriceChangeDAO) records who changed which prices together.
+-- Each run is one PRICE_CHANGE_SET row; its audit rows carry its ID and the
+-- acting user and are written set-based by the application, one INSERT per
+-- chunk of products, instead of one trigger insert per product.
+-- =============================================================================
+
+CREATE TABLE IF NOT EXISTS PRICE_CHANGE_SET (
+    ChangeSetID INT AUTO_INCREMENT PRIMARY KEY,
+    Description VARCHAR(255) NOT NULL,
+    ChangedByUserID INT NULL,
+    StartedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CompletedAt TIMESTAMP NULL, -- NULL while running, or if the run stopped part way
+    ProductCount INT NOT NULL DEFAULT 0,
+    FOREIGN KEY (ChangedByUserID) REFERENCES USER(UserID) ON DELETE SET NULL
+);
+
+-- PRODUCT_PRICE_AUDIT: audit rows of one change set, for reviewing or undoing it.
+ALTER TABLE PRODUCT_PRICE_AUDIT
+    ADD COLUMN ChangeSetID INT NULL,
+    ADD INDEX idx_price_audit_change_set (ChangeSetID),
+    ADD CONSTRAINT fk_price_audit_change_set FOREIGN KEY (ChangeSetID) REFERENCES PRICE_CHANGE_SET(ChangeSetID) ON DELETE SET NULL;
+
+-- The trigger keeps auditing single product edits, but stays out of the way while a
+-- change set runs on the connection (@smartcashpro_price_change_set is set), because
+-- the change set has already written its own audit rows. It is a single statement so
+-- it needs no DELIMITER.
+DROP TRIGGER IF EXISTS trg_LogProductPriceChange;
+
+CREATE TRIGGER trg_LogProductPriceChange
+AFTER UPDATE ON PRODUCT
+FOR EACH ROW
+INSERT INTO PRODUCT_PRICE_AUDIT (ProductID, OldUnitPrice, NewUnitPrice, ChangedByUserID)
+SELECT OLD.ProductID, OLD.UnitPrice, NEW.UnitPrice, NULL
+FROM DUAL
+WHERE OLD.UnitPrice <> NEW.UnitPrice AND @smartcashpro_price_change_set IS NULL;
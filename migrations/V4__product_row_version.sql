@@ -0,0 +1,14 @@
+-- =============================================================================
+-- V4: Product row versions for the catalog change feed
+-- Every committed product or stock change stamps the changed PRODUCT rows
+-- with the new CATALOG_VERSION value (CatalogVersion). Other tills then read
+-- only the rows changed since the version they last saw (CatalogChangeFeed)
+-- instead of dropping their whole catalog cache.
+-- =============================================================================
+
+-- PRODUCT: CatalogChangeFeed: WHERE RowVersion > ? AND RowVersion <= ? ORDER BY RowVersion
+--   After: range scan on idx_product_row_version over the few rows changed since the last poll.
+--   Existing rows start at 0, i.e. "unchanged since the feed started".
+ALTER TABLE PRODUCT
+    ADD COLUMN RowVersion BIGINT NOT NULL DEFAULT 0,
+    ADD INDEX idx_product_row_version (RowVersion);
@@ -0,0 +1,68 @@
+-- =============================================================================
+-- V5: Product type discriminator
+-- Every product read used to LEFT JOIN PERISHABLE_PRODUCT and NONPERISHABLE_PRODUCT
+-- only to find out which kind of product a row is. PRODUCT now carries the kind
+-- ('P' perishable, 'N' non-perishable, NULL neither) and the storage requirement,
+-- so ProductDAO reads one table. The subtype tables stay the system of record;
+-- the triggers below copy every change to them onto PRODUCT, whoever makes it.
+-- =============================================================================
+
+-- PRODUCT: findProductBySku / findProductById / the catalog stream
+--   Before: eq_ref on PRODUCT, plus one primary-key probe into each subtype table per row.
+--   After:  the PRODUCT row alone.
+ALTER TABLE PRODUCT
+    ADD COLUMN ProductType CHAR(1) NULL,
+    ADD COLUMN StorageTempRequirement VARCHAR(100) NULL;
+
+UPDATE PRODUCT p
+    JOIN NONPERISHABLE_PRODUCT np ON np.ProductID = p.ProductID
+SET p.ProductType = 'N';
+
+-- A product in both tables has always been read as perishable.
+UPDATE PRODUCT p
+    JOIN PERISHABLE_PRODUCT pp ON pp.ProductID = p.ProductID
+SET p.ProductType = 'P', p.StorageTempRequirement = pp.StorageTempRequirement;
+
+-- Single statements, so no DELIMITER is needed.
+DROP TRIGGER IF EXISTS trg_PerishableProductInserted;
+
+CREATE TRIGGER trg_PerishableProductInserted
+AFTER INSERT ON PERISHABLE_PRODUCT
+FOR EACH ROW
+UPDATE PRODUCT SET ProductType = 'P', StorageTempRequirement = NEW.StorageTempRequirement
+WHERE ProductID = NEW.ProductID;
+
+DROP TRIGGER IF EXISTS trg_PerishableProductUpdated;
+
+CREATE TRIGGER trg_PerishableProductUpdated
+AFTER UPDATE ON PERISHABLE_PRODUCT
+FOR EACH ROW
+UPDATE PRODUCT SET ProductType = 'P', StorageTempRequirement = NEW.StorageTempRequirement
+WHERE ProductID = NEW.ProductID;
+
+DROP TRIGGER IF EXISTS trg_PerishableProductDeleted;
+
+CREATE TRIGGER trg_PerishableProductDeleted
+AFTER DELETE ON PERISHABLE_PRODUCT
+FOR EACH ROW
+UPDATE PRODUCT p
+SET p.ProductType = IF(EXISTS (SELECT 1 FROM NONPERISHABLE_PRODUCT np WHERE np.ProductID = OLD.ProductID), 'N', NULL),
+    p.StorageTempRequirement = NULL
+WHERE p.ProductID = OLD.ProductID;
+
+DROP TRIGGER IF EXISTS trg_NonPerishableProductInserted;
+
+CREATE TRIGGER trg_NonPerishableProductInserted
+AFTER INSERT ON NONPERISHABLE_PRODUCT
+FOR EACH ROW
+UPDATE PRODUCT SET ProductType = 'N'
+WHERE ProductID = NEW.ProductID AND ProductType IS NULL;
+
+DROP TRIGGER IF EXISTS trg_NonPerishableProductDeleted;
+
+CREATE TRIGGER trg_NonPerishableProductDeleted
+AFTER DELETE ON NONPERISHABLE_PRODUCT
+FOR EACH ROW
+UPDATE PRODUCT SET ProductType = NULL
+WHERE ProductID = OLD.ProductID AND ProductType = 'N';
+
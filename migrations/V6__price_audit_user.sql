@@ -0,0 +1,19 @@
+-- =============================================================================
+-- V6: Price audit user
+-- Single product edits were audited with ChangedByUserID NULL, because the
+-- trigger had no way to know who made them. ProductDAO.saveProduct now sets
+-- @smartcashpro_user_id on its connection while its UPDATE runs, and the
+-- trigger records it. Edits made outside the app still log NULL.
+-- =============================================================================
+
+-- Same rule as V3: stays out of the way while a change set runs, since the change
+-- set writes its own audit rows. A single statement, so no DELIMITER is needed.
+DROP TRIGGER IF EXISTS trg_LogProductPriceChange;
+
+CREATE TRIGGER trg_LogProductPriceChange
+AFTER UPDATE ON PRODUCT
+FOR EACH ROW
+INSERT INTO PRODUCT_PRICE_AUDIT (ProductID, OldUnitPrice, NewUnitPrice, ChangedByUserID)
+SELECT OLD.ProductID, OLD.UnitPrice, NEW.UnitPrice, @smartcashpro_user_id
+FROM DUAL
+WHERE OLD.UnitPrice <> NEW.UnitPrice AND @smartcashpro_price_change_set IS NULL;
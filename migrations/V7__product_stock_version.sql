@@ -0,0 +1,24 @@
+-- =============================================================================
+-- V7: Product stock versions for the catalog change feed
+-- Stock movements (sales, returns, adjustments, deliveries) do not bump
+-- CATALOG_VERSION: its one row stays locked until commit, so every sale would
+-- queue behind the other tills' sales. Instead each committing transaction
+-- takes the next value of an AUTO_INCREMENT sequence, which is handed out
+-- without waiting for other transactions, and stamps it on the PRODUCT rows
+-- whose stock it changed (CatalogVersion). Other tills read the rows stamped
+-- since they last looked (CatalogChangeFeed). Values are not handed out in
+-- commit order, so the feed keeps reading a few seconds back.
+-- The AUTO_INCREMENT counter must survive restarts (MySQL 8, MariaDB 10.2.4 on):
+-- each transaction deletes its sequence row again, so the table stays empty.
+-- =============================================================================
+
+CREATE TABLE IF NOT EXISTS STOCK_VERSION_SEQUENCE (
+    Seq BIGINT AUTO_INCREMENT PRIMARY KEY
+);
+
+-- PRODUCT: CatalogChangeFeed: SELECT ProductID, StockVersion WHERE StockVersion > ? ORDER BY StockVersion
+--   After: index-only range scan on idx_product_stock_version over the rows stamped since the last poll.
+--   Existing rows start at 0, i.e. "unchanged since the feed started".
+ALTER TABLE PRODUCT
+    ADD COLUMN StockVersion BIGINT NOT NULL DEFAULT 0,
+    ADD INDEX idx_product_stock_version (StockVersion);
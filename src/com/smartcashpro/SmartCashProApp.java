@@ -1,15 +1,22 @@
 package com.smartcashpro; 
 
 import javax.swing.SwingUtilities;
+import com.smartcashpro.db.SchemaMigrator;
+import com.smartcashpro.db.StartupTimeline;
+import com.smartcashpro.db.WarmUp;
 import com.smartcashpro.ui.LoginPageCashierSystem;
 
 public class SmartCashProApp {
 
     public static void main(String[] args) {
+        StartupTimeline.mark("main() entered");
+        SchemaMigrator.migrateInBackground();
+        WarmUp.start(); // pool, statements and first-screen data load while the user logs in
         SwingUtilities.invokeLater(new Runnable() {
             public void run() {
                 LoginPageCashierSystem loginPage = new LoginPageCashierSystem();
                 loginPage.setVisible(true);
+                StartupTimeline.mark("login window shown");
             }
         });
     }
@@ -0,0 +1,151 @@
+package com.smartcashpro.db;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs calls on a DAO off the calling thread and returns a {@link CompletableFuture}, so the
+ * Swing event thread never waits on the database.
+ *
+ * <pre>
+ *   AsyncDAO&lt;ProductDAO&gt; products = new AsyncDAO&lt;&gt;(new ProductDAO());
+ *   products.call(dao -&gt; dao.findProductBySku(sku))
+ *           .thenAccept(...);
+ * </pre>
+ *
+ * Calls share a small bounded pool of daemon threads, sized below the connection pool so the
+ * tills always have connections left. When the queue is full the future fails straight away
+ * with a {@link RejectedExecutionException} instead of piling up work. Every call has a
+ * timeout. Cancelling the future, or the timeout expiring, interrupts the worker. That stops
+ * a call that is still queued or waiting for a connection; a statement already running on the
+ * server finishes and its result is dropped.
+ *
+ * The DAO is used from pool threads, so it must be safe to share; all DAOs in this package are.
+ */
+public final class AsyncDAO<D> {
+
+    /** A call against the wrapped DAO. */
+    @FunctionalInterface
+    public interface Call<D, T> {
+        T apply(D dao) throws Exception;
+    }
+
+    public static final long DEFAULT_TIMEOUT_MS = 30_000;
+
+    private static final int WORKER_THREADS = 4;
+    private static final int MAX_QUEUED = 64;
+    private static final ThreadPoolExecutor EXECUTOR;
+
+    static {
+        AtomicInteger counter = new AtomicInteger();
+        EXECUTOR = new ThreadPoolExecutor(WORKER_THREADS, WORKER_THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED), r -> {
+                    Thread t = new Thread(r, "db-async-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private final D dao;
+    private final long timeoutMs;
+
+    public AsyncDAO(D dao) {
+        this(dao, DEFAULT_TIMEOUT_MS);
+    }
+
+    public AsyncDAO(D dao, long timeoutMs) {
+        this.dao = dao;
+        this.timeoutMs = timeoutMs;
+    }
+
+    public D getDAO() {
+        return dao;
+    }
+
+    /** Runs {@code call} with this facade's default timeout. */
+    public <T> CompletableFuture<T> call(Call<? super D, T> call) {
+        return call(call, timeoutMs);
+    }
+
+    /** @param timeoutMs 0 for no timeout */
+    public <T> CompletableFuture<T> call(Call<? super D, T> call, long timeoutMs) {
+        Job<T> job = new Job<>();
+        try {
+            job.task = EXECUTOR.submit(() -> {
+                if (job.isDone()) {
+                    return; // cancelled or timed out while queued
+                }
+                try {
+                    job.complete(call.apply(dao));
+                } catch (Throwable t) {
+                    job.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            job.completeExceptionally(new RejectedExecutionException("Database is busy; too many requests queued.", e));
+            return job;
+        }
+        if (timeoutMs > 0) {
+            job.orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        job.whenComplete((result, error) -> {
+            if (error != null) {
+                job.interrupt(); // timeout or cancel: stop the worker if it is still waiting
+            }
+        });
+        return job;
+    }
+
+    /** Runs a call that has no result. */
+    public CompletableFuture<Void> run(Call<? super D, ?> call) {
+        return call(dao -> {
+            call.apply(dao);
+            return null;
+        });
+    }
+
+    /** The exception a failed future actually failed with, without the CompletionException wrapper. */
+    public static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    /** True if the future was cancelled rather than failed; such results are usually ignored. */
+    public static boolean isCancellation(Throwable error) {
+        return unwrap(error) instanceof CancellationException;
+    }
+
+    /** Queued plus running calls, for diagnostics. */
+    public static int getPendingCount() {
+        return EXECUTOR.getQueue().size() + EXECUTOR.getActiveCount();
+    }
+
+    /** A future whose cancel() also interrupts the worker running it. */
+    private static final class Job<T> extends CompletableFuture<T> {
+        volatile Future<?> task;
+
+        void interrupt() {
+            Future<?> t = task;
+            if (t != null) {
+                t.cancel(true);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            interrupt();
+            return cancelled;
+        }
+    }
+}
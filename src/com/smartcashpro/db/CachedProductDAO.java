@@ -0,0 +1,736 @@
+package com.smartcashpro.db;
+
+import com.smartcashpro.model.NonPerishableProduct;
+import com.smartcashpro.model.PerishableProduct;
+import com.smartcashpro.model.Product;
+import com.smartcashpro.model.ProductScan;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Read-through cache in front of {@link ProductDAO}, so a scan is answered from memory.
+ *
+ * Products are cached by ID (LRU, at most {@code smartcashpro.catalogCache.maxEntries}, default
+ * 5000) with a SKU index. SKUs that were not found are remembered in a small LRU of their own
+ * (at most {@code smartcashpro.catalogCache.maxUnknownSkus}, default 500, each for as long as a
+ * product), so repeated bad scans do not hit the database. SKUs are matched ignoring case, as
+ * MySQL compares them. Callers always get their own copy and may modify it freely.
+ *
+ * Entries are kept current:
+ * <ul>
+ *   <li>dropped as soon as a product or stock change made by this app commits ({@link CatalogVersion});</li>
+ *   <li>replaced with the changed rows that the {@link CatalogChangeFeed} reads, about once a
+ *       second, when other tills changed products; all are dropped only if the feed cannot
+ *       list the changes;</li>
+ *   <li>dropped after five minutes regardless, as a safety net for changes made outside the app.</li>
+ * </ul>
+ * Stock movements on other tills come through the feed too, but up to a few seconds late (see
+ * {@link CatalogChangeFeed}); scans read stock live, and {@code updateStockQuantity} still
+ * checks the real stock when the sale is saved.
+ *
+ * Behind the cache sits a {@link CatalogSnapshot} of the whole catalog, mapped from disk when
+ * the cache is created, so a till that has just started answers scans without a catalog
+ * query. A product is only taken from the snapshot if it has not changed since the snapshot
+ * was written (as far as the notifications above tell) and has not expired from the cache
+ * before. {@link #syncSnapshot()} brings the file up to date with the rows changed or stocked
+ * since it was written, the products that expired or changed without a version, and
+ * deletions; it runs
+ * during warm-up and then every {@code smartcashpro.catalogSnapshot.syncIntervalMs} (default
+ * five minutes).
+ */
+public final class CachedProductDAO implements IProductDAO {
+
+    private static final int MAX_ENTRIES = Integer.getInteger("smartcashpro.catalogCache.maxEntries", 5000);
+    private static final long MAX_ENTRY_AGE_MS = 5 * 60_000;
+    private static final int MAX_UNKNOWN_SKUS = Integer.getInteger("smartcashpro.catalogCache.maxUnknownSkus", 500);
+    private static final Path SNAPSHOT_DIR = Paths.get(System.getProperty("smartcashpro.catalogSnapshot.dir",
+            Paths.get(System.getProperty("user.home"), ".smartcashpro").toString()));
+    private static final long SNAPSHOT_SYNC_INTERVAL_MS = Long.getLong("smartcashpro.catalogSnapshot.syncIntervalMs", 5 * 60_000);
+    /** More changed rows than this since the snapshot was written: read the whole catalog instead. */
+    private static final int SNAPSHOT_MAX_DELTA_ROWS = Integer.getInteger("smartcashpro.catalogSnapshot.maxDeltaRows", 10_000);
+
+    private static CachedProductDAO instance;
+
+    private final IProductDAO delegate;
+    private final LinkedHashMap<Integer, Entry> byId = new LinkedHashMap<>(256, 0.75f, true);
+    /** Product IDs by {@link #skuKey}. */
+    private final Map<String, Integer> idBySku = new HashMap<>();
+    /** When the database last said it had no product with a SKU, by {@link #skuKey}; LRU. */
+    private final LinkedHashMap<String, Long> unknownSkus = new LinkedHashMap<String, Long>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_UNKNOWN_SKUS;
+        }
+    };
+    /** Bumped by every invalidation; a load that started before one must not be cached. */
+    private long generation = 0;
+
+    /** The newest snapshot; the base for the next sync even while it is not trusted for lookups. */
+    private CatalogSnapshot snapshot;
+    /** False after a change that may touch any product, until the next sync. */
+    private boolean snapshotUsable = false;
+    /** Products whose snapshot record is out of date, with the catalog version that changed them. */
+    private final Map<Integer, Long> snapshotStale = new HashMap<>();
+    /**
+     * Products whose snapshot record may be out of date in a way the catalog version does not
+     * show (expired from the cache, changed while the counter was unavailable, deleted), for the
+     * next sync to read again. Each mark is numbered, so one set during a sync outlives it.
+     */
+    private final Map<Integer, Long> snapshotReread = new HashMap<>();
+    private long rereadMarks = 0;
+    private final ProductDAO changedRows = new ProductDAO();
+    private final Object snapshotSyncLock = new Object();
+    /** Whether a sync has told the change feed where to start; guarded by snapshotSyncLock. */
+    private boolean feedStarted = false;
+
+    /** Told which entries were dropped or replaced, after the lock is released; empty set = all. */
+    private final List<CatalogVersion.Listener> invalidationListeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    CachedProductDAO(IProductDAO delegate) {
+        this.delegate = delegate;
+    }
+
+    /** The cache shared by all panels, started on first use. */
+    public static synchronized CachedProductDAO getInstance() {
+        if (instance == null) {
+            instance = new CachedProductDAO(new ProductDAO());
+            CatalogVersion.addListener(instance::invalidate);
+            CatalogChangeFeed.getInstance().addListener(instance::applyChanges);
+            instance.startSnapshot();
+        }
+        return instance;
+    }
+
+    @Override
+    public Product findProductBySku(String sku) throws SQLException {
+        long startGeneration;
+        String key = skuKey(sku);
+        synchronized (this) {
+            if (isUnknown(key)) {
+                hits.incrementAndGet();
+                return null;
+            }
+            Integer id = idBySku.get(key);
+            if (id != null) {
+                Product cached = fresh(id);
+                if (cached != null) {
+                    hits.incrementAndGet();
+                    return copyOf(cached);
+                }
+            } else {
+                Product fromSnapshot = fromSnapshot(sku);
+                if (fromSnapshot != null) {
+                    hits.incrementAndGet();
+                    return copyOf(fromSnapshot);
+                }
+            }
+            startGeneration = generation;
+        }
+        misses.incrementAndGet();
+        Product loaded = delegate.findProductBySku(sku);
+        synchronized (this) {
+            if (generation == startGeneration) {
+                if (loaded != null) {
+                    put(loaded);
+                } else if (DatabaseConnector.isAvailable()) { // a failed lookup also returns null
+                    unknownSkus.put(key, System.currentTimeMillis());
+                }
+            }
+        }
+        return loaded == null ? null : copyOf(loaded);
+    }
+
+    @Override
+    public Product findProductById(int productId) throws SQLException {
+        long startGeneration;
+        synchronized (this) {
+            Product cached = fresh(productId);
+            if (cached == null) {
+                cached = fromSnapshot(productId);
+            }
+            if (cached != null) {
+                hits.incrementAndGet();
+                return copyOf(cached);
+            }
+            startGeneration = generation;
+        }
+        misses.incrementAndGet();
+        Product loaded = delegate.findProductById(productId);
+        if (loaded != null) {
+            synchronized (this) {
+                if (generation == startGeneration) {
+                    put(loaded);
+                }
+            }
+        }
+        return loaded == null ? null : copyOf(loaded);
+    }
+
+    /**
+     * A cached product (or one from the snapshot) costs one primary-key read of its stock; an
+     * unknown one is loaded with its stock by the usual SKU query and cached.
+     */
+    @Override
+    public ProductScan lookupForScan(String sku, IntUnaryOperator quantityInCart) throws SQLException {
+        Product cached;
+        long startGeneration;
+        synchronized (this) {
+            cached = cachedBySku(sku);
+            startGeneration = generation;
+        }
+        if (cached == null) {
+            Product product = findProductBySku(sku); // fresh from the database on a miss, stock included
+            return product == null ? null
+                    : new ProductScan(product, product.getQuantityInStock(), quantityInCart.applyAsInt(product.getProductId()));
+        }
+        hits.incrementAndGet();
+        int productId = cached.getProductId();
+        int stock = delegate.findStockQuantity(productId);
+        if (stock < 0) {
+            invalidate(Collections.singleton(productId), -1); // deleted elsewhere
+            return null;
+        }
+        synchronized (this) {
+            Entry entry = byId.get(productId);
+            if (entry != null && generation == startGeneration) {
+                entry.product.setQuantityInStock(stock); // keep the cached copy's stock current too
+            }
+            cached = copyOf(cached);
+        }
+        cached.setQuantityInStock(stock);
+        return new ProductScan(cached, stock, quantityInCart.applyAsInt(productId));
+    }
+
+    /**
+     * Cached products (and those in the snapshot) cost only their stock, read for all of them
+     * in batched primary-key queries; the rest are loaded by the batched SKU lookup and cached.
+     */
+    @Override
+    public Map<String, ProductScan> lookupAllForScan(Collection<String> skus, IntUnaryOperator quantityInCart) throws SQLException {
+        Set<String> distinct = new LinkedHashSet<>(skus);
+        Map<String, Product> cached = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        long startGeneration;
+        synchronized (this) {
+            for (String sku : distinct) {
+                Product product = cachedBySku(sku);
+                if (product != null) {
+                    cached.put(sku, copyOf(product));
+                } else if (!isUnknown(skuKey(sku))) {
+                    missing.add(sku);
+                }
+            }
+            startGeneration = generation;
+        }
+        hits.addAndGet(distinct.size() - missing.size());
+        misses.addAndGet(missing.size());
+
+        Map<String, ProductScan> loaded = missing.isEmpty() ? Collections.emptyMap()
+                : delegate.lookupAllForScan(missing, quantityInCart);
+        List<Integer> cachedIds = new ArrayList<>();
+        for (Product product : cached.values()) {
+            cachedIds.add(product.getProductId());
+        }
+        Map<Integer, Integer> stock = cachedIds.isEmpty() ? Collections.emptyMap()
+                : delegate.findStockQuantities(cachedIds);
+
+        Set<Integer> deleted = new HashSet<>();
+        synchronized (this) {
+            if (generation == startGeneration) {
+                for (ProductScan scan : loaded.values()) {
+                    put(copyOf(scan.getProduct()));
+                }
+                for (String sku : missing) {
+                    if (!loaded.containsKey(sku)) {
+                        unknownSkus.put(skuKey(sku), System.currentTimeMillis());
+                    }
+                }
+                for (Map.Entry<Integer, Integer> entry : stock.entrySet()) {
+                    Entry cachedEntry = byId.get(entry.getKey());
+                    if (cachedEntry != null) {
+                        cachedEntry.product.setQuantityInStock(entry.getValue());
+                    }
+                }
+            }
+        }
+
+        Map<String, ProductScan> scans = new LinkedHashMap<>();
+        for (String sku : distinct) {
+            Product product = cached.get(sku);
+            if (product == null) {
+                ProductScan scan = loaded.get(sku);
+                if (scan != null) {
+                    scans.put(sku, scan);
+                }
+            } else {
+                Integer quantity = stock.get(product.getProductId());
+                if (quantity == null) {
+                    deleted.add(product.getProductId()); // deleted elsewhere
+                    continue;
+                }
+                product.setQuantityInStock(quantity);
+                scans.put(sku, new ProductScan(product, quantity, quantityInCart.applyAsInt(product.getProductId())));
+            }
+        }
+        if (!deleted.isEmpty()) {
+            invalidate(deleted, -1);
+        }
+        return scans;
+    }
+
+    @Override
+    public int findStockQuantity(int productId) throws SQLException {
+        return delegate.findStockQuantity(productId);
+    }
+
+    @Override
+    public Map<Integer, Integer> findStockQuantities(Collection<Integer> productIds) throws SQLException {
+        return delegate.findStockQuantities(productIds);
+    }
+
+    @Override
+    public List<Product> getAllProducts() throws SQLException {
+        return delegate.getAllProducts();
+    }
+
+    /** Streams the catalog from the database, caching each product on the way past. */
+    @Override
+    public void forEachProduct(RowCursor.RowCallback<Product> callback) throws SQLException {
+        long startGeneration;
+        synchronized (this) {
+            startGeneration = generation;
+        }
+        delegate.forEachProduct(product -> {
+            synchronized (this) {
+                if (generation == startGeneration) {
+                    put(copyOf(product));
+                }
+            }
+            callback.accept(product);
+        });
+    }
+
+    /** List pages always come from the database; the cache only answers single-product lookups. */
+    @Override
+    public List<Product> findProductPage(ProductQuery query, Product after, int limit) throws SQLException {
+        return delegate.findProductPage(query, after, limit);
+    }
+
+    @Override
+    public List<Product> findProductPage(ProductQuery query, int offset, int limit) throws SQLException {
+        return delegate.findProductPage(query, offset, limit);
+    }
+
+    @Override
+    public int countProducts(ProductQuery query) throws SQLException {
+        return delegate.countProducts(query);
+    }
+
+    @Override
+    public boolean saveProduct(Product product) throws SQLException {
+        return delegate.saveProduct(product); // ProductDAO reports the change through CatalogVersion
+    }
+
+    @Override
+    public boolean saveProduct(Product product, int changedByUserId) throws SQLException {
+        return delegate.saveProduct(product, changedByUserId);
+    }
+
+    @Override
+    public boolean updateStockQuantity(int productId, int quantityChange) throws SQLException {
+        return delegate.updateStockQuantity(productId, quantityChange);
+    }
+
+    /** Drops everything; the next lookups go to the database. */
+    public void invalidateAll() {
+        synchronized (this) {
+            clear();
+        }
+        notifyInvalidated(Collections.emptySet(), CatalogChangeFeed.getInstance().getLastVersion());
+    }
+
+    /**
+     * Registers a listener for entries dropped or replaced in this cache, whatever the reason: a
+     * change committed here, changes made on another till, or an explicit invalidation.
+     * Runs on the thread that invalidated; keep it short.
+     */
+    public void addInvalidationListener(CatalogVersion.Listener listener) {
+        invalidationListeners.add(listener);
+    }
+
+    public void removeInvalidationListener(CatalogVersion.Listener listener) {
+        invalidationListeners.remove(listener);
+    }
+
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    /**
+     * Brings the snapshot file up to date and serves lookups from it: reads the rows changed
+     * or stocked since the current snapshot was written and those marked to be read again,
+     * drops deleted products (the whole catalog is read instead if there is no snapshot, too
+     * much changed or the changes cannot be listed), writes the result as a new snapshot and
+     * maps it. Does nothing if neither version has moved and nothing is marked. The first sync
+     * starts the {@link CatalogChangeFeed} from the snapshot's versions. Returns the number of
+     * products.
+     */
+    public int syncSnapshot() throws SQLException, IOException {
+        synchronized (snapshotSyncLock) {
+            long version = CatalogVersion.read();
+            long stockVersion = CatalogVersion.readStock();
+            CatalogSnapshot base;
+            Map<Integer, Long> reread;
+            boolean current;
+            synchronized (this) {
+                base = snapshot;
+                reread = new HashMap<>(snapshotReread);
+                current = base != null && snapshotUsable && reread.isEmpty()
+                        && version >= 0 && version == base.getCatalogVersion()
+                        && stockVersion == base.getStockVersion();
+            }
+            if (current) {
+                startFeed(version, stockVersion);
+                return base.size();
+            }
+            Map<Integer, Product> products = null;
+            Set<Integer> deleted = new HashSet<>();
+            if (base != null && version >= 0 && version >= base.getCatalogVersion()
+                    && stockVersion >= base.getStockVersion()) {
+                products = mergeChanges(base, version, stockVersion, reread.keySet(), deleted);
+            }
+            long[] loadedVersions = {version, stockVersion};
+            if (products == null) {
+                Map<Integer, Product> all = new LinkedHashMap<>();
+                loadedVersions = Transaction.run(CatalogVersion.CONSISTENT_READ, tx -> {
+                    all.clear(); // in case the transaction is run again
+                    long[] read = {CatalogVersion.read(tx.getConnection()), CatalogVersion.readStock(tx.getConnection())};
+                    delegate.forEachProduct(product -> all.put(product.getProductId(), product));
+                    return read;
+                });
+                products = all;
+            }
+            long snapshotVersion = loadedVersions[0];
+            long snapshotStockVersion = loadedVersions[1];
+
+            Path written = CatalogSnapshot.write(SNAPSHOT_DIR, snapshotVersion, snapshotStockVersion, products.values());
+            CatalogSnapshot opened = CatalogSnapshot.open(written);
+            synchronized (this) {
+                snapshot = opened;
+                snapshotUsable = true;
+                // Changes up to this version are in the new file; later ones stay stale.
+                snapshotStale.values().removeIf(changedAt -> changedAt <= snapshotVersion);
+                // So are the products read again, unless they were marked again meanwhile.
+                reread.forEach(snapshotReread::remove);
+            }
+            if (!deleted.isEmpty()) {
+                invalidate(deleted, version); // drop them from the cache and the listeners' views too
+            }
+            CatalogSnapshot.deleteOthers(SNAPSHOT_DIR, written);
+            startFeed(snapshotVersion, snapshotStockVersion);
+            return opened.size();
+        }
+    }
+
+    /** Caller holds snapshotSyncLock. */
+    private void startFeed(long version, long stockVersion) {
+        if (!feedStarted && version >= 0) {
+            feedStarted = true;
+            CatalogChangeFeed.getInstance().startFrom(version, stockVersion);
+        }
+    }
+
+    public long getHitCount() { return hits.get(); }
+    public long getMissCount() { return misses.get(); }
+    public long getInvalidationCount() { return invalidations.get(); }
+
+    @Override
+    public String toString() {
+        long h = hits.get();
+        long m = misses.get();
+        return String.format("CatalogCache[size=%d, hits=%d, misses=%d, hitRatio=%.1f%%, invalidations=%d]",
+                size(), h, m, h + m == 0 ? 0.0 : 100.0 * h / (h + m), invalidations.get());
+    }
+
+    private void invalidate(Set<Integer> productIds, long newVersion) {
+        synchronized (this) {
+            if (productIds.isEmpty()) {
+                clear();
+            } else {
+                generation++;
+                invalidations.incrementAndGet();
+                for (Integer id : productIds) {
+                    if (newVersion < 0) {
+                        markForReread(id);
+                    } else {
+                        snapshotStale.put(id, newVersion);
+                    }
+                    Entry removed = byId.remove(id);
+                    if (removed != null) {
+                        idBySku.remove(skuKey(removed.product.getSku()));
+                    }
+                }
+                unknownSkus.clear(); // a saved product may have taken one of these SKUs
+            }
+        }
+        notifyInvalidated(productIds, newVersion);
+    }
+
+    /**
+     * Takes in the rows the change feed read: every changed product is cached as it is now,
+     * whether or not it was cached before, so listeners refreshing them are answered from here.
+     * Stock movements (version -1) are marked for the next snapshot sync to read again.
+     */
+    private void applyChanges(List<Product> changed, long version) {
+        if (changed == null) {
+            synchronized (this) {
+                clear();
+            }
+            notifyInvalidated(Collections.emptySet(), version);
+            return;
+        }
+        Set<Integer> ids = new HashSet<>();
+        synchronized (this) {
+            generation++; // a load that started before these changes must not overwrite them
+            for (Product product : changed) {
+                put(copyOf(product));
+                ids.add(product.getProductId());
+                if (version < 0) {
+                    markForReread(product.getProductId());
+                } else {
+                    snapshotStale.put(product.getProductId(), version);
+                }
+            }
+            unknownSkus.clear(); // a new product may have taken one of these SKUs
+        }
+        notifyInvalidated(Collections.unmodifiableSet(ids), version);
+    }
+
+    /** Caller holds the lock. */
+    private void clear() {
+        generation++;
+        invalidations.incrementAndGet();
+        byId.clear();
+        idBySku.clear();
+        unknownSkus.clear();
+        snapshotUsable = false;
+    }
+
+    private void startSnapshot() {
+        CatalogSnapshot opened = CatalogSnapshot.openLatest(SNAPSHOT_DIR);
+        synchronized (this) {
+            snapshot = opened;
+            snapshotUsable = opened != null;
+        }
+        if (opened != null) {
+            System.out.println("Catalog snapshot mapped: " + opened);
+        }
+        ScheduledExecutorService syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "catalog-snapshot-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        syncer.scheduleWithFixedDelay(() -> {
+            if (!DatabaseConnector.isAvailable()) {
+                return;
+            }
+            try {
+                syncSnapshot();
+            } catch (SQLException | IOException | RuntimeException e) {
+                System.err.println("Catalog snapshot sync failed: " + e.getMessage());
+            }
+        }, SNAPSHOT_SYNC_INTERVAL_MS, SNAPSHOT_SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The snapshot's products overlaid with the rows changed after it, up to {@code version},
+     * the rows stocked after it, and the {@code reread} products as they are now, less the
+     * products deleted since (added to {@code deleted}); null if the changes cannot be read or
+     * are too many to be worth it.
+     */
+    private Map<Integer, Product> mergeChanges(CatalogSnapshot base, long version, long stockVersion,
+                                               Set<Integer> reread, Set<Integer> deleted) throws SQLException {
+        List<Product> changed;
+        Set<Integer> existing;
+        try {
+            changed = new ArrayList<>(changedRows.findProductsChangedSince(
+                    base.getCatalogVersion(), version, SNAPSHOT_MAX_DELTA_ROWS + 1));
+            Set<Integer> notInDelta = new HashSet<>(reread);
+            if (stockVersion >= 0) {
+                notInDelta.addAll(changedRows.findStockVersionsSince(base.getStockVersion(), SNAPSHOT_MAX_DELTA_ROWS + 1).keySet());
+            }
+            changed.forEach(product -> notInDelta.remove(product.getProductId()));
+            if (changed.size() + notInDelta.size() > SNAPSHOT_MAX_DELTA_ROWS) {
+                return null;
+            }
+            changed.addAll(changedRows.findProductsByIds(notInDelta));
+            existing = changedRows.findAllProductIds(); // deletions leave no row version behind
+        } catch (SQLException e) {
+            if (e instanceof CircuitOpenException || SqlErrors.isConnectionFailure(e) || SqlErrors.isTransient(e)) {
+                throw e;
+            }
+            return null; // e.g. migration V4 has not run: read everything
+        }
+        Map<Integer, Product> products = new LinkedHashMap<>(base.size() * 2);
+        base.forEach(product -> products.put(product.getProductId(), product));
+        Set<String> changedSkus = new HashSet<>();
+        for (Product product : changed) {
+            products.put(product.getProductId(), product);
+            changedSkus.add(product.getSku());
+        }
+        // A changed product may have taken a SKU that another product had when the snapshot was written.
+        Set<Integer> changedIds = new HashSet<>();
+        changed.forEach(product -> changedIds.add(product.getProductId()));
+        products.values().removeIf(product ->
+                changedSkus.contains(product.getSku()) && !changedIds.contains(product.getProductId()));
+        for (Iterator<Integer> ids = products.keySet().iterator(); ids.hasNext(); ) {
+            Integer id = ids.next();
+            if (!existing.contains(id)) {
+                ids.remove();
+                deleted.add(id);
+            }
+        }
+        return products;
+    }
+
+    /**
+     * The snapshot's record for this SKU, cached, if the snapshot is in use and the product has
+     * not changed since; caller holds the lock.
+     */
+    private Product fromSnapshot(String sku) {
+        return snapshotUsable ? trusted(snapshot.findBySku(sku)) : null;
+    }
+
+    /** See {@link #fromSnapshot(String)}. */
+    private Product fromSnapshot(int productId) {
+        return snapshotUsable ? trusted(snapshot.findById(productId)) : null;
+    }
+
+    private Product trusted(Product fromSnapshot) {
+        if (fromSnapshot == null
+                || snapshotStale.containsKey(fromSnapshot.getProductId())
+                || snapshotReread.containsKey(fromSnapshot.getProductId())) {
+            return null;
+        }
+        put(fromSnapshot);
+        return fromSnapshot;
+    }
+
+    private void notifyInvalidated(Set<Integer> productIds, long version) {
+        for (CatalogVersion.Listener listener : invalidationListeners) {
+            try {
+                listener.catalogChanged(productIds, version);
+            } catch (RuntimeException e) {
+                System.err.println("Catalog cache listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /** The cached product if present and young enough; caller holds the lock. */
+    private Product fresh(int productId) {
+        Entry entry = byId.get(productId);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.loadedAt > MAX_ENTRY_AGE_MS) {
+            byId.remove(productId);
+            idBySku.remove(skuKey(entry.product.getSku()));
+            markForReread(productId); // may have changed outside the app
+            return null;
+        }
+        return entry.product;
+    }
+
+    /** Caller holds the lock. */
+    private void markForReread(int productId) {
+        snapshotReread.put(productId, ++rereadMarks);
+    }
+
+    /** Caller holds the lock. */
+    private void put(Product product) {
+        Entry previous = byId.put(product.getProductId(), new Entry(product));
+        if (previous != null && !skuKey(previous.product.getSku()).equals(skuKey(product.getSku()))) {
+            idBySku.remove(skuKey(previous.product.getSku()));
+        }
+        idBySku.put(skuKey(product.getSku()), product.getProductId());
+        Iterator<Entry> eldest = byId.values().iterator();
+        while (byId.size() > MAX_ENTRIES && eldest.hasNext()) {
+            idBySku.remove(skuKey(eldest.next().product.getSku()));
+            eldest.remove();
+        }
+    }
+
+    /** The cached product with this SKU, or the snapshot's, or null; caller holds the lock. */
+    private Product cachedBySku(String sku) {
+        String key = skuKey(sku);
+        if (isUnknown(key)) {
+            return null;
+        }
+        Integer id = idBySku.get(key);
+        return id == null ? fromSnapshot(sku) : fresh(id);
+    }
+
+    /** Whether the database said recently enough that it has no such SKU; caller holds the lock. */
+    private boolean isUnknown(String key) {
+        Long since = unknownSkus.get(key);
+        if (since == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - since > MAX_ENTRY_AGE_MS) {
+            unknownSkus.remove(key); // may have been added outside the app
+            return false;
+        }
+        return true;
+    }
+
+    /** The SKU index key: MySQL compares SKUs ignoring case, so "abc" finds the product cached as "ABC". */
+    private static String skuKey(String sku) {
+        return sku.toLowerCase(Locale.ROOT);
+    }
+
+    static Product copyOf(Product p) {
+        if (p instanceof PerishableProduct) {
+            return new PerishableProduct(p.getProductId(), p.getSku(), p.getName(), p.getUnitPrice(),
+                    p.getQuantityInStock(), p.getCurrentCostPrice(), p.getReorderLevel(),
+                    ((PerishableProduct) p).getStorageTempRequirement());
+        }
+        return new NonPerishableProduct(p.getProductId(), p.getSku(), p.getName(), p.getUnitPrice(),
+                p.getQuantityInStock(), p.getCurrentCostPrice(), p.getReorderLevel());
+    }
+
+    private static final class Entry {
+        final Product product;
+        final long loadedAt = System.currentTimeMillis();
+
+        Entry(Product product) {
+            this.product = product;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.smartcashpro.db;
+
+import com.smartcashpro.model.Product;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Brings this till's catalog views up to date with product changes committed anywhere.
+ *
+ * A background thread checks the shared {@code CATALOG_VERSION} counter every
+ * {@code smartcashpro.catalogCache.checkIntervalMs} (default 1000). When it has moved, the
+ * feed reads only the PRODUCT rows stamped with a version after the last one it saw (see
+ * {@link CatalogVersion}) and hands them to its listeners, who update what they show in place.
+ * Changes made on this till come through here too; applying them again is harmless.
+ *
+ * Stock movements do not move the counter; they stamp a stock version instead (migration V7).
+ * Each check also reads, from an index alone, the products stamped with a stock version above
+ * the one it has read up to, and hands over those it has not handed over yet. Stock versions
+ * can become visible out of order, so that point only moves to the highest version read
+ * {@code smartcashpro.catalogFeed.stockLagMs} (default 10000) earlier; a stock change still
+ * uncommitted that long after taking its version is missed until the views reload.
+ *
+ * The feed starts from the versions the catalog views were loaded at, which each of them
+ * passes to {@link #startFrom(long, long)} after its first load (read in the same transaction
+ * as the rows; see {@link CatalogVersion#CONSISTENT_READ}), so nothing committed between a
+ * load and the first check is missed. Until then it reads nothing.
+ *
+ * If more than {@code smartcashpro.catalogFeed.maxRows} (default 2000) rows changed since the
+ * last check, or the rows cannot be read (e.g. migration V4 has not run yet), listeners are
+ * told to reload everything instead.
+ */
+public final class CatalogChangeFeed {
+
+    /** Told about changes on the feed's thread; hand off anything slow or Swing related. */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param changed the changed products as they are now, or null if everything should be reloaded
+         * @param version the catalog version these changes bring the listener up to, or -1 for
+         *                stock movements, which do not move it
+         */
+        void productsChanged(List<Product> changed, long version);
+    }
+
+    private static final long POLL_INTERVAL_MS = Long.getLong("smartcashpro.catalogCache.checkIntervalMs", 1000);
+    private static final int MAX_ROWS = Integer.getInteger("smartcashpro.catalogFeed.maxRows", 2000);
+    private static final long STOCK_LAG_MS = Long.getLong("smartcashpro.catalogFeed.stockLagMs", 10_000);
+
+    private static CatalogChangeFeed instance;
+
+    private final ProductDAO products;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    /** Last version handed to listeners; only touched by the poller thread. */
+    private volatile long lastVersion = -1;
+    /** Lowest version passed to {@link #startFrom(long, long)} since the last check; MAX_VALUE if none. */
+    private final AtomicLong requestedFrom = new AtomicLong(Long.MAX_VALUE);
+    /** The same for stock versions. */
+    private final AtomicLong requestedStockFrom = new AtomicLong(Long.MAX_VALUE);
+    private boolean rowsUnavailableLogged = false;
+
+    // Stock versions; only touched by the poller thread.
+    /** Every check reads the rows stamped above this; -1 before the feed has started. */
+    private long stockFloor = -1;
+    /** Stock versions of the rows above stockFloor already handed to listeners. */
+    private final Map<Integer, Long> stockDelivered = new HashMap<>();
+    /** {time read, highest stock version read}, oldest first; moves stockFloor once STOCK_LAG_MS old. */
+    private final ArrayDeque<long[]> stockRead = new ArrayDeque<>();
+    private boolean stockUnavailableLogged = false;
+
+    CatalogChangeFeed(ProductDAO products) {
+        this.products = products;
+    }
+
+    /** The feed shared by the catalog cache and the panels, started on first use. */
+    public static synchronized CatalogChangeFeed getInstance() {
+        if (instance == null) {
+            instance = new CatalogChangeFeed(new ProductDAO());
+            instance.start();
+        }
+        return instance;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** The catalog version the listeners are up to date with, or -1 before the feed has started. */
+    public long getLastVersion() {
+        return lastVersion;
+    }
+
+    /**
+     * Makes the feed deliver every change after {@code version} and every stock movement after
+     * {@code stockVersion}, the versions a listener's view was loaded at. The feed starts from
+     * the lowest versions it is given; a version below where it already is makes it read the
+     * changes since then again. Negative versions (could not be read) are ignored.
+     */
+    public void startFrom(long version, long stockVersion) {
+        if (version >= 0) {
+            requestedFrom.accumulateAndGet(version, Math::min);
+        }
+        if (stockVersion >= 0) {
+            requestedStockFrom.accumulateAndGet(stockVersion, Math::min);
+        }
+    }
+
+    private void start() {
+        ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "catalog-change-feed");
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(this::poll, POLL_INTERVAL_MS, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    void poll() {
+        if (!DatabaseConnector.isAvailable()) {
+            return;
+        }
+        long from = requestedFrom.getAndSet(Long.MAX_VALUE);
+        if (from != Long.MAX_VALUE && (lastVersion < 0 || from < lastVersion)) {
+            lastVersion = from;
+        }
+        long stockFrom = requestedStockFrom.getAndSet(Long.MAX_VALUE);
+        if (stockFrom != Long.MAX_VALUE && (stockFloor < 0 || stockFrom < stockFloor)) {
+            stockFloor = stockFrom;
+            stockDelivered.clear(); // hand everything since then over again
+            stockRead.clear();
+        }
+        // Before a view has been loaded there is nothing to bring up to date.
+        if (lastVersion >= 0) {
+            pollCatalog();
+        }
+        if (stockFloor >= 0) {
+            pollStock();
+        }
+    }
+
+    private void pollCatalog() {
+        long version = CatalogVersion.read();
+        if (version < 0 || version == lastVersion) {
+            return;
+        }
+
+        List<Product> changed = null; // the counter went backwards (database restored): reload all
+        if (version > lastVersion) {
+            try {
+                List<Product> rows = products.findProductsChangedSince(lastVersion, version, MAX_ROWS + 1);
+                changed = rows.size() > MAX_ROWS ? null : rows;
+            } catch (SQLException e) {
+                if (e instanceof CircuitOpenException || SqlErrors.isConnectionFailure(e) || SqlErrors.isTransient(e)) {
+                    return; // try the same range again next time
+                }
+                if (!rowsUnavailableLogged) {
+                    rowsUnavailableLogged = true;
+                    System.err.println("Catalog change feed cannot read changed rows (" + e.getMessage()
+                            + "); reloading the whole catalog after each change instead.");
+                }
+            }
+        } else {
+            long stock = CatalogVersion.readStock(); // restored along with the counter
+            if (stock >= 0 && stock < stockFloor) {
+                stockFloor = stock;
+                stockDelivered.clear();
+                stockRead.clear();
+            }
+        }
+        lastVersion = version;
+        if (changed != null && changed.isEmpty()) {
+            return; // e.g. a bulk job's final announcement; its rows came with earlier versions
+        }
+        deliver(changed, version);
+    }
+
+    private void pollStock() {
+        Map<Integer, Long> versions;
+        List<Product> changed = null; // too many to list: reload all
+        List<Integer> fresh = new ArrayList<>();
+        try {
+            versions = products.findStockVersionsSince(stockFloor, MAX_ROWS + 1);
+            if (versions.size() <= MAX_ROWS) {
+                versions.forEach((id, stockVersion) -> {
+                    if (stockVersion > stockDelivered.getOrDefault(id, stockFloor)) {
+                        fresh.add(id);
+                    }
+                });
+                changed = fresh.isEmpty() ? Collections.emptyList() : products.findProductsByIds(fresh);
+            }
+        } catch (SQLException e) {
+            if (!(e instanceof CircuitOpenException || SqlErrors.isConnectionFailure(e) || SqlErrors.isTransient(e))
+                    && !stockUnavailableLogged) {
+                stockUnavailableLogged = true; // e.g. migration V7 has not run yet; it may any moment
+                System.err.println("Catalog change feed cannot read stock versions (" + e.getMessage()
+                        + "); other tills' stock movements will show only after a reload.");
+            }
+            return;
+        }
+
+        long highest = stockFloor;
+        for (long stockVersion : versions.values()) {
+            highest = Math.max(highest, stockVersion);
+        }
+        long now = System.currentTimeMillis();
+        if (changed == null) {
+            stockFloor = highest; // the listeners reload, which takes in everything up to here
+            stockDelivered.clear();
+            stockRead.clear();
+        } else {
+            for (Integer id : fresh) {
+                stockDelivered.put(id, versions.get(id));
+            }
+            if (stockRead.isEmpty() || highest > stockRead.peekLast()[1]) {
+                stockRead.addLast(new long[]{now, highest});
+            }
+            while (!stockRead.isEmpty() && now - stockRead.peekFirst()[0] >= STOCK_LAG_MS) {
+                stockFloor = Math.max(stockFloor, stockRead.pollFirst()[1]);
+            }
+            long floor = stockFloor;
+            stockDelivered.values().removeIf(stockVersion -> stockVersion <= floor);
+        }
+        if (changed != null && changed.isEmpty()) {
+            return;
+        }
+        deliver(changed, -1);
+    }
+
+    private void deliver(List<Product> changed, long version) {
+        for (Listener listener : listeners) {
+            try {
+                listener.productsChanged(changed, version);
+            } catch (RuntimeException e) {
+                System.err.println("Catalog change listener failed: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.smartcashpro.db;
+
+import com.smartcashpro.model.NonPerishableProduct;
+import com.smartcashpro.model.PerishableProduct;
+import com.smartcashpro.model.Product;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * A read-only copy of the catalog in one file, memory-mapped so a till can answer scans the
+ * moment it starts instead of after reading every product from the database.
+ *
+ * File layout (big-endian):
+ * <pre>
+ *   header   magic "SCPCAT02", catalog version, stock version, created-at millis, product count,
+ *            hash slots, offsets of the records and the string heap, heap length, CRC32 of
+ *            everything after the header
+ *   SKU table   one int per slot: record number + 1, or 0; open addressing on the SKU hash
+ *   ID table    the same, on the ProductID
+ *   records     {@value #RECORD_SIZE} bytes per product: ID, SKU hash, heap offsets and lengths
+ *               of SKU, name and storage temperature, type, stock, reorder level, prices in cents
+ *   heap        the strings, UTF-8
+ * </pre>
+ * Lookups read straight from the mapping and only build the one product asked for, so opening
+ * a snapshot of any size costs the checksum pass and nothing else.
+ *
+ * Files are named {@code catalog-<version>-<millis>.snapshot} and are never changed once
+ * written: {@link #write} writes a temporary file, forces it to disk and renames it into place
+ * in one step, so a crash leaves either the old or the new snapshot, never half of one. A new
+ * name per write also means a till never has to replace a file it still has mapped, which
+ * Windows does not allow. Older files are deleted once a newer one is in place.
+ */
+public final class CatalogSnapshot {
+
+    private static final byte[] MAGIC = "SCPCAT02".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_SIZE = 56;
+    static final int RECORD_SIZE = 52;
+    private static final long NULL_PRICE = Long.MIN_VALUE;
+    private static final Pattern FILE_NAME = Pattern.compile("catalog-(\\d+)-(\\d+)\\.snapshot");
+
+    // Record field offsets
+    private static final int R_ID = 0, R_SKU_HASH = 4, R_SKU_OFFSET = 8, R_NAME_OFFSET = 12, R_STORAGE_OFFSET = 16,
+            R_SKU_LENGTH = 20, R_NAME_LENGTH = 22, R_STORAGE_LENGTH = 24, R_TYPE = 26, R_QUANTITY = 28,
+            R_REORDER_LEVEL = 32, R_UNIT_PRICE = 36, R_COST_PRICE = 44;
+    private static final byte TYPE_NON_PERISHABLE = 0, TYPE_PERISHABLE = 1;
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final long catalogVersion;
+    private final long stockVersion;
+    private final long createdAt;
+    private final int count;
+    private final int slots;
+    private final int recordsOffset;
+    private final int heapOffset;
+
+    private CatalogSnapshot(Path file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE) {
+            throw new IOException("too short");
+        }
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(0, magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("not a catalog snapshot");
+        }
+        catalogVersion = buffer.getLong(8);
+        stockVersion = buffer.getLong(16);
+        createdAt = buffer.getLong(24);
+        count = buffer.getInt(32);
+        slots = buffer.getInt(36);
+        recordsOffset = buffer.getInt(40);
+        heapOffset = buffer.getInt(44);
+        int heapLength = buffer.getInt(48);
+        int checksum = buffer.getInt(52);
+        if (count < 0 || Integer.bitCount(slots) != 1 || recordsOffset != HEADER_SIZE + 8 * slots
+                || heapOffset != recordsOffset + count * RECORD_SIZE || heapOffset + heapLength != buffer.capacity()) {
+            throw new IOException("inconsistent header");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(HEADER_SIZE));
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("checksum mismatch");
+        }
+    }
+
+    /**
+     * Maps the newest readable snapshot in {@code dir}; null if there is none. Damaged files
+     * are skipped (and reported), an older one is tried instead.
+     */
+    public static CatalogSnapshot openLatest(Path dir) {
+        for (Path candidate : listNewestFirst(dir)) {
+            try {
+                return open(candidate);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Ignoring catalog snapshot " + candidate.getFileName() + ": " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /** Maps one snapshot file and checks it; an IOException if it is not a complete snapshot. */
+    public static CatalogSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("too large");
+            }
+            // The mapping stays valid after the channel is closed.
+            return new CatalogSnapshot(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Writes {@code products} (unique IDs and SKUs) as a new snapshot of {@code catalogVersion}
+     * and {@code stockVersion} into {@code dir}, atomically, and returns its path.
+     */
+    public static Path write(Path dir, long catalogVersion, long stockVersion, Collection<Product> products)
+            throws IOException {
+        Files.createDirectories(dir);
+        int count = products.size();
+        int slots = Integer.highestOneBit(Math.max(16, count * 2 - 1)) << 1;
+        int recordsOffset = HEADER_SIZE + 8 * slots;
+        int heapOffset = recordsOffset + count * RECORD_SIZE;
+
+        ByteArrayOutputStream heap = new ByteArrayOutputStream(count * 48);
+        ByteBuffer records = ByteBuffer.allocate(count * RECORD_SIZE);
+        int[] skuTable = new int[slots];
+        int[] idTable = new int[slots];
+        int index = 0;
+        for (Product p : products) {
+            int base = index * RECORD_SIZE;
+            byte[] sku = p.getSku().getBytes(StandardCharsets.UTF_8);
+            byte[] name = p.getName() == null ? new byte[0] : p.getName().getBytes(StandardCharsets.UTF_8);
+            String storageTemp = p instanceof PerishableProduct ? ((PerishableProduct) p).getStorageTempRequirement() : null;
+            byte[] storage = storageTemp == null ? null : storageTemp.getBytes(StandardCharsets.UTF_8);
+            int skuHash = hash(p.getSku());
+
+            records.putInt(base + R_ID, p.getProductId());
+            records.putInt(base + R_SKU_HASH, skuHash);
+            records.putInt(base + R_SKU_OFFSET, heap.size());
+            records.putShort(base + R_SKU_LENGTH, (short) sku.length);
+            heap.write(sku);
+            records.putInt(base + R_NAME_OFFSET, heap.size());
+            records.putShort(base + R_NAME_LENGTH, (short) name.length);
+            heap.write(name);
+            records.putInt(base + R_STORAGE_OFFSET, storage == null ? -1 : heap.size());
+            records.putShort(base + R_STORAGE_LENGTH, (short) (storage == null ? 0 : storage.length));
+            if (storage != null) {
+                heap.write(storage);
+            }
+            records.put(base + R_TYPE, p instanceof PerishableProduct ? TYPE_PERISHABLE : TYPE_NON_PERISHABLE);
+            records.putInt(base + R_QUANTITY, p.getQuantityInStock());
+            records.putInt(base + R_REORDER_LEVEL, p.getReorderLevel());
+            records.putLong(base + R_UNIT_PRICE, toCents(p.getUnitPrice()));
+            records.putLong(base + R_COST_PRICE, toCents(p.getCurrentCostPrice()));
+
+            insert(skuTable, skuHash, index);
+            insert(idTable, hash(p.getProductId()), index);
+            index++;
+        }
+
+        byte[] heapBytes = heap.toByteArray();
+        ByteBuffer out = ByteBuffer.allocate(heapOffset + heapBytes.length);
+        out.position(HEADER_SIZE);
+        for (int slot : skuTable) {
+            out.putInt(slot);
+        }
+        for (int slot : idTable) {
+            out.putInt(slot);
+        }
+        out.put(records.array());
+        out.put(heapBytes);
+        CRC32 crc = new CRC32();
+        crc.update(out.array(), HEADER_SIZE, out.capacity() - HEADER_SIZE);
+        out.position(0);
+        out.put(MAGIC);
+        long now = System.currentTimeMillis();
+        out.putLong(catalogVersion).putLong(stockVersion).putLong(now).putInt(count).putInt(slots)
+                .putInt(recordsOffset).putInt(heapOffset).putInt(heapBytes.length).putInt((int) crc.getValue());
+        out.position(0);
+
+        Path temp = Files.createTempFile(dir, "catalog-", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+                channel.force(true);
+            }
+            Path target = dir.resolve("catalog-" + Math.max(0, catalogVersion) + "-" + now + ".snapshot");
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            return target;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Deletes every snapshot in {@code dir} except {@code keep}, and leftover temporary files.
+     * A file still mapped by this or another till may refuse (on Windows); it goes next time.
+     */
+    public static void deleteOthers(Path dir, Path keep) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "catalog-*")) {
+            for (Path f : files) {
+                if (!f.equals(keep)) {
+                    try {
+                        Files.deleteIfExists(f);
+                    } catch (IOException ignored) {
+                        // still mapped somewhere; harmless
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not clean up old catalog snapshots: " + e.getMessage());
+        }
+    }
+
+    public Path getFile() { return file; }
+    /** The catalog version the snapshot was current at; every later change has a higher one. */
+    public long getCatalogVersion() { return catalogVersion; }
+    /** The highest stock version (see {@link CatalogVersion}) the snapshot's stock levels include. */
+    public long getStockVersion() { return stockVersion; }
+    public long getCreatedAt() { return createdAt; }
+    public int size() { return count; }
+
+    /** The product with this SKU (exact match), or null. */
+    public Product findBySku(String sku) {
+        int h = hash(sku);
+        byte[] wanted = null;
+        int tableOffset = HEADER_SIZE;
+        for (int slot = h & (slots - 1); ; slot = (slot + 1) & (slots - 1)) {
+            int entry = buffer.getInt(tableOffset + 4 * slot);
+            if (entry == 0) {
+                return null;
+            }
+            int base = recordsOffset + (entry - 1) * RECORD_SIZE;
+            if (buffer.getInt(base + R_SKU_HASH) != h) {
+                continue;
+            }
+            if (wanted == null) {
+                wanted = sku.getBytes(StandardCharsets.UTF_8);
+            }
+            if (heapEquals(buffer.getInt(base + R_SKU_OFFSET), buffer.getShort(base + R_SKU_LENGTH) & 0xFFFF, wanted)) {
+                return read(base);
+            }
+        }
+    }
+
+    /** The product with this ID, or null. */
+    public Product findById(int productId) {
+        int tableOffset = HEADER_SIZE + 4 * slots;
+        for (int slot = hash(productId) & (slots - 1); ; slot = (slot + 1) & (slots - 1)) {
+            int entry = buffer.getInt(tableOffset + 4 * slot);
+            if (entry == 0) {
+                return null;
+            }
+            int base = recordsOffset + (entry - 1) * RECORD_SIZE;
+            if (buffer.getInt(base + R_ID) == productId) {
+                return read(base);
+            }
+        }
+    }
+
+    /** Every product in the snapshot, in the order it was written. */
+    public void forEach(Consumer<Product> action) {
+        for (int i = 0; i < count; i++) {
+            action.accept(read(recordsOffset + i * RECORD_SIZE));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogSnapshot[" + file.getFileName() + ", products=" + count + ", version=" + catalogVersion + "]";
+    }
+
+    private Product read(int base) {
+        int id = buffer.getInt(base + R_ID);
+        String sku = heapString(buffer.getInt(base + R_SKU_OFFSET), buffer.getShort(base + R_SKU_LENGTH) & 0xFFFF);
+        String name = heapString(buffer.getInt(base + R_NAME_OFFSET), buffer.getShort(base + R_NAME_LENGTH) & 0xFFFF);
+        BigDecimal unitPrice = fromCents(buffer.getLong(base + R_UNIT_PRICE));
+        BigDecimal costPrice = fromCents(buffer.getLong(base + R_COST_PRICE));
+        int quantity = buffer.getInt(base + R_QUANTITY);
+        int reorderLevel = buffer.getInt(base + R_REORDER_LEVEL);
+        if (buffer.get(base + R_TYPE) == TYPE_PERISHABLE) {
+            int storageOffset = buffer.getInt(base + R_STORAGE_OFFSET);
+            String storage = storageOffset < 0 ? null
+                    : heapString(storageOffset, buffer.getShort(base + R_STORAGE_LENGTH) & 0xFFFF);
+            return new PerishableProduct(id, sku, name, unitPrice, quantity, costPrice, reorderLevel, storage);
+        }
+        return new NonPerishableProduct(id, sku, name, unitPrice, quantity, costPrice, reorderLevel);
+    }
+
+    private String heapString(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(heapOffset + offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean heapEquals(int offset, int length, byte[] wanted) {
+        if (length != wanted.length) {
+            return false;
+        }
+        int start = heapOffset + offset;
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(start + i) != wanted[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void insert(int[] table, int hash, int index) {
+        int slot = hash & (table.length - 1);
+        while (table[slot] != 0) {
+            slot = (slot + 1) & (table.length - 1);
+        }
+        table[slot] = index + 1;
+    }
+
+    /** String hash with its bits spread, so similar SKUs do not crowd neighbouring slots. */
+    private static int hash(String sku) {
+        return hash(sku.hashCode());
+    }
+
+    private static int hash(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount == null ? NULL_PRICE : amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private static BigDecimal fromCents(long cents) {
+        return cents == NULL_PRICE ? null : BigDecimal.valueOf(cents, 2);
+    }
+
+    private static List<Path> listNewestFirst(Path dir) {
+        List<Path> found = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return found;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "catalog-*.snapshot")) {
+            for (Path f : files) {
+                if (FILE_NAME.matcher(f.getFileName().toString()).matches()) {
+                    found.add(f);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not list catalog snapshots: " + e.getMessage());
+        }
+        found.sort((a, b) -> {
+            Matcher ma = FILE_NAME.matcher(a.getFileName().toString());
+            Matcher mb = FILE_NAME.matcher(b.getFileName().toString());
+            ma.matches();
+            mb.matches();
+            int byVersion = Long.compare(Long.parseLong(mb.group(1)), Long.parseLong(ma.group(1)));
+            return byVersion != 0 ? byVersion : Long.compare(Long.parseLong(mb.group(2)), Long.parseLong(ma.group(2)));
+        });
+        return found;
+    }
+}
@@ -0,0 +1,341 @@
+package com.smartcashpro.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tells catalog caches that products have changed, in this process and in others.
+ *
+ * DAOs call {@link #productChanged(int)} inside their write transaction. Changes are collected
+ * per transaction. Just before it commits, the shared {@code CATALOG_VERSION} counter is bumped
+ * once and every changed PRODUCT row is stamped with the new value in its {@code RowVersion}
+ * column (migration V4), in the same transaction. Once it commits, listeners in this process
+ * are told which products changed. Nothing is stamped or reported for a transaction that rolls
+ * back.
+ *
+ * The counter row stays locked from the bump until the commit, so versions are handed out in
+ * commit order: once a till can see a row with version N, every change up to N is visible.
+ * That lets {@link CatalogChangeFeed} on other tills read just the rows stamped after the last
+ * version they saw.
+ *
+ * Stock movements ({@link #stockChanged(int)}) stay off that lock, or every sale would queue
+ * on the counter row behind the other tills' sales. Instead the transaction takes the next
+ * value of the {@code STOCK_VERSION_SEQUENCE} (migration V7), which the database hands out
+ * without waiting for other transactions, and stamps it on the changed rows' {@code StockVersion}
+ * column. Such values are not in commit order: a lower one may become visible after a higher
+ * one. {@link CatalogChangeFeed} therefore keeps reading stock versions a few seconds back.
+ */
+public final class CatalogVersion {
+
+    /** Told about committed catalog changes, on the thread that committed them. */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param productIds the changed products; empty means "anything may have changed"
+         * @param newVersion the counter value after this change, or -1 if it was not bumped (a
+         *                   stock-only change, or the counter is unavailable)
+         */
+        void catalogChanged(Set<Integer> productIds, long newVersion);
+    }
+
+    private static final String READ_SQL = "SELECT Version FROM CATALOG_VERSION WHERE ID = 1";
+
+    /**
+     * For reading the whole catalog together with {@link #read(Connection)} as its first
+     * statement: all reads see one snapshot, so the rows are exactly those of that version.
+     */
+    static final Transaction.Options CONSISTENT_READ =
+            Transaction.Options.READ_ONLY.withIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+    private static final String BUMP_SQL = "UPDATE CATALOG_VERSION SET Version = LAST_INSERT_ID(Version + 1) WHERE ID = 1";
+    private static final String READ_STOCK_SQL = "SELECT COALESCE(MAX(StockVersion), 0) FROM PRODUCT";
+    private static final String NEXT_STOCK_VERSION_SQL = "INSERT INTO STOCK_VERSION_SEQUENCE () VALUES ()";
+    /** The value stays taken; dropping the row keeps the table empty. */
+    private static final String RELEASE_STOCK_VERSION_SQL = "DELETE FROM STOCK_VERSION_SEQUENCE WHERE Seq = ?";
+    private static final int STAMP_CHUNK_SIZE = 1000;
+
+    private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+    private static final Object PENDING_KEY = new Object();
+
+    private static volatile boolean missingTableLogged = false;
+    private static volatile boolean missingColumnLogged = false;
+    private static volatile boolean missingStockVersionLogged = false;
+
+    private CatalogVersion() {
+    }
+
+    /** Records that a product's catalog data (name, price, type...) changed; reported after commit. */
+    public static void productChanged(int productId) {
+        record(Collections.singleton(productId), true, true);
+    }
+
+    /**
+     * Records that only a product's stock changed (a sale, return, adjustment or delivery):
+     * stamped with a stock version rather than the shared counter, and reported after commit.
+     */
+    public static void stockChanged(int productId) {
+        record(Collections.singleton(productId), true, false);
+    }
+
+    /** Records a change that may touch any product, e.g. a bulk import. */
+    public static void catalogChanged() {
+        record(Collections.singleton(null), true, true);
+    }
+
+    /**
+     * Records rows written by a bulk job that announces its work here once at the end with
+     * {@link #catalogChanged()}: the rows are stamped for other tills' change feeds, but
+     * listeners in this process are not told about every chunk.
+     */
+    public static void productsWritten(Collection<Integer> productIds) {
+        if (!productIds.isEmpty()) {
+            record(productIds, false, true);
+        }
+    }
+
+    public static void addListener(Listener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * The shared counter, or -1 if it cannot be read (e.g. the V2 migration has not run yet).
+     * One primary-key lookup on a one-row table.
+     */
+    public static long read() {
+        try (Connection conn = DatabaseConnector.leaseConnection()) {
+            return read(conn);
+        } catch (SQLException e) {
+            logMissingTable(e);
+            return -1;
+        }
+    }
+
+    /**
+     * The highest stock version stamped on any product, or -1 if it cannot be read (e.g. the
+     * V7 migration has not run yet). Read from the end of an index.
+     */
+    public static long readStock() {
+        try (Connection conn = DatabaseConnector.leaseConnection()) {
+            return readStock(conn);
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    /** {@link #readStock()} on the given connection, e.g. in a {@link #CONSISTENT_READ} transaction. */
+    static long readStock(Connection conn) {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(READ_STOCK_SQL)) {
+            return rs.next() ? rs.getLong(1) : -1;
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    /** {@link #read()} on the given connection, e.g. in a {@link #CONSISTENT_READ} transaction. */
+    static long read(Connection conn) {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(READ_SQL)) {
+            return rs.next() ? rs.getLong(1) : -1;
+        } catch (SQLException e) {
+            logMissingTable(e);
+            return -1;
+        }
+    }
+
+    /** Changes of one transaction; a null id stands for "everything". */
+    private static final class Pending {
+        final Set<Integer> productIds = new HashSet<>();
+        /** Catalog changes: bump the counter and stamp these rows with it. */
+        final Set<Integer> stamped = new HashSet<>();
+        /** Stock movements: stamp these rows with the next stock version. */
+        final Set<Integer> stockStamped = new HashSet<>();
+        boolean announce = false;
+        long version = -1;
+    }
+
+    /**
+     * Adds changes to the current transaction's set, or stamps and reports them in a
+     * transaction of their own when there is none.
+     */
+    private static void record(Collection<Integer> productIds, boolean announce, boolean catalog) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            try {
+                Transaction.run(Transaction.Options.RETRYING, t -> {
+                    record(productIds, announce, catalog);
+                    return null;
+                });
+            } catch (SQLException e) {
+                logMissingTable(e);
+                if (announce) {
+                    Set<Integer> ids = new HashSet<>(productIds);
+                    notifyListeners(ids, -1); // the database is out of reach; local caches still need to know
+                }
+            }
+            return;
+        }
+        Pending pending = tx.resource(PENDING_KEY, () -> {
+            Pending created = new Pending();
+            tx.beforeCommit(t -> {
+                if (!created.stamped.isEmpty()) {
+                    created.version = stamp(t.getConnection(), created.stamped);
+                }
+                if (!created.stockStamped.isEmpty()) {
+                    stampStock(t.getConnection(), created.stockStamped);
+                }
+                return null;
+            });
+            Transaction.afterCommit(() -> {
+                if (created.announce) {
+                    notifyListeners(created.productIds, created.version);
+                }
+            });
+            return created;
+        });
+        pending.productIds.addAll(productIds);
+        (catalog ? pending.stamped : pending.stockStamped).addAll(productIds);
+        pending.announce |= announce;
+    }
+
+    /**
+     * Bumps the counter and stamps the changed rows with it, on the committing connection.
+     * Returns the new version, or -1 if the counter is missing; a missing RowVersion column
+     * only skips the stamping. Either is logged once and never fails the caller's transaction.
+     */
+    private static long stamp(Connection conn, Set<Integer> productIds) throws SQLException {
+        long version;
+        try {
+            try (PreparedStatement pstmt = conn.prepareStatement(BUMP_SQL)) {
+                if (pstmt.executeUpdate() == 0) {
+                    return -1;
+                }
+            }
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT LAST_INSERT_ID()")) {
+                version = rs.next() ? rs.getLong(1) : -1;
+            }
+        } catch (SQLException e) {
+            if (SqlErrors.isConnectionFailure(e) || SqlErrors.isTransient(e)) {
+                throw e; // the commit would fail as well; let the transaction retry or fail
+            }
+            logMissingTable(e);
+            return -1;
+        }
+
+        try {
+            stampRows(conn, "RowVersion", version, productIds);
+        } catch (SQLException e) {
+            if (SqlErrors.isConnectionFailure(e) || SqlErrors.isTransient(e)) {
+                throw e;
+            }
+            if (!missingColumnLogged) {
+                missingColumnLogged = true;
+                System.err.println("Product row versions unavailable (" + e.getMessage()
+                        + "); other tills will reload their whole catalog cache after each change.");
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Takes the next stock version and stamps the rows whose stock changed with it, on the
+     * committing connection. The rows are already locked by the stock updates and the sequence
+     * waits for nobody, so this adds no waiting between tills. If migration V7 has not run, that
+     * is logged once and the caller's transaction carries on.
+     */
+    private static void stampStock(Connection conn, Set<Integer> productIds) throws SQLException {
+        try {
+            long version;
+            try (PreparedStatement pstmt = conn.prepareStatement(NEXT_STOCK_VERSION_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                pstmt.executeUpdate();
+                try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                    if (!keys.next()) {
+                        return;
+                    }
+                    version = keys.getLong(1);
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(RELEASE_STOCK_VERSION_SQL)) {
+                pstmt.setLong(1, version);
+                pstmt.executeUpdate();
+            }
+            stampRows(conn, "StockVersion", version, productIds);
+        } catch (SQLException e) {
+            if (SqlErrors.isConnectionFailure(e) || SqlErrors.isTransient(e)) {
+                throw e;
+            }
+            if (!missingStockVersionLogged) {
+                missingStockVersionLogged = true;
+                System.err.println("Product stock versions unavailable (" + e.getMessage()
+                        + "); other tills will show this till's stock movements only after a reload.");
+            }
+        }
+    }
+
+    /** Sets {@code column} to {@code version} on the given products, a chunk of IDs per statement. */
+    private static void stampRows(Connection conn, String column, long version, Set<Integer> productIds)
+            throws SQLException {
+        List<Integer> ids = new ArrayList<>(productIds.size());
+        for (Integer id : productIds) {
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        for (int from = 0; from < ids.size(); from += STAMP_CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + STAMP_CHUNK_SIZE, ids.size()));
+            StringBuilder sql = new StringBuilder("UPDATE PRODUCT SET ").append(column).append(" = ? WHERE ProductID IN (");
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(')');
+            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                pstmt.setLong(1, version);
+                for (int i = 0; i < chunk.size(); i++) {
+                    pstmt.setInt(i + 2, chunk.get(i));
+                }
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    private static void notifyListeners(Set<Integer> changed, long newVersion) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        Set<Integer> ids = changed.contains(null)
+                ? Collections.<Integer>emptySet()
+                : Collections.unmodifiableSet(new HashSet<>(changed));
+        for (Listener listener : LISTENERS) {
+            try {
+                listener.catalogChanged(ids, newVersion);
+            } catch (RuntimeException e) {
+                System.err.println("Catalog listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void logMissingTable(SQLException e) {
+        if (e instanceof CircuitOpenException || SqlErrors.isConnectionFailure(e)) {
+            return; // the database is down, not missing the table; the breaker reports that
+        }
+        if (!missingTableLogged) {
+            missingTableLogged = true;
+            System.err.println("Catalog version counter unavailable (" + e.getMessage()
+                    + "); caches in other tills will only pick up changes when their entries expire.");
+        }
+    }
+}
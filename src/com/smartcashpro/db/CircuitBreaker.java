@@ -0,0 +1,178 @@
+package com.smartcashpro.db;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Stops hammering the database while it is down.
+ *
+ * After {@code failureThreshold} consecutive connection failures the breaker opens and
+ * {@link #ensureClosed()} fails fast with a {@link CircuitOpenException}. A background probe
+ * then checks the database after a cool-down (doubling up to {@code maxCoolDownMs}); the
+ * breaker is half-open while the probe runs and closes again as soon as one succeeds.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /** Health check run by the background probe; should throw if the database is still down. */
+    @FunctionalInterface
+    public interface Probe {
+        void check() throws SQLException;
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long initialCoolDownMs;
+    private final long maxCoolDownMs;
+    private final Probe probe;
+    private final List<Consumer<State>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService prober;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long coolDownMs;
+    private long openedAt = 0;
+    private String lastError = null;
+
+    public CircuitBreaker(String name, int failureThreshold, long initialCoolDownMs, long maxCoolDownMs, Probe probe) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.initialCoolDownMs = initialCoolDownMs;
+        this.maxCoolDownMs = maxCoolDownMs;
+        this.coolDownMs = initialCoolDownMs;
+        this.probe = probe;
+        this.prober = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-breaker-probe");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** @throws CircuitOpenException while the breaker is open or a recovery probe is running */
+    public void ensureClosed() throws CircuitOpenException {
+        State current;
+        String error;
+        long retryInMs;
+        synchronized (this) {
+            current = state;
+            error = lastError;
+            retryInMs = Math.max(0, openedAt + coolDownMs - System.currentTimeMillis());
+        }
+        if (current != State.CLOSED) {
+            throw new CircuitOpenException(name + " unavailable (circuit " + current
+                    + (current == State.OPEN ? ", next check in " + retryInMs + "ms" : ", checking")
+                    + "). Last error: " + error);
+        }
+    }
+
+    public void recordSuccess() {
+        boolean changed;
+        synchronized (this) {
+            consecutiveFailures = 0;
+            lastError = null;
+            changed = state != State.CLOSED;
+            if (changed) {
+                state = State.CLOSED;
+                coolDownMs = initialCoolDownMs;
+            }
+        }
+        if (changed) {
+            System.out.println(name + " circuit closed: connection restored.");
+            fire(State.CLOSED);
+        }
+    }
+
+    public void recordFailure(SQLException e) {
+        boolean opened = false;
+        synchronized (this) {
+            consecutiveFailures++;
+            lastError = e.getMessage();
+            if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+                state = State.OPEN;
+                openedAt = System.currentTimeMillis();
+                opened = true;
+            }
+        }
+        if (opened) {
+            System.err.println(name + " circuit OPEN after " + failureThreshold + " consecutive failures: " + e.getMessage());
+            fire(State.OPEN);
+            scheduleProbe();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public synchronized String getLastError() {
+        return lastError;
+    }
+
+    /** Listener is called on the thread that caused the transition, not the EDT. */
+    public void addListener(Consumer<State> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<State> listener) {
+        listeners.remove(listener);
+    }
+
+    private void scheduleProbe() {
+        long delay;
+        synchronized (this) {
+            delay = coolDownMs;
+        }
+        try {
+            prober.schedule(this::runProbe, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            System.err.println("Could not schedule " + name + " recovery probe: " + e.getMessage());
+        }
+    }
+
+    private void runProbe() {
+        synchronized (this) {
+            if (state != State.OPEN) {
+                return;
+            }
+            state = State.HALF_OPEN;
+        }
+        fire(State.HALF_OPEN);
+        try {
+            probe.check();
+            recordSuccess();
+        } catch (SQLException | RuntimeException e) {
+            long nextCheckMs;
+            synchronized (this) {
+                state = State.OPEN;
+                openedAt = System.currentTimeMillis();
+                lastError = e.getMessage();
+                coolDownMs = Math.min(coolDownMs * 2, maxCoolDownMs);
+                nextCheckMs = coolDownMs;
+            }
+            System.err.println(name + " still unavailable, next check in " + nextCheckMs + "ms: " + e.getMessage());
+            fire(State.OPEN);
+            scheduleProbe();
+        }
+    }
+
+    private void fire(State newState) {
+        for (Consumer<State> listener : listeners) {
+            try {
+                listener.accept(newState);
+            } catch (RuntimeException e) {
+                System.err.println("Circuit breaker listener failed: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.smartcashpro.db;
+
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Thrown instead of attempting a connection while the {@link CircuitBreaker} is open.
+ */
+public class CircuitOpenException extends SQLTransientConnectionException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(String message) {
+        super(message, "08000");
+    }
+}
@@ -0,0 +1,139 @@
+package com.smartcashpro.db;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Column positions for a row mapper, resolved once per query shape instead of once per
+ * column per row.
+ *
+ * A mapper declares the labels it reads as a {@code static final String[]} and asks for their
+ * positions once per result set; the answer is cached per SQL text and only recomputed if the
+ * result set comes back with a different column count (e.g. after a schema change). The
+ * mapper then reads with index-based primitive getters:
+ *
+ * <pre>
+ *   int[] col = ColumnPlan.indexes(sql, rs, PRODUCT_COLUMNS);
+ *   while (rs.next()) {
+ *       int id = rs.getInt(col[ID]);
+ *       Integer customerId = ColumnPlan.getInteger(rs, col[CUSTOMER_ID]);
+ *   }
+ * </pre>
+ */
+public final class ColumnPlan {
+
+    /** Maps the current row using positions from {@link #indexes}. */
+    @FunctionalInterface
+    public interface IndexedMapper<T> {
+        T map(ResultSet rs, int[] col) throws SQLException;
+    }
+
+    private static final int MAX_PLANS = 256;
+    private static final Map<Key, ColumnPlan> PLANS = new ConcurrentHashMap<>();
+
+    private final int columnCount;
+    private final int[] indexes;
+
+    private ColumnPlan(int columnCount, int[] indexes) {
+        this.columnCount = columnCount;
+        this.indexes = indexes;
+    }
+
+    /**
+     * Positions of {@code labels} in {@code rs}, in the same order. The returned array is
+     * shared and must not be modified.
+     *
+     * @param sql    the statement text, used as the cache key together with {@code labels}
+     * @param labels column labels, matched case-insensitively; the first match wins
+     * @throws SQLException if a label is not in the result set
+     */
+    public static int[] indexes(String sql, ResultSet rs, String[] labels) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int columnCount = meta.getColumnCount();
+        Key key = new Key(sql, labels);
+        ColumnPlan plan = PLANS.get(key);
+        if (plan == null || plan.columnCount != columnCount) {
+            plan = new ColumnPlan(columnCount, resolve(meta, columnCount, labels));
+            if (PLANS.size() >= MAX_PLANS) {
+                PLANS.clear(); // dynamic SQL run wild; start over rather than grow
+            }
+            PLANS.put(key, plan);
+        }
+        return plan.indexes;
+    }
+
+    /**
+     * Adapts an index-based mapper for {@link RowCursor}: positions are looked up on the first
+     * row of each result set. The returned mapper is not thread-safe; create one per query.
+     */
+    public static <T> RowCursor.RowMapper<T> mapper(String sql, String[] labels, IndexedMapper<T> mapper) {
+        return new RowCursor.RowMapper<T>() {
+            private ResultSet boundTo;
+            private int[] col;
+
+            @Override
+            public T map(ResultSet rs) throws SQLException {
+                if (rs != boundTo) {
+                    col = indexes(sql, rs, labels);
+                    boundTo = rs;
+                }
+                return mapper.map(rs, col);
+            }
+        };
+    }
+
+    /** {@code getInt} that returns null for SQL NULL, without a boxing {@code getObject} call. */
+    public static Integer getInteger(ResultSet rs, int column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    /** True if the column is SQL NULL; cheap for integer key columns. */
+    public static boolean isNull(ResultSet rs, int column) throws SQLException {
+        rs.getInt(column);
+        return rs.wasNull();
+    }
+
+    private static int[] resolve(ResultSetMetaData meta, int columnCount, String[] labels) throws SQLException {
+        int[] result = new int[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            result[i] = -1;
+            for (int c = 1; c <= columnCount; c++) {
+                if (labels[i].equalsIgnoreCase(meta.getColumnLabel(c))) {
+                    result[i] = c;
+                    break;
+                }
+            }
+            if (result[i] < 0) {
+                throw new SQLException("Column '" + labels[i] + "' not found in result set.", "S0022");
+            }
+        }
+        return result;
+    }
+
+    /** SQL text plus the identity of the mapper's label array. */
+    private static final class Key {
+        final String sql;
+        final String[] labels;
+
+        Key(String sql, String[] labels) {
+            this.sql = sql;
+            this.labels = labels;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return labels == other.labels && sql.equals(other.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return sql.hashCode() * 31 + System.identityHashCode(labels);
+        }
+    }
+}
@@ -0,0 +1,858 @@
+package com.smartcashpro.db;
+
+import com.smartcashpro.model.NonPerishableProduct;
+import com.smartcashpro.model.PerishableProduct;
+import com.smartcashpro.model.Product;
+import com.smartcashpro.model.ProductScan;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The whole catalog in memory as parallel primitive arrays, for sites with too many products
+ * to keep each one as an object. Selected with {@code -Dsmartcashpro.catalogStore=compact};
+ * the POS then uses it instead of {@link CachedProductDAO}.
+ *
+ * Per product the store keeps its ID, stock and reorder level as ints, both prices as cents
+ * in longs, a type flag, its SKU as UTF-8 bytes in a shared heap and its name as codes into a
+ * dictionary of words, which wholesale catalogs repeat a great deal. Two open-addressing
+ * tables map SKU and ID to the array index. A {@link Product} is only built when a lookup
+ * returns one, and it is the caller's to keep. That comes to roughly a quarter of the heap the
+ * same catalog takes as objects, in a handful of large arrays the collector hardly has to look at.
+ *
+ * {@link #reload()} (run by the warm-up) reads the catalog into fresh arrays and swaps them in;
+ * until then lookups go to the database. Afterwards the store follows the same notifications
+ * as the cache: products changed on this till are marked and read from the database on their
+ * next lookup, rows changed elsewhere are written into the arrays as the
+ * {@link CatalogChangeFeed} delivers them, and a change that may touch anything starts a
+ * reload. SKUs the store does not know are always looked up in the database. Lists, pages
+ * and writes go straight to the database.
+ */
+public final class CompactProductDAO implements IProductDAO {
+
+    private static final long NULL_PRICE = Long.MIN_VALUE;
+    private static final byte PERISHABLE = 1, CHANGED = 2;
+
+    private static CompactProductDAO instance;
+
+    private final IProductDAO delegate;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Guarded by lock.
+    private Columns columns = new Columns(16);
+    private boolean loaded = false;
+    /** IDs changed while a reload is reading the catalog (null = anything); null when none runs. */
+    private Set<Integer> changedDuringReload;
+    /** Bumped by every change notification; a database read that started before one is not stored. */
+    private long generation = 0;
+
+    private final Object reloadLock = new Object();
+    /** Whether a reload has told the change feed where to start; guarded by reloadLock. */
+    private boolean feedStarted = false;
+    private final ExecutorService reloader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "compact-catalog-reload");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    CompactProductDAO(IProductDAO delegate) {
+        this.delegate = delegate;
+    }
+
+    /** True if this store was chosen for the POS with {@code -Dsmartcashpro.catalogStore=compact}. */
+    public static boolean isSelected() {
+        return "compact".equalsIgnoreCase(System.getProperty("smartcashpro.catalogStore"));
+    }
+
+    /** The store shared by the panels, following catalog changes from its creation. */
+    public static synchronized CompactProductDAO getInstance() {
+        if (instance == null) {
+            instance = new CompactProductDAO(new ProductDAO());
+            CatalogVersion.addListener(instance::markChanged);
+            CatalogChangeFeed.getInstance().addListener(instance::applyChanges);
+        }
+        return instance;
+    }
+
+    /**
+     * Reads the whole catalog into new arrays and swaps them in; returns the number of products.
+     * The first reload starts the {@link CatalogChangeFeed} from the versions it read.
+     */
+    public int reload() throws SQLException {
+        synchronized (reloadLock) {
+            lock.writeLock().lock();
+            try {
+                changedDuringReload = new HashSet<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Columns fresh = null;
+            try {
+                fresh = Transaction.run(CatalogVersion.CONSISTENT_READ, tx -> {
+                    Columns read = new Columns(1024);
+                    read.catalogVersion = CatalogVersion.read(tx.getConnection());
+                    read.stockVersion = CatalogVersion.readStock(tx.getConnection());
+                    delegate.forEachProduct(read::put);
+                    return read;
+                });
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    if (fresh != null) {
+                        boolean everything = changedDuringReload.contains(null);
+                        for (Integer id : changedDuringReload) {
+                            if (id != null) {
+                                fresh.markChanged(id);
+                            }
+                        }
+                        columns = fresh;
+                        loaded = !everything;
+                        if (everything) {
+                            requestReload();
+                        }
+                    }
+                    changedDuringReload = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            if (!feedStarted && fresh.catalogVersion >= 0) {
+                feedStarted = true;
+                CatalogChangeFeed.getInstance().startFrom(fresh.catalogVersion, fresh.stockVersion);
+            }
+            return fresh.size;
+        }
+    }
+
+    @Override
+    public Product findProductBySku(String sku) throws SQLException {
+        long startGeneration;
+        lock.readLock().lock();
+        try {
+            if (loaded) {
+                int i = columns.indexOfSku(sku);
+                if (i >= 0 && !columns.isChanged(i)) {
+                    hits.incrementAndGet();
+                    return columns.product(i, sku);
+                }
+            }
+            startGeneration = generation;
+        } finally {
+            lock.readLock().unlock();
+        }
+        misses.incrementAndGet();
+        Product product = delegate.findProductBySku(sku);
+        remember(product, startGeneration);
+        return product;
+    }
+
+    @Override
+    public Product findProductById(int productId) throws SQLException {
+        long startGeneration;
+        lock.readLock().lock();
+        try {
+            if (loaded) {
+                int i = columns.indexOfId(productId);
+                if (i >= 0 && !columns.isChanged(i)) {
+                    hits.incrementAndGet();
+                    return columns.product(i);
+                }
+            }
+            startGeneration = generation;
+        } finally {
+            lock.readLock().unlock();
+        }
+        misses.incrementAndGet();
+        Product product = delegate.findProductById(productId);
+        remember(product, startGeneration);
+        return product;
+    }
+
+    /** A known product costs one primary-key read of its stock, as with {@link CachedProductDAO}. */
+    @Override
+    public ProductScan lookupForScan(String sku, IntUnaryOperator quantityInCart) throws SQLException {
+        Product product = null;
+        lock.readLock().lock();
+        try {
+            if (loaded) {
+                int i = columns.indexOfSku(sku);
+                if (i >= 0 && !columns.isChanged(i)) {
+                    product = columns.product(i, sku);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (product == null) {
+            product = findProductBySku(sku); // from the database, stock included
+            return product == null ? null
+                    : new ProductScan(product, product.getQuantityInStock(), quantityInCart.applyAsInt(product.getProductId()));
+        }
+        hits.incrementAndGet();
+        int productId = product.getProductId();
+        int stock = delegate.findStockQuantity(productId);
+        if (stock < 0) {
+            markChanged(Collections.singleton(productId), -1); // deleted elsewhere
+            return null;
+        }
+        lock.writeLock().lock();
+        try {
+            columns.setStock(productId, stock);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        product.setQuantityInStock(stock);
+        return new ProductScan(product, stock, quantityInCart.applyAsInt(productId));
+    }
+
+    /** Known products cost only their stock, read in batches; the rest go to the batched SKU lookup. */
+    @Override
+    public Map<String, ProductScan> lookupAllForScan(Collection<String> skus, IntUnaryOperator quantityInCart) throws SQLException {
+        Set<String> distinct = new LinkedHashSet<>(skus);
+        Map<String, Product> known = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        long startGeneration;
+        lock.readLock().lock();
+        try {
+            for (String sku : distinct) {
+                int i = loaded ? columns.indexOfSku(sku) : -1;
+                if (i >= 0 && !columns.isChanged(i)) {
+                    known.put(sku, columns.product(i, sku));
+                } else {
+                    missing.add(sku);
+                }
+            }
+            startGeneration = generation;
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.addAndGet(known.size());
+        misses.addAndGet(missing.size());
+
+        Map<String, ProductScan> found = missing.isEmpty() ? Collections.emptyMap()
+                : delegate.lookupAllForScan(missing, quantityInCart);
+        List<Integer> knownIds = new ArrayList<>();
+        for (Product product : known.values()) {
+            knownIds.add(product.getProductId());
+        }
+        Map<Integer, Integer> stock = knownIds.isEmpty() ? Collections.emptyMap()
+                : delegate.findStockQuantities(knownIds);
+
+        lock.writeLock().lock();
+        try {
+            if (generation == startGeneration) {
+                for (ProductScan scan : found.values()) {
+                    columns.put(scan.getProduct());
+                }
+            }
+            for (Map.Entry<Integer, Integer> entry : stock.entrySet()) {
+                columns.setStock(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<String, ProductScan> scans = new LinkedHashMap<>();
+        Set<Integer> deleted = new HashSet<>();
+        for (String sku : distinct) {
+            Product product = known.get(sku);
+            if (product == null) {
+                ProductScan scan = found.get(sku);
+                if (scan != null) {
+                    scans.put(sku, scan);
+                }
+                continue;
+            }
+            Integer quantity = stock.get(product.getProductId());
+            if (quantity == null) {
+                deleted.add(product.getProductId()); // deleted elsewhere
+                continue;
+            }
+            product.setQuantityInStock(quantity);
+            scans.put(sku, new ProductScan(product, quantity, quantityInCart.applyAsInt(product.getProductId())));
+        }
+        if (!deleted.isEmpty()) {
+            markChanged(deleted, -1);
+        }
+        return scans;
+    }
+
+    @Override
+    public int findStockQuantity(int productId) throws SQLException {
+        return delegate.findStockQuantity(productId);
+    }
+
+    @Override
+    public Map<Integer, Integer> findStockQuantities(Collection<Integer> productIds) throws SQLException {
+        return delegate.findStockQuantities(productIds);
+    }
+
+    @Override
+    public List<Product> getAllProducts() throws SQLException {
+        return delegate.getAllProducts();
+    }
+
+    @Override
+    public void forEachProduct(RowCursor.RowCallback<Product> callback) throws SQLException {
+        delegate.forEachProduct(callback);
+    }
+
+    @Override
+    public List<Product> findProductPage(ProductQuery query, Product after, int limit) throws SQLException {
+        return delegate.findProductPage(query, after, limit);
+    }
+
+    @Override
+    public List<Product> findProductPage(ProductQuery query, int offset, int limit) throws SQLException {
+        return delegate.findProductPage(query, offset, limit);
+    }
+
+    @Override
+    public int countProducts(ProductQuery query) throws SQLException {
+        return delegate.countProducts(query);
+    }
+
+    @Override
+    public boolean saveProduct(Product product) throws SQLException {
+        return delegate.saveProduct(product); // ProductDAO reports the change through CatalogVersion
+    }
+
+    @Override
+    public boolean saveProduct(Product product, int changedByUserId) throws SQLException {
+        return delegate.saveProduct(product, changedByUserId);
+    }
+
+    @Override
+    public boolean updateStockQuantity(int productId, int quantityChange) throws SQLException {
+        return delegate.updateStockQuantity(productId, quantityChange);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return columns.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Approximate heap taken by the arrays and dictionaries, in bytes. */
+    public long getFootprintBytes() {
+        lock.readLock().lock();
+        try {
+            return columns.footprintBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getHitCount() { return hits.get(); }
+    public long getMissCount() { return misses.get(); }
+
+    @Override
+    public String toString() {
+        return String.format("CompactCatalog[products=%d, heap=%.1f MB, hits=%d, misses=%d]",
+                size(), getFootprintBytes() / (1024.0 * 1024.0), hits.get(), misses.get());
+    }
+
+    /** Stores a product just read from the database, unless a change was reported meanwhile. */
+    private void remember(Product product, long startGeneration) {
+        if (product == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (generation == startGeneration) {
+                columns.put(product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void markChanged(Set<Integer> productIds, long newVersion) {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            if (productIds.isEmpty()) {
+                everythingChanged();
+                return;
+            }
+            for (Integer id : productIds) {
+                columns.markChanged(id);
+                if (changedDuringReload != null) {
+                    changedDuringReload.add(id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void applyChanges(List<Product> changed, long version) {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            if (changed == null) {
+                everythingChanged();
+                return;
+            }
+            for (Product product : changed) {
+                columns.put(product);
+                if (changedDuringReload != null) {
+                    changedDuringReload.add(product.getProductId()); // the reload may have read it before this change
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Caller holds the write lock. */
+    private void everythingChanged() {
+        if (changedDuringReload != null) {
+            changedDuringReload.add(null); // the running reload will start another
+        } else if (loaded) {
+            loaded = false;
+            requestReload();
+        }
+    }
+
+    private void requestReload() {
+        reloader.execute(() -> {
+            try {
+                reload();
+            } catch (SQLException e) {
+                System.err.println("Compact catalog reload failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * The arrays themselves. Index {@code i} is one product in every array; products are only
+     * ever added or overwritten. A changed SKU or name is appended to its heap, so once the
+     * entries left behind take up a quarter of a heap, the heap (and for names, the dictionary)
+     * is rewritten with only what products still use. Not thread-safe.
+     */
+    private static final class Columns {
+        /** Unused heap entries tolerated regardless of the heap's size. */
+        private static final int MIN_WASTE = 4096;
+
+        /** The catalog version the arrays were read at, or -1 if unknown. */
+        long catalogVersion = -1;
+        /** The stock version the stock levels were read at, or -1 if unknown. */
+        long stockVersion = -1;
+        int size;
+        int[] ids;
+        int[] stock;
+        int[] reorderLevels;
+        long[] unitPrices;
+        long[] costPrices;
+        byte[] flags;
+        short[] storageCodes; // 0 = none, else index + 1 into storageValues
+
+        int[] skuHashes;
+        int[] skuStarts;
+        short[] skuLengths;
+        byte[] skuHeap = new byte[4096];
+        int skuHeapUsed;
+        /** Bytes of skuHeap that products still point at. */
+        int skuHeapLive;
+
+        int[] nameStarts;
+        short[] nameLengths; // in words; -1 = no name
+        int[] nameHeap = new int[4096];
+        int nameHeapUsed;
+        /** Codes in nameHeap that products still point at. */
+        int nameHeapLive;
+        List<String> words = new ArrayList<>();
+        Map<String, Integer> wordCodes = new HashMap<>();
+        final List<String> storageValues = new ArrayList<>();
+
+        /** Open addressing on the mixed hash; entries are index + 1, 0 is empty. */
+        int[] skuTable;
+        int[] idTable;
+
+        Columns(int capacity) {
+            ids = new int[capacity];
+            stock = new int[capacity];
+            reorderLevels = new int[capacity];
+            unitPrices = new long[capacity];
+            costPrices = new long[capacity];
+            flags = new byte[capacity];
+            storageCodes = new short[capacity];
+            skuHashes = new int[capacity];
+            skuStarts = new int[capacity];
+            skuLengths = new short[capacity];
+            nameStarts = new int[capacity];
+            nameLengths = new short[capacity];
+            skuTable = new int[Integer.highestOneBit(capacity) << 2];
+            idTable = new int[skuTable.length];
+        }
+
+        int indexOfId(int productId) {
+            int mask = idTable.length - 1;
+            for (int slot = mix(productId) & mask; ; slot = (slot + 1) & mask) {
+                int entry = idTable[slot];
+                if (entry == 0 || ids[entry - 1] == productId) {
+                    return entry - 1;
+                }
+            }
+        }
+
+        int indexOfSku(String sku) {
+            int h = mix(sku.hashCode());
+            int mask = skuTable.length - 1;
+            for (int slot = h & mask; ; slot = (slot + 1) & mask) {
+                int entry = skuTable[slot];
+                if (entry == 0) {
+                    return -1;
+                }
+                int i = entry - 1;
+                if (skuHashes[i] == h && skuEquals(i, sku)) {
+                    return i;
+                }
+            }
+        }
+
+        boolean isChanged(int i) {
+            return (flags[i] & CHANGED) != 0;
+        }
+
+        void markChanged(int productId) {
+            int i = indexOfId(productId);
+            if (i >= 0) {
+                flags[i] |= CHANGED;
+            }
+        }
+
+        void setStock(int productId, int quantity) {
+            int i = indexOfId(productId);
+            if (i >= 0) {
+                stock[i] = quantity;
+            }
+        }
+
+        /** Adds the product, or overwrites the one with its ID (clearing its changed mark). */
+        void put(Product p) {
+            int i = indexOfId(p.getProductId());
+            byte[] sku = p.getSku().getBytes(StandardCharsets.UTF_8);
+            boolean added = i < 0;
+            boolean newSku = true;
+            if (added) {
+                if (size == ids.length) {
+                    grow();
+                }
+                i = size++;
+                ids[i] = p.getProductId();
+                insert(idTable, mix(ids[i]), i);
+            } else if (skuEquals(i, sku)) {
+                newSku = false;
+            } else {
+                removeSku(i);
+            }
+            if (newSku) {
+                skuHeapLive += sku.length - skuLengths[i]; // 0 for a new index
+                skuHashes[i] = mix(p.getSku().hashCode());
+                skuStarts[i] = appendSku(sku);
+                skuLengths[i] = (short) sku.length;
+                insertSku(i);
+            }
+            stock[i] = p.getQuantityInStock();
+            reorderLevels[i] = p.getReorderLevel();
+            unitPrices[i] = toCents(p.getUnitPrice());
+            costPrices[i] = toCents(p.getCurrentCostPrice());
+            flags[i] = p instanceof PerishableProduct ? PERISHABLE : 0;
+            storageCodes[i] = p instanceof PerishableProduct
+                    ? storageCode(((PerishableProduct) p).getStorageTempRequirement()) : 0;
+            if (added || !nameEquals(i, p.getName())) {
+                encodeName(i, p.getName());
+            }
+            if (size * 2 > skuTable.length) {
+                rehash(skuTable.length * 2);
+            }
+            if (skuHeapUsed - skuHeapLive > Math.max(MIN_WASTE, skuHeapUsed >> 2)) {
+                compactSkus();
+            }
+            if (nameHeapUsed - nameHeapLive > Math.max(MIN_WASTE, nameHeapUsed >> 2)) {
+                compactNames();
+            }
+        }
+
+        /** A new product object built from index {@code i}. */
+        Product product(int i) {
+            return product(i, new String(skuHeap, skuStarts[i], skuLengths[i], StandardCharsets.UTF_8));
+        }
+
+        /** The same, reusing the caller's copy of its SKU. */
+        Product product(int i, String sku) {
+            String name = decodeName(i);
+            BigDecimal unitPrice = fromCents(unitPrices[i]);
+            BigDecimal costPrice = fromCents(costPrices[i]);
+            if ((flags[i] & PERISHABLE) != 0) {
+                String storage = storageCodes[i] == 0 ? null : storageValues.get(storageCodes[i] - 1);
+                return new PerishableProduct(ids[i], sku, name, unitPrice, stock[i], costPrice, reorderLevels[i], storage);
+            }
+            return new NonPerishableProduct(ids[i], sku, name, unitPrice, stock[i], costPrice, reorderLevels[i]);
+        }
+
+        long footprintBytes() {
+            long arrays = ids.length * (4L + 4 + 4 + 8 + 8 + 1 + 2 + 4 + 4 + 2 + 4 + 2)
+                    + skuHeap.length + 4L * nameHeap.length + 4L * (skuTable.length + idTable.length);
+            long dictionary = 0;
+            for (String word : words) {
+                dictionary += 40 + word.length() + 48; // String, its array, the map entry and boxed code
+            }
+            return arrays + dictionary;
+        }
+
+        private void grow() {
+            int capacity = ids.length + (ids.length >> 1) + 16;
+            ids = Arrays.copyOf(ids, capacity);
+            stock = Arrays.copyOf(stock, capacity);
+            reorderLevels = Arrays.copyOf(reorderLevels, capacity);
+            unitPrices = Arrays.copyOf(unitPrices, capacity);
+            costPrices = Arrays.copyOf(costPrices, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            storageCodes = Arrays.copyOf(storageCodes, capacity);
+            skuHashes = Arrays.copyOf(skuHashes, capacity);
+            skuStarts = Arrays.copyOf(skuStarts, capacity);
+            skuLengths = Arrays.copyOf(skuLengths, capacity);
+            nameStarts = Arrays.copyOf(nameStarts, capacity);
+            nameLengths = Arrays.copyOf(nameLengths, capacity);
+        }
+
+        private void rehash(int slots) {
+            skuTable = new int[slots];
+            idTable = new int[slots];
+            for (int i = 0; i < size; i++) {
+                insert(idTable, mix(ids[i]), i);
+                insertSku(i);
+            }
+        }
+
+        private static void insert(int[] table, int hash, int i) {
+            int mask = table.length - 1;
+            int slot = hash & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+
+        /** Points the SKU's slot at {@code i}, taking it over from a product that had the SKU before. */
+        private void insertSku(int i) {
+            int mask = skuTable.length - 1;
+            for (int slot = skuHashes[i] & mask; ; slot = (slot + 1) & mask) {
+                int entry = skuTable[slot];
+                if (entry == 0 || entry - 1 == i
+                        || skuHashes[entry - 1] == skuHashes[i] && sameSku(entry - 1, i)) {
+                    skuTable[slot] = i + 1;
+                    return;
+                }
+            }
+        }
+
+        /** Removes index {@code i}'s SKU slot, if it still has one, shifting later entries back. */
+        private void removeSku(int i) {
+            int mask = skuTable.length - 1;
+            int hole = -1;
+            for (int slot = skuHashes[i] & mask; skuTable[slot] != 0; slot = (slot + 1) & mask) {
+                if (skuTable[slot] == i + 1) {
+                    hole = slot;
+                    break;
+                }
+            }
+            if (hole < 0) {
+                return; // another product took this SKU over
+            }
+            for (int slot = (hole + 1) & mask; skuTable[slot] != 0; slot = (slot + 1) & mask) {
+                int home = skuHashes[skuTable[slot] - 1] & mask;
+                boolean homeAfterHole = hole <= slot ? home > hole && home <= slot : home > hole || home <= slot;
+                if (!homeAfterHole) {
+                    skuTable[hole] = skuTable[slot];
+                    hole = slot;
+                }
+            }
+            skuTable[hole] = 0;
+        }
+
+        private void compactSkus() {
+            byte[] heap = new byte[Math.max(4096, skuHeapLive + (skuHeapLive >> 2))];
+            int used = 0;
+            for (int i = 0; i < size; i++) {
+                System.arraycopy(skuHeap, skuStarts[i], heap, used, skuLengths[i]);
+                skuStarts[i] = used;
+                used += skuLengths[i];
+            }
+            skuHeap = heap;
+            skuHeapUsed = used;
+        }
+
+        /** Also drops the words no name uses any more, renumbering the rest. */
+        private void compactNames() {
+            int[] heap = new int[Math.max(4096, nameHeapLive + (nameHeapLive >> 2))];
+            List<String> liveWords = new ArrayList<>();
+            Map<String, Integer> liveCodes = new HashMap<>();
+            int used = 0;
+            for (int i = 0; i < size; i++) {
+                int start = nameStarts[i];
+                nameStarts[i] = used;
+                for (int w = 0; w < nameLengths[i]; w++) {
+                    String word = words.get(nameHeap[start + w]);
+                    Integer code = liveCodes.get(word);
+                    if (code == null) {
+                        code = liveWords.size();
+                        liveWords.add(word);
+                        liveCodes.put(word, code);
+                    }
+                    heap[used++] = code;
+                }
+            }
+            nameHeap = heap;
+            nameHeapUsed = used;
+            words = liveWords;
+            wordCodes = liveCodes;
+        }
+
+        private int appendSku(byte[] sku) {
+            if (skuHeapUsed + sku.length > skuHeap.length) {
+                skuHeap = Arrays.copyOf(skuHeap, Math.max(skuHeap.length + (skuHeap.length >> 1), skuHeapUsed + sku.length));
+            }
+            System.arraycopy(sku, 0, skuHeap, skuHeapUsed, sku.length);
+            skuHeapUsed += sku.length;
+            return skuHeapUsed - sku.length;
+        }
+
+        /** Compares without encoding {@code sku} when it is plain ASCII, as barcodes are. */
+        private boolean skuEquals(int i, String sku) {
+            int length = sku.length();
+            if (length != skuLengths[i]) {
+                return length <= skuLengths[i] && skuEquals(i, sku.getBytes(StandardCharsets.UTF_8));
+            }
+            int start = skuStarts[i];
+            for (int k = 0; k < length; k++) {
+                char c = sku.charAt(k);
+                if (c >= 0x80) {
+                    return skuEquals(i, sku.getBytes(StandardCharsets.UTF_8));
+                }
+                if (skuHeap[start + k] != c) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean skuEquals(int i, byte[] sku) {
+            return Arrays.equals(skuHeap, skuStarts[i], skuStarts[i] + skuLengths[i], sku, 0, sku.length);
+        }
+
+        private boolean sameSku(int a, int b) {
+            return Arrays.equals(skuHeap, skuStarts[a], skuStarts[a] + skuLengths[a],
+                    skuHeap, skuStarts[b], skuStarts[b] + skuLengths[b]);
+        }
+
+        private short storageCode(String value) {
+            if (value == null) {
+                return 0;
+            }
+            int code = storageValues.indexOf(value); // a handful of values such as "Frozen"
+            if (code < 0) {
+                storageValues.add(value);
+                code = storageValues.size() - 1;
+            }
+            return (short) (code + 1);
+        }
+
+        /** Names are split on single spaces, so joining the words with spaces gives them back exactly. */
+        private void encodeName(int i, String name) {
+            nameHeapLive -= Math.max(0, nameLengths[i]); // 0 for a new index
+            if (name == null) {
+                nameLengths[i] = -1;
+                return;
+            }
+            int start = nameHeapUsed;
+            int from = 0;
+            while (true) {
+                int space = name.indexOf(' ', from);
+                String word = name.substring(from, space < 0 ? name.length() : space);
+                Integer code = wordCodes.get(word);
+                if (code == null) {
+                    code = words.size();
+                    words.add(word);
+                    wordCodes.put(word, code);
+                }
+                if (nameHeapUsed == nameHeap.length) {
+                    nameHeap = Arrays.copyOf(nameHeap, nameHeap.length + (nameHeap.length >> 1));
+                }
+                nameHeap[nameHeapUsed++] = code;
+                if (space < 0) {
+                    break;
+                }
+                from = space + 1;
+            }
+            nameStarts[i] = start;
+            nameLengths[i] = (short) (nameHeapUsed - start);
+            nameHeapLive += nameLengths[i];
+        }
+
+        private String decodeName(int i) {
+            int count = nameLengths[i];
+            if (count < 0) {
+                return null;
+            }
+            int start = nameStarts[i];
+            if (count == 1) {
+                return words.get(nameHeap[start]);
+            }
+            int length = count - 1;
+            for (int w = 0; w < count; w++) {
+                length += words.get(nameHeap[start + w]).length();
+            }
+            StringBuilder name = new StringBuilder(length);
+            name.append(words.get(nameHeap[start]));
+            for (int w = 1; w < count; w++) {
+                name.append(' ').append(words.get(nameHeap[start + w]));
+            }
+            return name.toString();
+        }
+
+        /** Saves re-encoding (and growing the heap) when an update leaves the name as it was. */
+        private boolean nameEquals(int i, String name) {
+            return name == null ? nameLengths[i] < 0 : nameLengths[i] >= 0 && name.equals(decodeName(i));
+        }
+    }
+
+    private static int mix(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount == null ? NULL_PRICE : amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private static BigDecimal fromCents(long cents) {
+        return cents == NULL_PRICE ? null : BigDecimal.valueOf(cents, 2);
+    }
+}
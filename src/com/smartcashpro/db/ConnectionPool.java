@@ -0,0 +1,434 @@
+package com.smartcashpro.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of physical MySQL connections with lease/return semantics.
+ *
+ * Callers get a lightweight handle from {@link #lease()}; calling {@code close()}
+ * on that handle hands the physical connection back to the pool instead of closing it.
+ * Idle connections are validated before reuse, retired once they pass their max
+ * lifetime, and leases held longer than the leak threshold are reported with the
+ * stack trace of the code that took them. Each physical connection also keeps a
+ * {@link StatementCache}, so repeated {@code prepareStatement} calls reuse the
+ * server-side statement prepared by an earlier lease. A read-only pool (the replica's)
+ * marks every connection read-only when it opens it and keeps it that way across leases.
+ */
+public class ConnectionPool {
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final int minIdle;
+    private final long connectionTimeoutMs;
+    private final long validationIntervalMs;
+    private final long maxLifetimeMs;
+    private final long leakDetectionThresholdMs;
+    private final int statementCacheSize;
+    private final boolean readOnly;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledEntry> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledEntry> all = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean shutdown = false;
+    private volatile long evictBefore = 0;
+
+    // --- metrics ---
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong leaseCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong retiredCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+
+    public ConnectionPool(String url, String user, String password,
+                          int maxSize, int minIdle, long connectionTimeoutMs,
+                          long validationIntervalMs, long maxLifetimeMs, long leakDetectionThresholdMs,
+                          int statementCacheSize) {
+        this(url, user, password, maxSize, minIdle, connectionTimeoutMs, validationIntervalMs, maxLifetimeMs,
+                leakDetectionThresholdMs, statementCacheSize, false);
+    }
+
+    /** @param readOnly open every connection with {@code setReadOnly(true)}, e.g. for a replica */
+    public ConnectionPool(String url, String user, String password,
+                          int maxSize, int minIdle, long connectionTimeoutMs,
+                          long validationIntervalMs, long maxLifetimeMs, long leakDetectionThresholdMs,
+                          int statementCacheSize, boolean readOnly) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive.");
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.minIdle = Math.min(minIdle, maxSize);
+        this.connectionTimeoutMs = connectionTimeoutMs;
+        this.validationIntervalMs = validationIntervalMs;
+        this.maxLifetimeMs = maxLifetimeMs;
+        this.leakDetectionThresholdMs = leakDetectionThresholdMs;
+        this.statementCacheSize = statementCacheSize;
+        this.readOnly = readOnly;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep, 5, 5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Leases a connection, waiting up to the configured timeout for one to free up.
+     *
+     * @return a connection handle; closing it returns the connection to the pool
+     * @throws SQLTransientConnectionException if no connection became available in time
+     * @throws SQLException if a new physical connection could not be opened
+     */
+    public Connection lease() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down.");
+        }
+        long start = System.nanoTime();
+        waiting.incrementAndGet();
+        try {
+            if (!permits.tryAcquire(connectionTimeoutMs, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLTransientConnectionException("Timed out after " + connectionTimeoutMs
+                        + "ms waiting for a database connection (active=" + getActiveCount() + ", max=" + maxSize + ").",
+                        SqlErrors.POOL_TIMEOUT_STATE);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledEntry entry;
+            while ((entry = idle.pollFirst()) != null) {
+                if (isUsable(entry)) {
+                    break;
+                }
+                retire(entry);
+            }
+            if (entry == null) {
+                entry = create();
+            }
+            leaseCount.incrementAndGet();
+            return entry.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /** Returns a snapshot of the pool counters. */
+    public PoolStats getStats() {
+        long leases = leaseCount.get();
+        return new PoolStats(getActiveCount(), idle.size(), maxSize, waiting.get(), leases,
+                leases == 0 ? 0 : totalWaitNanos.get() / leases, maxWaitNanos.get(),
+                timeoutCount.get(), createdCount.get(), retiredCount.get(), leakCount.get());
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /** Closes every idle connection; leased connections are closed as they come back. */
+    public void shutdown() {
+        shutdown = true;
+        housekeeper.shutdownNow();
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            retire(entry);
+        }
+    }
+
+    /**
+     * Retires every idle connection and marks the leased ones for retirement on return.
+     * Used after a communications failure, when the existing sockets are probably dead.
+     */
+    public void evictAll() {
+        evictBefore = System.currentTimeMillis();
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            retire(entry);
+        }
+    }
+
+    private int getActiveCount() {
+        return all.size() - idle.size();
+    }
+
+    private void recordWait(long nanos) {
+        totalWaitNanos.addAndGet(nanos);
+        if (JdbcMetrics.isOn()) {
+            JdbcMetrics.recordConnectionWait(nanos);
+        }
+        long prev;
+        do {
+            prev = maxWaitNanos.get();
+        } while (nanos > prev && !maxWaitNanos.compareAndSet(prev, nanos));
+    }
+
+    private PooledEntry create() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        if (readOnly) {
+            try {
+                physical.setReadOnly(true); // the server rejects a mis-routed write
+            } catch (SQLException e) {
+                physical.close();
+                throw e;
+            }
+        }
+        PooledEntry entry = new PooledEntry(physical);
+        all.add(entry);
+        createdCount.incrementAndGet();
+        return entry;
+    }
+
+    private boolean isUsable(PooledEntry entry) {
+        long now = System.currentTimeMillis();
+        if (maxLifetimeMs > 0 && now - entry.createdAt > maxLifetimeMs) {
+            return false;
+        }
+        if (entry.createdAt <= evictBefore) {
+            return false;
+        }
+        if (now - entry.lastReturnedAt < validationIntervalMs) {
+            return true;
+        }
+        try {
+            return entry.physical.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void retire(PooledEntry entry) {
+        all.remove(entry);
+        retiredCount.incrementAndGet();
+        if (entry.statements != null) {
+            entry.statements.closeAll();
+        }
+        try {
+            entry.physical.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing retired pool connection: " + e.getMessage());
+        }
+    }
+
+    private void release(PooledEntry entry) {
+        boolean healthy = true;
+        if (entry.statements != null) {
+            entry.statements.reclaimAll();
+        }
+        try {
+            if (!entry.physical.getAutoCommit()) {
+                // Anything left uncommitted by the borrower must not leak into the next lease.
+                entry.physical.rollback();
+                entry.physical.setAutoCommit(true);
+            }
+            if (entry.physical.isReadOnly() != readOnly) {
+                entry.physical.setReadOnly(readOnly);
+            }
+            if (entry.physical.getTransactionIsolation() != entry.defaultIsolation) {
+                entry.physical.setTransactionIsolation(entry.defaultIsolation);
+            }
+            entry.physical.clearWarnings();
+        } catch (SQLException e) {
+            System.err.println("Discarding pool connection that failed to reset: " + e.getMessage());
+            healthy = false;
+        }
+
+        entry.lastReturnedAt = System.currentTimeMillis();
+        boolean expired = maxLifetimeMs > 0 && entry.lastReturnedAt - entry.createdAt > maxLifetimeMs;
+        if (!healthy || expired || shutdown || entry.createdAt <= evictBefore) {
+            retire(entry);
+        } else {
+            idle.offerFirst(entry);
+        }
+        permits.release();
+    }
+
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+            for (PooledEntry entry : all) {
+                Lease lease = entry.currentLease;
+                if (lease != null && leakDetectionThresholdMs > 0 && !lease.leakReported
+                        && now - lease.leasedAt > leakDetectionThresholdMs) {
+                    lease.leakReported = true;
+                    leakCount.incrementAndGet();
+                    System.err.println("Possible connection leak: connection held for " + (now - lease.leasedAt)
+                            + "ms by thread '" + lease.threadName + "'. Lease taken at:");
+                    lease.origin.printStackTrace();
+                }
+            }
+            for (PooledEntry entry : idle) {
+                if (maxLifetimeMs > 0 && now - entry.createdAt > maxLifetimeMs && idle.remove(entry)) {
+                    retire(entry);
+                }
+            }
+            while (!shutdown && all.size() < minIdle && idle.size() < minIdle) {
+                idle.offerLast(create());
+            }
+        } catch (Exception e) {
+            System.err.println("Connection pool housekeeping failed: " + e.getMessage());
+        }
+    }
+
+    /** One physical connection owned by the pool. */
+    private final class PooledEntry {
+        final Connection physical;
+        final long createdAt = System.currentTimeMillis();
+        final int defaultIsolation;
+        final StatementCache statements;
+        volatile long lastReturnedAt = createdAt;
+        volatile Lease currentLease;
+
+        PooledEntry(Connection physical) throws SQLException {
+            this.physical = physical;
+            this.defaultIsolation = physical.getTransactionIsolation();
+            this.statements = statementCacheSize > 0 ? new StatementCache(statementCacheSize) : null;
+        }
+
+        Connection lease() {
+            Lease lease = new Lease(this);
+            currentLease = lease;
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, lease);
+        }
+    }
+
+    /** A single borrow of a pooled connection; the handle is dead once closed. */
+    private final class Lease implements InvocationHandler {
+        final PooledEntry entry;
+        final long leasedAt = System.currentTimeMillis();
+        final String threadName = Thread.currentThread().getName();
+        final Throwable origin;
+        volatile boolean leakReported = false;
+        private boolean closed = false;
+
+        Lease(PooledEntry entry) {
+            this.entry = entry;
+            this.origin = leakDetectionThresholdMs > 0 ? new Throwable("Connection lease origin") : null;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    synchronized (this) {
+                        if (closed) return null;
+                        closed = true;
+                    }
+                    entry.currentLease = null;
+                    release(entry);
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + entry.physical + (closed ? ", returned" : "") + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool.");
+            }
+            Object result;
+            if (entry.statements != null && StatementCache.isCacheable(method, args)) {
+                result = entry.statements.prepare((Connection) proxy, entry.physical, method, args);
+            } else {
+                try {
+                    result = method.invoke(entry.physical, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+            if ((JdbcMetrics.isOn() || SlowQueryLog.isOn()) && result instanceof Statement) {
+                return InstrumentedStatement.wrap((Statement) result,
+                        args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null);
+            }
+            return result;
+        }
+    }
+
+    /** Immutable snapshot of pool activity. */
+    public static class PoolStats {
+        private final int active;
+        private final int idle;
+        private final int maxSize;
+        private final int waiting;
+        private final long leaseCount;
+        private final long averageWaitNanos;
+        private final long maxWaitNanos;
+        private final long timeoutCount;
+        private final long createdCount;
+        private final long retiredCount;
+        private final long leakCount;
+
+        public PoolStats(int active, int idle, int maxSize, int waiting, long leaseCount,
+                         long averageWaitNanos, long maxWaitNanos, long timeoutCount,
+                         long createdCount, long retiredCount, long leakCount) {
+            this.active = active;
+            this.idle = idle;
+            this.maxSize = maxSize;
+            this.waiting = waiting;
+            this.leaseCount = leaseCount;
+            this.averageWaitNanos = averageWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.timeoutCount = timeoutCount;
+            this.createdCount = createdCount;
+            this.retiredCount = retiredCount;
+            this.leakCount = leakCount;
+        }
+
+        public int getActive() { return active; }
+        public int getIdle() { return idle; }
+        public int getMaxSize() { return maxSize; }
+        public int getWaiting() { return waiting; }
+        public long getLeaseCount() { return leaseCount; }
+        public long getAverageWaitNanos() { return averageWaitNanos; }
+        public long getMaxWaitNanos() { return maxWaitNanos; }
+        public long getTimeoutCount() { return timeoutCount; }
+        public long getCreatedCount() { return createdCount; }
+        public long getRetiredCount() { return retiredCount; }
+        public long getLeakCount() { return leakCount; }
+
+        @Override
+        public String toString() {
+            return String.format("Pool[active=%d, idle=%d, max=%d, waiting=%d, leases=%d, avgWait=%.3fms, maxWait=%.3fms, timeouts=%d, created=%d, retired=%d, leaks=%d]",
+                    active, idle, maxSize, waiting, leaseCount, averageWaitNanos / 1_000_000.0, maxWaitNanos / 1_000_000.0,
+                    timeoutCount, createdCount, retiredCount, leakCount);
+        }
+    }
+}
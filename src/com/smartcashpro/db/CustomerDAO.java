@@ -13,26 +13,27 @@ public class CustomerDAO {
         String sql = "SELECT CustomerID, Name, ContactInfo, LoyaltyPoints FROM CUSTOMER " +
                      "WHERE Name LIKE ? OR ContactInfo LIKE ? ORDER BY Name LIMIT 50";
         
-        try (Connection conn = DatabaseConnector.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnector.getConnection()) {
 
             if (conn == null) {
                 System.err.println("Error finding customers: No database connection.");
                 return customers; 
             }
 
-            String searchPattern = "%" + searchTerm + "%";
-            pstmt.setString(1, searchPattern);
-            pstmt.setString(2, searchPattern);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                String searchPattern = "%" + searchTerm + "%";
+                pstmt.setString(1, searchPattern);
+                pstmt.setString(2, searchPattern);
 
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    customers.add(new Customer(
-                            rs.getInt("CustomerID"),
-                            rs.getString("Name"),
-                            rs.getString("ContactInfo"),
-                            rs.getInt("LoyaltyPoints")
-                    ));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        customers.add(new Customer(
+                                rs.getInt("CustomerID"),
+                                rs.getString("Name"),
+                                rs.getString("ContactInfo"),
+                                rs.getInt("LoyaltyPoints")
+                        ));
+                    }
                 }
             }
         } catch (SQLException e) {
@@ -1,62 +1,295 @@
 package com.smartcashpro.db;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+import java.util.function.Consumer;
 
 
 public class DatabaseConnector {
 
-    
-    
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/SmartCashPro";
-    private static final String DB_USER = "m";       
-    private static final String DB_PASSWORD = "mmmm"; 
 
-    private static Connection connection = null;
 
-    
+    // Server-side prepared statements; caching is done per pooled connection by StatementCache.
+    // useCursorFetch lets RowCursor read big results in fetch-size blocks instead of all at once.
+    // rewriteBatchedStatements sends a batch of INSERTs as multi-row INSERTs (ProductImporter, order items).
+    private static final String DB_URL = "jdbc:mysql://localhost:3306/SmartCashPro?useServerPrepStmts=true&cachePrepStmts=false&useCursorFetch=true&rewriteBatchedStatements=true";
+    private static final String DB_USER = "m";
+    private static final String DB_PASSWORD = "mmmm";
+
+    // Pool sizing: one connection per lane/background job is plenty for a single till.
+    private static final int POOL_MAX_SIZE = 8;
+    private static final int POOL_MIN_IDLE = 2;
+    private static final long POOL_CONNECTION_TIMEOUT_MS = 10_000;
+    private static final long POOL_VALIDATION_INTERVAL_MS = 30_000;
+    private static final long POOL_MAX_LIFETIME_MS = 30 * 60_000;
+    private static final long POOL_LEAK_THRESHOLD_MS = 60_000;
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    // Circuit breaker: open after 3 straight connection failures, probe every 2s..60s.
+    private static final int BREAKER_FAILURE_THRESHOLD = 3;
+    private static final long BREAKER_INITIAL_COOL_DOWN_MS = 2_000;
+    private static final long BREAKER_MAX_COOL_DOWN_MS = 60_000;
+
+    // Optional read replica for history/reporting queries, e.g.
+    //   -Dsmartcashpro.replica.url=jdbc:mysql://localhost:3307/SmartCashPro?useServerPrepStmts=true
+    // Without it every query runs on the primary.
+    private static final String REPLICA_URL = withCursorFetch(System.getProperty("smartcashpro.replica.url"));
+    private static final String REPLICA_USER = System.getProperty("smartcashpro.replica.user", DB_USER);
+    private static final String REPLICA_PASSWORD = System.getProperty("smartcashpro.replica.password", DB_PASSWORD);
+    private static final int REPLICA_POOL_MAX_SIZE = 4;
+    private static final long REPLICA_CONNECTION_TIMEOUT_MS = 2_000; // fall back to the primary quickly
+    private static final long REPLICA_CHECK_INTERVAL_MS = 5_000;
+
+    private static ConnectionPool pool = null;
+    private static ReplicaRouter replica = null;
+    private static final CircuitBreaker breaker = new CircuitBreaker("Database",
+            BREAKER_FAILURE_THRESHOLD, BREAKER_INITIAL_COOL_DOWN_MS, BREAKER_MAX_COOL_DOWN_MS,
+            DatabaseConnector::probe);
+    private static volatile SQLException lastReportedFailure = null;
+
+
+    /**
+     * Leases a pooled connection. Callers must close it (try-with-resources) to return it.
+     * Inside a {@link Transaction} this returns the transaction's connection instead, whose
+     * close() is a no-op.
+     *
+     * Connection failures are retried with backoff; while the database is down the circuit
+     * breaker makes this fail fast instead.
+     *
+     * @return a connection, or null if the database is unavailable or busy
+     */
     public static Connection getConnection() {
+        Transaction tx = Transaction.current();
+        if (tx != null) {
+            return tx.getConnection();
+        }
+        try {
+            return leaseWithRetry();
+        } catch (CircuitOpenException e) {
+            System.err.println("Database unavailable: " + e.getMessage());
+            return null;
+        } catch (SQLException e) {
+            System.err.println("Failed to connect to the database: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Leases straight from the pool, ignoring any bound transaction. Single attempt; fails fast
+     * with {@link CircuitOpenException} while the breaker is open.
+     */
+    static Connection leaseConnection() throws SQLException {
+        breaker.ensureClosed();
         try {
-            
-            if (connection == null || connection.isClosed()) {
-                try {
-                    
-                    connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-                    
-                } catch (SQLException e) {
-                    System.err.println("FATAL: Failed to connect to the database!");
-                    e.printStackTrace();
-                     
-                    javax.swing.JOptionPane.showMessageDialog(null, "Database Connection Failed:\n" + e.getMessage() + "\nPlease check connection settings and database status.", "Database Error", javax.swing.JOptionPane.ERROR_MESSAGE);
-                    System.exit(1); 
-                    return null; 
+            Connection conn = getPool().lease();
+            breaker.recordSuccess();
+            return conn;
+        } catch (SQLException e) {
+            reportFailure(e);
+            throw e;
+        }
+    }
+
+    /** {@link #leaseConnection()} with backoff retry on connection failures. */
+    static Connection leaseWithRetry() throws SQLException {
+        return Retry.withBackoff(Retry.DEFAULT_MAX_ATTEMPTS, SqlErrors::isConnectionFailure,
+                DatabaseConnector::leaseConnection);
+    }
+
+    /**
+     * Like {@link #getConnection()} but throws instead of returning null, for use
+     * directly in a try-with-resources header. Makes a single lease attempt, so it can
+     * sit inside a {@link Retry} without multiplying the retries.
+     */
+    static Connection requireConnection() throws SQLException {
+        Transaction tx = Transaction.current();
+        if (tx != null) {
+            return tx.getConnection();
+        }
+        return leaseConnection();
+    }
+
+    /**
+     * Runs a read-only query on the replica when it is healthy and no more than
+     * {@code maxLagSeconds} behind, otherwise (or if the replica fails mid-query) on the primary.
+     * Inside a {@link Transaction} the query always uses the transaction's connection so it sees
+     * the transaction's own writes. The query may run more than once, so it must build its
+     * result from scratch each time.
+     */
+    public static <T> T readFromReplica(long maxLagSeconds, ReplicaRouter.Query<T> query) throws SQLException {
+        Transaction tx = Transaction.current();
+        if (tx != null) {
+            return query.run(tx.getConnection());
+        }
+        ReplicaRouter router = getReplica();
+        Connection replicaConn = router != null ? router.tryLease(maxLagSeconds) : null;
+        if (replicaConn != null) {
+            try (Connection conn = replicaConn) {
+                return query.run(conn);
+            } catch (SQLException e) {
+                if (!SqlErrors.isTransient(e)) {
+                    throw e;
                 }
+                router.markUnhealthy(e); // and fall through to the primary
             }
-        } catch (SQLException e) {
-            
-             System.err.println("Error checking database connection status!");
-             e.printStackTrace();
-             connection = null; 
-             return null;
         }
-        return connection;
+        return Retry.idempotent(() -> {
+            try (Connection conn = requireConnection()) {
+                return query.run(conn);
+            }
+        });
     }
 
-    
-    public static void closeConnection() {
-        if (connection != null) {
+    /**
+     * Opens a {@link RowCursor} for a read-only query, on the replica when it is healthy and
+     * no more than {@code maxLagSeconds} behind, otherwise on the primary. Inside a
+     * {@link Transaction} it reads through the transaction's connection. Opening is retried on
+     * transient errors; failures after the first rows have been read are not.
+     */
+    static <T> RowCursor<T> openCursor(long maxLagSeconds, String sql, List<?> params,
+                                       int fetchSize, RowCursor.RowMapper<T> mapper) throws SQLException {
+        if (Transaction.isActive()) {
+            return openCursor(sql, params, fetchSize, mapper);
+        }
+        ReplicaRouter router = getReplica();
+        Connection replicaConn = router != null ? router.tryLease(maxLagSeconds) : null;
+        if (replicaConn != null) {
             try {
-                if (!connection.isClosed()) {
-                    connection.close();
-                    System.out.println("Database connection closed.");
-                }
+                return RowCursor.open(replicaConn, sql, params, fetchSize, mapper);
             } catch (SQLException e) {
-                System.err.println("Failed to close the database connection!");
-                e.printStackTrace();
-            } finally {
-                connection = null; 
+                if (!SqlErrors.isTransient(e)) {
+                    throw e;
+                }
+                router.markUnhealthy(e);
+            }
+        }
+        return openCursor(sql, params, fetchSize, mapper);
+    }
+
+    /** {@link #openCursor(long, String, List, int, RowCursor.RowMapper)} that always reads the primary. */
+    static <T> RowCursor<T> openCursor(String sql, List<?> params, int fetchSize,
+                                       RowCursor.RowMapper<T> mapper) throws SQLException {
+        return Retry.idempotent(() -> RowCursor.open(requireConnection(), sql, params, fetchSize, mapper));
+    }
+
+    /** Replica health and routing counters, or null if no replica is configured. */
+    public static String getReplicaStatus() {
+        ReplicaRouter router = getReplica();
+        return router == null ? null : router.toString();
+    }
+
+    private static String withCursorFetch(String url) {
+        if (url == null || url.trim().isEmpty() || url.contains("useCursorFetch")) {
+            return url;
+        }
+        return url + (url.contains("?") ? "&" : "?") + "useCursorFetch=true";
+    }
+
+    private static synchronized ReplicaRouter getReplica() {
+        if (REPLICA_URL == null || REPLICA_URL.trim().isEmpty()) {
+            return null;
+        }
+        if (replica == null) {
+            ConnectionPool replicaPool = new ConnectionPool(REPLICA_URL, REPLICA_USER, REPLICA_PASSWORD,
+                    REPLICA_POOL_MAX_SIZE, 1, REPLICA_CONNECTION_TIMEOUT_MS,
+                    POOL_VALIDATION_INTERVAL_MS, POOL_MAX_LIFETIME_MS, POOL_LEAK_THRESHOLD_MS,
+                    STATEMENT_CACHE_SIZE, true);
+            replica = new ReplicaRouter(replicaPool, REPLICA_CHECK_INTERVAL_MS);
+        }
+        return replica;
+    }
+
+    /**
+     * Records a failed database call. Communications failures count towards opening the circuit
+     * breaker and flush the pool, whose other sockets are most likely dead too.
+     */
+    static void reportFailure(SQLException e) {
+        if (e == lastReportedFailure || !SqlErrors.isConnectionFailure(e)) {
+            return;
+        }
+        lastReportedFailure = e;
+        ConnectionPool current;
+        synchronized (DatabaseConnector.class) {
+            current = pool;
+        }
+        if (current != null) {
+            current.evictAll();
+        }
+        breaker.recordFailure(e);
+    }
+
+    /** True unless recent connection attempts have been failing. */
+    public static boolean isAvailable() {
+        return breaker.getState() == CircuitBreaker.State.CLOSED && breaker.getConsecutiveFailures() == 0;
+    }
+
+    public static CircuitBreaker.State getHealth() {
+        return breaker.getState();
+    }
+
+    /** Called with the new breaker state on every transition, from a background thread. */
+    public static void addHealthListener(Consumer<CircuitBreaker.State> listener) {
+        breaker.addListener(listener);
+    }
+
+    public static void removeHealthListener(Consumer<CircuitBreaker.State> listener) {
+        breaker.removeListener(listener);
+    }
+
+    private static void probe() throws SQLException {
+        try (Connection conn = getPool().lease()) {
+            if (!conn.isValid(2)) {
+                throw new SQLTransientConnectionException("Database did not answer the validation query.", "08S01");
+            }
+        }
+    }
+
+    /** Current pool counters (active, idle, wait times...). */
+    public static ConnectionPool.PoolStats getPoolStats() {
+        return getPool().getStats();
+    }
+
+    /** Like {@link #getPoolStats()} but never starts the pool; null if it is not running. */
+    static synchronized ConnectionPool.PoolStats peekPoolStats() {
+        return pool == null ? null : pool.getStats();
+    }
+
+    /** Prepared-statement cache hit/miss counts per SQL text, busiest first. */
+    public static List<StatementCache.StatementStats> getStatementStats() {
+        return StatementCache.getStats();
+    }
+
+    private static synchronized ConnectionPool getPool() {
+        if (pool == null || pool.isShutdown()) {
+            pool = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD,
+                    POOL_MAX_SIZE, POOL_MIN_IDLE, POOL_CONNECTION_TIMEOUT_MS,
+                    POOL_VALIDATION_INTERVAL_MS, POOL_MAX_LIFETIME_MS, POOL_LEAK_THRESHOLD_MS,
+                    STATEMENT_CACHE_SIZE);
+            JdbcMetrics.start();
+        }
+        return pool;
+    }
+
+
+    /** Shuts the pool down, closing every idle connection. */
+    public static synchronized void closeConnection() {
+        if (pool != null) {
+            System.out.println("Closing database connections. " + pool.getStats());
+            for (StatementCache.StatementStats stats : StatementCache.getStats()) {
+                System.out.println("  " + stats);
             }
+            if (JdbcMetrics.isOn()) {
+                System.out.print(JdbcMetrics.getInstance().dump());
+            }
+            pool.shutdown();
+            pool = null;
+        }
+        if (replica != null) {
+            System.out.println("Closing replica connections. " + replica);
+            replica.shutdown();
+            replica = null;
         }
     }
-}
\ No newline at end of file
+}
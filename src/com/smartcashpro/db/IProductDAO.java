@@ -1,14 +1,80 @@
 package com.smartcashpro.db;
 
 import com.smartcashpro.model.Product;
-import java.sql.Connection;
+import com.smartcashpro.model.ProductScan;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
 
 public interface IProductDAO {
     Product findProductBySku(String sku) throws SQLException; // Add throws if methods in concrete class do
     Product findProductById(int productId) throws SQLException;
     List<Product> getAllProducts() throws SQLException;
+    /** Passes every product, ordered by name, to {@code callback}; implementations may stream instead of loading a list. */
+    default void forEachProduct(RowCursor.RowCallback<Product> callback) throws SQLException {
+        for (Product product : getAllProducts()) {
+            callback.accept(product);
+        }
+    }
+    /** Current stock of one product without its details, or -1 if there is no such product. */
+    default int findStockQuantity(int productId) throws SQLException {
+        Product product = findProductById(productId);
+        return product == null ? -1 : product.getQuantityInStock();
+    }
+    /** Current stock of several products, by ID; products that do not exist are left out. */
+    default Map<Integer, Integer> findStockQuantities(Collection<Integer> productIds) throws SQLException {
+        Map<Integer, Integer> stock = new LinkedHashMap<>();
+        for (int productId : productIds) {
+            int quantity = findStockQuantity(productId);
+            if (quantity >= 0) {
+                stock.put(productId, quantity);
+            }
+        }
+        return stock;
+    }
+    /**
+     * Looks up a scanned SKU together with its live stock, in at most one query.
+     *
+     * @param quantityInCart units of a product ID already in the caller's cart
+     * @return the scan, or null if the SKU is unknown
+     */
+    default ProductScan lookupForScan(String sku, IntUnaryOperator quantityInCart) throws SQLException {
+        Product product = findProductBySku(sku);
+        return product == null ? null
+                : new ProductScan(product, product.getQuantityInStock(), quantityInCart.applyAsInt(product.getProductId()));
+    }
+    /**
+     * {@link #lookupForScan(String, IntUnaryOperator)} for a whole list of SKUs, e.g. a basket
+     * pasted from a trade customer's order. Implementations read the products and their stock
+     * in a few batched queries instead of one per SKU.
+     *
+     * @return the scans keyed by SKU as given, in the order given, each SKU once; unknown SKUs are left out
+     */
+    default Map<String, ProductScan> lookupAllForScan(Collection<String> skus, IntUnaryOperator quantityInCart) throws SQLException {
+        Map<String, ProductScan> scans = new LinkedHashMap<>();
+        for (String sku : skus) {
+            if (!scans.containsKey(sku)) {
+                ProductScan scan = lookupForScan(sku, quantityInCart);
+                if (scan != null) {
+                    scans.put(sku, scan);
+                }
+            }
+        }
+        return scans;
+    }
+    /** The page after {@code after} (null: the first page) in {@code query} order; see {@link ProductDAO}. */
+    List<Product> findProductPage(ProductQuery query, Product after, int limit) throws SQLException;
+    /** The page starting at row {@code offset}; slower than continuing after a known row. */
+    List<Product> findProductPage(ProductQuery query, int offset, int limit) throws SQLException;
+    int countProducts(ProductQuery query) throws SQLException;
     boolean saveProduct(Product product) throws SQLException;
-    boolean updateStockQuantity(int productId, int quantityChange, Connection conn) throws SQLException;
+    /** Like {@link #saveProduct(Product)}, recording {@code changedByUserId} in the price audit. */
+    default boolean saveProduct(Product product, int changedByUserId) throws SQLException {
+        return saveProduct(product);
+    }
+    /** Joins the caller's {@link Transaction} if there is one, otherwise runs in its own. */
+    boolean updateStockQuantity(int productId, int quantityChange) throws SQLException;
 }
\ No newline at end of file
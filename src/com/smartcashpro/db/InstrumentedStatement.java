@@ -0,0 +1,207 @@
+package com.smartcashpro.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Statement wrapper that reports execution time, batch sizes and rows read to {@link JdbcMetrics}
+ * and hands statements over the threshold to {@link SlowQueryLog}. Only created while one of
+ * the two is switched on.
+ */
+final class InstrumentedStatement implements InvocationHandler {
+
+    private final Statement target;
+    /** SQL the statement was prepared with; null for plain statements until execute(sql). */
+    private String sql;
+    /** Null when this statement was not sampled for metrics. */
+    private final JdbcMetrics.StatementMetrics prepared;
+    private JdbcMetrics.StatementMetrics last;
+    private final boolean sampled;
+    /** Bound parameters by index, only tracked for the slow-query log. */
+    private final Map<Integer, Object> parameters;
+    private int pendingBatch = 0;
+
+    private InstrumentedStatement(Statement target, String sql, boolean sampled, boolean captureParameters) {
+        this.target = target;
+        this.sql = sql;
+        this.sampled = sampled;
+        this.prepared = sampled && sql != null ? JdbcMetrics.getInstance().metricsForSql(sql) : null;
+        this.last = prepared;
+        this.parameters = captureParameters && sql != null ? new TreeMap<>() : null;
+    }
+
+    /**
+     * Wraps a statement the pool just created, or returns it unchanged if neither metrics
+     * (for this sample) nor the slow-query log want to see it.
+     *
+     * @param sql the SQL it was prepared with, or null for a plain {@code createStatement()}
+     */
+    static Statement wrap(Statement target, String sql) {
+        boolean sampled = JdbcMetrics.isOn() && JdbcMetrics.shouldSample();
+        boolean slowLog = SlowQueryLog.isOn();
+        if (!sampled && !slowLog) {
+            return target;
+        }
+        Class<? extends Statement> type = target instanceof CallableStatement ? CallableStatement.class
+                : target instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+        return (Statement) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new InstrumentedStatement(target, sql, sampled, slowLog));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "InstrumentedStatement[" + target + "]";
+            case "addBatch":
+                pendingBatch++;
+                break;
+            case "clearBatch":
+                pendingBatch = 0;
+                break;
+            case "clearParameters":
+                if (parameters != null) {
+                    parameters.clear();
+                }
+                break;
+            case "getResultSet":
+                return countRows(proxy, (ResultSet) call(method, args));
+            default:
+                if (parameters != null && name.startsWith("set") && args != null && args.length >= 2
+                        && args[0] instanceof Integer) {
+                    parameters.put((Integer) args[0], "setNull".equals(name) ? null : args[1]);
+                }
+                break;
+        }
+        if (!name.startsWith("execute")) {
+            return call(method, args);
+        }
+
+        if (args != null && args.length > 0 && args[0] instanceof String) {
+            sql = (String) args[0]; // plain Statement.execute*(sql)
+        }
+        JdbcMetrics.StatementMetrics metrics = prepared;
+        if (metrics == null && sampled && args != null && args.length > 0 && args[0] instanceof String) {
+            metrics = JdbcMetrics.getInstance().metricsForSql(sql);
+        }
+        if (metrics == null) {
+            metrics = last; // executeBatch on a plain statement: attribute to the last SQL seen
+        }
+        last = metrics;
+        boolean batch = name.startsWith("executeBatch") || name.startsWith("executeLargeBatch");
+        int batchSize = pendingBatch;
+        if (batch) {
+            pendingBatch = 0;
+        }
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object result = call(method, args);
+            failed = false;
+            if (result instanceof ResultSet) {
+                return countRows(proxy, (ResultSet) result);
+            }
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (metrics != null) {
+                metrics.recordExecution(elapsed, failed);
+                if (batch) {
+                    metrics.recordBatch(batchSize);
+                }
+            }
+            if (sql != null && SlowQueryLog.isSlow(elapsed)) {
+                SlowQueryLog.getInstance().record(sql, parameters, elapsed, batch ? batchSize : 0, failed);
+            }
+        }
+    }
+
+    private Object call(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private ResultSet countRows(Object statementProxy, ResultSet rs) {
+        if (rs == null || last == null) {
+            return rs;
+        }
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                new RowCounter(rs, (Statement) statementProxy, last));
+    }
+
+    /** Counts rows as they are read and reports the total once, on exhaustion or close. */
+    private static final class RowCounter implements InvocationHandler {
+        private final ResultSet target;
+        private final Statement owner;
+        private final JdbcMetrics.StatementMetrics metrics;
+        private long rows = 0;
+        private boolean reported = false;
+
+        RowCounter(ResultSet target, Statement owner, JdbcMetrics.StatementMetrics metrics) {
+            this.target = target;
+            this.owner = owner;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    boolean more = (Boolean) call(method, args);
+                    if (more) {
+                        rows++;
+                    } else {
+                        report();
+                    }
+                    return more;
+                case "close":
+                    report();
+                    break;
+                case "getStatement":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CountingResultSet[" + target + "]";
+                default:
+                    break;
+            }
+            return call(method, args);
+        }
+
+        private void report() {
+            if (!reported) {
+                reported = true;
+                metrics.recordRows(rows);
+            }
+        }
+
+        private Object call(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.smartcashpro.db;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Per-statement JDBC timings: latency percentiles, rows fetched and batch sizes, grouped by
+ * SQL fingerprint (literals replaced with {@code ?}), plus the time callers wait for a pooled
+ * connection.
+ *
+ * Off by default. Start with {@code -Dsmartcashpro.jdbc.metrics=true} or flip the
+ * {@code Enabled} attribute of {@code com.smartcashpro:type=JdbcMetrics} in JConsole.
+ * {@code -Dsmartcashpro.jdbc.sampleRate=0.1} instruments one statement in ten. While disabled
+ * the pool hands out plain statements and the only cost is one volatile read per statement.
+ * A text summary is printed every {@code smartcashpro.jdbc.dumpIntervalSec} seconds
+ * (default 60, 0 to turn off) while there is something new to report.
+ */
+public final class JdbcMetrics implements JdbcMetricsMXBean {
+
+    public static final String OBJECT_NAME = "com.smartcashpro:type=JdbcMetrics";
+
+    /** Distinct fingerprints tracked before new ones are lumped together. */
+    private static final int MAX_FINGERPRINTS = 500;
+    private static final String OVERFLOW_FINGERPRINT = "(other statements)";
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final JdbcMetrics INSTANCE = new JdbcMetrics();
+
+    private static volatile boolean enabled = Boolean.getBoolean("smartcashpro.jdbc.metrics");
+    private static volatile double sampleRate = parseRate(System.getProperty("smartcashpro.jdbc.sampleRate"));
+
+    private final Map<String, StatementMetrics> byFingerprint = new ConcurrentHashMap<>();
+    /** Raw SQL to its metrics, so prepared statements are fingerprinted once. */
+    private final Map<String, StatementMetrics> bySql = new ConcurrentHashMap<>();
+    private final LatencyHistogram connectionWait = new LatencyHistogram();
+    private final AtomicLong recordedSinceDump = new AtomicLong();
+
+    private ScheduledExecutorService dumper;
+    private boolean started = false;
+
+    private JdbcMetrics() {
+    }
+
+    public static JdbcMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /** Registers the MBean and starts the periodic dump; safe to call more than once. */
+    public static synchronized void start() {
+        if (INSTANCE.started) {
+            return;
+        }
+        INSTANCE.started = true;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(INSTANCE, name);
+            }
+        } catch (Exception e) {
+            System.err.println("Could not register JDBC metrics MBean: " + e.getMessage());
+        }
+        long intervalSec = Long.getLong("smartcashpro.jdbc.dumpIntervalSec", 60);
+        if (intervalSec > 0) {
+            INSTANCE.dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "jdbc-metrics-dump");
+                t.setDaemon(true);
+                return t;
+            });
+            INSTANCE.dumper.scheduleWithFixedDelay(INSTANCE::periodicDump, intervalSec, intervalSec, TimeUnit.SECONDS);
+        }
+        if (enabled) {
+            System.out.println("JDBC metrics enabled, sample rate " + sampleRate + ".");
+        }
+    }
+
+    public static synchronized void stop() {
+        if (INSTANCE.dumper != null) {
+            INSTANCE.dumper.shutdownNow();
+            INSTANCE.dumper = null;
+        }
+        INSTANCE.started = false;
+    }
+
+    /** Cheap check for the hot path; everything else is only touched when this is true. */
+    static boolean isOn() {
+        return enabled;
+    }
+
+    /** Decides whether the statement being created is instrumented, per the sample rate. */
+    static boolean shouldSample() {
+        double rate = sampleRate;
+        return rate >= 1.0 || ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    static void recordConnectionWait(long nanos) {
+        INSTANCE.connectionWait.recordNanos(nanos);
+    }
+
+    /** Metrics bucket for a SQL text; each distinct text is fingerprinted only once. */
+    StatementMetrics metricsForSql(String sql) {
+        StatementMetrics metrics = bySql.get(sql);
+        if (metrics != null) {
+            return metrics;
+        }
+        metrics = metricsForFingerprint(fingerprint(sql));
+        if (bySql.size() < MAX_FINGERPRINTS * 4) {
+            bySql.put(sql, metrics);
+        }
+        return metrics;
+    }
+
+    private StatementMetrics metricsForFingerprint(String fingerprint) {
+        StatementMetrics metrics = byFingerprint.get(fingerprint);
+        if (metrics != null) {
+            return metrics;
+        }
+        if (byFingerprint.size() >= MAX_FINGERPRINTS) {
+            fingerprint = OVERFLOW_FINGERPRINT;
+        }
+        return byFingerprint.computeIfAbsent(fingerprint, StatementMetrics::new);
+    }
+
+    /** Normalises SQL so statements differing only in literal values share one bucket. */
+    public static String fingerprint(String sql) {
+        String s = STRING_LITERAL.matcher(sql).replaceAll("?");
+        s = NUMBER_LITERAL.matcher(s).replaceAll("?");
+        s = WHITESPACE.matcher(s).replaceAll(" ").trim();
+        return IN_LIST.matcher(s).replaceAll("IN (?...)");
+    }
+
+    private static double parseRate(String value) {
+        if (value == null) {
+            return 1.0;
+        }
+        try {
+            return clampRate(Double.parseDouble(value));
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring invalid smartcashpro.jdbc.sampleRate: " + value);
+            return 1.0;
+        }
+    }
+
+    private static double clampRate(double rate) {
+        return Math.max(0.0, Math.min(1.0, rate));
+    }
+
+    private void periodicDump() {
+        if (enabled && recordedSinceDump.getAndSet(0) > 0) {
+            System.out.print(dump());
+        }
+    }
+
+    // --- JdbcMetricsMXBean ---
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean on) {
+        if (enabled != on) {
+            System.out.println("JDBC metrics " + (on ? "enabled" : "disabled") + ".");
+        }
+        enabled = on;
+    }
+
+    @Override
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public void setSampleRate(double rate) {
+        sampleRate = clampRate(rate);
+    }
+
+    /** Busiest first, by total time spent. */
+    @Override
+    public List<SqlMetricsSnapshot> getStatements() {
+        List<SqlMetricsSnapshot> result = new ArrayList<>();
+        for (StatementMetrics m : byFingerprint.values()) {
+            if (m.latency.getCount() > 0 || m.errors.get() > 0) {
+                result.add(m.snapshot());
+            }
+        }
+        result.sort((a, b) -> Long.compare(b.getExecutions() * b.getMeanMicros(), a.getExecutions() * a.getMeanMicros()));
+        return result;
+    }
+
+    @Override
+    public long getConnectionWaitCount() {
+        return connectionWait.getCount();
+    }
+
+    @Override
+    public long getConnectionWaitP50Micros() {
+        return connectionWait.getPercentileMicros(50);
+    }
+
+    @Override
+    public long getConnectionWaitP99Micros() {
+        return connectionWait.getPercentileMicros(99);
+    }
+
+    @Override
+    public long getConnectionWaitMaxMicros() {
+        return connectionWait.getMaxMicros();
+    }
+
+    @Override
+    public String getPoolStats() {
+        ConnectionPool.PoolStats stats = DatabaseConnector.peekPoolStats();
+        return stats == null ? "pool not started" : stats.toString();
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("--- JDBC metrics (sample rate ").append(sampleRate).append(") ---\n");
+        sb.append(String.format("connection wait: n=%d p50=%.2fms p99=%.2fms max=%.2fms%n",
+                connectionWait.getCount(), connectionWait.getPercentileMicros(50) / 1000.0,
+                connectionWait.getPercentileMicros(99) / 1000.0, connectionWait.getMaxMicros() / 1000.0));
+        sb.append(getPoolStats()).append('\n');
+        for (SqlMetricsSnapshot s : getStatements()) {
+            sb.append("  ").append(s).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void reset() {
+        byFingerprint.clear();
+        bySql.clear();
+        connectionWait.reset();
+        recordedSinceDump.set(0);
+    }
+
+    /** Counters for one SQL fingerprint; updated lock-free from any thread. */
+    static final class StatementMetrics {
+        final String fingerprint;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong rowsFetched = new AtomicLong();
+        final AtomicLong batches = new AtomicLong();
+        final AtomicLong batchedRows = new AtomicLong();
+        final AtomicLong maxBatchSize = new AtomicLong();
+
+        StatementMetrics(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        void recordExecution(long nanos, boolean failed) {
+            latency.recordNanos(nanos);
+            if (failed) {
+                errors.incrementAndGet();
+            }
+            INSTANCE.recordedSinceDump.incrementAndGet();
+        }
+
+        void recordBatch(int size) {
+            batches.incrementAndGet();
+            batchedRows.addAndGet(size);
+            long prev;
+            do {
+                prev = maxBatchSize.get();
+            } while (size > prev && !maxBatchSize.compareAndSet(prev, size));
+        }
+
+        void recordRows(long rows) {
+            rowsFetched.addAndGet(rows);
+        }
+
+        SqlMetricsSnapshot snapshot() {
+            long n = batches.get();
+            return new SqlMetricsSnapshot(fingerprint, latency.getCount(), errors.get(),
+                    latency.getPercentileMicros(50), latency.getPercentileMicros(95), latency.getPercentileMicros(99),
+                    latency.getMaxMicros(), latency.getMeanMicros(), rowsFetched.get(),
+                    n, maxBatchSize.get(), n == 0 ? 0 : batchedRows.get() / n);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.smartcashpro.db;
+
+import java.util.List;
+
+/**
+ * JMX view of {@link JdbcMetrics}, registered as {@code com.smartcashpro:type=JdbcMetrics}.
+ */
+public interface JdbcMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /** Fraction of statements instrumented while enabled, 0.0 - 1.0. */
+    double getSampleRate();
+
+    void setSampleRate(double sampleRate);
+
+    List<SqlMetricsSnapshot> getStatements();
+
+    long getConnectionWaitCount();
+
+    long getConnectionWaitP50Micros();
+
+    long getConnectionWaitP99Micros();
+
+    long getConnectionWaitMaxMicros();
+
+    String getPoolStats();
+
+    /** The same text as the periodic dump. */
+    String dump();
+
+    void reset();
+}
@@ -15,6 +15,9 @@ import java.util.Date;
 
 public class OrderDAO {
 
+    // History browsing can tolerate a replica that is a little behind the tills.
+    private static final long HISTORY_MAX_LAG_SECONDS = 30;
+
     /**
      * Saves a new order, associated items, payment details, and updates stock within a transaction.
      *
@@ -56,141 +59,119 @@ public class OrderDAO {
         }
         // --- End Pre-condition validations ---
 
-        Connection conn = DatabaseConnector.getConnection();
-        if (conn == null) {
-            throw new SQLException("No database connection available.");
-        }
-
         String insertOrderSQL = "INSERT INTO `ORDER` (OrderDate, TotalAmount, CustomerID, UserID, ShiftID, OrderStatus) VALUES (NOW(), ?, ?, ?, ?, 'Completed')";
         String insertOrderItemSQL = "INSERT INTO ORDER_ITEM (OrderID, ProductID, Quantity, UnitPriceAtSale, CostPriceAtSale) VALUES (?, ?, ?, ?, ?)";
         String insertPaymentSQL = "INSERT INTO PAYMENT (PaymentDate, Amount, OrderID) VALUES (NOW(), ?, ?)";
         String insertCashPaymentSQL = "INSERT INTO CASH_PAYMENT (PaymentID, AmountTendered, ChangeGiven) VALUES (?, ?, ?)";
         String insertCardPaymentSQL = "INSERT INTO CARD_PAYMENT (PaymentID) VALUES (?)"; // Simplified, add more fields as needed
 
-        BigDecimal totalAmount = BigDecimal.ZERO;
+        BigDecimal orderTotal = BigDecimal.ZERO;
         for (OrderItem item : items) {
-            totalAmount = totalAmount.add(item.getLineTotal());
+            orderTotal = orderTotal.add(item.getLineTotal());
         }
+        final BigDecimal totalAmount = orderTotal;
 
-        long orderId = -1;
-        long paymentId = -1;
+        ProductDAO productDAO = new ProductDAO();
 
         try {
-            conn.setAutoCommit(false);
-
-            // 1. Insert into ORDER
-            try (PreparedStatement pstmtOrder = conn.prepareStatement(insertOrderSQL, Statement.RETURN_GENERATED_KEYS)) {
-                pstmtOrder.setBigDecimal(1, totalAmount);
-                if (customerId != null && customerId > 0) {
-                    pstmtOrder.setInt(2, customerId);
-                } else {
-                    pstmtOrder.setNull(2, Types.INTEGER);
-                }
-                pstmtOrder.setInt(3, userId);
-                pstmtOrder.setInt(4, shiftId);
-                pstmtOrder.executeUpdate();
-
-                try (ResultSet generatedKeys = pstmtOrder.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        orderId = generatedKeys.getLong(1);
+            long savedOrderId = Transaction.run(Transaction.Options.RETRYING, tx -> {
+                Connection conn = tx.getConnection();
+                long orderId = -1;
+                long paymentId = -1;
+
+                // 1. Insert into ORDER
+                try (PreparedStatement pstmtOrder = conn.prepareStatement(insertOrderSQL, Statement.RETURN_GENERATED_KEYS)) {
+                    pstmtOrder.setBigDecimal(1, totalAmount);
+                    if (customerId != null && customerId > 0) {
+                        pstmtOrder.setInt(2, customerId);
                     } else {
-                        throw new SQLException("Creating order failed, no ID obtained.");
+                        pstmtOrder.setNull(2, Types.INTEGER);
+                    }
+                    pstmtOrder.setInt(3, userId);
+                    pstmtOrder.setInt(4, shiftId);
+                    pstmtOrder.executeUpdate();
+
+                    try (ResultSet generatedKeys = pstmtOrder.getGeneratedKeys()) {
+                        if (generatedKeys.next()) {
+                            orderId = generatedKeys.getLong(1);
+                        } else {
+                            throw new SQLException("Creating order failed, no ID obtained.");
+                        }
                     }
                 }
-            }
 
-            // 2. Insert into ORDER_ITEM (Loop)
-            try (PreparedStatement pstmtOrderItem = conn.prepareStatement(insertOrderItemSQL)) {
-                for (OrderItem item : items) {
-                    pstmtOrderItem.setLong(1, orderId);
-                    pstmtOrderItem.setInt(2, item.getProductId());
-                    pstmtOrderItem.setInt(3, item.getQuantity());
-                    pstmtOrderItem.setBigDecimal(4, item.getUnitPriceAtSale());
-                    pstmtOrderItem.setBigDecimal(5, item.getCostPriceAtSale());
-                    pstmtOrderItem.addBatch();
+                // 2. Insert into ORDER_ITEM (Loop)
+                try (PreparedStatement pstmtOrderItem = conn.prepareStatement(insertOrderItemSQL)) {
+                    for (OrderItem item : items) {
+                        pstmtOrderItem.setLong(1, orderId);
+                        pstmtOrderItem.setInt(2, item.getProductId());
+                        pstmtOrderItem.setInt(3, item.getQuantity());
+                        pstmtOrderItem.setBigDecimal(4, item.getUnitPriceAtSale());
+                        pstmtOrderItem.setBigDecimal(5, item.getCostPriceAtSale());
+                        pstmtOrderItem.addBatch();
+                    }
+                    pstmtOrderItem.executeBatch();
                 }
-                pstmtOrderItem.executeBatch();
-            }
-
-            // 3. Insert into PAYMENT
-            try (PreparedStatement pstmtPayment = conn.prepareStatement(insertPaymentSQL, Statement.RETURN_GENERATED_KEYS)) {
-                pstmtPayment.setBigDecimal(1, totalAmount);
-                pstmtPayment.setLong(2, orderId);
-                pstmtPayment.executeUpdate();
 
-                try (ResultSet generatedKeys = pstmtPayment.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        paymentId = generatedKeys.getLong(1);
-                    } else {
-                        throw new SQLException("Creating payment failed, no ID obtained.");
+                // 3. Insert into PAYMENT
+                try (PreparedStatement pstmtPayment = conn.prepareStatement(insertPaymentSQL, Statement.RETURN_GENERATED_KEYS)) {
+                    pstmtPayment.setBigDecimal(1, totalAmount);
+                    pstmtPayment.setLong(2, orderId);
+                    pstmtPayment.executeUpdate();
+
+                    try (ResultSet generatedKeys = pstmtPayment.getGeneratedKeys()) {
+                        if (generatedKeys.next()) {
+                            paymentId = generatedKeys.getLong(1);
+                        } else {
+                            throw new SQLException("Creating payment failed, no ID obtained.");
+                        }
                     }
                 }
-            }
 
-            // 4. Insert into PAYMENT subclass
-            if ("Cash".equalsIgnoreCase(paymentType)) {
-                try (PreparedStatement pstmtCash = conn.prepareStatement(insertCashPaymentSQL)) {
-                    BigDecimal change = amountTendered.subtract(totalAmount);
-                    if (change.compareTo(BigDecimal.ZERO) < 0) {
-                        // Business decision: Log warning and proceed with 0 change, or throw error.
-                        // Old code logged warning and set change to 0.
-                        // Consider throwing new IllegalArgumentException("Amount tendered is less than total amount.");
-                        System.err.println("Warning: Amount tendered (" + amountTendered + ") was less than total amount (" + totalAmount + "). Setting change to 0.");
-                        change = BigDecimal.ZERO;
+                // 4. Insert into PAYMENT subclass
+                if ("Cash".equalsIgnoreCase(paymentType)) {
+                    try (PreparedStatement pstmtCash = conn.prepareStatement(insertCashPaymentSQL)) {
+                        BigDecimal change = amountTendered.subtract(totalAmount);
+                        if (change.compareTo(BigDecimal.ZERO) < 0) {
+                            // Business decision: Log warning and proceed with 0 change, or throw error.
+                            // Old code logged warning and set change to 0.
+                            // Consider throwing new IllegalArgumentException("Amount tendered is less than total amount.");
+                            System.err.println("Warning: Amount tendered (" + amountTendered + ") was less than total amount (" + totalAmount + "). Setting change to 0.");
+                            change = BigDecimal.ZERO;
+                        }
+                        pstmtCash.setLong(1, paymentId);
+                        pstmtCash.setBigDecimal(2, amountTendered);
+                        pstmtCash.setBigDecimal(3, change);
+                        pstmtCash.executeUpdate();
+                    }
+                } else if ("Card".equalsIgnoreCase(paymentType)) {
+                    try (PreparedStatement pstmtCard = conn.prepareStatement(insertCardPaymentSQL)) {
+                        pstmtCard.setLong(1, paymentId);
+                        // Add other card details here if needed (e.g., CardType, Last4Digits)
+                        // pstmtCard.setString(2, cardType);
+                        pstmtCard.executeUpdate();
                     }
-                    pstmtCash.setLong(1, paymentId);
-                    pstmtCash.setBigDecimal(2, amountTendered);
-                    pstmtCash.setBigDecimal(3, change);
-                    pstmtCash.executeUpdate();
+                } else {
+                    // Unsupported payment type that wasn't caught by pre-condition checks (if any added for specific types)
+                    throw new SQLException("Unsupported payment type: " + paymentType + ". Transaction will be rolled back.");
                 }
-            } else if ("Card".equalsIgnoreCase(paymentType)) {
-                try (PreparedStatement pstmtCard = conn.prepareStatement(insertCardPaymentSQL)) {
-                    pstmtCard.setLong(1, paymentId);
-                    // Add other card details here if needed (e.g., CardType, Last4Digits)
-                    // pstmtCard.setString(2, cardType);
-                    pstmtCard.executeUpdate();
+
+                // 5. Update Stock (Loop)
+                for (OrderItem item : items) {
+                    // Joins this transaction; throws SQLException (e.g. insufficient stock) to abort it.
+                    productDAO.updateStockQuantity(item.getProductId(), -item.getQuantity());
                 }
-            } else {
-                // Unsupported payment type that wasn't caught by pre-condition checks (if any added for specific types)
-                throw new SQLException("Unsupported payment type: " + paymentType + ". Transaction will be rolled back.");
-            }
 
-            // 5. Update Stock (Loop)
-            ProductDAO productDAO = new ProductDAO(); // Assumes ProductDAO is set up for this
-            for (OrderItem item : items) {
-                // updateStockQuantity in ProductDAO should throw SQLException on failure
-                // and handle its own connection or use the passed one appropriately.
-                productDAO.updateStockQuantity(item.getProductId(), -item.getQuantity(), conn);
-            }
+                return orderId;
+            });
 
-            conn.commit();
-            System.out.println("Order " + orderId + " saved successfully.");
+            System.out.println("Order " + savedOrderId + " saved successfully.");
             return true; // Success
 
         } catch (SQLException e) {
-            System.err.println("Order saving transaction failed in DAO: " + e.getMessage());
-            try {
-                if (conn != null) {
-                    System.err.println("Rolling back transaction in DAO.");
-                    conn.rollback();
-                }
-            } catch (SQLException exRollback) {
-                System.err.println("Rollback failed in DAO: " + exRollback.getMessage());
-                e.addSuppressed(exRollback); // Add rollback failure as suppressed exception
-            }
+            // Transaction.run has already rolled back.
+            System.err.println("Order saving transaction failed in DAO (rolled back): " + e.getMessage());
             throw e; // Re-throw the original SQLException (or the one from payment type)
-        } finally {
-            try {
-                if (conn != null) {
-                    conn.setAutoCommit(true); // Restore default behavior
-                    // No need to close connection here if DatabaseConnector.getConnection() provides
-                    // connections that are managed (e.g., from a pool, or closed by caller)
-                    // If this method is responsible for closing, it should be conn.close()
-                }
-            } catch (SQLException e) {
-                System.err.println("Error restoring auto-commit in OrderDAO: " + e.getMessage());
-                // This error is less critical than the main transaction failure
-            }
         }
         // No 'return false' needed here, as all failure paths should throw an exception.
     }
@@ -215,117 +196,124 @@ public class OrderDAO {
             throw new IllegalArgumentException("Quantity to return must be positive.");
         }
 
-        Connection conn = DatabaseConnector.getConnection();
-        if (conn == null) {
-            throw new SQLException("No database connection available for processing return.");
-        }
-
         String checkExistingReturnSQL = "SELECT SUM(QuantityReturned) AS TotalReturned FROM SALES_RETURN WHERE OriginalOrderItemID = ?";
         String getOrderItemDetailsSQL = "SELECT ProductID, Quantity, UnitPriceAtSale FROM ORDER_ITEM WHERE OrderItemID = ?";
         String insertReturnSQL = "INSERT INTO SALES_RETURN (ReturnDate, OriginalOrderItemID, QuantityReturned, Reason, RestockFlag, RefundAmount, ProcessedByUserID, ShiftID) VALUES (NOW(), ?, ?, ?, ?, ?, ?, ?)";
         ProductDAO productDAO = new ProductDAO();
-        int totalPreviouslyReturned = 0;
 
         try {
-            conn.setAutoCommit(false);
-
-            int productId = -1;
-            int originalQuantitySold = -1;
-            BigDecimal unitPrice = BigDecimal.ZERO;
-
-            // 1. Get original order item details
-            try (PreparedStatement pstmtDetails = conn.prepareStatement(getOrderItemDetailsSQL)) {
-                pstmtDetails.setInt(1, originalOrderItemId);
-                try (ResultSet rsDetails = pstmtDetails.executeQuery()) {
-                    if (rsDetails.next()) {
-                        productId = rsDetails.getInt("ProductID");
-                        originalQuantitySold = rsDetails.getInt("Quantity");
-                        unitPrice = rsDetails.getBigDecimal("UnitPriceAtSale");
-                        if (unitPrice == null) {
-                            // This is a data integrity issue.
-                            // For now, warn and use 0 as per old code, but this could lead to incorrect refunds.
-                            // Consider throwing an SQLException or using a default/configurable value.
-                            System.err.println("Warning: UnitPriceAtSale is NULL for OrderItemID " + originalOrderItemId + ". Assuming 0.00 for refund calculation.");
-                            unitPrice = BigDecimal.ZERO;
+            Transaction.run(Transaction.Options.RETRYING, tx -> {
+                Connection conn = tx.getConnection();
+                int totalPreviouslyReturned = 0;
+
+                int productId = -1;
+                int originalQuantitySold = -1;
+                BigDecimal unitPrice = BigDecimal.ZERO;
+
+                // 1. Get original order item details
+                try (PreparedStatement pstmtDetails = conn.prepareStatement(getOrderItemDetailsSQL)) {
+                    pstmtDetails.setInt(1, originalOrderItemId);
+                    try (ResultSet rsDetails = pstmtDetails.executeQuery()) {
+                        if (rsDetails.next()) {
+                            productId = rsDetails.getInt("ProductID");
+                            originalQuantitySold = rsDetails.getInt("Quantity");
+                            unitPrice = rsDetails.getBigDecimal("UnitPriceAtSale");
+                            if (unitPrice == null) {
+                                // This is a data integrity issue.
+                                // For now, warn and use 0 as per old code, but this could lead to incorrect refunds.
+                                // Consider throwing an SQLException or using a default/configurable value.
+                                System.err.println("Warning: UnitPriceAtSale is NULL for OrderItemID " + originalOrderItemId + ". Assuming 0.00 for refund calculation.");
+                                unitPrice = BigDecimal.ZERO;
+                            }
+                        } else {
+                            throw new SQLException("Original order item (ID: " + originalOrderItemId + ") not found.");
                         }
-                    } else {
-                        throw new SQLException("Original order item (ID: " + originalOrderItemId + ") not found.");
                     }
                 }
-            }
 
-            // 2. Check for existing returns for this item
-            try (PreparedStatement pstmtCheck = conn.prepareStatement(checkExistingReturnSQL)) {
-                pstmtCheck.setInt(1, originalOrderItemId);
-                try (ResultSet rsCheck = pstmtCheck.executeQuery()) {
-                    if (rsCheck.next()) {
-                        totalPreviouslyReturned = rsCheck.getInt("TotalReturned"); // Default 0 if NULL
+                // 2. Check for existing returns for this item
+                try (PreparedStatement pstmtCheck = conn.prepareStatement(checkExistingReturnSQL)) {
+                    pstmtCheck.setInt(1, originalOrderItemId);
+                    try (ResultSet rsCheck = pstmtCheck.executeQuery()) {
+                        if (rsCheck.next()) {
+                            totalPreviouslyReturned = rsCheck.getInt("TotalReturned"); // Default 0 if NULL
+                        }
                     }
                 }
-            }
 
-            // 3. Validate return quantity
-            int maxAllowedReturn = originalQuantitySold - totalPreviouslyReturned;
-            if (quantityToReturn > maxAllowedReturn) {
-                throw new SQLException("Cannot return quantity (" + quantityToReturn + "). " +
-                        "Max allowed for this item (OrderItemID: " + originalOrderItemId + "): " + maxAllowedReturn +
-                        " (Sold: " + originalQuantitySold + ", Already Returned: " + totalPreviouslyReturned + ").");
-            }
+                // 3. Validate return quantity
+                int maxAllowedReturn = originalQuantitySold - totalPreviouslyReturned;
+                if (quantityToReturn > maxAllowedReturn) {
+                    throw new SQLException("Cannot return quantity (" + quantityToReturn + "). " +
+                            "Max allowed for this item (OrderItemID: " + originalOrderItemId + "): " + maxAllowedReturn +
+                            " (Sold: " + originalQuantitySold + ", Already Returned: " + totalPreviouslyReturned + ").");
+                }
 
-            // 4. Calculate refund amount
-            BigDecimal refundAmount = unitPrice.multiply(new BigDecimal(quantityToReturn));
-
-            // 5. Insert into SALES_RETURN
-            try (PreparedStatement pstmtReturn = conn.prepareStatement(insertReturnSQL)) {
-                pstmtReturn.setInt(1, originalOrderItemId);
-                pstmtReturn.setInt(2, quantityToReturn);
-                pstmtReturn.setString(3, (reason == null || reason.trim().isEmpty()) ? null : reason.trim());
-                pstmtReturn.setBoolean(4, restockFlag);
-                pstmtReturn.setBigDecimal(5, refundAmount);
-                pstmtReturn.setInt(6, processedByUserId);
-                pstmtReturn.setInt(7, shiftId);
-                int rowsAffected = pstmtReturn.executeUpdate();
-                if (rowsAffected == 0) {
-                    throw new SQLException("Failed to insert sales return record for OrderItemID " + originalOrderItemId + ". No rows affected.");
+                // 4. Calculate refund amount
+                BigDecimal refundAmount = unitPrice.multiply(new BigDecimal(quantityToReturn));
+
+                // 5. Insert into SALES_RETURN
+                try (PreparedStatement pstmtReturn = conn.prepareStatement(insertReturnSQL)) {
+                    pstmtReturn.setInt(1, originalOrderItemId);
+                    pstmtReturn.setInt(2, quantityToReturn);
+                    pstmtReturn.setString(3, (reason == null || reason.trim().isEmpty()) ? null : reason.trim());
+                    pstmtReturn.setBoolean(4, restockFlag);
+                    pstmtReturn.setBigDecimal(5, refundAmount);
+                    pstmtReturn.setInt(6, processedByUserId);
+                    pstmtReturn.setInt(7, shiftId);
+                    int rowsAffected = pstmtReturn.executeUpdate();
+                    if (rowsAffected == 0) {
+                        throw new SQLException("Failed to insert sales return record for OrderItemID " + originalOrderItemId + ". No rows affected.");
+                    }
                 }
-            }
 
-            // 6. Update stock if restockFlag is true
-            if (restockFlag && productId > 0) { // productId must be valid
-                // Assuming productDAO.updateStockQuantity throws SQLException on failure
-                productDAO.updateStockQuantity(productId, quantityToReturn, conn); // Positive quantity to add back
-            }
+                // 6. Update stock if restockFlag is true
+                if (restockFlag && productId > 0) { // productId must be valid
+                    // Joins this transaction; throws SQLException on failure
+                    productDAO.updateStockQuantity(productId, quantityToReturn); // Positive quantity to add back
+                }
+
+                return null;
+            });
 
-            conn.commit();
             System.out.println("Return processed successfully for OrderItemID: " + originalOrderItemId + ", Quantity: " + quantityToReturn);
             return true;
 
         } catch (SQLException | IllegalArgumentException e) { // Catch IAE also if productDAO or other parts might throw it and it should abort
-            System.err.println("Return processing transaction failed for OrderItemID " + originalOrderItemId + ": " + e.getMessage());
-            try {
-                if (conn != null) {
-                    System.err.println("Rolling back transaction for return processing.");
-                    conn.rollback();
-                }
-            } catch (SQLException exRollback) {
-                System.err.println("Rollback failed during return processing: " + exRollback.getMessage());
-                e.addSuppressed(exRollback);
-            }
+            // Transaction.run has already rolled back.
+            System.err.println("Return processing transaction failed for OrderItemID " + originalOrderItemId + " (rolled back): " + e.getMessage());
             throw e; // Re-throw the original exception (SQLException or IllegalArgumentException)
-        } finally {
-            try {
-                if (conn != null) {
-                    conn.setAutoCommit(true);
-                     // As with saveOrder, manage connection closure based on DatabaseConnector's design
-                }
-            } catch (SQLException ex) {
-                System.err.println("Error restoring auto-commit in processReturn: " + ex.getMessage());
-            }
         }
     }
 
+    // Columns read by mapRowToOrder, resolved to positions once per query by ColumnPlan.
+    private static final String[] ORDER_COLUMNS = {
+            "OrderID", "OrderDate", "TotalAmount", "CustomerID", "CustomerName",
+            "UserID", "UserName", "ShiftID", "OrderStatus", "PaymentType"
+    };
+    private static final int COL_ORDER_ID = 0, COL_ORDER_DATE = 1, COL_TOTAL_AMOUNT = 2, COL_CUSTOMER_ID = 3,
+            COL_CUSTOMER_NAME = 4, COL_USER_ID = 5, COL_USER_NAME = 6, COL_SHIFT_ID = 7, COL_ORDER_STATUS = 8,
+            COL_PAYMENT_TYPE = 9;
+
+    private static final String ALL_ORDERS_SQL =
+            "SELECT o.OrderID, o.OrderDate, o.TotalAmount, o.CustomerID, " +
+            "c.Name AS CustomerName, o.UserID, u.Username AS UserName, " +
+            "o.ShiftID, o.OrderStatus, " +
+            "CASE WHEN cp.PaymentID IS NOT NULL THEN 'Cash' " +
+            "     WHEN cdp.PaymentID IS NOT NULL THEN 'Card' " +
+            "     ELSE 'Unknown' END AS PaymentType " +
+            "FROM `ORDER` o " +
+            "LEFT JOIN CUSTOMER c ON o.CustomerID = c.CustomerID " +
+            "LEFT JOIN USER u ON o.UserID = u.UserID " +
+            "LEFT JOIN PAYMENT p ON o.OrderID = p.OrderID " +
+            "LEFT JOIN CASH_PAYMENT cp ON p.PaymentID = cp.PaymentID " +
+            "LEFT JOIN CARD_PAYMENT cdp ON p.PaymentID = cdp.PaymentID " +
+            "ORDER BY o.OrderDate DESC";
+
     /**
      * Retrieves all orders with basic information.
+     * Loads the whole table into memory; prefer {@link #streamAllOrders()} or
+     * {@link #forEachOrder(RowCursor.RowCallback)} for anything that could be large.
      * 
      * @return List of Order objects with basic info
      * @throws SQLException If database operation fails
@@ -333,43 +321,64 @@ public class OrderDAO {
     public List<Order> getAllOrders() throws SQLException {
         List<Order> orders = new ArrayList<>();
         
-        String sql = "SELECT o.OrderID, o.OrderDate, o.TotalAmount, o.CustomerID, " +
-                    "c.Name AS CustomerName, o.UserID, u.Username AS UserName, " +
-                    "o.ShiftID, o.OrderStatus, " +
-                    "CASE WHEN cp.PaymentID IS NOT NULL THEN 'Cash' " +
-                    "     WHEN cdp.PaymentID IS NOT NULL THEN 'Card' " +
-                    "     ELSE 'Unknown' END AS PaymentType " +
-                    "FROM `ORDER` o " +
-                    "LEFT JOIN CUSTOMER c ON o.CustomerID = c.CustomerID " +
-                    "LEFT JOIN USER u ON o.UserID = u.UserID " +
-                    "LEFT JOIN PAYMENT p ON o.OrderID = p.OrderID " +
-                    "LEFT JOIN CASH_PAYMENT cp ON p.PaymentID = cp.PaymentID " +
-                    "LEFT JOIN CARD_PAYMENT cdp ON p.PaymentID = cdp.PaymentID " +
-                    "ORDER BY o.OrderDate DESC";
-        
-        try (Connection conn = DatabaseConnector.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
+        DatabaseConnector.readFromReplica(HISTORY_MAX_LAG_SECONDS, conn -> {
+            orders.clear(); // a fallback or retried attempt starts over
+            try (PreparedStatement stmt = conn.prepareStatement(ALL_ORDERS_SQL);
+                 ResultSet rs = stmt.executeQuery()) {
             
-            while (rs.next()) {
-                Order order = new Order(
-                    rs.getInt("OrderID"),
-                    rs.getTimestamp("OrderDate"),
-                    rs.getBigDecimal("TotalAmount"),
-                    rs.getObject("CustomerID") != null ? rs.getInt("CustomerID") : null,
-                    rs.getString("CustomerName"),
-                    rs.getInt("UserID"),
-                    rs.getString("UserName"),
-                    rs.getInt("ShiftID"),
-                    rs.getString("OrderStatus"),
-                    rs.getString("PaymentType")
-                );
-                orders.add(order);
+                int[] col = ColumnPlan.indexes(ALL_ORDERS_SQL, rs, ORDER_COLUMNS);
+                while (rs.next()) {
+                    orders.add(mapRowToOrder(rs, col));
+                }
             }
-        }
+            return null;
+        });
         
         return orders;
     }
+
+    /**
+     * Opens a forward-only cursor over all orders, newest first, mapping each row only when it
+     * is read. The caller must close it, preferably with try-with-resources.
+     *
+     * @throws SQLException If the query cannot be started
+     */
+    public RowCursor<Order> streamAllOrders() throws SQLException {
+        return streamAllOrders(RowCursor.DEFAULT_FETCH_SIZE);
+    }
+
+    /** @param fetchSize rows fetched from the server per round trip */
+    public RowCursor<Order> streamAllOrders(int fetchSize) throws SQLException {
+        return DatabaseConnector.openCursor(HISTORY_MAX_LAG_SECONDS, ALL_ORDERS_SQL, null, fetchSize,
+                ColumnPlan.mapper(ALL_ORDERS_SQL, ORDER_COLUMNS, OrderDAO::mapRowToOrder));
+    }
+
+    /**
+     * Passes every order, newest first, to {@code callback} without holding more than one
+     * fetch block in memory. Throwing from the callback stops the scan and releases the cursor.
+     *
+     * @throws SQLException If the query fails, or as thrown by the callback
+     */
+    public void forEachOrder(RowCursor.RowCallback<Order> callback) throws SQLException {
+        try (RowCursor<Order> cursor = streamAllOrders()) {
+            cursor.forEachRow(callback);
+        }
+    }
+
+    private static Order mapRowToOrder(ResultSet rs, int[] col) throws SQLException {
+        return new Order(
+            rs.getInt(col[COL_ORDER_ID]),
+            rs.getTimestamp(col[COL_ORDER_DATE]),
+            rs.getBigDecimal(col[COL_TOTAL_AMOUNT]),
+            ColumnPlan.getInteger(rs, col[COL_CUSTOMER_ID]),
+            rs.getString(col[COL_CUSTOMER_NAME]),
+            rs.getInt(col[COL_USER_ID]),
+            rs.getString(col[COL_USER_NAME]),
+            rs.getInt(col[COL_SHIFT_ID]),
+            rs.getString(col[COL_ORDER_STATUS]),
+            rs.getString(col[COL_PAYMENT_TYPE])
+        );
+    }
     
     /**
      * Searches orders by date range, customer, or payment type.
@@ -430,32 +439,26 @@ public class OrderDAO {
         
         sqlBuilder.append("ORDER BY o.OrderDate DESC");
         
-        try (Connection conn = DatabaseConnector.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sqlBuilder.toString())) {
+        String sql = sqlBuilder.toString();
+        DatabaseConnector.readFromReplica(HISTORY_MAX_LAG_SECONDS, conn -> {
+            orders.clear(); // a fallback or retried attempt starts over
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             
-            // Set parameters
-            for (int i = 0; i < params.size(); i++) {
-                stmt.setObject(i + 1, params.get(i));
-            }
+                // Set parameters
+                for (int i = 0; i < params.size(); i++) {
+                    stmt.setObject(i + 1, params.get(i));
+                }
             
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    Order order = new Order(
-                        rs.getInt("OrderID"),
-                        rs.getTimestamp("OrderDate"),
-                        rs.getBigDecimal("TotalAmount"),
-                        rs.getObject("CustomerID") != null ? rs.getInt("CustomerID") : null,
-                        rs.getString("CustomerName"),
-                        rs.getInt("UserID"),
-                        rs.getString("UserName"),
-                        rs.getInt("ShiftID"),
-                        rs.getString("OrderStatus"),
-                        rs.getString("PaymentType")
-                    );
-                    orders.add(order);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    int[] col = ColumnPlan.indexes(sql, rs, ORDER_COLUMNS);
+                    while (rs.next()) {
+                        Order order = mapRowToOrder(rs, col);
+                        orders.add(order);
+                    }
                 }
             }
-        }
+            return null;
+        });
         
         return orders;
     }
@@ -492,7 +495,7 @@ public class OrderDAO {
                         "LEFT JOIN PRODUCT p ON oi.ProductID = p.ProductID " +
                         "WHERE oi.OrderID = ?";
         
-        try (Connection conn = DatabaseConnector.getConnection();
+        try (Connection conn = DatabaseConnector.requireConnection();
              PreparedStatement orderStmt = conn.prepareStatement(orderSql)) {
             
             orderStmt.setInt(1, orderId);
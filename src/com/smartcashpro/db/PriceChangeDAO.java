@@ -0,0 +1,405 @@
+package com.smartcashpro.db;
+
+import com.smartcashpro.model.Category;
+import com.smartcashpro.model.Supplier;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Changes the price of many products at once, e.g. "+3% on all dairy".
+ *
+ * Every run is a change set: one PRICE_CHANGE_SET row with the acting user, and one
+ * PRODUCT_PRICE_AUDIT row per product whose price actually changed, tagged with the change
+ * set's ID. Products are changed in chunks of {@code smartcashpro.reprice.chunkSize} (default
+ * 500), in ProductID order, one transaction per chunk, so a long run never holds locks on the
+ * whole catalog. Per chunk: lock the chunk's rows, write all of its audit rows with one
+ * INSERT ... SELECT, then change all of its prices with one UPDATE using the same expression.
+ * The per-row price trigger is switched off for this connection meanwhile (see migration V3).
+ *
+ * Caches are told once, after the last chunk. If a run fails part way, chunks already
+ * committed stay changed and audited; the change set's CompletedAt stays NULL.
+ */
+public class PriceChangeDAO {
+
+    /** Which products a percentage change applies to. */
+    public static final class Scope {
+        private final String condition;
+        private final Object param;
+        private final List<Integer> productIds;
+        private final String description;
+
+        private Scope(String condition, Object param, List<Integer> productIds, String description) {
+            this.condition = condition;
+            this.param = param;
+            this.productIds = productIds;
+            this.description = description;
+        }
+
+        public static Scope allProducts() {
+            return new Scope(null, null, null, "all products");
+        }
+
+        public static Scope category(Category category) {
+            return new Scope("CategoryID = ?", category.getCategoryId(), null, "category " + category.getCategoryName());
+        }
+
+        public static Scope supplier(Supplier supplier) {
+            return new Scope("SupplierID = ?", supplier.getSupplierId(), null, "supplier " + supplier.getSupplierName());
+        }
+
+        public static Scope products(Collection<Integer> productIds) {
+            return new Scope(null, null, new ArrayList<>(new TreeSet<>(productIds)), productIds.size() + " selected products");
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    /** Outcome of one run. */
+    public static final class Result {
+        private final int changeSetId;
+        private final int productsChanged;
+        private final long elapsedMs;
+
+        Result(int changeSetId, int productsChanged, long elapsedMs) {
+            this.changeSetId = changeSetId;
+            this.productsChanged = productsChanged;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public int getChangeSetId() { return changeSetId; }
+        /** Products whose price changed; products already at their new price are not counted. */
+        public int getProductsChanged() { return productsChanged; }
+        public long getElapsedMs() { return elapsedMs; }
+
+        @Override
+        public String toString() {
+            return "change set " + changeSetId + ": " + productsChanged + " prices changed in " + elapsedMs + "ms";
+        }
+    }
+
+    private static final int CHUNK_SIZE = Integer.getInteger("smartcashpro.reprice.chunkSize", 500);
+    private static final BigDecimal MAX_PRICE = new BigDecimal("99999999.99"); // DECIMAL(10,2)
+    private static final BigDecimal HUNDRED = new BigDecimal(100);
+
+    /** Read by trg_LogProductPriceChange; set while a chunk's UPDATE runs. */
+    private static final String CHANGE_SET_VARIABLE = "@smartcashpro_price_change_set";
+
+    /**
+     * Changes the prices in {@code scope} by {@code percent} (e.g. 3 or -10), rounded to cents.
+     * Prices that are already 0.00 stay 0.00.
+     *
+     * @throws IllegalArgumentException if {@code percent} would make prices zero or negative, i.e.
+     *         it is -100 or less or would round the lowest price in the scope down to 0.00; this is
+     *         checked before any price is changed
+     */
+    public Result applyPercentage(Scope scope, BigDecimal percent, int userId, String description) throws SQLException {
+        if (percent.compareTo(HUNDRED.negate()) <= 0) {
+            throw new IllegalArgumentException("A price cannot go down by 100% or more.");
+        }
+        BigDecimal factor = HUNDRED.add(percent).divide(HUNDRED, 6, RoundingMode.HALF_UP);
+        BigDecimal lowest = lowestPositivePrice(scope);
+        // ROUND on a DECIMAL rounds half away from zero, which is HALF_UP for a positive price
+        if (lowest != null && lowest.multiply(factor).setScale(2, RoundingMode.HALF_UP).signum() <= 0) {
+            throw new IllegalArgumentException("A " + percent.toPlainString() + "% change would make the price of "
+                    + "some products 0.00 (the lowest price in " + scope + " is " + lowest.toPlainString() + ").");
+        }
+        String newPriceSql = "LEAST(ROUND(UnitPrice * ?, 2), " + MAX_PRICE + ")";
+        List<Object> newPriceParams = Collections.singletonList(factor);
+
+        long start = System.currentTimeMillis();
+        int changeSetId = startChangeSet(description, userId);
+        int changed = 0;
+        try {
+            if (scope.productIds != null) {
+                for (int from = 0; from < scope.productIds.size(); from += CHUNK_SIZE) {
+                    List<Integer> ids = scope.productIds.subList(from, Math.min(from + CHUNK_SIZE, scope.productIds.size()));
+                    changed += Transaction.run(Transaction.Options.RETRYING, tx -> applyChunk(tx.getConnection(),
+                            lockProducts(tx.getConnection(), ids), newPriceSql, newPriceParams, userId, changeSetId));
+                }
+            } else {
+                int afterId = 0;
+                while (true) {
+                    int after = afterId;
+                    List<Integer> ids = new ArrayList<>();
+                    changed += Transaction.run(Transaction.Options.RETRYING, tx -> {
+                        ids.clear(); // in case the transaction is run again
+                        ids.addAll(lockNextChunk(tx.getConnection(), scope, after));
+                        return applyChunk(tx.getConnection(), ids, newPriceSql, newPriceParams, userId, changeSetId);
+                    });
+                    if (ids.size() < CHUNK_SIZE) {
+                        break;
+                    }
+                    afterId = ids.get(ids.size() - 1);
+                }
+            }
+            completeChangeSet(changeSetId, changed);
+        } finally {
+            if (changed > 0) {
+                CatalogVersion.catalogChanged(); // one event for the whole run, not one per product
+            }
+        }
+        return result(changeSetId, changed, start);
+    }
+
+    /**
+     * Sets each product in {@code newPrices} (ProductID to price) to its price. Unknown
+     * ProductIDs are ignored.
+     *
+     * @throws IllegalArgumentException if a price is negative, too large or has more than 2 decimals
+     */
+    public Result applyPrices(Map<Integer, BigDecimal> newPrices, int userId, String description) throws SQLException {
+        for (Map.Entry<Integer, BigDecimal> e : newPrices.entrySet()) {
+            BigDecimal price = e.getValue();
+            if (price == null || price.signum() < 0 || price.compareTo(MAX_PRICE) > 0
+                    || price.stripTrailingZeros().scale() > 2) {
+                throw new IllegalArgumentException("Invalid price for ProductID " + e.getKey() + ": " + price);
+            }
+        }
+        List<Map.Entry<Integer, BigDecimal>> sorted = new ArrayList<>(new TreeMap<>(newPrices).entrySet());
+
+        long start = System.currentTimeMillis();
+        int changeSetId = startChangeSet(description, userId);
+        int changed = 0;
+        try {
+            for (int from = 0; from < sorted.size(); from += CHUNK_SIZE) {
+                List<Map.Entry<Integer, BigDecimal>> chunk = sorted.subList(from, Math.min(from + CHUNK_SIZE, sorted.size()));
+                List<Integer> ids = new ArrayList<>(chunk.size());
+                StringBuilder newPriceSql = new StringBuilder("CASE ProductID");
+                List<Object> newPriceParams = new ArrayList<>(chunk.size() * 2);
+                for (Map.Entry<Integer, BigDecimal> e : chunk) {
+                    ids.add(e.getKey());
+                    newPriceSql.append(" WHEN ? THEN ?");
+                    newPriceParams.add(e.getKey());
+                    newPriceParams.add(e.getValue().setScale(2));
+                }
+                newPriceSql.append(" END");
+                changed += Transaction.run(Transaction.Options.RETRYING, tx -> applyChunk(tx.getConnection(),
+                        lockProducts(tx.getConnection(), ids), newPriceSql.toString(), newPriceParams, userId, changeSetId));
+            }
+            completeChangeSet(changeSetId, changed);
+        } finally {
+            if (changed > 0) {
+                CatalogVersion.catalogChanged();
+            }
+        }
+        return result(changeSetId, changed, start);
+    }
+
+    /** Reads all categories; screens use the cached copy in {@link ReferenceData#categories()}. */
+    public List<Category> getAllCategories() throws SQLException {
+        List<Category> categories = new ArrayList<>();
+        String sql = "SELECT CategoryID, CategoryName FROM CATEGORY ORDER BY CategoryName";
+        try (Connection conn = DatabaseConnector.requireConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                categories.add(new Category(rs.getInt("CategoryID"), rs.getString("CategoryName")));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error fetching categories: " + e.getMessage());
+            throw e;
+        }
+        return categories;
+    }
+
+    private static int startChangeSet(String description, int userId) throws SQLException {
+        String sql = "INSERT INTO PRICE_CHANGE_SET (Description, ChangedByUserID) VALUES (?, ?)";
+        return Transaction.run(Transaction.Options.RETRYING, tx -> {
+            try (PreparedStatement pstmt = tx.getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                pstmt.setString(1, description.length() > 255 ? description.substring(0, 255) : description);
+                if (userId > 0) {
+                    pstmt.setInt(2, userId);
+                } else {
+                    pstmt.setNull(2, Types.INTEGER);
+                }
+                pstmt.executeUpdate();
+                try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                    if (!generatedKeys.next()) {
+                        throw new SQLException("Creating price change set failed, no ID obtained.");
+                    }
+                    return generatedKeys.getInt(1);
+                }
+            }
+        });
+    }
+
+    private static void completeChangeSet(int changeSetId, int changed) throws SQLException {
+        String sql = "UPDATE PRICE_CHANGE_SET SET CompletedAt = CURRENT_TIMESTAMP, ProductCount = ? WHERE ChangeSetID = ?";
+        Transaction.run(Transaction.Options.RETRYING, tx -> {
+            try (PreparedStatement pstmt = tx.getConnection().prepareStatement(sql)) {
+                pstmt.setInt(1, changed);
+                pstmt.setInt(2, changeSetId);
+                return pstmt.executeUpdate();
+            }
+        });
+    }
+
+    private static Result result(int changeSetId, int changed, long start) {
+        Result result = new Result(changeSetId, changed, System.currentTimeMillis() - start);
+        System.out.println("Price change: " + result);
+        return result;
+    }
+
+    /** The lowest price above 0.00 in the scope, or null if there is none. */
+    private static BigDecimal lowestPositivePrice(Scope scope) throws SQLException {
+        BigDecimal lowest = null;
+        try (Connection conn = DatabaseConnector.requireConnection()) {
+            if (scope.productIds != null) {
+                for (int from = 0; from < scope.productIds.size(); from += CHUNK_SIZE) {
+                    List<Integer> ids = scope.productIds.subList(from, Math.min(from + CHUNK_SIZE, scope.productIds.size()));
+                    StringBuilder sql = new StringBuilder("SELECT MIN(UnitPrice) FROM PRODUCT WHERE UnitPrice > 0 AND ProductID IN (");
+                    appendPlaceholders(sql, ids.size());
+                    sql.append(")");
+                    try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                        for (int i = 0; i < ids.size(); i++) {
+                            pstmt.setInt(i + 1, ids.get(i));
+                        }
+                        lowest = lower(lowest, readPrice(pstmt));
+                    }
+                }
+            } else {
+                String sql = "SELECT MIN(UnitPrice) FROM PRODUCT WHERE UnitPrice > 0"
+                        + (scope.condition != null ? " AND " + scope.condition : "");
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    if (scope.condition != null) {
+                        pstmt.setObject(1, scope.param);
+                    }
+                    lowest = readPrice(pstmt);
+                }
+            }
+        }
+        return lowest;
+    }
+
+    private static BigDecimal readPrice(PreparedStatement pstmt) throws SQLException {
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getBigDecimal(1) : null;
+        }
+    }
+
+    private static BigDecimal lower(BigDecimal a, BigDecimal b) {
+        return a == null ? b : b == null ? a : a.min(b);
+    }
+
+    /** Locks the next chunk of products in the scope after {@code afterId}, in ProductID order. */
+    private static List<Integer> lockNextChunk(Connection conn, Scope scope, int afterId) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT ProductID FROM PRODUCT WHERE ProductID > ?");
+        if (scope.condition != null) {
+            sql.append(" AND ").append(scope.condition);
+        }
+        sql.append(" ORDER BY ProductID LIMIT ? FOR UPDATE");
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int i = 1;
+            pstmt.setInt(i++, afterId);
+            if (scope.condition != null) {
+                pstmt.setObject(i++, scope.param);
+            }
+            pstmt.setInt(i, CHUNK_SIZE);
+            return readIds(pstmt);
+        }
+    }
+
+    /** Locks the given products; returns the ones that exist. */
+    private static List<Integer> lockProducts(Connection conn, List<Integer> ids) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT ProductID FROM PRODUCT WHERE ProductID IN (");
+        appendPlaceholders(sql, ids.size());
+        sql.append(") ORDER BY ProductID FOR UPDATE");
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < ids.size(); i++) {
+                pstmt.setInt(i + 1, ids.get(i));
+            }
+            return readIds(pstmt);
+        }
+    }
+
+    private static List<Integer> readIds(PreparedStatement pstmt) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Audits and reprices one chunk of locked products with one statement each. Both use
+     * {@code newPriceSql}, so the audited new price is exactly the price written.
+     */
+    private static int applyChunk(Connection conn, List<Integer> ids, String newPriceSql, List<Object> newPriceParams,
+                                  int userId, int changeSetId) throws SQLException {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        StringBuilder in = new StringBuilder(" WHERE ProductID IN (");
+        appendPlaceholders(in, ids.size());
+        in.append(") AND UnitPrice <> ").append(newPriceSql);
+
+        String auditSql = "INSERT INTO PRODUCT_PRICE_AUDIT (ProductID, OldUnitPrice, NewUnitPrice, ChangedByUserID, ChangeSetID) "
+                + "SELECT ProductID, UnitPrice, " + newPriceSql + ", ?, ? FROM PRODUCT" + in;
+        try (PreparedStatement pstmt = conn.prepareStatement(auditSql)) {
+            int i = setAll(pstmt, 1, newPriceParams);
+            if (userId > 0) {
+                pstmt.setInt(i++, userId);
+            } else {
+                pstmt.setNull(i++, Types.INTEGER);
+            }
+            pstmt.setInt(i++, changeSetId);
+            i = setIds(pstmt, i, ids);
+            setAll(pstmt, i, newPriceParams);
+            pstmt.executeUpdate();
+        }
+
+        String updateSql = "UPDATE PRODUCT SET UnitPrice = " + newPriceSql + in;
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET " + CHANGE_SET_VARIABLE + " = " + changeSetId);
+            try (PreparedStatement pstmt = conn.prepareStatement(updateSql)) {
+                int i = setAll(pstmt, 1, newPriceParams);
+                i = setIds(pstmt, i, ids);
+                setAll(pstmt, i, newPriceParams);
+                int changed = pstmt.executeUpdate();
+                CatalogVersion.productsWritten(ids); // for other tills' change feeds; this till hears once at the end
+                return changed;
+            } finally {
+                stmt.execute("SET " + CHANGE_SET_VARIABLE + " = NULL"); // the connection goes back to the pool
+            }
+        }
+    }
+
+    private static void appendPlaceholders(StringBuilder sql, int count) {
+        for (int i = 0; i < count; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+    }
+
+    private static int setAll(PreparedStatement pstmt, int index, List<Object> params) throws SQLException {
+        for (Object param : params) {
+            pstmt.setObject(index++, param);
+        }
+        return index;
+    }
+
+    private static int setIds(PreparedStatement pstmt, int index, List<Integer> ids) throws SQLException {
+        for (Integer id : ids) {
+            pstmt.setInt(index++, id);
+        }
+        return index;
+    }
+}
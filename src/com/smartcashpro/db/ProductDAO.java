@@ -3,35 +3,110 @@ package com.smartcashpro.db;
 import com.smartcashpro.model.Product;
 import com.smartcashpro.model.PerishableProduct;
 import com.smartcashpro.model.NonPerishableProduct;
+import com.smartcashpro.model.ProductScan;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.IntUnaryOperator;
 
 public class ProductDAO implements IProductDAO { // IMPLEMENTS IProductDAO
 
+    // Columns read by mapRowToProduct, resolved to positions once per query by ColumnPlan.
+    private static final String[] PRODUCT_COLUMNS = {
+            "ProductID", "SKU", "Name", "UnitPrice", "QuantityInStock", "CurrentCostPrice", "ReorderLevel",
+            "PerishableProductID", "StorageTempRequirement"
+    };
+    private static final int COL_PRODUCT_ID = 0, COL_SKU = 1, COL_NAME = 2, COL_UNIT_PRICE = 3, COL_QUANTITY = 4,
+            COL_COST_PRICE = 5, COL_REORDER_LEVEL = 6, COL_PERISHABLE_ID = 7, COL_STORAGE_TEMP = 8;
+
+    /**
+     * Product reads come in two forms with the same result columns. Since migration V5,
+     * PRODUCT carries the product type and storage requirement (kept in step with the subtype
+     * tables by triggers), so a lookup is a single-table read. Until V5 has run, the type is
+     * found by joining the subtype tables as before.
+     */
+    private static final String TYPED_SELECT =
+            "SELECT p.ProductID, p.SKU, p.Name, p.UnitPrice, p.QuantityInStock, p.CurrentCostPrice, p.ReorderLevel, " +
+            "IF(p.ProductType = 'P', p.ProductID, NULL) AS PerishableProductID, p.StorageTempRequirement " +
+            "FROM PRODUCT p ";
+    private static final String JOINED_SELECT =
+            "SELECT p.ProductID, p.SKU, p.Name, p.UnitPrice, p.QuantityInStock, p.CurrentCostPrice, p.ReorderLevel, " +
+            "pp.ProductID AS PerishableProductID, pp.StorageTempRequirement, " +
+            "np.ProductID AS NonPerishableProductID " +
+            "FROM PRODUCT p " +
+            "LEFT JOIN PERISHABLE_PRODUCT pp ON p.ProductID = pp.ProductID " +
+            "LEFT JOIN NONPERISHABLE_PRODUCT np ON p.ProductID = np.ProductID ";
+    private static final long TYPE_COLUMN_RECHECK_MS = 60_000;
+    /**
+     * Keys per IN list in batch lookups. Shorter lists are padded (repeating the last key) to
+     * a power of two, so only a handful of distinct statements get prepared and cached.
+     */
+    private static final int IN_LIST_CHUNK = 256;
+
+    /** Read by trg_LogProductPriceChange (migration V6) as ChangedByUserID; set while saveProduct's UPDATE runs. */
+    private static final String USER_VARIABLE = "@smartcashpro_user_id";
+
+    /** When the ProductType column was last found missing; 0 if it was not. */
+    private static volatile long typeColumnMissingAt = 0;
+
+    /** A product statement in its single-table ({@code typeColumn}) or joined form. */
+    @FunctionalInterface
+    private interface ProductWork<T> {
+        T run(boolean typeColumn) throws SQLException;
+    }
+
+    /**
+     * Runs {@code work} in the single-table form, or the joined form while migration V5 is
+     * missing. Having found it missing, tries again once a minute, as the migration may be
+     * running in the background.
+     */
+    private static <T> T withProductType(ProductWork<T> work) throws SQLException {
+        long missingAt = typeColumnMissingAt;
+        if (missingAt == 0 || System.currentTimeMillis() - missingAt > TYPE_COLUMN_RECHECK_MS) {
+            try {
+                T result = work.run(true);
+                typeColumnMissingAt = 0;
+                return result;
+            } catch (SQLException e) {
+                if (!SqlErrors.isUnknownColumn(e)) {
+                    throw e;
+                }
+                if (missingAt == 0) {
+                    System.err.println("PRODUCT.ProductType is missing (" + e.getMessage()
+                            + "); reading product types through the subtype tables until migration V5 has run.");
+                }
+                typeColumnMissingAt = System.currentTimeMillis();
+            }
+        }
+        return work.run(false);
+    }
+
+    private static String productSelect(boolean typeColumn) {
+        return typeColumn ? TYPED_SELECT : JOINED_SELECT;
+    }
+
     @Override
     public Product findProductBySku(String sku) {
-        String sql = "SELECT p.ProductID, p.SKU, p.Name, p.UnitPrice, p.QuantityInStock, p.CurrentCostPrice, p.ReorderLevel, " +
-                     "pp.ProductID AS PerishableProductID, pp.StorageTempRequirement, " +
-                     "np.ProductID AS NonPerishableProductID " +
-                     "FROM PRODUCT p " +
-                     "LEFT JOIN PERISHABLE_PRODUCT pp ON p.ProductID = pp.ProductID " +
-                     "LEFT JOIN NONPERISHABLE_PRODUCT np ON p.ProductID = np.ProductID " +
-                     "WHERE p.SKU = ?";
-        Connection conn = DatabaseConnector.getConnection();
-        if (conn == null) {
-            System.err.println("DB Error: No connection for findProductBySku");
-            return null;
-        }
-
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, sku);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return mapRowToProduct(rs);
+        try {
+            return withProductType(typeColumn -> Retry.idempotent(() -> {
+                String sql = productSelect(typeColumn) + "WHERE p.SKU = ?";
+                try (Connection conn = DatabaseConnector.requireConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, sku);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        return rs.next() ? mapRowToProduct(rs, ColumnPlan.indexes(sql, rs, PRODUCT_COLUMNS)) : null;
+                    }
                 }
-            }
+            }));
         } catch (SQLException e) {
             System.err.println("Error finding product by SKU '" + sku + "': " + e.getMessage());
             e.printStackTrace();
@@ -41,26 +116,17 @@ public class ProductDAO implements IProductDAO { // IMPLEMENTS IProductDAO
 
     @Override
     public Product findProductById(int productId) {
-        String sql = "SELECT p.ProductID, p.SKU, p.Name, p.UnitPrice, p.QuantityInStock, p.CurrentCostPrice, p.ReorderLevel, " +
-                     "pp.ProductID AS PerishableProductID, pp.StorageTempRequirement, " +
-                     "np.ProductID AS NonPerishableProductID " +
-                     "FROM PRODUCT p " +
-                     "LEFT JOIN PERISHABLE_PRODUCT pp ON p.ProductID = pp.ProductID " +
-                     "LEFT JOIN NONPERISHABLE_PRODUCT np ON p.ProductID = np.ProductID " +
-                     "WHERE p.ProductID = ?";
-        Connection conn = DatabaseConnector.getConnection();
-         if (conn == null) {
-            System.err.println("DB Error: No connection for findProductById");
-            return null;
-        }
-
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, productId);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return mapRowToProduct(rs);
+        try {
+            return withProductType(typeColumn -> Retry.idempotent(() -> {
+                String sql = productSelect(typeColumn) + "WHERE p.ProductID = ?";
+                try (Connection conn = DatabaseConnector.requireConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, productId);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        return rs.next() ? mapRowToProduct(rs, ColumnPlan.indexes(sql, rs, PRODUCT_COLUMNS)) : null;
+                    }
                 }
-            }
+            }));
         } catch (SQLException e) {
             System.err.println("Error finding product by ID " + productId + ": " + e.getMessage());
             e.printStackTrace();
@@ -68,27 +134,159 @@ public class ProductDAO implements IProductDAO { // IMPLEMENTS IProductDAO
         return null;
     }
 
+    /** Primary-key read of the stock column only; no joins. */
+    @Override
+    public int findStockQuantity(int productId) throws SQLException {
+        String sql = "SELECT QuantityInStock FROM PRODUCT WHERE ProductID = ?";
+        return Retry.idempotent(() -> {
+            try (Connection conn = DatabaseConnector.requireConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, productId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : -1;
+                }
+            }
+        });
+    }
+
+    /** Stock only, by primary key, {@value #IN_LIST_CHUNK} products per query. */
+    @Override
+    public Map<Integer, Integer> findStockQuantities(Collection<Integer> productIds) throws SQLException {
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(productIds));
+        Map<Integer, Integer> stock = new LinkedHashMap<>();
+        for (int from = 0; from < ids.size(); from += IN_LIST_CHUNK) {
+            List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + IN_LIST_CHUNK));
+            int size = paddedSize(chunk.size());
+            String sql = "SELECT ProductID, QuantityInStock FROM PRODUCT WHERE ProductID IN (" + placeholders(size) + ")";
+            stock.putAll(Retry.idempotent(() -> {
+                Map<Integer, Integer> loaded = new LinkedHashMap<>();
+                try (Connection conn = DatabaseConnector.requireConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < size; i++) {
+                        pstmt.setInt(i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            loaded.put(rs.getInt(1), rs.getInt(2));
+                        }
+                    }
+                }
+                return loaded;
+            }));
+        }
+        return stock;
+    }
+
+    /**
+     * Reads the products with their stock in {@code WHERE p.SKU IN (...)} queries of
+     * {@value #IN_LIST_CHUNK} SKUs, so an 800-line basket takes four round trips. SKUs match
+     * as the column compares them, ignoring case. Unlike the single lookups, failures are thrown.
+     */
+    @Override
+    public Map<String, ProductScan> lookupAllForScan(Collection<String> skus, IntUnaryOperator quantityInCart) throws SQLException {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(skus));
+        Map<String, Product> bySku = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int from = 0; from < distinct.size(); from += IN_LIST_CHUNK) {
+            List<String> chunk = distinct.subList(from, Math.min(distinct.size(), from + IN_LIST_CHUNK));
+            for (Product product : withProductType(typeColumn -> findProductsBySku(typeColumn, chunk))) {
+                bySku.put(product.getSku(), product);
+            }
+        }
+        Map<String, ProductScan> scans = new LinkedHashMap<>();
+        for (String sku : distinct) {
+            Product product = bySku.get(sku);
+            if (product != null) {
+                scans.put(sku, new ProductScan(product, product.getQuantityInStock(), quantityInCart.applyAsInt(product.getProductId())));
+            }
+        }
+        return scans;
+    }
+
+    private List<Product> findProductsBySku(boolean typeColumn, List<String> skus) throws SQLException {
+        int size = paddedSize(skus.size());
+        String sql = productSelect(typeColumn) + "WHERE p.SKU IN (" + placeholders(size) + ")";
+        return Retry.idempotent(() -> {
+            List<Product> loaded = new ArrayList<>(skus.size());
+            try (Connection conn = DatabaseConnector.requireConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < size; i++) {
+                    pstmt.setString(i + 1, skus.get(Math.min(i, skus.size() - 1)));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    int[] col = ColumnPlan.indexes(sql, rs, PRODUCT_COLUMNS);
+                    while (rs.next()) {
+                        loaded.add(mapRowToProduct(rs, col));
+                    }
+                }
+            }
+            return loaded;
+        });
+    }
+
+    /**
+     * The products with these IDs, {@value #IN_LIST_CHUNK} per query; IDs that no longer exist
+     * are left out. Failures are thrown.
+     */
+    public List<Product> findProductsByIds(Collection<Integer> productIds) throws SQLException {
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(productIds));
+        List<Product> products = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += IN_LIST_CHUNK) {
+            List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + IN_LIST_CHUNK));
+            int size = paddedSize(chunk.size());
+            List<Object> params = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                params.add(chunk.get(Math.min(i, chunk.size() - 1)));
+            }
+            products.addAll(withProductType(typeColumn -> queryProducts(productSelect(typeColumn)
+                    + "WHERE p.ProductID IN (" + placeholders(size) + ")", params)));
+        }
+        return products;
+    }
+
+    /** Every product ID, read from the primary key alone; lets a catalog copy drop deleted products. */
+    public Set<Integer> findAllProductIds() throws SQLException {
+        String sql = "SELECT ProductID FROM PRODUCT";
+        return Retry.idempotent(() -> {
+            Set<Integer> ids = new HashSet<>();
+            try (Connection conn = DatabaseConnector.requireConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+            return ids;
+        });
+    }
+
+    /** {@code n} rounded up to a power of two, at most {@link #IN_LIST_CHUNK}. */
+    private static int paddedSize(int n) {
+        return n <= 1 ? 1 : Math.min(IN_LIST_CHUNK, Integer.highestOneBit(n - 1) << 1);
+    }
+
+    private static String placeholders(int n) {
+        return String.join(", ", Collections.nCopies(n, "?"));
+    }
+
+    private static final String ALL_PRODUCTS_ORDER = "ORDER BY p.Name";
+
     @Override
     public List<Product> getAllProducts() {
         List<Product> products = new ArrayList<>();
-        String sql = "SELECT p.ProductID, p.SKU, p.Name, p.UnitPrice, p.QuantityInStock, p.CurrentCostPrice, p.ReorderLevel, " +
-                     "pp.ProductID AS PerishableProductID, pp.StorageTempRequirement, " +
-                     "np.ProductID AS NonPerishableProductID " +
-                     "FROM PRODUCT p " +
-                     "LEFT JOIN PERISHABLE_PRODUCT pp ON p.ProductID = pp.ProductID " +
-                     "LEFT JOIN NONPERISHABLE_PRODUCT np ON p.ProductID = np.ProductID " +
-                     "ORDER BY p.Name";
-        Connection conn = DatabaseConnector.getConnection();
-        if (conn == null) {
-            System.err.println("DB Error: No connection for getAllProducts");
-            return products; // Return empty list
-        }
-
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                products.add(mapRowToProduct(rs));
-            }
+        try {
+            return withProductType(typeColumn -> Retry.idempotent(() -> {
+                String sql = productSelect(typeColumn) + ALL_PRODUCTS_ORDER;
+                List<Product> loaded = new ArrayList<>();
+                try (Connection conn = DatabaseConnector.requireConnection();
+                     Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery(sql)) {
+                    int[] col = ColumnPlan.indexes(sql, rs, PRODUCT_COLUMNS);
+                    while (rs.next()) {
+                        loaded.add(mapRowToProduct(rs, col));
+                    }
+                }
+                return loaded;
+            }));
         } catch (SQLException e) {
             System.err.println("Error fetching all products: " + e.getMessage());
             e.printStackTrace();
@@ -96,146 +294,371 @@ public class ProductDAO implements IProductDAO { // IMPLEMENTS IProductDAO
         return products;
     }
 
+    /**
+     * Opens a forward-only cursor over the catalog, ordered by name, mapping each row only when
+     * it is read. The caller must close it, preferably with try-with-resources.
+     */
+    public RowCursor<Product> streamAllProducts() throws SQLException {
+        return streamAllProducts(RowCursor.DEFAULT_FETCH_SIZE);
+    }
+
+    /** @param fetchSize rows fetched from the server per round trip */
+    public RowCursor<Product> streamAllProducts(int fetchSize) throws SQLException {
+        return withProductType(typeColumn -> {
+            String sql = productSelect(typeColumn) + ALL_PRODUCTS_ORDER;
+            return DatabaseConnector.openCursor(sql, null, fetchSize,
+                    ColumnPlan.mapper(sql, PRODUCT_COLUMNS, this::mapRowToProduct));
+        });
+    }
+
     @Override
-    public boolean saveProduct(Product product) {
-        Connection conn = DatabaseConnector.getConnection();
-        if (conn == null) {
-            System.err.println("DB Error: No connection for saveProduct");
-            return false;
+    public void forEachProduct(RowCursor.RowCallback<Product> callback) throws SQLException {
+        try (RowCursor<Product> cursor = streamAllProducts()) {
+            cursor.forEachRow(callback);
         }
+    }
 
-        boolean isNew = product.getProductId() == 0;
-        String productSQL = isNew
-                ? "INSERT INTO PRODUCT (SKU, Name, UnitPrice, QuantityInStock, CurrentCostPrice, ReorderLevel) VALUES (?, ?, ?, ?, ?, ?)"
-                : "UPDATE PRODUCT SET SKU = ?, Name = ?, UnitPrice = ?, CurrentCostPrice = ?, ReorderLevel = ? WHERE ProductID = ?";
+    /**
+     * Reads the page that follows {@code after} in {@code query} order. Pass the last product of
+     * the previous page, or null for the first page.
+     *
+     * The query seeks past (sort value, ProductID) instead of using OFFSET, so reading page
+     * 200 costs no more than reading page 1. When sorting by name, SKU or ID, the server walks
+     * the matching index in order and stops after {@code limit} rows. Quantity and price have
+     * no index, so those sorts first sort the filtered rows.
+     */
+    @Override
+    public List<Product> findProductPage(ProductQuery query, Product after, int limit) throws SQLException {
+        return withProductType(typeColumn -> findProductPage(typeColumn, query, after, limit));
+    }
 
-        String perishableSQL = "INSERT INTO PERISHABLE_PRODUCT (ProductID, StorageTempRequirement) VALUES (?, ?)";
-        String nonPerishableSQL = "INSERT INTO NONPERISHABLE_PRODUCT (ProductID) VALUES (?)";
+    private List<Product> findProductPage(boolean typeColumn, ProductQuery query, Product after, int limit) throws SQLException {
+        StringBuilder sqlBuilder = new StringBuilder(productSelect(typeColumn)).append("WHERE 1=1 ");
+        List<Object> params = new ArrayList<>();
+        appendFilters(query, typeColumn, sqlBuilder, params);
+        if (after != null) {
+            String op = query.isDescending() ? "<" : ">";
+            ProductQuery.SortKey key = query.getSortKey();
+            if (key == ProductQuery.SortKey.ID) {
+                sqlBuilder.append("AND p.ProductID ").append(op).append(" ? ");
+            } else {
+                sqlBuilder.append("AND (").append(key.column).append(' ').append(op).append(" ? OR (")
+                        .append(key.column).append(" = ? AND p.ProductID ").append(op).append(" ?)) ");
+                params.add(key.valueOf(after));
+                params.add(key.valueOf(after));
+            }
+            params.add(after.getProductId());
+        }
+        appendOrderBy(query, sqlBuilder);
+        sqlBuilder.append("LIMIT ?");
+        params.add(limit);
+        return queryProducts(sqlBuilder.toString(), params);
+    }
 
-        try {
-            conn.setAutoCommit(false);
+    /**
+     * Reads {@code limit} products starting at row {@code offset}, for jumping straight into the
+     * middle of the list. The server still steps over the skipped rows, so prefer
+     * {@link #findProductPage(ProductQuery, Product, int)} when the previous page is at hand.
+     */
+    @Override
+    public List<Product> findProductPage(ProductQuery query, int offset, int limit) throws SQLException {
+        return withProductType(typeColumn -> {
+            StringBuilder sqlBuilder = new StringBuilder(productSelect(typeColumn)).append("WHERE 1=1 ");
+            List<Object> params = new ArrayList<>();
+            appendFilters(query, typeColumn, sqlBuilder, params);
+            appendOrderBy(query, sqlBuilder);
+            sqlBuilder.append("LIMIT ? OFFSET ?");
+            params.add(limit);
+            params.add(offset);
+            return queryProducts(sqlBuilder.toString(), params);
+        });
+    }
 
-            int generatedProductId = product.getProductId();
-            try (PreparedStatement pstmtProd = conn.prepareStatement(productSQL, isNew ? Statement.RETURN_GENERATED_KEYS : Statement.NO_GENERATED_KEYS)) {
+    @Override
+    public int countProducts(ProductQuery query) throws SQLException {
+        if (query.getType() == ProductQuery.TypeFilter.ALL) {
+            return countProducts(query, true); // no type column involved
+        }
+        return withProductType(typeColumn -> countProducts(query, typeColumn));
+    }
 
-                pstmtProd.setString(1, product.getSku());
-                pstmtProd.setString(2, product.getName());
-                pstmtProd.setBigDecimal(3, product.getUnitPrice());
+    private int countProducts(ProductQuery query, boolean typeColumn) throws SQLException {
+        StringBuilder sqlBuilder = new StringBuilder("SELECT COUNT(*) FROM PRODUCT p ");
+        if (!typeColumn) {
+            sqlBuilder.append("LEFT JOIN PERISHABLE_PRODUCT pp ON p.ProductID = pp.ProductID ")
+                      .append("LEFT JOIN NONPERISHABLE_PRODUCT np ON p.ProductID = np.ProductID ");
+        }
+        sqlBuilder.append("WHERE 1=1 ");
+        List<Object> params = new ArrayList<>();
+        appendFilters(query, typeColumn, sqlBuilder, params);
+        String sql = sqlBuilder.toString();
+        return Retry.idempotent(() -> {
+            try (Connection conn = DatabaseConnector.requireConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < params.size(); i++) {
+                    pstmt.setObject(i + 1, params.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            }
+        });
+    }
 
-                if (isNew) {
-                    pstmtProd.setInt(4, product.getQuantityInStock());
-                    pstmtProd.setBigDecimal(5, product.getCurrentCostPrice());
-                    pstmtProd.setInt(6, product.getReorderLevel());
-                } else {
-                    pstmtProd.setBigDecimal(4, product.getCurrentCostPrice());
-                    pstmtProd.setInt(5, product.getReorderLevel());
-                    pstmtProd.setInt(6, product.getProductId());
+    /**
+     * Products whose row version is in ({@code afterVersion}, {@code upToVersion}], i.e. changed
+     * by transactions that committed in between; at most {@code limit} rows, oldest change first.
+     * Used by {@link CatalogChangeFeed}; needs migration V4.
+     */
+    public List<Product> findProductsChangedSince(long afterVersion, long upToVersion, int limit) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        params.add(afterVersion);
+        params.add(upToVersion);
+        params.add(limit);
+        return withProductType(typeColumn -> queryProducts(productSelect(typeColumn)
+                + "WHERE p.RowVersion > ? AND p.RowVersion <= ? ORDER BY p.RowVersion LIMIT ?", params));
+    }
+
+    /**
+     * The stock version of each product stamped after {@code afterStockVersion} (see
+     * {@link CatalogVersion}), lowest first, at most {@code limit}; read from the index alone,
+     * so it is cheap to repeat. Used by {@link CatalogChangeFeed}; needs migration V7.
+     */
+    public Map<Integer, Long> findStockVersionsSince(long afterStockVersion, int limit) throws SQLException {
+        String sql = "SELECT ProductID, StockVersion FROM PRODUCT WHERE StockVersion > ? ORDER BY StockVersion LIMIT ?";
+        return Retry.idempotent(() -> {
+            Map<Integer, Long> versions = new LinkedHashMap<>();
+            try (Connection conn = DatabaseConnector.requireConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setLong(1, afterStockVersion);
+                pstmt.setInt(2, limit);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        versions.put(rs.getInt(1), rs.getLong(2));
+                    }
+                }
+            }
+            return versions;
+        });
+    }
+
+    private static void appendFilters(ProductQuery query, boolean typeColumn, StringBuilder sqlBuilder, List<Object> params) {
+        if (!query.getText().isEmpty()) {
+            String pattern = "%" + query.getText().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+            sqlBuilder.append("AND (p.Name LIKE ? OR p.SKU LIKE ?) ");
+            params.add(pattern);
+            params.add(pattern);
+        }
+        if (query.getType() == ProductQuery.TypeFilter.PERISHABLE) {
+            sqlBuilder.append(typeColumn ? "AND p.ProductType = 'P' " : "AND pp.ProductID IS NOT NULL ");
+        } else if (query.getType() == ProductQuery.TypeFilter.NON_PERISHABLE) {
+            sqlBuilder.append(typeColumn ? "AND p.ProductType = 'N' " : "AND np.ProductID IS NOT NULL ");
+        }
+        if (query.isLowStockOnly()) {
+            sqlBuilder.append("AND p.ReorderLevel > 0 AND p.QuantityInStock <= p.ReorderLevel ");
+        }
+    }
+
+    private static void appendOrderBy(ProductQuery query, StringBuilder sqlBuilder) {
+        String direction = query.isDescending() ? " DESC" : "";
+        sqlBuilder.append("ORDER BY ");
+        if (query.getSortKey() != ProductQuery.SortKey.ID) {
+            sqlBuilder.append(query.getSortKey().column).append(direction).append(", ");
+        }
+        sqlBuilder.append("p.ProductID").append(direction).append(' ');
+    }
+
+    private List<Product> queryProducts(String sql, List<Object> params) throws SQLException {
+        return Retry.idempotent(() -> {
+            List<Product> products = new ArrayList<>();
+            try (Connection conn = DatabaseConnector.requireConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < params.size(); i++) {
+                    pstmt.setObject(i + 1, params.get(i));
                 }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    int[] col = ColumnPlan.indexes(sql, rs, PRODUCT_COLUMNS);
+                    while (rs.next()) {
+                        products.add(mapRowToProduct(rs, col));
+                    }
+                }
+            }
+            return products;
+        });
+    }
+
+    @Override
+    public boolean saveProduct(Product product) {
+        return saveProduct(product, 0);
+    }
+
+    /**
+     * Inserts or updates a product. A new product also gets its subtype row, and (since
+     * migration V5) its type and storage requirement on PRODUCT, so it is complete for
+     * single-table reads as soon as it commits. A price change is audited with
+     * {@code changedByUserId} (0 if unknown) since migration V6.
+     */
+    @Override
+    public boolean saveProduct(Product product, int changedByUserId) {
+        boolean isNew = product.getProductId() == 0;
+        String perishableSQL = "INSERT INTO PERISHABLE_PRODUCT (ProductID, StorageTempRequirement) VALUES (?, ?)";
+        String nonPerishableSQL = "INSERT INTO NONPERISHABLE_PRODUCT (ProductID) VALUES (?)";
+        String storageTemp = null;
+        if (product instanceof PerishableProduct) {
+            String requirement = ((PerishableProduct) product).getStorageTempRequirement();
+            storageTemp = requirement != null && !requirement.trim().isEmpty() ? requirement : null;
+        }
+        String productType = product instanceof PerishableProduct ? "P" : product instanceof NonPerishableProduct ? "N" : null;
+        String storageTempRequirement = storageTemp;
 
-                int affectedRows = pstmtProd.executeUpdate();
-                if (affectedRows == 0) {
-                    throw new SQLException("Saving product base failed, no rows affected for SKU: " + product.getSku());
+        try {
+            return withProductType(typeColumn -> Transaction.run(Transaction.Options.RETRYING, tx -> {
+                Connection conn = tx.getConnection();
+                String productSQL;
+                if (!isNew) {
+                    productSQL = "UPDATE PRODUCT SET SKU = ?, Name = ?, UnitPrice = ?, CurrentCostPrice = ?, ReorderLevel = ? WHERE ProductID = ?";
+                } else if (typeColumn) {
+                    productSQL = "INSERT INTO PRODUCT (SKU, Name, UnitPrice, QuantityInStock, CurrentCostPrice, ReorderLevel, ProductType, StorageTempRequirement) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+                } else {
+                    productSQL = "INSERT INTO PRODUCT (SKU, Name, UnitPrice, QuantityInStock, CurrentCostPrice, ReorderLevel) VALUES (?, ?, ?, ?, ?, ?)";
                 }
 
-                if (isNew) {
-                    try (ResultSet generatedKeys = pstmtProd.getGeneratedKeys()) {
-                        if (generatedKeys.next()) {
-                            generatedProductId = generatedKeys.getInt(1);
-                            product.setProductId(generatedProductId);
-                        } else {
-                            throw new SQLException("Creating product failed, no ID obtained for SKU: " + product.getSku());
+                int generatedProductId = product.getProductId();
+                try (PreparedStatement pstmtProd = conn.prepareStatement(productSQL, isNew ? Statement.RETURN_GENERATED_KEYS : Statement.NO_GENERATED_KEYS)) {
+
+                    pstmtProd.setString(1, product.getSku());
+                    pstmtProd.setString(2, product.getName());
+                    pstmtProd.setBigDecimal(3, product.getUnitPrice());
+
+                    if (isNew) {
+                        pstmtProd.setInt(4, product.getQuantityInStock());
+                        pstmtProd.setBigDecimal(5, product.getCurrentCostPrice());
+                        pstmtProd.setInt(6, product.getReorderLevel());
+                        if (typeColumn) {
+                            pstmtProd.setString(7, productType);
+                            pstmtProd.setString(8, storageTempRequirement);
                         }
+                    } else {
+                        pstmtProd.setBigDecimal(4, product.getCurrentCostPrice());
+                        pstmtProd.setInt(5, product.getReorderLevel());
+                        pstmtProd.setInt(6, product.getProductId());
                     }
-                }
-            } 
-
-            if (isNew && generatedProductId > 0) {
-                if (product instanceof PerishableProduct) {
-                    try (PreparedStatement pstmtSub = conn.prepareStatement(perishableSQL)) {
-                        pstmtSub.setInt(1, generatedProductId);
-                        PerishableProduct pp = (PerishableProduct) product;
-                        if (pp.getStorageTempRequirement() != null && !pp.getStorageTempRequirement().trim().isEmpty()) {
-                            pstmtSub.setString(2, pp.getStorageTempRequirement());
-                        } else {
-                            pstmtSub.setNull(2, Types.VARCHAR);
+
+                    int affectedRows = isNew ? pstmtProd.executeUpdate() : updateAsUser(conn, pstmtProd, changedByUserId);
+                    if (affectedRows == 0) {
+                        throw new SQLException("Saving product base failed, no rows affected for SKU: " + product.getSku());
+                    }
+
+                    if (isNew) {
+                        try (ResultSet generatedKeys = pstmtProd.getGeneratedKeys()) {
+                            if (generatedKeys.next()) {
+                                generatedProductId = generatedKeys.getInt(1);
+                                product.setProductId(generatedProductId);
+                            } else {
+                                throw new SQLException("Creating product failed, no ID obtained for SKU: " + product.getSku());
+                            }
                         }
-                        pstmtSub.executeUpdate();
                     }
-                } else if (product instanceof NonPerishableProduct) {
-                    try (PreparedStatement pstmtSub = conn.prepareStatement(nonPerishableSQL)) {
-                        pstmtSub.setInt(1, generatedProductId);
-                        pstmtSub.executeUpdate();
+                } 
+                CatalogVersion.productChanged(generatedProductId);
+
+                if (isNew && generatedProductId > 0) {
+                    if (product instanceof PerishableProduct) {
+                        try (PreparedStatement pstmtSub = conn.prepareStatement(perishableSQL)) {
+                            pstmtSub.setInt(1, generatedProductId);
+                            if (storageTempRequirement != null) {
+                                pstmtSub.setString(2, storageTempRequirement);
+                            } else {
+                                pstmtSub.setNull(2, Types.VARCHAR);
+                            }
+                            pstmtSub.executeUpdate();
+                        }
+                    } else if (product instanceof NonPerishableProduct) {
+                        try (PreparedStatement pstmtSub = conn.prepareStatement(nonPerishableSQL)) {
+                            pstmtSub.setInt(1, generatedProductId);
+                            pstmtSub.executeUpdate();
+                        }
                     }
                 }
-            }
-            conn.commit();
-            return true;
+                return true;
+            }));
 
         } catch (SQLException e) {
             System.err.println("Error saving product (SKU: " + product.getSku() + "): " + e.getMessage());
             if (e.getMessage().toLowerCase().contains("duplicate entry") && e.getMessage().toLowerCase().contains("sku")) {
                  System.err.println("Detail: SKU '" + product.getSku() + "' likely already exists.");
             }
-            try { if (conn != null) conn.rollback(); } catch (SQLException exRollback) {
-                System.err.println("Rollback failed: " + exRollback.getMessage());
+            if (isNew) {
+                product.setProductId(0); // the insert was rolled back
             }
             e.printStackTrace(); 
             return false;
-        } finally {
-            try { if (conn != null) conn.setAutoCommit(true); } catch (SQLException exFinally) {
-                 System.err.println("Error resetting autocommit: " + exFinally.getMessage());
-            }
         }
     }
 
     @Override
-    public boolean updateStockQuantity(int productId, int quantityChange, Connection conn) throws SQLException {
+    public boolean updateStockQuantity(int productId, int quantityChange) throws SQLException {
         String sql = "UPDATE PRODUCT SET QuantityInStock = QuantityInStock + ? WHERE ProductID = ?";
 
-        if (conn == null) {
-            throw new SQLException("Database connection is null in updateStockQuantity.");
-        }
+        return Transaction.run(Transaction.Options.RETRYING, tx -> {
+            Connection conn = tx.getConnection();
 
-        if (quantityChange < 0) {
-            String checkSql = "SELECT QuantityInStock FROM PRODUCT WHERE ProductID = ?";
-            try (PreparedStatement pstmtCheck = conn.prepareStatement(checkSql)) {
-                 pstmtCheck.setInt(1, productId);
-                 try(ResultSet rs = pstmtCheck.executeQuery()) {
-                     if (rs.next()) {
-                         if (rs.getInt("QuantityInStock") < Math.abs(quantityChange)) {
-                             throw new SQLException("Insufficient stock for ProductID " + productId +
-                                                    ". Current: " + rs.getInt("QuantityInStock") +
-                                                    ", Requested Change: " + quantityChange);
+            if (quantityChange < 0) {
+                String checkSql = "SELECT QuantityInStock FROM PRODUCT WHERE ProductID = ?";
+                try (PreparedStatement pstmtCheck = conn.prepareStatement(checkSql)) {
+                     pstmtCheck.setInt(1, productId);
+                     try(ResultSet rs = pstmtCheck.executeQuery()) {
+                         if (rs.next()) {
+                             if (rs.getInt("QuantityInStock") < Math.abs(quantityChange)) {
+                                 throw new SQLException("Insufficient stock for ProductID " + productId +
+                                                        ". Current: " + rs.getInt("QuantityInStock") +
+                                                        ", Requested Change: " + quantityChange);
+                             }
+                         } else {
+                             throw new SQLException("Product not found for stock check, ID: " + productId);
                          }
-                     } else {
-                         throw new SQLException("Product not found for stock check, ID: " + productId);
                      }
-                 }
+                }
             }
-        }
 
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, quantityChange);
-            pstmt.setInt(2, productId);
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows == 0 && quantityChange != 0) {
-                throw new SQLException("Product not found for stock update, ID: " + productId + ". No rows affected.");
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, quantityChange);
+                pstmt.setInt(2, productId);
+                int affectedRows = pstmt.executeUpdate();
+                if (affectedRows == 0 && quantityChange != 0) {
+                    throw new SQLException("Product not found for stock update, ID: " + productId + ". No rows affected.");
+                }
+                if (affectedRows > 0) {
+                    CatalogVersion.stockChanged(productId); // a stock version, so sales do not queue on the counter
+                }
+                return affectedRows > 0 || quantityChange == 0;
+            }
+        });
+    }
+
+    /** Runs the product UPDATE with {@link #USER_VARIABLE} set, so the price audit trigger can record who made it. */
+    private static int updateAsUser(Connection conn, PreparedStatement update, int userId) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET " + USER_VARIABLE + " = " + (userId > 0 ? Integer.toString(userId) : "NULL"));
+            try {
+                return update.executeUpdate();
+            } finally {
+                stmt.execute("SET " + USER_VARIABLE + " = NULL"); // the connection goes back to the pool
             }
-            return affectedRows > 0 || quantityChange == 0;
         }
     }
 
-    private Product mapRowToProduct(ResultSet rs) throws SQLException {
-        int productId = rs.getInt("p.ProductID");
-        String sku = rs.getString("p.SKU");
-        String name = rs.getString("p.Name");
-        BigDecimal unitPrice = rs.getBigDecimal("p.UnitPrice");
-        int quantityInStock = rs.getInt("p.QuantityInStock");
-        BigDecimal currentCostPrice = rs.getBigDecimal("p.CurrentCostPrice");
-        int reorderLevel = rs.getInt("p.ReorderLevel");
+    private Product mapRowToProduct(ResultSet rs, int[] col) throws SQLException {
+        int productId = rs.getInt(col[COL_PRODUCT_ID]);
+        String sku = rs.getString(col[COL_SKU]);
+        String name = rs.getString(col[COL_NAME]);
+        BigDecimal unitPrice = rs.getBigDecimal(col[COL_UNIT_PRICE]);
+        int quantityInStock = rs.getInt(col[COL_QUANTITY]);
+        BigDecimal currentCostPrice = rs.getBigDecimal(col[COL_COST_PRICE]);
+        int reorderLevel = rs.getInt(col[COL_REORDER_LEVEL]);
 
-        if (rs.getObject("PerishableProductID") != null) {
-            String storageTemp = rs.getString("StorageTempRequirement");
+        if (!ColumnPlan.isNull(rs, col[COL_PERISHABLE_ID])) {
+            String storageTemp = rs.getString(col[COL_STORAGE_TEMP]);
             return new PerishableProduct(
                     productId, sku, name, unitPrice, quantityInStock,
                     currentCostPrice, reorderLevel, storageTemp
@@ -247,4 +670,4 @@ public class ProductDAO implements IProductDAO { // IMPLEMENTS IProductDAO
             );
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,695 @@
+package com.smartcashpro.db;
+
+import com.smartcashpro.model.NonPerishableProduct;
+import com.smartcashpro.model.PerishableProduct;
+import com.smartcashpro.model.Product;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adds products in bulk from a CSV file, e.g. a new store's or supplier's catalog.
+ *
+ * The first line names the columns, in any order (case and spaces do not matter):
+ * {@code SKU, Name, UnitPrice} are required; {@code QuantityInStock, CurrentCostPrice,
+ * ReorderLevel} default to 0; {@code Type} is {@code Perishable} or {@code NonPerishable}
+ * (the default); {@code StorageTempRequirement} is only allowed for perishable products.
+ *
+ * The file is streamed in chunks of {@code smartcashpro.import.chunkSize} rows (default 500).
+ * Chunks are parsed and validated on several threads while earlier chunks are written, with
+ * only a few chunks in memory at a time. Each chunk is written in one transaction: one query
+ * to find SKUs that already exist, then JDBC batches into PRODUCT and the subtype tables,
+ * using the generated IDs of the PRODUCT batch. If a batch fails, that chunk is written again
+ * row by row behind savepoints, so a bad row only costs itself. Rows that fail are reported
+ * with their line number; the rest of the file is still imported. Products are only ever
+ * added; a SKU that already exists is reported, not updated. A SKU repeated in the file is
+ * imported from its first row the database accepts. Repeats within the same chunk are
+ * reported as duplicates; later ones find the SKU in the database and are reported as
+ * existing, which keeps memory to the chunks in flight however large the file.
+ */
+public final class ProductImporter {
+
+    /** Told about progress after every chunk, on the importing thread. */
+    @FunctionalInterface
+    public interface Progress {
+        void update(Result soFar);
+    }
+
+    /** A row that was not imported. */
+    public static final class RowError {
+        private final int line;
+        private final String sku;
+        private final String message;
+
+        RowError(int line, String sku, String message) {
+            this.line = line;
+            this.sku = sku;
+            this.message = message;
+        }
+
+        /** Line in the file where the row starts (the header is line 1). */
+        public int getLine() { return line; }
+        public String getSku() { return sku; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return "Line " + line + (sku == null || sku.isEmpty() ? "" : " (" + sku + ")") + ": " + message;
+        }
+    }
+
+    /** Counts and errors of an import, final or so far. */
+    public static final class Result {
+        private final int rowsRead;
+        private final int imported;
+        private final int failed;
+        private final List<RowError> errors;
+        private final long elapsedMs;
+        private final boolean cancelled;
+
+        Result(int rowsRead, int imported, int failed, List<RowError> errors, long elapsedMs, boolean cancelled) {
+            this.rowsRead = rowsRead;
+            this.imported = imported;
+            this.failed = failed;
+            this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
+            this.elapsedMs = elapsedMs;
+            this.cancelled = cancelled;
+        }
+
+        public int getRowsRead() { return rowsRead; }
+        public int getImported() { return imported; }
+        public int getFailed() { return failed; }
+        /** The first {@value ProductImporter#MAX_REPORTED_ERRORS} failed rows; {@link #getFailed()} counts them all. */
+        public List<RowError> getErrors() { return errors; }
+        public long getElapsedMs() { return elapsedMs; }
+        public boolean isCancelled() { return cancelled; }
+
+        public double getRowsPerSecond() {
+            return elapsedMs == 0 ? 0 : rowsRead * 1000.0 / elapsedMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d rows read, %d imported, %d failed in %.1f s (%.0f rows/s)%s",
+                    rowsRead, imported, failed, elapsedMs / 1000.0, getRowsPerSecond(), cancelled ? ", cancelled" : "");
+        }
+    }
+
+    static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int CHUNK_SIZE = Integer.getInteger("smartcashpro.import.chunkSize", 500);
+    private static final int VALIDATION_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    /** Chunks parsed ahead of the writer; with the chunk being written this bounds memory. */
+    private static final int CHUNKS_AHEAD = VALIDATION_THREADS * 2;
+
+    private static final String INSERT_PRODUCT_SQL =
+            "INSERT INTO PRODUCT (SKU, Name, UnitPrice, QuantityInStock, CurrentCostPrice, ReorderLevel) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_PERISHABLE_SQL = "INSERT INTO PERISHABLE_PRODUCT (ProductID, StorageTempRequirement) VALUES (?, ?)";
+    private static final String INSERT_NONPERISHABLE_SQL = "INSERT INTO NONPERISHABLE_PRODUCT (ProductID) VALUES (?)";
+
+    private static final String SKU_EXISTS = "SKU already exists (possibly earlier in this file)";
+
+    private static final int MAX_SKU_LENGTH = 100, MAX_NAME_LENGTH = 150, MAX_STORAGE_TEMP_LENGTH = 100;
+    private static final BigDecimal MAX_PRICE = new BigDecimal("99999999.99"); // DECIMAL(10,2)
+
+    private volatile boolean cancelRequested = false;
+
+    /** Stops the running import after the chunk being written; rows already committed stay. */
+    public void cancel() {
+        cancelRequested = true;
+    }
+
+    public Result importCsv(Path file, Progress progress) throws IOException, SQLException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importCsv(reader, progress);
+        }
+    }
+
+    /**
+     * Imports every row of {@code csv}.
+     *
+     * @throws IllegalArgumentException if the header lacks a required column
+     * @throws SQLException if the database becomes unreachable; chunks committed before stay
+     */
+    public Result importCsv(Reader csv, Progress progress) throws IOException, SQLException {
+        long start = System.currentTimeMillis();
+        CsvReader reader = new CsvReader(csv);
+        Columns columns = new Columns(reader.next());
+        Counts counts = new Counts();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService validators = Executors.newFixedThreadPool(VALIDATION_THREADS, r -> {
+            Thread t = new Thread(r, "product-import-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        ArrayDeque<Future<List<Row>>> ahead = new ArrayDeque<>();
+        try {
+            boolean more = true;
+            while ((more || !ahead.isEmpty()) && !cancelRequested) {
+                while (more && ahead.size() < CHUNKS_AHEAD) {
+                    List<Row> chunk = reader.nextChunk(CHUNK_SIZE);
+                    if (chunk.isEmpty()) {
+                        more = false;
+                    } else {
+                        ahead.add(validators.submit(() -> validate(chunk, columns)));
+                    }
+                }
+                if (!ahead.isEmpty()) {
+                    writeChunk(await(ahead.poll()), counts);
+                    if (progress != null) {
+                        progress.update(counts.snapshot(start, false));
+                    }
+                }
+            }
+        } finally {
+            validators.shutdownNow();
+            if (counts.imported > 0) {
+                CatalogVersion.catalogChanged(); // once for the whole file, not per product
+            }
+        }
+        Result result = counts.snapshot(start, cancelRequested);
+        System.out.println("Product import: " + result);
+        return result;
+    }
+
+    private static List<Row> await(Future<List<Row>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not validate rows: " + e.getCause(), e.getCause());
+        }
+    }
+
+    /** Turns each row into a product, or records why it cannot be one. Runs on the validation threads. */
+    private static List<Row> validate(List<Row> chunk, Columns columns) {
+        for (Row row : chunk) {
+            try {
+                row.product = columns.toProduct(row.fields);
+            } catch (IllegalArgumentException e) {
+                row.error = e.getMessage();
+            }
+            row.fields = null; // no longer needed
+        }
+        return chunk;
+    }
+
+    private void writeChunk(List<Row> chunk, Counts counts) throws SQLException {
+        List<Row> rows = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            counts.rowsRead++;
+            if (row.error != null) {
+                counts.fail(row, row.error);
+            } else {
+                rows.add(row);
+            }
+        }
+        // The first row of each SKU is written; a repeat is only tried if the rows before it all failed.
+        while (!rows.isEmpty()) {
+            Map<String, Row> firstBySku = new LinkedHashMap<>();
+            List<Row> repeats = new ArrayList<>();
+            for (Row row : rows) {
+                if (firstBySku.putIfAbsent(skuKey(row.product.getSku()), row) != null) {
+                    repeats.add(row);
+                }
+            }
+            Set<Row> inserted = new HashSet<>(writeRows(new ArrayList<>(firstBySku.values()), counts));
+            rows = new ArrayList<>();
+            for (Row row : repeats) {
+                Row first = firstBySku.get(skuKey(row.product.getSku()));
+                if (inserted.contains(first)) {
+                    counts.fail(row, "SKU appears more than once in the file (imported from line " + first.line + ")");
+                } else {
+                    rows.add(row);
+                }
+            }
+        }
+    }
+
+    /** Writes rows with distinct SKUs in one transaction, or row by row if that fails; returns those inserted. */
+    private List<Row> writeRows(List<Row> valid, Counts counts) throws SQLException {
+        List<Row> inserted;
+        List<Row> existing = new ArrayList<>();
+        try {
+            inserted = Transaction.run(Transaction.Options.RETRYING, tx -> {
+                existing.clear(); // in case the transaction is run again
+                List<Row> fresh = dropExistingSkus(tx.getConnection(), valid, existing);
+                insertRows(tx.getConnection(), fresh);
+                return fresh;
+            });
+            for (Row row : existing) {
+                counts.fail(row, SKU_EXISTS);
+            }
+        } catch (SQLException e) {
+            if (e instanceof CircuitOpenException || SqlErrors.isConnectionFailure(e) || SqlErrors.isTransient(e)) {
+                throw e; // the database is the problem, not the rows
+            }
+            System.err.println("Product import: batch for lines " + valid.get(0).line + "-"
+                    + valid.get(valid.size() - 1).line + " failed (" + e.getMessage() + "); retrying row by row.");
+            inserted = insertRowByRow(valid, counts);
+        }
+        counts.imported += inserted.size();
+        return inserted;
+    }
+
+    /** Rows whose SKU is not in the database yet; the others are added to {@code existingOut}. */
+    private static List<Row> dropExistingSkus(Connection conn, List<Row> rows, List<Row> existingOut) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT SKU FROM PRODUCT WHERE SKU IN (");
+        for (int i = 0; i < rows.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
+        Set<String> existing = new HashSet<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < rows.size(); i++) {
+                pstmt.setString(i + 1, rows.get(i).product.getSku());
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    existing.add(skuKey(rs.getString(1)));
+                }
+            }
+        }
+        if (existing.isEmpty()) {
+            return rows;
+        }
+        List<Row> fresh = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            if (existing.contains(skuKey(row.product.getSku()))) {
+                existingOut.add(row);
+            } else {
+                fresh.add(row);
+            }
+        }
+        return fresh;
+    }
+
+    /** Inserts the rows with one batch per table; sets each product's generated ID. */
+    private static void insertRows(Connection conn, List<Row> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(INSERT_PRODUCT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            for (Row row : rows) {
+                Product p = row.product;
+                pstmt.setString(1, p.getSku());
+                pstmt.setString(2, p.getName());
+                pstmt.setBigDecimal(3, p.getUnitPrice());
+                pstmt.setInt(4, p.getQuantityInStock());
+                pstmt.setBigDecimal(5, p.getCurrentCostPrice());
+                pstmt.setInt(6, p.getReorderLevel());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            List<Integer> keys = new ArrayList<>(rows.size());
+            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                while (generatedKeys.next()) {
+                    keys.add(generatedKeys.getInt(1));
+                }
+            }
+            if (keys.size() == rows.size()) {
+                for (int i = 0; i < rows.size(); i++) {
+                    rows.get(i).product.setProductId(keys.get(i));
+                }
+            } else {
+                resolveIdsBySku(conn, rows); // the driver did not hand back one key per row
+            }
+        }
+
+        try (PreparedStatement perishable = conn.prepareStatement(INSERT_PERISHABLE_SQL);
+             PreparedStatement nonPerishable = conn.prepareStatement(INSERT_NONPERISHABLE_SQL)) {
+            int perishableCount = 0, nonPerishableCount = 0;
+            for (Row row : rows) {
+                if (row.product instanceof PerishableProduct) {
+                    String temp = ((PerishableProduct) row.product).getStorageTempRequirement();
+                    perishable.setInt(1, row.product.getProductId());
+                    if (temp != null && !temp.isEmpty()) {
+                        perishable.setString(2, temp);
+                    } else {
+                        perishable.setNull(2, Types.VARCHAR);
+                    }
+                    perishable.addBatch();
+                    perishableCount++;
+                } else {
+                    nonPerishable.setInt(1, row.product.getProductId());
+                    nonPerishable.addBatch();
+                    nonPerishableCount++;
+                }
+            }
+            if (perishableCount > 0) {
+                perishable.executeBatch();
+            }
+            if (nonPerishableCount > 0) {
+                nonPerishable.executeBatch();
+            }
+        }
+        List<Integer> ids = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            ids.add(row.product.getProductId());
+        }
+        CatalogVersion.productsWritten(ids); // for other tills' change feeds; this till hears once at the end
+    }
+
+    private static void resolveIdsBySku(Connection conn, List<Row> rows) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT ProductID, SKU FROM PRODUCT WHERE SKU IN (");
+        for (int i = 0; i < rows.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
+        Map<String, Integer> ids = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < rows.size(); i++) {
+                pstmt.setString(i + 1, rows.get(i).product.getSku());
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.put(skuKey(rs.getString(2)), rs.getInt(1));
+                }
+            }
+        }
+        for (Row row : rows) {
+            Integer id = ids.get(skuKey(row.product.getSku()));
+            if (id == null) {
+                throw new SQLException("Imported product not found again by SKU: " + row.product.getSku());
+            }
+            row.product.setProductId(id);
+        }
+    }
+
+    /** Slow path after a failed batch: one transaction, each row behind its own savepoint. */
+    private static List<Row> insertRowByRow(List<Row> rows, Counts counts) throws SQLException {
+        List<RowError> failures = new ArrayList<>();
+        List<Row> existing = new ArrayList<>();
+        List<Row> inserted = Transaction.run(tx -> {
+            failures.clear(); // in case the transaction is run again
+            existing.clear();
+            List<Row> ok = new ArrayList<>();
+            for (Row row : dropExistingSkus(tx.getConnection(), rows, existing)) {
+                try {
+                    tx.savepoint(t -> {
+                        insertRows(t.getConnection(), Collections.singletonList(row));
+                        return null;
+                    });
+                    ok.add(row);
+                } catch (SQLException e) {
+                    failures.add(new RowError(row.line, row.product.getSku(), e.getMessage()));
+                }
+            }
+            return ok;
+        });
+        for (Row row : existing) {
+            counts.fail(row, SKU_EXISTS);
+        }
+        for (RowError failure : failures) {
+            counts.fail(failure);
+        }
+        return inserted;
+    }
+
+    /** SKUs are compared the way the database's case-insensitive collation does. */
+    private static String skuKey(String sku) {
+        return sku.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Row {
+        final int line;
+        List<String> fields;
+        Product product;
+        String error;
+
+        Row(int line, List<String> fields) {
+            this.line = line;
+            this.fields = fields;
+        }
+
+        String sku() {
+            return product != null ? product.getSku() : null;
+        }
+    }
+
+    /** Running totals; only touched by the importing thread. */
+    private static final class Counts {
+        int rowsRead, imported, failed;
+        final List<RowError> errors = new ArrayList<>();
+
+        void fail(Row row, String message) {
+            fail(new RowError(row.line, row.sku(), message));
+        }
+
+        void fail(RowError error) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(error);
+            }
+        }
+
+        Result snapshot(long start, boolean cancelled) {
+            return new Result(rowsRead, imported, failed, errors, System.currentTimeMillis() - start, cancelled);
+        }
+    }
+
+    /** Column positions from the header line, and the per-row conversion to a product. */
+    private static final class Columns {
+        final int sku, name, unitPrice, quantity, costPrice, reorderLevel, type, storageTemp;
+
+        Columns(List<String> header) {
+            if (header == null) {
+                throw new IllegalArgumentException("The file is empty.");
+            }
+            Map<String, Integer> byName = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                byName.putIfAbsent(header.get(i).replaceAll("[^A-Za-z]", "").toLowerCase(Locale.ROOT), i);
+            }
+            sku = find(byName, "sku");
+            name = find(byName, "name", "productname");
+            unitPrice = find(byName, "unitprice", "price");
+            quantity = find(byName, "quantityinstock", "quantity", "qty");
+            costPrice = find(byName, "currentcostprice", "costprice", "cost");
+            reorderLevel = find(byName, "reorderlevel", "reorder");
+            type = find(byName, "type", "producttype");
+            storageTemp = find(byName, "storagetemprequirement", "storagetemp", "storagetemperature");
+            if (sku < 0 || name < 0 || unitPrice < 0) {
+                throw new IllegalArgumentException("The first line must name the columns and include SKU, Name and UnitPrice.");
+            }
+        }
+
+        private static int find(Map<String, Integer> byName, String... names) {
+            for (String n : names) {
+                Integer index = byName.get(n);
+                if (index != null) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        Product toProduct(List<String> f) {
+            String skuValue = text(f, sku);
+            String nameValue = text(f, name);
+            if (skuValue.isEmpty()) {
+                throw new IllegalArgumentException("SKU is empty");
+            }
+            if (skuValue.length() > MAX_SKU_LENGTH) {
+                throw new IllegalArgumentException("SKU is longer than " + MAX_SKU_LENGTH + " characters");
+            }
+            if (nameValue.isEmpty()) {
+                throw new IllegalArgumentException("Name is empty");
+            }
+            if (nameValue.length() > MAX_NAME_LENGTH) {
+                throw new IllegalArgumentException("Name is longer than " + MAX_NAME_LENGTH + " characters");
+            }
+            BigDecimal price = money(f, unitPrice, "UnitPrice", null);
+            BigDecimal cost = money(f, costPrice, "CurrentCostPrice", BigDecimal.ZERO.setScale(2));
+            int qty = count(f, quantity, "QuantityInStock");
+            int reorder = count(f, reorderLevel, "ReorderLevel");
+            String typeValue = text(f, type).replaceAll("[^A-Za-z]", "").toLowerCase(Locale.ROOT);
+            String temp = text(f, storageTemp);
+            if (typeValue.equals("perishable")) {
+                if (temp.length() > MAX_STORAGE_TEMP_LENGTH) {
+                    throw new IllegalArgumentException("StorageTempRequirement is longer than " + MAX_STORAGE_TEMP_LENGTH + " characters");
+                }
+                return new PerishableProduct(skuValue, nameValue, price, qty, cost, reorder, temp.isEmpty() ? null : temp);
+            }
+            if (!typeValue.isEmpty() && !typeValue.equals("nonperishable")) {
+                throw new IllegalArgumentException("Type must be Perishable or NonPerishable, not '" + text(f, type) + "'");
+            }
+            if (!temp.isEmpty()) {
+                throw new IllegalArgumentException("StorageTempRequirement is only allowed for perishable products");
+            }
+            return new NonPerishableProduct(skuValue, nameValue, price, qty, cost, reorder);
+        }
+
+        private static String text(List<String> f, int index) {
+            return index >= 0 && index < f.size() ? f.get(index).trim() : "";
+        }
+
+        private static BigDecimal money(List<String> f, int index, String column, BigDecimal defaultValue) {
+            String value = text(f, index);
+            if (value.isEmpty()) {
+                if (defaultValue == null) {
+                    throw new IllegalArgumentException(column + " is empty");
+                }
+                return defaultValue;
+            }
+            BigDecimal amount;
+            try {
+                amount = new BigDecimal(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(column + " is not a number: '" + value + "'");
+            }
+            if (amount.signum() < 0 || amount.compareTo(MAX_PRICE) > 0) {
+                throw new IllegalArgumentException(column + " must be between 0 and " + MAX_PRICE);
+            }
+            if (amount.stripTrailingZeros().scale() > 2) {
+                throw new IllegalArgumentException(column + " has more than 2 decimal places: '" + value + "'");
+            }
+            return amount.setScale(2);
+        }
+
+        private static int count(List<String> f, int index, String column) {
+            String value = text(f, index);
+            if (value.isEmpty()) {
+                return 0;
+            }
+            try {
+                int n = Integer.parseInt(value);
+                if (n < 0) {
+                    throw new IllegalArgumentException(column + " cannot be negative");
+                }
+                return n;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(column + " is not a whole number: '" + value + "'");
+            }
+        }
+    }
+
+    /**
+     * Minimal RFC 4180 reader: comma separated, fields may be quoted with {@code "}, a quote
+     * inside a quoted field is doubled, and quoted fields may span lines.
+     */
+    static final class CsvReader {
+        private final Reader in;
+        private int line = 1; // line of the next character
+        private int pending = -2; // one character of look-ahead; -2 means none
+
+        CsvReader(Reader in) {
+            this.in = in;
+        }
+
+        /** The next chunk of non-blank records, each with the line it starts on. */
+        List<Row> nextChunk(int size) throws IOException {
+            List<Row> rows = new ArrayList<>(size);
+            while (rows.size() < size) {
+                int startLine = line;
+                List<String> fields = next();
+                if (fields == null) {
+                    break;
+                }
+                if (fields.size() == 1 && fields.get(0).trim().isEmpty()) {
+                    continue; // blank line
+                }
+                rows.add(new Row(startLine, fields));
+            }
+            return rows;
+        }
+
+        /** The fields of the next record, or null at the end of the input. */
+        List<String> next() throws IOException {
+            int ch = read();
+            if (ch == -1) {
+                return null;
+            }
+            if (ch == '\uFEFF' && line == 1) {
+                ch = read(); // byte order mark
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (ch == -1) {
+                        throw new IOException("Unterminated quoted field at line " + line);
+                    }
+                    if (ch == '"') {
+                        int nextCh = read();
+                        if (nextCh == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            ch = nextCh;
+                            continue;
+                        }
+                    } else {
+                        field.append((char) ch);
+                    }
+                } else if (ch == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (ch == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (ch == '\r' || ch == '\n' || ch == -1) {
+                    if (ch == '\r') {
+                        int nextCh = read();
+                        if (nextCh != '\n') {
+                            unread(nextCh);
+                        }
+                    }
+                    fields.add(field.toString());
+                    return fields;
+                } else {
+                    field.append((char) ch);
+                }
+                ch = read();
+            }
+        }
+
+        private int read() throws IOException {
+            int ch;
+            if (pending != -2) {
+                ch = pending;
+                pending = -2;
+            } else {
+                ch = in.read();
+            }
+            if (ch == '\n') {
+                line++;
+            }
+            return ch;
+        }
+
+        private void unread(int ch) {
+            if (ch == '\n') {
+                line--;
+            }
+            pending = ch;
+        }
+    }
+}
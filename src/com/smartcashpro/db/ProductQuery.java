@@ -0,0 +1,86 @@
+package com.smartcashpro.db;
+
+import com.smartcashpro.model.Product;
+
+/**
+ * Filters and sort order for a paged product list ({@link IProductDAO#findProductPage}).
+ *
+ * Immutable; the {@code with...} methods return a changed copy. Rows with equal sort values
+ * are ordered by ProductID, so every row has a unique position and pages never overlap.
+ */
+public final class ProductQuery {
+
+    public enum SortKey {
+        ID("p.ProductID"),
+        SKU("p.SKU"),
+        NAME("p.Name"),
+        QUANTITY("p.QuantityInStock"),
+        UNIT_PRICE("p.UnitPrice");
+
+        final String column;
+
+        SortKey(String column) {
+            this.column = column;
+        }
+
+        /** The value of this column for a row already read, to continue after it. */
+        Object valueOf(Product product) {
+            switch (this) {
+                case SKU: return product.getSku();
+                case NAME: return product.getName();
+                case QUANTITY: return product.getQuantityInStock();
+                case UNIT_PRICE: return product.getUnitPrice();
+                default: return product.getProductId();
+            }
+        }
+    }
+
+    public enum TypeFilter { ALL, PERISHABLE, NON_PERISHABLE }
+
+    /** Every product, by name. */
+    public static final ProductQuery ALL = new ProductQuery(SortKey.NAME, false, "", TypeFilter.ALL, false);
+
+    private final SortKey sortKey;
+    private final boolean descending;
+    private final String text;
+    private final TypeFilter type;
+    private final boolean lowStockOnly;
+
+    private ProductQuery(SortKey sortKey, boolean descending, String text, TypeFilter type, boolean lowStockOnly) {
+        this.sortKey = sortKey;
+        this.descending = descending;
+        this.text = text;
+        this.type = type;
+        this.lowStockOnly = lowStockOnly;
+    }
+
+    public SortKey getSortKey() { return sortKey; }
+    public boolean isDescending() { return descending; }
+    /** Part of the name or SKU to look for; empty for no text filter. */
+    public String getText() { return text; }
+    public TypeFilter getType() { return type; }
+    /** Only products at or below their (non-zero) reorder level. */
+    public boolean isLowStockOnly() { return lowStockOnly; }
+
+    public ProductQuery withSort(SortKey sortKey, boolean descending) {
+        return new ProductQuery(sortKey, descending, text, type, lowStockOnly);
+    }
+
+    public ProductQuery withText(String text) {
+        return new ProductQuery(sortKey, descending, text == null ? "" : text.trim(), type, lowStockOnly);
+    }
+
+    public ProductQuery withType(TypeFilter type) {
+        return new ProductQuery(sortKey, descending, text, type, lowStockOnly);
+    }
+
+    public ProductQuery withLowStockOnly(boolean lowStockOnly) {
+        return new ProductQuery(sortKey, descending, text, type, lowStockOnly);
+    }
+
+    @Override
+    public String toString() {
+        return "ProductQuery[sort=" + sortKey + (descending ? " desc" : "") + ", text='" + text
+                + "', type=" + type + ", lowStockOnly=" + lowStockOnly + "]";
+    }
+}
@@ -0,0 +1,619 @@
+package com.smartcashpro.db;
+
+import com.smartcashpro.model.Product;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory search over product names and SKUs, for typeahead fields.
+ *
+ * Every word of a name, the whole SKU and every word of the SKU go into a prefix trie, and
+ * every run of three characters into a trigram index, so "choc" and "late" both find
+ * "Chocolate Bar". Matches are ranked: exact SKU, SKU prefix, name prefix, every query word a
+ * word prefix, then substring matches; ties go to the shorter name. A search does not touch
+ * the database. One- and two-letter queries rank at most {@value #MAX_CANDIDATES} candidates;
+ * longer ones are exact, but skip candidates that cannot beat the worst match kept, and the
+ * substring phase (whose postings are ordered by name length) stops once names get too long.
+ *
+ * The index is built from the catalog on a background thread and follows
+ * {@link CachedProductDAO}, product by product: changes committed on this till and those the
+ * {@link CatalogChangeFeed} reads from other tills both name the products, which are re-read
+ * from the cache. Only when the cache drops everything (after a gap too large for the feed,
+ * or an explicit invalidation) is the index rebuilt, at most every
+ * {@code smartcashpro.searchIndex.rebuildIntervalMs} (default 60000).
+ */
+public final class ProductSearchIndex {
+
+    private static final int MAX_CANDIDATES = 2000;
+    private static final long REBUILD_INTERVAL_MS = Long.getLong("smartcashpro.searchIndex.rebuildIntervalMs", 60_000);
+    /** How long to wait before trying again after the first build failed. */
+    private static final long RETRY_AFTER_MS = 30_000;
+
+    private static final int RANK_SKU_EXACT = 0, RANK_SKU_PREFIX = 1, RANK_NAME_PREFIX = 2,
+            RANK_WORD_PREFIX = 3, RANK_SUBSTRING = 4;
+
+    private static ProductSearchIndex instance;
+
+    private final IProductDAO source;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Contents contents = new Contents(); // replaced whole on rebuild, changed in place otherwise
+    private volatile boolean loaded = false;
+    private final Object searchLock = new Object();
+    private int searchStamp = 0; // guarded by searchLock
+
+    /** Updates are applied one at a time on this thread, so a rebuild never races a refresh. */
+    private final ScheduledExecutorService updater = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "product-search-index");
+        t.setDaemon(true);
+        return t;
+    });
+    // Guarded by this.
+    private final Set<Integer> pendingIds = new HashSet<>();
+    private boolean rebuildRequested = false;
+    private boolean forceRebuild = false;
+    private boolean drainScheduled = false;
+    private long lastBuildAttemptAt = 0;
+    private CompletableFuture<Void> nextBuild;
+
+    ProductSearchIndex(IProductDAO source) {
+        this.source = source;
+    }
+
+    /** The index shared by all screens, following the shared catalog cache. */
+    public static synchronized ProductSearchIndex getInstance() {
+        if (instance == null) {
+            CachedProductDAO cache = CachedProductDAO.getInstance();
+            instance = new ProductSearchIndex(cache);
+            cache.addInvalidationListener(instance::catalogChanged);
+        }
+        return instance;
+    }
+
+    /**
+     * The best {@code limit} matches for {@code query}, best first; each is a copy the caller
+     * may keep. Empty until the first build has finished (which this starts if needed).
+     */
+    public List<Product> search(String query, int limit) {
+        ensureLoaded();
+        String q = normalize(query);
+        if (q.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        String[] words = q.split(" ");
+        String anchor = words[0];
+        for (String word : words) {
+            if (word.length() > anchor.length()) {
+                anchor = word; // the longest word has the fewest prefix matches
+            }
+        }
+        lock.readLock().lock();
+        try {
+            synchronized (searchLock) { // one search at a time, as they mark the entries they have seen
+                Contents c = contents;
+                TopMatches top = new TopMatches(q, words, limit, ++searchStamp);
+                c.collectPrefixMatches(anchor, top);
+                // Every match ranked above a substring match has a key starting with the anchor,
+                // so only substring matches are left, and a list already full of better ones is final.
+                if (q.length() >= 3 && top.accepts(RANK_SUBSTRING)) {
+                    c.collectSubstringMatches(q, top);
+                }
+                return top.toProducts();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Starts building the index if it has not been built yet; does not wait. */
+    public void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!rebuildRequested) {
+                    rebuildRequested = true;
+                    scheduleDrain(0);
+                }
+            }
+        }
+    }
+
+    /** Rebuilds from the catalog now; the future completes when the build has finished or failed. */
+    public synchronized CompletableFuture<Void> rebuild() {
+        if (nextBuild == null) {
+            nextBuild = new CompletableFuture<>();
+        }
+        CompletableFuture<Void> build = nextBuild;
+        rebuildRequested = true;
+        forceRebuild = true;
+        scheduleDrain(0);
+        return build;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return contents.byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Adds or replaces one product. */
+    void put(Product product) {
+        lock.writeLock().lock();
+        try {
+            contents.add(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(int productId) {
+        lock.writeLock().lock();
+        try {
+            contents.remove(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Replaces the whole index with {@code products}. */
+    void replaceAll(Iterable<Product> products) {
+        Contents fresh = new Contents();
+        for (Product product : products) {
+            fresh.add(CachedProductDAO.copyOf(product));
+        }
+        swap(fresh);
+    }
+
+    private void swap(Contents fresh) {
+        lock.writeLock().lock();
+        try {
+            contents = fresh;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        loaded = true;
+    }
+
+    private void catalogChanged(Set<Integer> productIds, long newVersion) {
+        synchronized (this) {
+            if (productIds.isEmpty()) {
+                rebuildRequested = true;
+            } else {
+                pendingIds.addAll(productIds);
+            }
+            scheduleDrain(0);
+        }
+    }
+
+    /** Caller holds the lock on this. */
+    private void scheduleDrain(long delayMs) {
+        if (!drainScheduled) {
+            drainScheduled = true;
+            updater.schedule(this::drain, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Applies everything requested so far: a rebuild if one is due, else the single-product refreshes. */
+    private void drain() {
+        Set<Integer> ids;
+        CompletableFuture<Void> build = null;
+        synchronized (this) {
+            drainScheduled = false;
+            ids = new HashSet<>(pendingIds);
+            pendingIds.clear();
+            if (rebuildRequested) {
+                long now = System.currentTimeMillis();
+                long due = lastBuildAttemptAt + (loaded ? REBUILD_INTERVAL_MS : RETRY_AFTER_MS);
+                if (forceRebuild || now >= due) {
+                    build = nextBuild != null ? nextBuild : new CompletableFuture<>();
+                    nextBuild = null;
+                    rebuildRequested = false;
+                    forceRebuild = false;
+                    lastBuildAttemptAt = now;
+                } else {
+                    scheduleDrain(due - now);
+                }
+            }
+        }
+        if (build != null) {
+            buildFromCatalog(build); // also covers the products in ids
+        } else {
+            for (Integer id : ids) {
+                refresh(id);
+            }
+        }
+    }
+
+    private void buildFromCatalog(CompletableFuture<Void> done) {
+        StartupTimeline.Phase phase = loaded ? null : StartupTimeline.begin("search index build");
+        try {
+            Contents fresh = new Contents();
+            source.forEachProduct(product -> fresh.add(CachedProductDAO.copyOf(product)));
+            swap(fresh);
+            done.complete(null);
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Could not build the product search index: " + e.getMessage());
+            done.completeExceptionally(e);
+        } finally {
+            if (phase != null) {
+                phase.close();
+            }
+        }
+    }
+
+    private void refresh(int productId) {
+        try {
+            Product product = source.findProductById(productId);
+            if (product != null) {
+                put(product);
+            } else if (DatabaseConnector.isAvailable()) { // a failed lookup also returns null
+                remove(productId);
+            }
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Could not refresh product " + productId + " in the search index: " + e.getMessage());
+        }
+    }
+
+    /** Lower case, with every run of other characters than letters and digits turned into one space. */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (Character.isLetterOrDigit(ch)) {
+                if (space && sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(Character.toLowerCase(ch));
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    /** The entry's rank for the query, or -1 if it does not match or would rank below {@code worstWanted}. */
+    private static int rank(Entry entry, String q, String[] words, int worstWanted) {
+        if (worstWanted >= RANK_SKU_EXACT && entry.sku.equals(q)) {
+            return RANK_SKU_EXACT;
+        }
+        if (worstWanted >= RANK_SKU_PREFIX && entry.sku.startsWith(q)) {
+            return RANK_SKU_PREFIX;
+        }
+        if (worstWanted >= RANK_NAME_PREFIX && entry.name.startsWith(q)) {
+            return RANK_NAME_PREFIX;
+        }
+        if (worstWanted >= RANK_WORD_PREFIX && entry.hasWordPrefixes(words)) {
+            return RANK_WORD_PREFIX;
+        }
+        if (worstWanted >= RANK_SUBSTRING && (entry.name.contains(q) || entry.sku.contains(q))) {
+            return RANK_SUBSTRING;
+        }
+        return -1;
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    /** One indexed product with its normalized text. */
+    private static final class Entry {
+        final Product product;
+        final String name;
+        final String sku;
+        /** Trie keys: each name word, the SKU and each word of the SKU. */
+        final String[] keys;
+        final long[] trigrams;
+        /** The last search that looked at this entry; see {@link TopMatches}. */
+        int stamp;
+
+        Entry(Product product) {
+            this.product = product;
+            this.name = normalize(product.getName());
+            this.sku = normalize(product.getSku());
+            Set<String> keySet = new LinkedHashSet<>();
+            for (String word : name.split(" ")) {
+                if (!word.isEmpty()) {
+                    keySet.add(word);
+                }
+            }
+            if (!sku.isEmpty()) {
+                keySet.add(sku);
+                Collections.addAll(keySet, sku.split(" "));
+            }
+            this.keys = keySet.toArray(new String[0]);
+            Set<Long> grams = new HashSet<>();
+            for (String text : new String[]{name, sku}) {
+                for (int i = 0; i + 3 <= text.length(); i++) {
+                    grams.add(trigram(text, i));
+                }
+            }
+            this.trigrams = new long[grams.size()];
+            int i = 0;
+            for (Long gram : grams) {
+                trigrams[i++] = gram;
+            }
+        }
+
+        boolean hasWordPrefixes(String[] words) {
+            for (String word : words) {
+                boolean found = false;
+                for (String key : keys) {
+                    if (key.startsWith(word)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The best matches seen so far, kept in a heap of at most {@code limit} so that ranking
+     * thousands of candidates needs no sort. Each entry is ranked once per search.
+     */
+    private static final class TopMatches {
+        private static final Comparator<Match> BEST_FIRST = Comparator.<Match>comparingInt(m -> m.rank)
+                .thenComparingInt(m -> m.entry.name.length())
+                .thenComparing(m -> m.entry.name)
+                .thenComparingInt(m -> m.entry.product.getProductId());
+
+        private final String q;
+        private final String[] words;
+        private final int limit;
+        private final int stamp;
+        private final PriorityQueue<Match> heap; // worst match on top
+        /** Only one- and two-letter queries stop at {@value #MAX_CANDIDATES}; longer ones rank every match. */
+        private final boolean capped;
+        private int seen = 0;
+
+        TopMatches(String q, String[] words, int limit, int stamp) {
+            this.q = q;
+            this.words = words;
+            this.limit = limit;
+            this.stamp = stamp;
+            this.heap = new PriorityQueue<>(limit + 1, BEST_FIRST.reversed());
+            this.capped = q.length() < 3;
+        }
+
+        void offer(Entry entry) {
+            if (entry.stamp == stamp) {
+                return; // reached through another of its keys
+            }
+            entry.stamp = stamp;
+            seen++;
+            Match worst = heap.peek();
+            int worstWanted = RANK_SUBSTRING;
+            if (heap.size() == limit) { // only a better rank, or the same with a name no longer, can get in
+                worstWanted = entry.name.length() > worst.entry.name.length() ? worst.rank - 1 : worst.rank;
+            }
+            int rank = rank(entry, q, words, worstWanted);
+            if (rank < 0) {
+                return;
+            }
+            if (heap.size() < limit) {
+                heap.add(new Match(entry, rank));
+            } else if (rank < worst.rank || (rank == worst.rank && BEST_FIRST.compare(new Match(entry, rank), worst) < 0)) {
+                heap.poll();
+                heap.add(new Match(entry, rank));
+            }
+        }
+
+        boolean isFull() {
+            return capped && seen >= MAX_CANDIDATES;
+        }
+
+        /** Whether the list is full and its worst match has a shorter name than {@code entry}. */
+        boolean rejectsLongerThan(Entry entry) {
+            return heap.size() == limit && entry.name.length() > heap.peek().entry.name.length();
+        }
+
+        /** Whether a match of this rank could still make the list. */
+        boolean accepts(int rank) {
+            return heap.size() < limit || heap.peek().rank >= rank;
+        }
+
+        List<Product> toProducts() {
+            List<Match> matches = new ArrayList<>(heap);
+            matches.sort(BEST_FIRST);
+            List<Product> result = new ArrayList<>(matches.size());
+            for (Match match : matches) {
+                result.add(CachedProductDAO.copyOf(match.entry.product));
+            }
+            return result;
+        }
+    }
+
+    private static final class Match {
+        final Entry entry;
+        final int rank;
+
+        Match(Entry entry, int rank) {
+            this.entry = entry;
+            this.rank = rank;
+        }
+    }
+
+    /** Shortest name first, so a substring search can stop once the names get too long. */
+    private static final Comparator<Entry> BY_NAME_LENGTH = Comparator.<Entry>comparingInt(e -> e.name.length())
+            .thenComparingInt(e -> e.product.getProductId());
+
+    /** The trie, trigram postings and entries; guarded by the index's lock. */
+    private static final class Contents {
+        final Map<Integer, Entry> byId = new HashMap<>();
+        final TrieNode root = new TrieNode();
+        final Map<Long, Set<Entry>> postings = new HashMap<>();
+
+        void add(Product product) {
+            remove(product.getProductId());
+            Entry entry = new Entry(product);
+            byId.put(product.getProductId(), entry);
+            for (String key : entry.keys) {
+                root.insert(key, entry);
+            }
+            for (long gram : entry.trigrams) {
+                postings.computeIfAbsent(gram, g -> new TreeSet<>(BY_NAME_LENGTH)).add(entry);
+            }
+        }
+
+        void remove(int productId) {
+            Entry entry = byId.remove(productId);
+            if (entry == null) {
+                return;
+            }
+            for (String key : entry.keys) {
+                root.remove(key, entry); // emptied nodes stay until the next rebuild
+            }
+            for (long gram : entry.trigrams) {
+                Set<Entry> entries = postings.get(gram);
+                if (entries != null && entries.remove(entry) && entries.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+
+        /** Offers products with a key starting with {@code prefix}, shortest keys first. */
+        void collectPrefixMatches(String prefix, TopMatches out) {
+            TrieNode node = root;
+            for (int i = 0; i < prefix.length() && node != null; i++) {
+                node = node.child(prefix.charAt(i));
+            }
+            if (node == null) {
+                return;
+            }
+            ArrayDeque<TrieNode> queue = new ArrayDeque<>();
+            queue.add(node);
+            while (!queue.isEmpty() && !out.isFull()) {
+                TrieNode current = queue.poll();
+                for (int i = 0; i < current.count && !out.isFull(); i++) {
+                    out.offer(current.entries[i]);
+                }
+                Collections.addAll(queue, current.children);
+            }
+        }
+
+        /**
+         * Offers the products with the rarest trigram of {@code q}; {@link #rank} keeps those
+         * that contain the whole query. Everything ranked higher has been offered by the prefix phase, and
+         * candidates come shortest name first, so this stops at the first name longer than the
+         * worst one in a full list.
+         */
+        void collectSubstringMatches(String q, TopMatches out) {
+            Set<Entry> smallest = null;
+            for (int i = 0; i + 3 <= q.length(); i++) {
+                Set<Entry> entries = postings.get(trigram(q, i));
+                if (entries == null) {
+                    return;
+                }
+                if (smallest == null || entries.size() < smallest.size()) {
+                    smallest = entries;
+                }
+            }
+            for (Entry entry : smallest) {
+                if (out.isFull() || out.rejectsLongerThan(entry)) {
+                    return;
+                }
+                out.offer(entry);
+            }
+        }
+    }
+
+    /** Trie node: children in sorted arrays, plus the products whose key ends here. */
+    private static final class TrieNode {
+        private static final TrieNode[] NO_CHILDREN = new TrieNode[0];
+        private static final Entry[] NO_ENTRIES = new Entry[0];
+
+        char[] labels = new char[0];
+        TrieNode[] children = NO_CHILDREN;
+        Entry[] entries = NO_ENTRIES;
+        int count = 0;
+
+        TrieNode child(char label) {
+            int i = Arrays.binarySearch(labels, label);
+            return i >= 0 ? children[i] : null;
+        }
+
+        void insert(String key, Entry entry) {
+            TrieNode node = this;
+            for (int i = 0; i < key.length(); i++) {
+                char label = key.charAt(i);
+                int at = Arrays.binarySearch(node.labels, label);
+                if (at < 0) {
+                    at = -at - 1;
+                    node.labels = insertAt(node.labels, at, label);
+                    node.children = insertAt(node.children, at, new TrieNode());
+                }
+                node = node.children[at];
+            }
+            if (node.count == node.entries.length) {
+                node.entries = Arrays.copyOf(node.entries, Math.max(2, node.count * 2));
+            }
+            node.entries[node.count++] = entry;
+        }
+
+        void remove(String key, Entry entry) {
+            TrieNode node = this;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null) {
+                return;
+            }
+            for (int i = 0; i < node.count; i++) {
+                if (node.entries[i] == entry) {
+                    node.entries[i] = node.entries[--node.count];
+                    node.entries[node.count] = null;
+                    return;
+                }
+            }
+        }
+
+        private static char[] insertAt(char[] array, int at, char value) {
+            char[] grown = new char[array.length + 1];
+            System.arraycopy(array, 0, grown, 0, at);
+            grown[at] = value;
+            System.arraycopy(array, at, grown, at + 1, array.length - at);
+            return grown;
+        }
+
+        private static TrieNode[] insertAt(TrieNode[] array, int at, TrieNode value) {
+            TrieNode[] grown = new TrieNode[array.length + 1];
+            System.arraycopy(array, 0, grown, 0, at);
+            grown[at] = value;
+            System.arraycopy(array, at, grown, at + 1, array.length - at);
+            return grown;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.smartcashpro.db;
+
+import com.smartcashpro.model.Category;
+import com.smartcashpro.model.Supplier;
+import com.smartcashpro.model.User;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-memory copy of a small table that rarely changes (suppliers, categories, users), so the
+ * screens that list them open without a query.
+ *
+ * Each table is held as an immutable list. Suppliers and categories cannot be changed, so
+ * their objects are shared by all callers; a {@link User} can ({@code setActive},
+ * {@code setRole}), so each caller gets a list of its own copies of the users.
+ *
+ * {@link #get()} returns the table straight away; once it is
+ * older than {@code smartcashpro.referenceData.ttlMs} (default five minutes) the next
+ * {@code get} still returns it but starts a reload on the {@link AsyncDAO} workers, so changes
+ * made on other tills show up on the following open. The save methods call
+ * {@link #invalidate()}: after that {@code get} waits for a list read after the save, never
+ * the old one. Until the first load has finished, {@code get} waits for it.
+ *
+ * The lists are filled during warm-up. A failed load is only logged and leaves the previous
+ * list in place; callers waiting for it get the error.
+ */
+public final class ReferenceData<T> {
+
+    /** Reads the whole table. */
+    @FunctionalInterface
+    interface Loader<T> {
+        List<T> load() throws SQLException;
+    }
+
+    private static final long TTL_MS = Long.getLong("smartcashpro.referenceData.ttlMs", 5 * 60_000);
+
+    private static final ReferenceData<Supplier> SUPPLIERS =
+            new ReferenceData<>("suppliers", () -> new PurchaseOrderDAO().getAllSuppliers(), null);
+    private static final ReferenceData<Category> CATEGORIES =
+            new ReferenceData<>("categories", () -> new PriceChangeDAO().getAllCategories(), null);
+    private static final ReferenceData<User> USERS = new ReferenceData<>("users", () -> new UserDAO().getAllUsers(),
+            user -> new User(user.getUserId(), user.getUsername(), user.getRole(), user.isActive()));
+
+    private final String name;
+    private final Loader<T> loader;
+    /** Copies a row for a caller; null if rows cannot be changed and are shared. */
+    private final UnaryOperator<T> copier;
+    private final AsyncDAO<ReferenceData<T>> async;
+
+    // All guarded by this.
+    private List<T> rows;
+    private long loadedAt;
+    private long loadedGeneration = -1;
+    /** Bumped by {@link #invalidate()}; a list read in an older generation is not handed out. */
+    private long generation;
+    private CompletableFuture<List<T>> loading;
+    private long loadingGeneration;
+
+    private ReferenceData(String name, Loader<T> loader, UnaryOperator<T> copier) {
+        this.name = name;
+        this.loader = loader;
+        this.copier = copier;
+        this.async = new AsyncDAO<>(this);
+    }
+
+    public static ReferenceData<Supplier> suppliers() {
+        return SUPPLIERS;
+    }
+
+    public static ReferenceData<Category> categories() {
+        return CATEGORIES;
+    }
+
+    public static ReferenceData<User> users() {
+        return USERS;
+    }
+
+    /**
+     * The table, completed at once if it is in memory and has not been invalidated since.
+     * The future and the list are the caller's own (see the class comment for the rows);
+     * cancelling the future does not stop a load others wait for.
+     */
+    public synchronized CompletableFuture<List<T>> get() {
+        if (rows != null && loadedGeneration == generation) {
+            if (System.currentTimeMillis() - loadedAt > TTL_MS) {
+                refresh();
+            }
+            return CompletableFuture.completedFuture(copies(rows));
+        }
+        return refresh();
+    }
+
+    /** Starts a reload in the background, or joins the one already running; see {@link #get()}. */
+    public synchronized CompletableFuture<List<T>> refresh() {
+        CompletableFuture<List<T>> load = loading;
+        if (load == null || loadingGeneration != generation) {
+            load = async.call(ReferenceData::load);
+            loading = load;
+            loadingGeneration = generation;
+            CompletableFuture<List<T>> started = load;
+            load.whenComplete((result, error) -> loadFinished(started, error));
+        }
+        return load.thenApply(this::copies);
+    }
+
+    /** Reads the table on the calling thread and keeps it, unless it was invalidated meanwhile. */
+    public List<T> reload() throws SQLException {
+        return copies(load());
+    }
+
+    /** {@link #reload()}, returning the kept list itself. */
+    private List<T> load() throws SQLException {
+        long readInGeneration;
+        synchronized (this) {
+            readInGeneration = generation;
+        }
+        List<T> loaded = List.copyOf(loader.load());
+        synchronized (this) {
+            if (readInGeneration == generation) {
+                rows = loaded;
+                loadedAt = System.currentTimeMillis();
+                loadedGeneration = readInGeneration;
+            }
+        }
+        return loaded;
+    }
+
+    /** The list to hand a caller: {@code rows} itself, or copies of its rows if they can be changed. */
+    private List<T> copies(List<T> rows) {
+        if (copier == null) {
+            return rows;
+        }
+        List<T> copies = new ArrayList<>(rows.size());
+        for (T row : rows) {
+            copies.add(copier.apply(row));
+        }
+        return Collections.unmodifiableList(copies);
+    }
+
+    /** Marks the table as changed by this app; the next {@link #get()} waits for a fresh read. */
+    public void invalidate() {
+        synchronized (this) {
+            generation++;
+        }
+        refresh();
+    }
+
+    private synchronized void loadFinished(CompletableFuture<List<T>> load, Throwable error) {
+        if (loading == load) {
+            loading = null;
+        }
+        if (error != null && !AsyncDAO.isCancellation(error)) {
+            System.err.println("Could not load " + name + ": " + AsyncDAO.unwrap(error));
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ReferenceData[" + name + ", " + (rows == null ? "not loaded" : rows.size() + " rows") + "]";
+    }
+}
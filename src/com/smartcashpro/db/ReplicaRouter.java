@@ -0,0 +1,160 @@
+package com.smartcashpro.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends heavy read-only queries to a replica when it is healthy and fresh enough.
+ *
+ * A background check polls the replica's lag ({@code SHOW REPLICA STATUS}, falling back to
+ * {@code SHOW SLAVE STATUS} on older servers) every few seconds. {@link #tryLease(long)} only
+ * hands out a replica connection when the last check succeeded and the lag is within the
+ * caller's tolerance; otherwise the caller runs the query on the primary. A server that is not
+ * configured as a replica at all (e.g. a second local MySQL loaded from a dump) reports
+ * zero lag.
+ */
+public class ReplicaRouter {
+
+    /** A read-only query run against whichever connection the router picked. */
+    @FunctionalInterface
+    public interface Query<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    private final ConnectionPool pool;
+    private final ScheduledExecutorService monitor;
+
+    private volatile boolean healthy = false;
+    private volatile long lagSeconds = Long.MAX_VALUE;
+    private volatile String lastProblem = "not checked yet";
+    private volatile boolean standaloneLogged = false;
+
+    private final AtomicLong routedCount = new AtomicLong();
+    private final AtomicLong fallbackCount = new AtomicLong();
+
+    public ReplicaRouter(ConnectionPool pool, long checkIntervalMs) {
+        this.pool = pool;
+        this.monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-replica-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+        this.monitor.scheduleWithFixedDelay(this::checkHealth, 0, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Leases a replica connection if the replica is healthy and at most {@code maxLagSeconds}
+     * behind, otherwise returns null and the caller should use the primary.
+     */
+    public Connection tryLease(long maxLagSeconds) {
+        if (!healthy || lagSeconds > maxLagSeconds) {
+            fallbackCount.incrementAndGet();
+            return null;
+        }
+        try {
+            Connection conn = pool.lease();
+            routedCount.incrementAndGet();
+            return conn;
+        } catch (SQLException e) {
+            if (!SqlErrors.POOL_TIMEOUT_STATE.equals(e.getSQLState())) { // busy is not sick
+                markUnhealthy(e);
+            }
+            fallbackCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    /** Stops routing until the next successful health check. */
+    public void markUnhealthy(SQLException e) {
+        if (healthy) {
+            System.err.println("Replica marked unhealthy, using primary: " + e.getMessage());
+        }
+        healthy = false;
+        lastProblem = e.getMessage();
+        if (SqlErrors.isConnectionFailure(e)) {
+            pool.evictAll();
+        }
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public long getLagSeconds() {
+        return lagSeconds;
+    }
+
+    public long getRoutedCount() {
+        return routedCount.get();
+    }
+
+    public long getFallbackCount() {
+        return fallbackCount.get();
+    }
+
+    public void shutdown() {
+        monitor.shutdownNow();
+        pool.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "Replica[" + (healthy ? "healthy, lag=" + lagSeconds + "s" : "unhealthy: " + lastProblem)
+                + ", routed=" + routedCount.get() + ", fallbacks=" + fallbackCount.get() + "]";
+    }
+
+    private void checkHealth() {
+        try (Connection conn = pool.lease()) {
+            Long lag = readLag(conn);
+            if (lag == null) {
+                healthy = false;
+                lagSeconds = Long.MAX_VALUE;
+                lastProblem = "replication is not running";
+                return;
+            }
+            if (!healthy) {
+                System.out.println("Replica available, lag " + lag + "s.");
+            }
+            lagSeconds = lag;
+            healthy = true;
+        } catch (SQLException e) {
+            markUnhealthy(e);
+        } catch (RuntimeException e) {
+            healthy = false;
+            lastProblem = e.toString();
+        }
+    }
+
+    /** @return lag in seconds, 0 for a standalone server, or null if replication is broken */
+    private Long readLag(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            String[][] variants = {
+                {"SHOW REPLICA STATUS", "Seconds_Behind_Source"},
+                {"SHOW SLAVE STATUS", "Seconds_Behind_Master"}
+            };
+            SQLException lastError = null;
+            for (String[] variant : variants) {
+                try (ResultSet rs = stmt.executeQuery(variant[0])) {
+                    if (!rs.next()) {
+                        if (!standaloneLogged) {
+                            standaloneLogged = true;
+                            System.out.println("Read replica is not configured for replication; treating it as up to date.");
+                        }
+                        return 0L;
+                    }
+                    long lag = rs.getLong(variant[1]);
+                    return rs.wasNull() ? null : lag;
+                } catch (SQLException e) {
+                    lastError = e; // syntax not supported by this server version, try the next one
+                }
+            }
+            throw lastError;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.smartcashpro.db;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * Bounded exponential-backoff retry for database calls that are safe to repeat.
+ *
+ * Only use {@link #idempotent(SqlCall)} for reads or for work that is rolled back as a whole
+ * before it is retried (see {@link Transaction.Options#withMaxAttempts(int)}). Anything that
+ * may have half-applied a change outside a transaction must not be retried.
+ */
+public final class Retry {
+
+    /** A database call that may be run more than once. */
+    @FunctionalInterface
+    public interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long BASE_DELAY_MS = 100;
+    private static final long MAX_DELAY_MS = 2_000;
+
+    private Retry() {
+    }
+
+    /**
+     * Runs a read, retrying transient failures (link failure, lock wait, deadlock) up to 3 times.
+     * Inside a {@link Transaction} the read runs once: after a deadlock the server has already
+     * rolled back the whole transaction, so only its owner can retry, by re-running all of it.
+     */
+    public static <T> T idempotent(SqlCall<T> call) throws SQLException {
+        if (Transaction.isActive()) {
+            return call.call();
+        }
+        return withBackoff(DEFAULT_MAX_ATTEMPTS, SqlErrors::isTransient, call);
+    }
+
+    /**
+     * Runs {@code call}, retrying while {@code retryable} accepts the failure and attempts remain.
+     * The last failure is rethrown with the earlier ones attached as suppressed exceptions.
+     */
+    public static <T> T withBackoff(int maxAttempts, Predicate<SQLException> retryable, SqlCall<T> call) throws SQLException {
+        SQLException first = null;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.call();
+            } catch (SQLException e) {
+                DatabaseConnector.reportFailure(e);
+                if (first != null && first != e) {
+                    e.addSuppressed(first);
+                }
+                if (attempt >= maxAttempts || !retryable.test(e)) {
+                    throw e;
+                }
+                first = e;
+                long delay = backoffMillis(attempt);
+                System.err.println("Transient database error (attempt " + attempt + "/" + maxAttempts
+                        + "), retrying in " + delay + "ms: " + e.getMessage());
+                sleep(delay, e);
+            }
+        }
+    }
+
+    /** Full-jitter backoff: a random delay up to base * 2^(attempt-1), capped. */
+    static long backoffMillis(int attempt) {
+        long ceiling = Math.min(MAX_DELAY_MS, BASE_DELAY_MS << Math.min(attempt - 1, 10));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    private static void sleep(long millis, SQLException pending) throws SQLException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            SQLException interrupted = new SQLException("Interrupted while waiting to retry.", ie);
+            interrupted.addSuppressed(pending);
+            throw interrupted;
+        }
+    }
+}
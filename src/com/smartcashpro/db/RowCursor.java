@@ -0,0 +1,191 @@
+package com.smartcashpro.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Forward-only view of a query result that maps one row at a time.
+ *
+ * The driver fetches rows from a server-side cursor in blocks of the fetch size (the
+ * connection URL sets {@code useCursorFetch=true}), so memory use depends on the fetch size,
+ * not the table size. The cursor owns its statement and connection lease. They are released
+ * as soon as the last row has been read, or when {@link #close()} is called, whichever comes
+ * first. Always use it in a try-with-resources block so an early exit also releases them:
+ *
+ * <pre>
+ *   try (RowCursor&lt;Order&gt; orders = orderDAO.streamAllOrders()) {
+ *       while (orders.hasNext()) { ... orders.next() ... }
+ *   }
+ * </pre>
+ *
+ * Errors while fetching surface from {@link #hasNext()}/{@link #next()} as a
+ * {@link FetchException}; {@link #forEachRow(RowCallback)} throws the {@link SQLException} directly.
+ */
+public final class RowCursor<T> implements Iterator<T>, AutoCloseable {
+
+    public static final int DEFAULT_FETCH_SIZE = 500;
+
+    /** Maps the current row; must not advance the result set. */
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /** Receives rows one at a time from {@link #forEachRow(RowCallback)}. */
+    @FunctionalInterface
+    public interface RowCallback<T> {
+        void accept(T row) throws SQLException;
+    }
+
+    /** Unchecked wrapper for a {@link SQLException} thrown while iterating. */
+    public static class FetchException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public FetchException(SQLException cause) {
+            super(cause.getMessage(), cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+
+    private final Connection conn;
+    private final PreparedStatement stmt;
+    private final ResultSet rs;
+    private final RowMapper<T> mapper;
+    private Boolean rowReady = null; // null: not checked since the last next()
+    private boolean closed = false;
+
+    private RowCursor(Connection conn, PreparedStatement stmt, ResultSet rs, RowMapper<T> mapper) {
+        this.conn = conn;
+        this.stmt = stmt;
+        this.rs = rs;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Runs the query on {@code conn} and takes ownership of it: the connection is closed with
+     * the cursor, or straight away if the query fails.
+     */
+    static <T> RowCursor<T> open(Connection conn, String sql, List<?> params, int fetchSize,
+                                 RowMapper<T> mapper) throws SQLException {
+        PreparedStatement stmt = null;
+        try {
+            stmt = conn.prepareStatement(sql);
+            stmt.setFetchSize(fetchSize);
+            if (params != null) {
+                for (int i = 0; i < params.size(); i++) {
+                    stmt.setObject(i + 1, params.get(i));
+                }
+            }
+            ResultSet rs = stmt.executeQuery();
+            return new RowCursor<>(conn, stmt, rs, mapper);
+        } catch (SQLException | RuntimeException e) {
+            closeQuietly(stmt, conn, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return advance();
+        } catch (SQLException e) {
+            throw new FetchException(e);
+        }
+    }
+
+    @Override
+    public T next() {
+        try {
+            if (!advance()) {
+                throw new NoSuchElementException();
+            }
+            rowReady = null;
+            return mapper.map(rs);
+        } catch (SQLException e) {
+            close();
+            throw new FetchException(e);
+        }
+    }
+
+    /** Feeds every remaining row to {@code callback}, then closes the cursor. */
+    public void forEachRow(RowCallback<? super T> callback) throws SQLException {
+        try {
+            while (advance()) {
+                rowReady = null;
+                callback.accept(mapper.map(rs));
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /** The remaining rows as a sequential stream; closing the stream closes the cursor. */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        rowReady = false;
+        try {
+            rs.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing cursor result set: " + e.getMessage());
+        }
+        closeQuietly(stmt, conn, null);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private boolean advance() throws SQLException {
+        if (rowReady == null) {
+            try {
+                rowReady = !closed && rs.next();
+            } catch (SQLException e) {
+                close();
+                throw e;
+            }
+            if (!rowReady) {
+                close(); // exhausted: give the connection back without waiting for the caller
+            }
+        }
+        return rowReady;
+    }
+
+    private static void closeQuietly(PreparedStatement stmt, Connection conn, Throwable primary) {
+        try {
+            if (stmt != null) {
+                stmt.close();
+            }
+        } catch (SQLException e) {
+            if (primary != null) primary.addSuppressed(e);
+            else System.err.println("Error closing cursor statement: " + e.getMessage());
+        }
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            if (primary != null) primary.addSuppressed(e);
+            else System.err.println("Error returning cursor connection: " + e.getMessage());
+        }
+    }
+}
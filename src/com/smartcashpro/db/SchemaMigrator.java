@@ -0,0 +1,274 @@
+package com.smartcashpro.db;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Applies versioned schema scripts that have not been applied to this database yet.
+ *
+ * Scripts live in {@code migrations/} (or {@code -Dsmartcashpro.migrations.dir}) and are named
+ * {@code V<version>__<description>.sql}, e.g. {@code V1__performance_indexes.sql}. Each applied
+ * version is recorded in {@code SCHEMA_MIGRATION} with a checksum of the script, so every
+ * version runs exactly once per database no matter how many tills start up. A MySQL named lock
+ * keeps two tills from migrating at the same time.
+ *
+ * Scripts are split on {@code ;} at the end of a line and must not use {@code DELIMITER}.
+ * MySQL commits DDL implicitly, so a failed script is not rolled back: statements that had
+ * already succeeded are skipped when it is retried if they failed with "duplicate key name"
+ * or "duplicate column name".
+ */
+public final class SchemaMigrator {
+
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+    private static final String LOCK_NAME = "smartcashpro_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    /** MySQL: Duplicate key name. */
+    private static final int ER_DUP_KEYNAME = 1061;
+    /** MySQL: Duplicate column name. */
+    private static final int ER_DUP_FIELDNAME = 1060;
+
+    private static final String CREATE_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS SCHEMA_MIGRATION (" +
+            "Version INT PRIMARY KEY, " +
+            "Description VARCHAR(200) NOT NULL, " +
+            "Script VARCHAR(255) NOT NULL, " +
+            "Checksum BIGINT NOT NULL, " +
+            "ExecutionMs INT NOT NULL, " +
+            "AppliedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP)";
+
+    private final Path directory;
+
+    public SchemaMigrator() {
+        this(Paths.get(System.getProperty("smartcashpro.migrations.dir", "migrations")));
+    }
+
+    public SchemaMigrator(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Applies all pending scripts in version order.
+     *
+     * @return the versions applied by this call, empty if the schema was already current
+     * @throws SQLException if a script fails; later scripts are not attempted
+     */
+    public List<Integer> migrate() throws SQLException {
+        List<Script> scripts = findScripts();
+        List<Integer> applied = new ArrayList<>();
+        if (scripts.isEmpty()) {
+            return applied;
+        }
+
+        try (Connection conn = DatabaseConnector.leaseConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(CREATE_TABLE_SQL);
+            }
+            acquireLock(conn);
+            try {
+                Map<Integer, Long> done = loadApplied(conn); // re-read under the lock
+                for (Script script : scripts) {
+                    Long checksum = done.get(script.version);
+                    if (checksum == null) {
+                        apply(conn, script);
+                        applied.add(script.version);
+                    } else if (checksum != script.checksum) {
+                        System.err.println("Migration V" + script.version + " (" + script.file.getFileName()
+                                + ") has changed since it was applied; the change is ignored. Add a new version instead.");
+                    }
+                }
+            } finally {
+                releaseLock(conn);
+            }
+        }
+        return applied;
+    }
+
+    /** Version to checksum for every applied migration. */
+    public Map<Integer, Long> getAppliedVersions() throws SQLException {
+        try (Connection conn = DatabaseConnector.leaseConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(CREATE_TABLE_SQL);
+            }
+            return loadApplied(conn);
+        }
+    }
+
+    /**
+     * Runs {@link #migrate()} on a daemon thread so a slow index build never delays the
+     * login screen; the app works without the new indexes, only slower.
+     */
+    public static Thread migrateInBackground() {
+        Thread t = new Thread(() -> {
+            StartupTimeline.Phase phase = StartupTimeline.begin("schema migrations");
+            try {
+                List<Integer> applied = new SchemaMigrator().migrate();
+                if (!applied.isEmpty()) {
+                    System.out.println("Schema migrations applied: " + applied);
+                }
+            } catch (SQLException e) {
+                System.err.println("Schema migration failed: " + e.getMessage());
+                e.printStackTrace();
+            } catch (RuntimeException e) {
+                System.err.println("Schema migration failed: " + e);
+                e.printStackTrace();
+            } finally {
+                phase.close();
+            }
+        }, "schema-migrator");
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    private void apply(Connection conn, Script script) throws SQLException {
+        System.out.println("Applying migration V" + script.version + ": " + script.description);
+        long start = System.nanoTime();
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : script.statements) {
+                try {
+                    stmt.execute(sql);
+                } catch (SQLException e) {
+                    if (e.getErrorCode() == ER_DUP_KEYNAME || e.getErrorCode() == ER_DUP_FIELDNAME) {
+                        System.out.println("  already present, skipped: " + e.getMessage());
+                        continue;
+                    }
+                    throw new SQLException("Migration V" + script.version + " failed at: " + sql,
+                            e.getSQLState(), e.getErrorCode(), e);
+                }
+            }
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        String sql = "INSERT INTO SCHEMA_MIGRATION (Version, Description, Script, Checksum, ExecutionMs) VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, script.version);
+            pstmt.setString(2, script.description);
+            pstmt.setString(3, script.file.getFileName().toString());
+            pstmt.setLong(4, script.checksum);
+            pstmt.setInt(5, (int) Math.min(Integer.MAX_VALUE, elapsedMs));
+            pstmt.executeUpdate();
+        }
+        System.out.println("Migration V" + script.version + " applied in " + elapsedMs + "ms.");
+    }
+
+    private static Map<Integer, Long> loadApplied(Connection conn) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT Version, Checksum FROM SCHEMA_MIGRATION")) {
+            while (rs.next()) {
+                applied.put(rs.getInt("Version"), rs.getLong("Checksum"));
+            }
+        }
+        return applied;
+    }
+
+    private static void acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            pstmt.setString(1, LOCK_NAME);
+            pstmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Another till is still migrating the schema; gave up after "
+                            + LOCK_TIMEOUT_SECONDS + "s.");
+                }
+            }
+        }
+    }
+
+    private static void releaseLock(Connection conn) {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            pstmt.setString(1, LOCK_NAME);
+            pstmt.executeQuery().close();
+        } catch (SQLException e) {
+            System.err.println("Could not release schema migration lock: " + e.getMessage());
+        }
+    }
+
+    private List<Script> findScripts() throws SQLException {
+        List<Script> scripts = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            System.out.println("No migrations directory at " + directory.toAbsolutePath() + "; schema not checked.");
+            return scripts;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "V*__*.sql")) {
+            for (Path file : files) {
+                Matcher m = SCRIPT_NAME.matcher(file.getFileName().toString());
+                if (m.matches()) {
+                    scripts.add(Script.load(Integer.parseInt(m.group(1)), m.group(2).replace('_', ' '), file));
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Could not read migrations from " + directory + ": " + e.getMessage(), e);
+        }
+        scripts.sort((a, b) -> Integer.compare(a.version, b.version));
+        for (int i = 1; i < scripts.size(); i++) {
+            if (scripts.get(i).version == scripts.get(i - 1).version) {
+                throw new SQLException("Two migration scripts share version " + scripts.get(i).version + ".");
+            }
+        }
+        return scripts;
+    }
+
+    /** One parsed script file. */
+    private static final class Script {
+        final int version;
+        final String description;
+        final Path file;
+        final long checksum;
+        final List<String> statements;
+
+        private Script(int version, String description, Path file, long checksum, List<String> statements) {
+            this.version = version;
+            this.description = description;
+            this.file = file;
+            this.checksum = checksum;
+            this.statements = statements;
+        }
+
+        static Script load(int version, String description, Path file) throws IOException {
+            String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).replace("\r\n", "\n");
+            CRC32 crc = new CRC32();
+            crc.update(text.getBytes(StandardCharsets.UTF_8));
+            return new Script(version, description, file, crc.getValue(), split(text));
+        }
+
+        /** Drops {@code --} comment lines and splits on a {@code ;} that ends a line. */
+        static List<String> split(String text) {
+            List<String> statements = new ArrayList<>();
+            StringBuilder current = new StringBuilder();
+            for (String line : text.split("\n")) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                    continue;
+                }
+                current.append(line).append('\n');
+                if (trimmed.endsWith(";")) {
+                    String sql = current.toString().trim();
+                    statements.add(sql.substring(0, sql.length() - 1));
+                    current.setLength(0);
+                }
+            }
+            if (current.toString().trim().length() > 0) {
+                statements.add(current.toString().trim());
+            }
+            return statements;
+        }
+    }
+}
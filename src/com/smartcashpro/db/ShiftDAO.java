@@ -4,6 +4,8 @@ import com.smartcashpro.model.Shift;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
 
 import javax.swing.JOptionPane;
 
@@ -58,15 +60,10 @@ public class ShiftDAO {
          
          String sql = "SELECT ShiftID, StartTime, EndTime, Status, StartUserID, EndUserID, StartingFloat FROM SHIFT WHERE Status = 'Open' ORDER BY StartTime DESC LIMIT 1";
          
-         try (Connection conn = DatabaseConnector.getConnection();
+         try (Connection conn = DatabaseConnector.requireConnection();
               PreparedStatement pstmt = conn.prepareStatement(sql);
               ResultSet rs = pstmt.executeQuery()) {
 
-             if (conn == null) {
-                 System.err.println("Error finding open shift: Database connection failed.");
-                 return null;
-             }
-
              if (rs.next()) {
                   Timestamp startTimestamp = rs.getTimestamp("StartTime");
                   Timestamp endTimeStamp = rs.getTimestamp("EndTime"); 
@@ -108,14 +105,9 @@ public class ShiftDAO {
 
         String sql = "INSERT INTO SHIFT (StartTime, Status, StartUserID, StartingFloat) VALUES (NOW(), 'Open', ?, ?)";
         
-        try (Connection conn = DatabaseConnector.getConnection();
+        try (Connection conn = DatabaseConnector.requireConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
-             if (conn == null) {
-                 System.err.println("Error starting shift: Database connection failed.");
-                 return -1; 
-             }
-
             
             pstmt.setInt(1, userId);
             pstmt.setBigDecimal(2, (startingFloat != null ? startingFloat : BigDecimal.ZERO));
@@ -141,6 +133,47 @@ public class ShiftDAO {
 
 
     
+    private static final long RECONCILIATION_MAX_LAG_SECONDS = 5;
+
+    /** Payment totals for one shift, plus the orders they came from. */
+    private static class SalesTotals {
+        BigDecimal cash = BigDecimal.ZERO;
+        BigDecimal card = BigDecimal.ZERO;
+        BigDecimal other = BigDecimal.ZERO;
+        final Set<Integer> orderIds = new HashSet<>();
+    }
+
+    private SalesTotals scanSales(Connection conn, String salesSQL, int shiftId) throws SQLException {
+        SalesTotals totals = new SalesTotals();
+        try (PreparedStatement pstmtSales = conn.prepareStatement(salesSQL)) {
+            pstmtSales.setInt(1, shiftId);
+            try (ResultSet rsSales = pstmtSales.executeQuery()) {
+                while (rsSales.next()) {
+                    BigDecimal amount = rsSales.getBigDecimal("Amount");
+                    if(amount == null) amount = BigDecimal.ZERO; 
+                    String type = rsSales.getString("PaymentType");
+                    totals.orderIds.add(rsSales.getInt("OrderID"));
+
+                    if ("Cash".equals(type)) totals.cash = totals.cash.add(amount);
+                    else if ("Card".equals(type)) totals.card = totals.card.add(amount);
+                    else if ("Other".equals(type)) totals.other = totals.other.add(amount);
+                }
+            }
+        }
+        return totals;
+    }
+
+    private int countCompletedOrders(Connection conn, int shiftId) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM `ORDER` WHERE ShiftID = ? AND OrderStatus = 'Completed' " +
+                     "AND EXISTS (SELECT 1 FROM PAYMENT p WHERE p.OrderID = `ORDER`.OrderID)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, shiftId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
     public ReconciliationResult endShift(int shiftId, int endUserId, BigDecimal endingFloat, BigDecimal cashRemoved) {
         
         BigDecimal cashSales = BigDecimal.ZERO;
@@ -164,7 +197,7 @@ public class ShiftDAO {
          }
 
 
-        String salesSQL = "SELECT p.PaymentID, p.Amount, " +
+        String salesSQL = "SELECT p.PaymentID, p.Amount, o.OrderID, " +
                           "CASE WHEN cp.PaymentID IS NOT NULL THEN 'Cash' " +
                           "     WHEN cdp.PaymentID IS NOT NULL THEN 'Card' " +
                           "     WHEN op.PaymentID IS NOT NULL THEN 'Other' " + 
@@ -206,23 +239,18 @@ public class ShiftDAO {
                  }
              }
 
-             
-             try (PreparedStatement pstmtSales = conn.prepareStatement(salesSQL)) {
-                 pstmtSales.setInt(1, shiftId);
-                 try (ResultSet rsSales = pstmtSales.executeQuery()) {
-                     while (rsSales.next()) {
-                         BigDecimal amount = rsSales.getBigDecimal("Amount");
-                         if(amount == null) amount = BigDecimal.ZERO; 
-                         String type = rsSales.getString("PaymentType");
-
-                         
-                         if ("Cash".equals(type)) cashSales = cashSales.add(amount);
-                         else if ("Card".equals(type)) cardSales = cardSales.add(amount);
-                         else if ("Other".equals(type)) otherSales = otherSales.add(amount);
-                         
-                     }
-                 }
+             // The payment scan is the heavy part: run it on the replica, but only trust the
+             // result if the replica already has every completed order the primary has.
+             int completedOrders = countCompletedOrders(conn, shiftId);
+             SalesTotals totals = DatabaseConnector.readFromReplica(RECONCILIATION_MAX_LAG_SECONDS,
+                     readConn -> scanSales(readConn, salesSQL, shiftId));
+             if (totals.orderIds.size() < completedOrders) {
+                 System.out.println("Replica is behind for Shift ID " + shiftId + ", re-scanning sales on the primary.");
+                 totals = scanSales(conn, salesSQL, shiftId);
              }
+             cashSales = totals.cash;
+             cardSales = totals.card;
+             otherSales = totals.other;
 
              
              
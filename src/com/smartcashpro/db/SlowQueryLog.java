@@ -0,0 +1,342 @@
+package com.smartcashpro.db;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records statements that take longer than a threshold, with their bound parameters, duration
+ * and the DAO method that ran them.
+ *
+ * The calling thread only captures the entry; a single background thread runs {@code EXPLAIN}
+ * for SELECTs on its own pooled connection and appends the entry to a rolling log file. The
+ * newest entries are also kept in memory for the admin screen.
+ *
+ * <ul>
+ *   <li>{@code smartcashpro.slowQuery.thresholdMs} - default 0 (off); while off, statements
+ *       are not wrapped and their parameters are not recorded</li>
+ *   <li>{@code smartcashpro.slowQuery.file} - default {@code logs/slow-queries.log}</li>
+ *   <li>{@code smartcashpro.slowQuery.maxFileKb} - size before rolling, default 1024; three old files are kept</li>
+ * </ul>
+ */
+public final class SlowQueryLog {
+
+    private static final int BUFFER_SIZE = 200;
+    private static final int MAX_PENDING = 64;
+    private static final int ROLLED_FILES = 3;
+    /** The same query shape is explained at most this often. */
+    private static final long EXPLAIN_INTERVAL_MS = 10 * 60 * 1000;
+    private static final int MAX_PARAM_LENGTH = 100;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private static final SlowQueryLog INSTANCE = new SlowQueryLog();
+
+    private static volatile long thresholdNanos =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("smartcashpro.slowQuery.thresholdMs", 0));
+
+    /** Set on the writer thread so its own EXPLAIN statements are never logged. */
+    private static final ThreadLocal<Boolean> SUPPRESSED = ThreadLocal.withInitial(() -> false);
+
+    private final Entry[] ring = new Entry[BUFFER_SIZE];
+    private long written = 0;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Map<String, Long> lastExplained = new ConcurrentHashMap<>();
+    private final Path file = Paths.get(System.getProperty("smartcashpro.slowQuery.file", "logs/slow-queries.log"));
+    private final long maxFileBytes = Long.getLong("smartcashpro.slowQuery.maxFileKb", 1024) * 1024;
+    private final ThreadPoolExecutor writer;
+
+    private SlowQueryLog() {
+        writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(MAX_PENDING), r -> {
+            Thread t = new Thread(() -> {
+                SUPPRESSED.set(true);
+                r.run();
+            }, "slow-query-log");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static SlowQueryLog getInstance() {
+        return INSTANCE;
+    }
+
+    static boolean isOn() {
+        return thresholdNanos > 0;
+    }
+
+    static boolean isSlow(long elapsedNanos) {
+        long threshold = thresholdNanos;
+        return threshold > 0 && elapsedNanos >= threshold && !SUPPRESSED.get();
+    }
+
+    public static long getThresholdMs() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    /** Statements created from now on are checked against the new threshold; 0 turns logging off. */
+    public static void setThresholdMs(long ms) {
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ms));
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /** Entries the background thread could not keep up with. */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /** Newest first. */
+    public List<Entry> getRecent() {
+        List<Entry> result = new ArrayList<>();
+        synchronized (ring) {
+            for (long i = written - 1; i >= 0 && i >= written - BUFFER_SIZE; i--) {
+                result.add(ring[(int) (i % BUFFER_SIZE)]);
+            }
+        }
+        return result;
+    }
+
+    public void clear() {
+        synchronized (ring) {
+            Arrays.fill(ring, null);
+            written = 0;
+        }
+    }
+
+    void record(String sql, Map<Integer, Object> parameters, long elapsedNanos, int batchSize, boolean failed) {
+        Entry entry = new Entry(LocalDateTime.now(), sql, formatParameters(parameters),
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), batchSize, failed,
+                findCaller(), Thread.currentThread().getName());
+        synchronized (ring) {
+            ring[(int) (written % BUFFER_SIZE)] = entry;
+            written++;
+        }
+        List<Object> explainParams = parameters == null ? null : new ArrayList<>(parameters.values());
+        try {
+            writer.execute(() -> {
+                if (shouldExplain(sql)) {
+                    entry.explain = explain(sql, explainParams);
+                }
+                append(entry);
+            });
+        } catch (RejectedExecutionException e) {
+            dropped.incrementAndGet(); // still in the ring buffer, just not explained or on disk
+        }
+    }
+
+    private boolean shouldExplain(String sql) {
+        if (!sql.trim().regionMatches(true, 0, "SELECT", 0, 6)) {
+            return false;
+        }
+        String shape = JdbcMetrics.fingerprint(sql);
+        long now = System.currentTimeMillis();
+        Long previous = lastExplained.get(shape);
+        if (previous != null && now - previous < EXPLAIN_INTERVAL_MS) {
+            return false;
+        }
+        lastExplained.put(shape, now);
+        return true;
+    }
+
+    private String explain(String sql, List<Object> parameters) {
+        try (Connection conn = DatabaseConnector.leaseConnection();
+             PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + sql)) {
+            if (parameters != null) {
+                for (int i = 0; i < parameters.size(); i++) {
+                    stmt.setObject(i + 1, parameters.get(i));
+                }
+            }
+            StringBuilder sb = new StringBuilder();
+            try (ResultSet rs = stmt.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                while (rs.next()) {
+                    for (int c = 1; c <= meta.getColumnCount(); c++) {
+                        Object value = rs.getObject(c);
+                        if (value != null) {
+                            sb.append(c > 1 ? " " : "").append(meta.getColumnLabel(c)).append('=').append(value);
+                        }
+                    }
+                    sb.append('\n');
+                }
+            }
+            return sb.toString().trim();
+        } catch (SQLException e) {
+            return "EXPLAIN failed: " + e.getMessage();
+        }
+    }
+
+    private void append(Entry entry) {
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            if (dir != null) {
+                Files.createDirectories(dir);
+            }
+            if (Files.exists(file) && Files.size(file) > maxFileBytes) {
+                roll();
+            }
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                out.write(entry.toLogText());
+                out.newLine();
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write slow-query log " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void roll() throws IOException {
+        Files.deleteIfExists(Paths.get(file + "." + ROLLED_FILES));
+        for (int i = ROLLED_FILES - 1; i >= 1; i--) {
+            Path older = Paths.get(file + "." + i);
+            if (Files.exists(older)) {
+                Files.move(older, Paths.get(file + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, Paths.get(file + ".1"), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String formatParameters(Map<Integer, Object> parameters) {
+        if (parameters == null || parameters.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Integer, Object> p : parameters.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            Object value = p.getValue();
+            String text = value == null ? "NULL"
+                    : value instanceof CharSequence ? "'" + value + "'"
+                    : value instanceof byte[] ? "<" + ((byte[]) value).length + " bytes>"
+                    : String.valueOf(value);
+            if (text.length() > MAX_PARAM_LENGTH) {
+                text = text.substring(0, MAX_PARAM_LENGTH - 3) + "...";
+            }
+            sb.append(p.getKey()).append('=').append(text);
+        }
+        return sb.toString();
+    }
+
+    /** First application frame outside the database plumbing, e.g. {@code OrderDAO.searchOrders}. */
+    private static String findCaller() {
+        for (StackTraceElement frame : new Throwable().getStackTrace()) {
+            String cls = frame.getClassName();
+            if (!cls.startsWith("com.smartcashpro.") || isPlumbing(cls)) {
+                continue;
+            }
+            String method = frame.getMethodName();
+            if (method.startsWith("lambda$")) {
+                int end = method.indexOf('$', 7);
+                method = end > 7 ? method.substring(7, end) : method.substring(7);
+            }
+            String simple = cls.substring(cls.lastIndexOf('.') + 1);
+            int inner = simple.indexOf('$');
+            if (inner > 0) {
+                simple = simple.substring(0, inner);
+            }
+            return simple + "." + method + ":" + frame.getLineNumber();
+        }
+        return "unknown";
+    }
+
+    private static boolean isPlumbing(String cls) {
+        String simple = cls.substring(cls.lastIndexOf('.') + 1);
+        int inner = simple.indexOf('$');
+        if (inner > 0) {
+            simple = simple.substring(0, inner);
+        }
+        switch (simple) {
+            case "SlowQueryLog":
+            case "InstrumentedStatement":
+            case "JdbcMetrics":
+            case "ConnectionPool":
+            case "StatementCache":
+            case "Transaction":
+            case "Retry":
+            case "DatabaseConnector":
+            case "ReplicaRouter":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** One slow execution. The EXPLAIN output is filled in later by the background thread. */
+    public static final class Entry {
+        private final LocalDateTime time;
+        private final String sql;
+        private final String parameters;
+        private final long durationMs;
+        private final int batchSize;
+        private final boolean failed;
+        private final String caller;
+        private final String thread;
+        private volatile String explain;
+
+        Entry(LocalDateTime time, String sql, String parameters, long durationMs, int batchSize,
+              boolean failed, String caller, String thread) {
+            this.time = time;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.durationMs = durationMs;
+            this.batchSize = batchSize;
+            this.failed = failed;
+            this.caller = caller;
+            this.thread = thread;
+        }
+
+        public LocalDateTime getTime() { return time; }
+        public String getSql() { return sql; }
+        /** Parameters of the last execution (the last row for a batch). */
+        public String getParameters() { return parameters; }
+        public long getDurationMs() { return durationMs; }
+        public int getBatchSize() { return batchSize; }
+        public boolean isFailed() { return failed; }
+        public String getCaller() { return caller; }
+        public String getThread() { return thread; }
+        /** Null until the background thread has run it, and for statements other than SELECT. */
+        public String getExplain() { return explain; }
+
+        String toLogText() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(time.format(TIME_FORMAT)).append(' ').append(durationMs).append("ms")
+              .append(failed ? " FAILED" : "")
+              .append(" caller=").append(caller).append(" thread=").append(thread);
+            if (batchSize > 0) {
+                sb.append(" batch=").append(batchSize);
+            }
+            sb.append("\n  sql: ").append(sql.replaceAll("\\s+", " ").trim());
+            if (!parameters.isEmpty()) {
+                sb.append("\n  params: ").append(parameters);
+            }
+            if (explain != null) {
+                sb.append("\n  explain: ").append(explain.replace("\n", "\n           "));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.smartcashpro.db;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Classifies SQLExceptions from MySQL Connector/J into "worth retrying" and "give up".
+ */
+public final class SqlErrors {
+
+    /** MySQL: Lock wait timeout exceeded; try restarting transaction. */
+    public static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+    /** MySQL: Deadlock found when trying to get lock; try restarting transaction. */
+    public static final int ER_LOCK_DEADLOCK = 1213;
+
+    /** MySQL: Unknown column, e.g. a query written for a migration that has not run yet. */
+    public static final int ER_BAD_FIELD_ERROR = 1054;
+
+    /** SQLState used by the pool when no connection frees up in time. */
+    public static final String POOL_TIMEOUT_STATE = "HYT00";
+
+    private SqlErrors() {
+    }
+
+    /**
+     * True if the database itself is unreachable: SQLState class 08 (communications link
+     * failure, connection refused...) or a recoverable driver exception.
+     */
+    public static boolean isConnectionFailure(SQLException e) {
+        for (SQLException ex : chain(e)) {
+            if (ex instanceof CircuitOpenException) {
+                return false;
+            }
+            String state = ex.getSQLState();
+            if ((state != null && state.startsWith("08")) || ex instanceof SQLRecoverableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** True for lock wait timeouts, deadlocks and serialization failures (SQLState 40001). */
+    public static boolean isLockConflict(SQLException e) {
+        for (SQLException ex : chain(e)) {
+            int code = ex.getErrorCode();
+            if (code == ER_LOCK_WAIT_TIMEOUT || code == ER_LOCK_DEADLOCK || "40001".equals(ex.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True if running the same statement again a little later may well succeed. A tripped
+     * circuit breaker is never transient from the caller's point of view: it means "stop trying".
+     */
+    public static boolean isTransient(SQLException e) {
+        if (e instanceof CircuitOpenException) {
+            return false;
+        }
+        if (isConnectionFailure(e) || isLockConflict(e)) {
+            return true;
+        }
+        for (SQLException ex : chain(e)) {
+            if (ex instanceof SQLTransientException || POOL_TIMEOUT_STATE.equals(ex.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** True if the statement named a column the table does not have (yet). */
+    public static boolean isUnknownColumn(SQLException e) {
+        for (SQLException ex : chain(e)) {
+            if (ex.getErrorCode() == ER_BAD_FIELD_ERROR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** The exception, its getNextException() chain and any SQLException causes, without cycles. */
+    private static List<SQLException> chain(SQLException e) {
+        List<SQLException> result = new ArrayList<>();
+        Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayDeque<Throwable> pending = new ArrayDeque<>();
+        pending.add(e);
+        while (!pending.isEmpty() && result.size() < 16) {
+            Throwable t = pending.poll();
+            if (t == null || !seen.add(t)) {
+                continue;
+            }
+            if (t instanceof SQLException) {
+                SQLException sql = (SQLException) t;
+                result.add(sql);
+                if (sql.getNextException() != null) {
+                    pending.add(sql.getNextException());
+                }
+            }
+            if (t.getCause() != null) {
+                pending.add(t.getCause());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,61 @@
+package com.smartcashpro.db;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Point-in-time numbers for one SQL fingerprint.
+ */
+public class SqlMetricsSnapshot {
+    private final String fingerprint;
+    private final long executions;
+    private final long errors;
+    private final long p50Micros;
+    private final long p95Micros;
+    private final long p99Micros;
+    private final long maxMicros;
+    private final long meanMicros;
+    private final long rowsFetched;
+    private final long batches;
+    private final long maxBatchSize;
+    private final long avgBatchSize;
+
+    @ConstructorProperties({"fingerprint", "executions", "errors", "p50Micros", "p95Micros", "p99Micros",
+            "maxMicros", "meanMicros", "rowsFetched", "batches", "maxBatchSize", "avgBatchSize"})
+    public SqlMetricsSnapshot(String fingerprint, long executions, long errors, long p50Micros, long p95Micros,
+                              long p99Micros, long maxMicros, long meanMicros, long rowsFetched,
+                              long batches, long maxBatchSize, long avgBatchSize) {
+        this.fingerprint = fingerprint;
+        this.executions = executions;
+        this.errors = errors;
+        this.p50Micros = p50Micros;
+        this.p95Micros = p95Micros;
+        this.p99Micros = p99Micros;
+        this.maxMicros = maxMicros;
+        this.meanMicros = meanMicros;
+        this.rowsFetched = rowsFetched;
+        this.batches = batches;
+        this.maxBatchSize = maxBatchSize;
+        this.avgBatchSize = avgBatchSize;
+    }
+
+    public String getFingerprint() { return fingerprint; }
+    public long getExecutions() { return executions; }
+    public long getErrors() { return errors; }
+    public long getP50Micros() { return p50Micros; }
+    public long getP95Micros() { return p95Micros; }
+    public long getP99Micros() { return p99Micros; }
+    public long getMaxMicros() { return maxMicros; }
+    public long getMeanMicros() { return meanMicros; }
+    public long getRowsFetched() { return rowsFetched; }
+    public long getBatches() { return batches; }
+    public long getMaxBatchSize() { return maxBatchSize; }
+    public long getAvgBatchSize() { return avgBatchSize; }
+
+    @Override
+    public String toString() {
+        String sql = fingerprint.length() > 90 ? fingerprint.substring(0, 87) + "..." : fingerprint;
+        return String.format("n=%-6d err=%-3d p50=%7.2fms p95=%7.2fms p99=%7.2fms max=%8.2fms rows=%-7d batches=%d(avg %d, max %d) | %s",
+                executions, errors, p50Micros / 1000.0, p95Micros / 1000.0, p99Micros / 1000.0, maxMicros / 1000.0,
+                rowsFetched, batches, avgBatchSize, maxBatchSize, sql);
+    }
+}
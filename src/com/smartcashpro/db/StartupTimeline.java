@@ -0,0 +1,105 @@
+package com.smartcashpro.db;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Records how long each startup step takes, from JVM start until the main window is usable.
+ *
+ * Steps may run in parallel on any thread; {@link #report()} lists them by start time with
+ * the thread that ran them, so overlapping work and slow phases are easy to spot.
+ */
+public final class StartupTimeline {
+
+    /** A running step; {@link #close()} records its end. Closing twice has no effect. */
+    public static final class Phase implements AutoCloseable {
+        private final String name;
+        private final String thread;
+        private final long startNanos;
+        private volatile long endNanos = -1;
+
+        private Phase(String name, long startNanos, long endNanos) {
+            this.name = name;
+            this.thread = Thread.currentThread().getName();
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+        }
+
+        @Override
+        public void close() {
+            if (endNanos < 0) {
+                endNanos = System.nanoTime();
+            }
+        }
+
+        public String getName() { return name; }
+        public String getThread() { return thread; }
+        public long getStartMs() { return toJvmMillis(startNanos); }
+
+        /** Duration in milliseconds, or -1 while still running. */
+        public long getDurationMs() {
+            long end = endNanos;
+            return end < 0 ? -1 : (end - startNanos) / 1_000_000;
+        }
+    }
+
+    private static final long ORIGIN_NANOS = System.nanoTime();
+    private static final long ORIGIN_UPTIME_MS = ManagementFactory.getRuntimeMXBean().getUptime();
+
+    private static final List<Phase> PHASES = new ArrayList<>();
+    private static final AtomicBoolean REPORTED = new AtomicBoolean();
+
+    private StartupTimeline() {
+    }
+
+    /** Starts timing a step; use with try-with-resources or call {@link Phase#close()}. */
+    public static Phase begin(String name) {
+        Phase phase = new Phase(name, System.nanoTime(), -1);
+        synchronized (PHASES) {
+            PHASES.add(phase);
+        }
+        return phase;
+    }
+
+    /** Records an instant, e.g. "login window shown". */
+    public static void mark(String name) {
+        long now = System.nanoTime();
+        Phase phase = new Phase(name, now, now);
+        synchronized (PHASES) {
+            PHASES.add(phase);
+        }
+    }
+
+    public static List<Phase> getPhases() {
+        List<Phase> copy;
+        synchronized (PHASES) {
+            copy = new ArrayList<>(PHASES);
+        }
+        copy.sort((a, b) -> Long.compare(a.startNanos, b.startNanos));
+        return copy;
+    }
+
+    public static String report() {
+        StringBuilder sb = new StringBuilder("Startup timeline (ms since JVM start):\n");
+        sb.append(String.format("  %7s %9s  %-34s %s%n", "start", "duration", "phase", "thread"));
+        for (Phase phase : getPhases()) {
+            long duration = phase.getDurationMs();
+            String shown = phase.startNanos == phase.endNanos ? "-" : duration < 0 ? "running" : String.valueOf(duration);
+            sb.append(String.format("  %7d %9s  %-34s %s%n", phase.getStartMs(), shown, phase.getName(), phase.getThread()));
+        }
+        return sb.toString();
+    }
+
+    /** Prints {@link #report()} to the console the first time it is called. */
+    public static void printReportOnce() {
+        if (REPORTED.compareAndSet(false, true)) {
+            System.out.print(report());
+        }
+    }
+
+    private static long toJvmMillis(long nanos) {
+        return ORIGIN_UPTIME_MS + (nanos - ORIGIN_NANOS) / 1_000_000;
+    }
+}
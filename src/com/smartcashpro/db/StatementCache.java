@@ -0,0 +1,332 @@
+package com.smartcashpro.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of server-side prepared statements for one physical connection.
+ *
+ * DAOs keep calling {@code conn.prepareStatement(sql)} and closing the result as usual;
+ * the pooled connection routes those calls here, so the first call for a given SQL on a
+ * connection prepares it on the server and later calls reuse the same statement. Closing
+ * the handle clears its parameters and puts it back in the cache instead of deallocating it.
+ *
+ * Hit/miss counts are kept per SQL text across all connections, see {@link #getStats()}.
+ * Only the {@value #MAX_COUNTED_SQL} most recently prepared SQL texts are counted, so
+ * generated SQL (search, filtered pages, IN lists) cannot grow the counters without bound.
+ */
+public final class StatementCache {
+
+    private static final int MAX_COUNTED_SQL = 512;
+    /** Least recently prepared first; guarded by itself. */
+    private static final LinkedHashMap<String, Counter> COUNTERS = new LinkedHashMap<>(64, 0.75f, true);
+
+    private final int maxSize;
+    private final LinkedHashMap<Key, CachedStatement> statements;
+
+    StatementCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /** True for the prepareStatement overloads the cache knows how to key. */
+    static boolean isCacheable(Method method, Object[] args) {
+        if (!"prepareStatement".equals(method.getName()) || args == null || !(args[0] instanceof String)) {
+            return false;
+        }
+        for (int i = 1; i < args.length; i++) {
+            if (!(args[i] instanceof Integer)) {
+                return false; // column index/name arrays: rare, not worth caching
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a handle for the requested statement, preparing it on {@code physical} only
+     * if no idle cached copy exists.
+     *
+     * @param owner the pooled connection handle, returned from {@code getConnection()}
+     */
+    synchronized PreparedStatement prepare(Connection owner, Connection physical, Method method, Object[] args) throws SQLException {
+        Key key = new Key(args);
+        Counter counter = counter(key.sql);
+
+        CachedStatement cached = statements.get(key);
+        if (cached != null && cached.handle == null) {
+            counter.hits.incrementAndGet();
+            return cached.checkOut(owner);
+        }
+        counter.misses.incrementAndGet();
+
+        PreparedStatement physicalStmt;
+        try {
+            physicalStmt = (PreparedStatement) method.invoke(physical, args);
+        } catch (InvocationTargetException e) {
+            throw unwrap(e);
+        } catch (IllegalAccessException e) {
+            throw new SQLException("Could not prepare statement.", e);
+        }
+
+        if (cached != null) {
+            // Same SQL is already open on this lease (e.g. nested loop); hand out an uncached copy.
+            return new CachedStatement(null, physicalStmt).checkOut(owner);
+        }
+
+        CachedStatement fresh = new CachedStatement(key, physicalStmt);
+        statements.put(key, fresh);
+        evictOverflow();
+        return fresh.checkOut(owner);
+    }
+
+    /** Called when the lease ends: any handle the borrower forgot to close is reclaimed. */
+    synchronized void reclaimAll() {
+        for (CachedStatement cached : new ArrayList<>(statements.values())) {
+            if (cached.handle != null) {
+                cached.checkIn();
+            }
+        }
+    }
+
+    /** Closes every cached statement; used when the physical connection is retired. */
+    synchronized void closeAll() {
+        for (CachedStatement cached : statements.values()) {
+            cached.closePhysical();
+        }
+        statements.clear();
+    }
+
+    synchronized int size() {
+        return statements.size();
+    }
+
+    private void evictOverflow() {
+        Iterator<CachedStatement> it = statements.values().iterator();
+        while (statements.size() > maxSize && it.hasNext()) {
+            CachedStatement eldest = it.next();
+            it.remove();
+            counter(eldest.key.sql).evictions.incrementAndGet();
+            if (eldest.handle == null) {
+                eldest.closePhysical();
+            } else {
+                eldest.evicted = true; // closed for real once its current user is done
+            }
+        }
+    }
+
+    private static Counter counter(String sql) {
+        synchronized (COUNTERS) {
+            Counter counter = COUNTERS.get(sql);
+            if (counter == null) {
+                counter = new Counter(sql);
+                COUNTERS.put(sql, counter);
+                if (COUNTERS.size() > MAX_COUNTED_SQL) {
+                    Iterator<Counter> eldest = COUNTERS.values().iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+            return counter;
+        }
+    }
+
+    private static Throwable unwrapCause(InvocationTargetException e) {
+        return e.getCause() != null ? e.getCause() : e;
+    }
+
+    private static SQLException unwrap(InvocationTargetException e) {
+        Throwable cause = unwrapCause(e);
+        if (cause instanceof SQLException) {
+            return (SQLException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        return new SQLException(cause);
+    }
+
+    /** Snapshot of per-statement counters, busiest first. */
+    public static List<StatementStats> getStats() {
+        List<StatementStats> result = new ArrayList<>();
+        synchronized (COUNTERS) {
+            for (Counter c : COUNTERS.values()) {
+                result.add(new StatementStats(c.sql, c.hits.get(), c.misses.get(), c.evictions.get()));
+            }
+        }
+        result.sort((a, b) -> Long.compare(b.getHits() + b.getMisses(), a.getHits() + a.getMisses()));
+        return result;
+    }
+
+    /** Cache key: SQL text plus the generated-keys / result-set flags it was prepared with. */
+    private static final class Key {
+        final String sql;
+        final Object[] flags;
+
+        Key(Object[] args) {
+            this.sql = (String) args[0];
+            this.flags = Arrays.copyOfRange(args, 1, args.length);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return sql.equals(other.sql) && Arrays.equals(flags, other.flags);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sql, Arrays.hashCode(flags));
+        }
+    }
+
+    /** A physical statement plus the handle currently using it (null when idle). */
+    private final class CachedStatement {
+        final Key key; // null for uncached one-off copies
+        final PreparedStatement physical;
+        Handle handle;
+        boolean evicted = false;
+
+        CachedStatement(Key key, PreparedStatement physical) {
+            this.key = key;
+            this.physical = physical;
+        }
+
+        PreparedStatement checkOut(Connection owner) {
+            handle = new Handle(this, owner);
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, handle);
+        }
+
+        void checkIn() {
+            synchronized (StatementCache.this) {
+                if (handle != null) {
+                    handle.closed = true;
+                    handle = null;
+                }
+                if (key == null || evicted) {
+                    closePhysical();
+                    return;
+                }
+                try {
+                    physical.clearParameters();
+                    physical.clearBatch();
+                    physical.clearWarnings();
+                    if (physical.getFetchSize() != 0) {
+                        physical.setFetchSize(0); // a RowCursor's fetch size must not leak into plain reads
+                    }
+                } catch (SQLException e) {
+                    System.err.println("Dropping cached statement that failed to reset: " + e.getMessage());
+                    statements.remove(key);
+                    closePhysical();
+                }
+            }
+        }
+
+        void closePhysical() {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing cached statement: " + e.getMessage());
+            }
+        }
+    }
+
+    /** What the DAO holds; close() returns the statement to the cache. */
+    private final class Handle implements InvocationHandler {
+        final CachedStatement target;
+        final Connection owner;
+        volatile boolean closed = false;
+
+        Handle(CachedStatement target, Connection owner) {
+            this.target = target;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        target.checkIn();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + target.physical + (closed ? ", returned" : "") + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement has already been closed.");
+            }
+            try {
+                return method.invoke(target.physical, args);
+            } catch (InvocationTargetException e) {
+                throw unwrapCause(e);
+            }
+        }
+    }
+
+    private static final class Counter {
+        final String sql;
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong evictions = new AtomicLong();
+
+        Counter(String sql) {
+            this.sql = sql;
+        }
+    }
+
+    /** Immutable hit/miss counters for one SQL text. */
+    public static class StatementStats {
+        private final String sql;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        public StatementStats(String sql, long hits, long misses, long evictions) {
+            this.sql = sql;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public String getSql() { return sql; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+
+        public double getHitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            String shortSql = sql.length() > 80 ? sql.substring(0, 77) + "..." : sql;
+            return String.format("hits=%d misses=%d evictions=%d ratio=%.1f%% | %s",
+                    hits, misses, evictions, getHitRatio() * 100, shortSql);
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.smartcashpro.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Unit of work bound to the current thread.
+ *
+ * {@link #run(Work)} leases a connection, turns auto-commit off, runs the work and commits,
+ * or rolls back if the work throws. While it runs, the connection is bound to the calling
+ * thread: {@link DatabaseConnector#getConnection()} and any nested {@code run} call join the
+ * same transaction instead of leasing another connection, so DAO methods compose without
+ * passing a {@code Connection} around. Each thread has its own binding, so lanes and
+ * background jobs can run transactions in parallel without sharing state.
+ *
+ * <pre>
+ *   Transaction.run(tx -&gt; {
+ *       orderDAO.saveOrder(...);          // joins tx
+ *       productDAO.updateStockQuantity(); // joins tx
+ *       return null;
+ *   });
+ * </pre>
+ */
+public final class Transaction {
+
+    /** Work executed inside a transaction. */
+    @FunctionalInterface
+    public interface Work<T> {
+        T execute(Transaction tx) throws SQLException;
+    }
+
+    /** Hints applied when a new transaction is started; ignored when joining an outer one. */
+    public static final class Options {
+        /** Read-write, driver default isolation, no retry. */
+        public static final Options DEFAULT = new Options(false, -1, 1);
+        /** Read-write, retried as a whole on deadlocks, lock wait timeouts and lost connections. */
+        public static final Options RETRYING = new Options(false, -1, Retry.DEFAULT_MAX_ATTEMPTS);
+        /** Read-only, driver default isolation; reads are always safe to retry. */
+        public static final Options READ_ONLY = new Options(true, -1, Retry.DEFAULT_MAX_ATTEMPTS);
+
+        private final boolean readOnly;
+        private final int isolation;
+        private final int maxAttempts;
+
+        private Options(boolean readOnly, int isolation, int maxAttempts) {
+            this.readOnly = readOnly;
+            this.isolation = isolation;
+            this.maxAttempts = maxAttempts;
+        }
+
+        /** @param isolation one of the {@code Connection.TRANSACTION_*} constants */
+        public Options withIsolation(int isolation) {
+            return new Options(readOnly, isolation, maxAttempts);
+        }
+
+        public Options withReadOnly(boolean readOnly) {
+            return new Options(readOnly, isolation, maxAttempts);
+        }
+
+        /**
+         * Re-runs the whole unit of work after a transient failure. Only for work whose
+         * effects outside the database (fields it sets, messages it shows) are safe to repeat.
+         */
+        public Options withMaxAttempts(int maxAttempts) {
+            return new Options(readOnly, isolation, Math.max(1, maxAttempts));
+        }
+
+        public boolean isReadOnly() { return readOnly; }
+        public int getIsolation() { return isolation; }
+        public int getMaxAttempts() { return maxAttempts; }
+    }
+
+    /** SQLState for "transaction resolution unknown": the link dropped during commit. */
+    static final String COMMIT_OUTCOME_UNKNOWN_STATE = "08007";
+
+    private static final ThreadLocal<Transaction> CURRENT = new ThreadLocal<>();
+
+    private final Connection physical;
+    private final Connection handle;
+    private final boolean readOnly;
+    private boolean rollbackOnly = false;
+    private int savepointCounter = 0;
+    private final List<Work<?>> beforeCommit = new ArrayList<>();
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private final Map<Object, Object> resources = new HashMap<>();
+
+    private Transaction(Connection physical, boolean readOnly) {
+        this.physical = physical;
+        this.readOnly = readOnly;
+        this.handle = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new BoundHandle());
+    }
+
+    /** Runs {@code work} in the current transaction, or a new read-write one if there is none. */
+    public static <T> T run(Work<T> work) throws SQLException {
+        return run(Options.DEFAULT, work);
+    }
+
+    /** Runs {@code work} in the current transaction, or a new read-only one if there is none. */
+    public static <T> T readOnly(Work<T> work) throws SQLException {
+        return run(Options.READ_ONLY, work);
+    }
+
+    /**
+     * Runs {@code work} in the current transaction, or starts one with the given options.
+     *
+     * @throws SQLException if the work fails (after rolling back), if commit fails, or if a
+     *                      read-write unit of work tries to join a read-only transaction
+     */
+    public static <T> T run(Options options, Work<T> work) throws SQLException {
+        Transaction outer = CURRENT.get();
+        if (outer != null) {
+            return outer.join(options, work);
+        }
+        if (options.getMaxAttempts() <= 1) {
+            return runOnce(options, work, DatabaseConnector.leaseWithRetry());
+        }
+        return Retry.withBackoff(options.getMaxAttempts(), Transaction::isSafeToRetry,
+                () -> runOnce(options, work, DatabaseConnector.leaseConnection()));
+    }
+
+    /**
+     * A failed unit of work is safe to re-run if the failure was transient and the transaction
+     * was rolled back. If the connection dropped during commit we cannot know whether it
+     * committed, so that case is never retried.
+     */
+    private static boolean isSafeToRetry(SQLException e) {
+        return SqlErrors.isTransient(e) && !COMMIT_OUTCOME_UNKNOWN_STATE.equals(e.getSQLState());
+    }
+
+    private static <T> T runOnce(Options options, Work<T> work, Connection conn) throws SQLException {
+        Transaction tx;
+        try {
+            if (options.getIsolation() >= 0) {
+                conn.setTransactionIsolation(options.getIsolation());
+            }
+            if (options.isReadOnly()) {
+                conn.setReadOnly(true);
+            }
+            conn.setAutoCommit(false);
+            tx = new Transaction(conn, options.isReadOnly());
+        } catch (SQLException | RuntimeException e) {
+            closeQuietly(conn);
+            throw e;
+        }
+
+        CURRENT.set(tx);
+        T result;
+        try {
+            result = work.execute(tx);
+            if (tx.rollbackOnly) {
+                throw new SQLException("Transaction was marked rollback-only and has been rolled back.");
+            }
+            tx.runBeforeCommit();
+            try {
+                conn.commit();
+            } catch (SQLException e) {
+                if (SqlErrors.isConnectionFailure(e)) {
+                    throw new SQLException("Connection lost during commit; the transaction may or may not have been applied.",
+                            COMMIT_OUTCOME_UNKNOWN_STATE, e);
+                }
+                throw e;
+            }
+        } catch (SQLException | RuntimeException | Error e) {
+            try {
+                conn.rollback();
+            } catch (SQLException exRollback) {
+                System.err.println("Rollback failed: " + exRollback.getMessage());
+                e.addSuppressed(exRollback);
+            }
+            throw e;
+        } finally {
+            CURRENT.remove();
+            // The pool restores auto-commit, read-only and isolation on return.
+            closeQuietly(conn);
+        }
+        tx.runAfterCommit();
+        return result;
+    }
+
+    /**
+     * Runs {@code action} once the current transaction has committed, on the committing thread
+     * and outside the transaction; it is dropped if the transaction rolls back. Without a
+     * transaction the action runs immediately. Failures are logged, never thrown: the data is
+     * already committed.
+     */
+    public static void afterCommit(Runnable action) {
+        Transaction tx = CURRENT.get();
+        if (tx == null) {
+            runQuietly(action);
+        } else {
+            tx.afterCommit.add(action);
+        }
+    }
+
+    /**
+     * Runs {@code action} in this transaction just before it commits, after all of its work;
+     * e.g. to stamp every row the work changed with one statement. If the action fails the
+     * transaction rolls back like any other failure. It does not run if the work fails.
+     */
+    public void beforeCommit(Work<?> action) {
+        beforeCommit.add(action);
+    }
+
+    /**
+     * State shared by everything that joins this transaction, created on first use; e.g. a set
+     * of changed rows that one after-commit action reports in a single batch.
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R resource(Object key, Supplier<R> factory) {
+        return (R) resources.computeIfAbsent(key, k -> factory.get());
+    }
+
+    private void runBeforeCommit() throws SQLException {
+        for (int i = 0; i < beforeCommit.size(); i++) { // an action may add another
+            beforeCommit.get(i).execute(this);
+        }
+    }
+
+    private void runAfterCommit() {
+        for (Runnable action : afterCommit) {
+            runQuietly(action);
+        }
+    }
+
+    private static void runQuietly(Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            System.err.println("After-commit action failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /** The transaction bound to the calling thread, or null. */
+    public static Transaction current() {
+        return CURRENT.get();
+    }
+
+    /** True if the calling thread is inside a unit of work. */
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * The connection of this unit of work. Closing it is a no-op, and commit/rollback/auto-commit
+     * changes are rejected: the transaction owns those.
+     */
+    public Connection getConnection() {
+        return handle;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /** Forces the transaction to roll back when the outermost {@code run} completes. */
+    public void setRollbackOnly() {
+        rollbackOnly = true;
+    }
+
+    public boolean isRollbackOnly() {
+        return rollbackOnly;
+    }
+
+    public Savepoint setSavepoint() throws SQLException {
+        return physical.setSavepoint("sp" + (++savepointCounter));
+    }
+
+    public void rollbackTo(Savepoint savepoint) throws SQLException {
+        physical.rollback(savepoint);
+    }
+
+    public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+        physical.releaseSavepoint(savepoint);
+    }
+
+    /**
+     * Runs {@code work} behind a savepoint: if it throws, only its changes are undone and the
+     * exception is rethrown; the surrounding transaction stays usable.
+     */
+    public <T> T savepoint(Work<T> work) throws SQLException {
+        Savepoint sp = setSavepoint();
+        boolean wasRollbackOnly = rollbackOnly;
+        try {
+            T result = work.execute(this);
+            releaseSavepoint(sp);
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            try {
+                rollbackTo(sp);
+                rollbackOnly = wasRollbackOnly; // inner failures are undone, the rest can still commit
+            } catch (SQLException exRollback) {
+                e.addSuppressed(exRollback);
+                rollbackOnly = true;
+            }
+            throw e;
+        }
+    }
+
+    private <T> T join(Options options, Work<T> work) throws SQLException {
+        if (readOnly && !options.isReadOnly()) {
+            throw new SQLException("Cannot run read-write work inside a read-only transaction.");
+        }
+        try {
+            return work.execute(this);
+        } catch (SQLException | RuntimeException e) {
+            // The outer work may catch this, but the inner changes are incomplete.
+            rollbackOnly = true;
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            System.err.println("Error returning connection to pool: " + e.getMessage());
+        }
+    }
+
+    /** Non-closing view of the bound connection handed to DAOs. */
+    private final class BoundHandle implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    return null;
+                case "isClosed":
+                    return physical.isClosed();
+                case "commit":
+                case "setAutoCommit":
+                case "setReadOnly":
+                case "setTransactionIsolation":
+                    throw new SQLException(method.getName() + " is managed by the enclosing Transaction.");
+                case "rollback":
+                    if (args == null || args.length == 0) {
+                        throw new SQLException("rollback is managed by the enclosing Transaction; use setRollbackOnly() or a savepoint.");
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "TransactionConnection[" + physical + "]";
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
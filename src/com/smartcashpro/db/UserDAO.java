@@ -8,34 +8,35 @@ public class UserDAO {
     
     public User authenticate(String username, String password) {
         String sql = "SELECT UserID, PasswordHash, Role, IsActive FROM USER WHERE Username = ?";
-        Connection conn = DatabaseConnector.getConnection();
-        if (conn == null) {
-             System.err.println("Authentication failed: No database connection.");
-             return null;
-        }
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, username);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    String storedHash = rs.getString("PasswordHash"); 
-                    boolean isActive = rs.getBoolean("IsActive");
-                    boolean passwordMatch = storedHash.equals(password); 
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            if (conn == null) {
+                 System.err.println("Authentication failed: No database connection.");
+                 return null;
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, username);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        String storedHash = rs.getString("PasswordHash"); 
+                        boolean isActive = rs.getBoolean("IsActive");
+                        boolean passwordMatch = storedHash.equals(password); 
                     
-                    if (passwordMatch && isActive) {
-                         System.out.println("User '" + username + "' authenticated successfully.");
-                        return new User(
-                                rs.getInt("UserID"),
-                                username,
-                                rs.getString("Role"),
-                                isActive
-                        );
-                    } else if (!isActive) {
-                        System.out.println("Authentication failed: User '" + username + "' is inactive.");
+                        if (passwordMatch && isActive) {
+                             System.out.println("User '" + username + "' authenticated successfully.");
+                            return new User(
+                                    rs.getInt("UserID"),
+                                    username,
+                                    rs.getString("Role"),
+                                    isActive
+                            );
+                        } else if (!isActive) {
+                            System.out.println("Authentication failed: User '" + username + "' is inactive.");
+                        } else {
+                            System.out.println("Authentication failed: Incorrect password for user '" + username + "'.");
+                        }
                     } else {
-                        System.out.println("Authentication failed: Incorrect password for user '" + username + "'.");
+                         System.out.println("Authentication failed: User '" + username + "' not found.");
                     }
-                } else {
-                     System.out.println("Authentication failed: User '" + username + "' not found.");
                 }
             }
         } catch (SQLException e) {
@@ -45,15 +46,12 @@ public class UserDAO {
         return null; 
     }
     
-    public List<User> getAllUsers() {
+    /** Reads all users; screens use the cached copy in {@link ReferenceData#users()}. */
+    public List<User> getAllUsers() throws SQLException {
         List<User> users = new ArrayList<>();
         String sql = "SELECT UserID, Username, Role, IsActive FROM USER ORDER BY Username";
-        Connection conn = DatabaseConnector.getConnection();
-         if (conn == null) {
-             System.err.println("Cannot get users: No database connection.");
-             return users; 
-         }
-        try (Statement stmt = conn.createStatement();
+        try (Connection conn = DatabaseConnector.requireConnection();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
                 users.add(new User(
@@ -65,19 +63,13 @@ public class UserDAO {
             }
         } catch (SQLException e) {
             System.err.println("Error fetching users: " + e.getMessage());
-            e.printStackTrace();
+            throw e;
         }
         return users;
     }
     
     
     public boolean saveUser(User user, String plainPassword) {
-        Connection conn = DatabaseConnector.getConnection();
-         if (conn == null) {
-             System.err.println("Cannot save user: No database connection.");
-             return false;
-         }
-        
         boolean isNewUser = (user.getUserId() == 0);
         String sql;
         
@@ -106,25 +98,34 @@ public class UserDAO {
                 sql = "UPDATE USER SET Role = ?, IsActive = ? WHERE UserID = ?";
             }
         }
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            if (isNewUser) {
-                pstmt.setString(1, user.getUsername());
-                pstmt.setString(2, passwordToStore);
-                pstmt.setString(3, user.getRole());
-                pstmt.setBoolean(4, user.isActive());
-            } else {
-                pstmt.setString(1, user.getRole());
-                pstmt.setBoolean(2, user.isActive());
-                if (passwordToStore != null) {
-                     pstmt.setString(3, passwordToStore);
-                     pstmt.setInt(4, user.getUserId());
+        try (Connection conn = DatabaseConnector.getConnection()) {
+            if (conn == null) {
+                System.err.println("Cannot save user: No database connection.");
+                return false;
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                if (isNewUser) {
+                    pstmt.setString(1, user.getUsername());
+                    pstmt.setString(2, passwordToStore);
+                    pstmt.setString(3, user.getRole());
+                    pstmt.setBoolean(4, user.isActive());
                 } else {
-                    pstmt.setInt(3, user.getUserId());
+                    pstmt.setString(1, user.getRole());
+                    pstmt.setBoolean(2, user.isActive());
+                    if (passwordToStore != null) {
+                         pstmt.setString(3, passwordToStore);
+                         pstmt.setInt(4, user.getUserId());
+                    } else {
+                        pstmt.setInt(3, user.getUserId());
+                    }
+                }
+                int affectedRows = pstmt.executeUpdate();
+                System.out.println("User save operation affected " + affectedRows + " rows for UserID/Username: " + (isNewUser ? user.getUsername() : user.getUserId()));
+                if (affectedRows > 0) {
+                    ReferenceData.users().invalidate();
                 }
+                return affectedRows > 0;
             }
-            int affectedRows = pstmt.executeUpdate();
-            System.out.println("User save operation affected " + affectedRows + " rows for UserID/Username: " + (isNewUser ? user.getUsername() : user.getUserId()));
-            return affectedRows > 0;
         } catch (SQLException e) {
             System.err.println("Error saving user '" + user.getUsername() + "': " + e.getMessage());
              if (e.getMessage().contains("Duplicate entry")) { 
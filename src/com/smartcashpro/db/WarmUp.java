@@ -0,0 +1,181 @@
+package com.smartcashpro.db;
+
+import com.smartcashpro.model.Order;
+import com.smartcashpro.model.Shift;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gets the database side of the app ready while the login screen is still up.
+ *
+ * {@link #start()} runs, in parallel:
+ * <ul>
+ *   <li>priming: several overlapping read-only transactions run the POS lookups, so the pool
+ *       opens that many connections and each one has the hot statements prepared (and the
+ *       lookup code is JIT-compiled) before the first scan. They run on threads of their own,
+ *       since each waits for the others while holding its connection;</li>
+ *   <li>the catalog snapshot behind the scan cache ({@link CachedProductDAO}), brought up to
+ *       date with the products changed since the till last ran;</li>
+ *   <li>the compact catalog store ({@link CompactProductDAO}), if it is selected;</li>
+ *   <li>a preload of the open shift, which the shift panel {@code take}s once instead of
+ *       querying again;</li>
+ *   <li>the supplier, category and user lists ({@link ReferenceData});</li>
+ *   <li>the first page of order history, to open the replica connection and cursor;</li>
+ *   <li>the product search index, built on its own thread.</li>
+ * </ul>
+ * Everything except priming and the search index runs on the {@link AsyncDAO} workers.
+ * Every phase is recorded in the {@link StartupTimeline}. Failures are only logged; the
+ * panels then load their data themselves as usual.
+ */
+public final class WarmUp {
+
+    private static final int PRIMED_CONNECTIONS = 3;
+    /** How long priming transactions wait for each other so they hold distinct connections. */
+    private static final long PRIME_OVERLAP_MS = 2_000;
+    /** Preloaded data older than this is not handed out; the panel reloads instead. */
+    private static final long MAX_PRELOAD_AGE_MS = 60_000;
+
+    private static Preload<Shift> openShift;
+    private static CompletableFuture<Void> finished;
+
+    private WarmUp() {
+    }
+
+    /** Starts the warm-up; later calls do nothing. */
+    public static synchronized void start() {
+        if (finished != null) {
+            return;
+        }
+        StartupTimeline.Phase overall = StartupTimeline.begin("warm-up (all phases)");
+        List<CompletableFuture<?>> phases = new ArrayList<>();
+
+        // Data the first screens need goes first.
+        // Scans are answered from the mapped snapshot meanwhile; the inventory list reads its own pages.
+        phases.add(phase("catalog snapshot sync", CachedProductDAO.getInstance(), CachedProductDAO::syncSnapshot));
+        if (CompactProductDAO.isSelected()) {
+            phases.add(phase("compact catalog", CompactProductDAO.getInstance(), CompactProductDAO::reload));
+        }
+        openShift = new Preload<>(phase("open shift", new ShiftDAO(), ShiftDAO::findOpenShift));
+        phases.add(openShift.future);
+        phases.add(ProductSearchIndex.getInstance().rebuild()); // on the index's own thread
+
+        AtomicInteger primerNumber = new AtomicInteger();
+        ExecutorService primers = Executors.newFixedThreadPool(PRIMED_CONNECTIONS, r -> {
+            Thread t = new Thread(r, "warm-up-prime-" + primerNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        CountDownLatch overlap = new CountDownLatch(PRIMED_CONNECTIONS);
+        for (int i = 1; i <= PRIMED_CONNECTIONS; i++) {
+            String name = "prime connection " + i;
+            phases.add(logged(name, CompletableFuture.supplyAsync(
+                    () -> timedUnchecked(name, () -> prime(overlap)), primers)));
+        }
+        primers.shutdown(); // the threads end once priming has finished
+
+        phases.add(phase("suppliers", ReferenceData.suppliers(), ReferenceData::reload));
+        phases.add(phase("categories", ReferenceData.categories(), ReferenceData::reload));
+        phases.add(phase("users", ReferenceData.users(), ReferenceData::reload));
+        phases.add(phase("order history cursor", new OrderDAO(), dao -> {
+            try (RowCursor<Order> cursor = dao.streamAllOrders()) {
+                return cursor.hasNext() ? cursor.next() : null;
+            }
+        }));
+
+        finished = CompletableFuture.allOf(phases.toArray(new CompletableFuture<?>[0]))
+                .handle((v, e) -> null)
+                .thenRun(overall::close);
+    }
+
+    /** Completes when every phase has finished, successfully or not; completed if never started. */
+    public static synchronized CompletableFuture<Void> whenFinished() {
+        return finished != null ? finished : CompletableFuture.completedFuture(null);
+    }
+
+    /** The preloaded open-shift lookup (possibly still loading), or null if it was taken, failed or is stale. */
+    public static synchronized CompletableFuture<Shift> takeOpenShift() {
+        return openShift != null ? openShift.take() : null;
+    }
+
+    private static <D, T> CompletableFuture<T> phase(String name, D dao, AsyncDAO.Call<? super D, T> call) {
+        return logged(name, new AsyncDAO<>(dao).call(d -> timed(name, () -> call.apply(d))));
+    }
+
+    private static <T> CompletableFuture<T> logged(String name, CompletableFuture<T> phase) {
+        return phase.whenComplete((result, error) -> {
+            if (error != null) {
+                System.err.println("Warm-up '" + name + "' failed: " + AsyncDAO.unwrap(error));
+            }
+        });
+    }
+
+    private static <T> T timed(String name, Callable<T> work) throws Exception {
+        StartupTimeline.Phase phase = StartupTimeline.begin("warm-up: " + name);
+        try {
+            return work.call();
+        } finally {
+            phase.close();
+        }
+    }
+
+    /** {@link #timed} for {@link CompletableFuture#supplyAsync}. */
+    private static <T> T timedUnchecked(String name, Callable<T> work) {
+        try {
+            return timed(name, work);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static Void prime(CountDownLatch overlap) throws Exception {
+        ProductDAO productDAO = new ProductDAO();
+        ShiftDAO shiftDAO = new ShiftDAO();
+        return Transaction.readOnly(tx -> {
+            productDAO.findProductBySku("");
+            productDAO.findProductById(-1);
+            shiftDAO.findOpenShift();
+            overlap.countDown();
+            try {
+                overlap.await(PRIME_OVERLAP_MS, TimeUnit.MILLISECONDS); // keep this connection leased
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+    }
+
+    /** A preloaded result that is handed out at most once, and only while it is fresh. */
+    private static final class Preload<T> {
+        final CompletableFuture<T> future;
+        volatile long loadedAt = -1;
+        boolean taken = false;
+
+        Preload(CompletableFuture<T> future) {
+            this.future = future;
+            future.thenRun(() -> loadedAt = System.currentTimeMillis());
+        }
+
+        CompletableFuture<T> take() {
+            if (taken || future.isCompletedExceptionally()) {
+                return null;
+            }
+            long at = loadedAt;
+            if (future.isDone() && at >= 0 && System.currentTimeMillis() - at > MAX_PRELOAD_AGE_MS) {
+                return null;
+            }
+            taken = true;
+            return future;
+        }
+    }
+}
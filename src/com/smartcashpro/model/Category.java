@@ -0,0 +1,34 @@
+package com.smartcashpro.model;
+
+public class Category {
+    private int categoryId;
+    private String categoryName;
+
+    public Category(int id, String name) {
+        this.categoryId = id;
+        this.categoryName = name;
+    }
+
+    // Getters
+    public int getCategoryId() { return categoryId; }
+    public String getCategoryName() { return categoryName; }
+
+    // Shown as-is in combo boxes
+    @Override
+    public String toString() {
+        return categoryName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Category category = (Category) o;
+        return categoryId == category.categoryId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(categoryId);
+    }
+}
@@ -0,0 +1,37 @@
+package com.smartcashpro.model;
+
+/**
+ * Result of a barcode scan: the product plus how many more of it can be sold right now.
+ *
+ * Immutable; the product is a private copy that may be changed freely by the caller.
+ */
+public final class ProductScan {
+    private final Product product;
+    private final int quantityInStock;
+    private final int quantityInCart;
+
+    public ProductScan(Product product, int quantityInStock, int quantityInCart) {
+        this.product = product;
+        this.quantityInStock = quantityInStock;
+        this.quantityInCart = quantityInCart;
+    }
+
+    public Product getProduct() { return product; }
+    public int getProductId() { return product.getProductId(); }
+    /** Stock in the database when the scan was looked up. */
+    public int getQuantityInStock() { return quantityInStock; }
+    /** Units already in the cart, as passed to the lookup. */
+    public int getQuantityInCart() { return quantityInCart; }
+    /** Units that can still be added to the cart; never negative. */
+    public int getAvailableQuantity() { return Math.max(0, quantityInStock - quantityInCart); }
+
+    /** The same scan against a cart that has changed since the lookup. */
+    public ProductScan withQuantityInCart(int quantityInCart) {
+        return quantityInCart == this.quantityInCart ? this : new ProductScan(product, quantityInStock, quantityInCart);
+    }
+
+    @Override
+    public String toString() {
+        return "ProductScan[" + product.getSku() + ", stock=" + quantityInStock + ", inCart=" + quantityInCart + "]";
+    }
+}
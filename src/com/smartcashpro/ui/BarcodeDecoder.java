@@ -0,0 +1,360 @@
+package com.smartcashpro.ui;
+
+/**
+ * Turns what the scanner typed into the SKU to look up, plus anything the barcode says about
+ * the quantity or price of this one sale line. Runs before every POS lookup, so parsing does
+ * not allocate: the input is copied into a reusable buffer and the results are primitives;
+ * only {@link #sku()} creates a String. One decoder per panel, used on the EDT only.
+ *
+ * Understood, in this order:
+ * <ul>
+ *   <li>GS1 element strings (GS1-128, DataBar, DataMatrix), as scanners send them (with a
+ *       symbology identifier such as {@code ]C1} and GS separators) or typed with the AIs in
+ *       brackets. The item is AI 01 (or 02), with the count from AI 30/37, the net weight in
+ *       kg from AI 310n and the price to pay from AI 392n; other AIs are skipped.</li>
+ *   <li>EAN-13 with a variable-measure prefix: {@code PP IIIII VVVVV C}, the value being the
+ *       price in cents for the prefixes in {@code smartcashpro.barcode.pricePrefixes} (default
+ *       20,24) or the weight in grams for {@code smartcashpro.barcode.weightPrefixes} (default
+ *       21,22,23). The item is looked up by the same code with the value zeroed and the check
+ *       digit recomputed, e.g. {@code 2112345000008}.</li>
+ *   <li>UPC-A in number system 2 ({@code 2 IIIII PPPPP C}): price in cents, looked up the same way.</li>
+ *   <li>Any other EAN-13, UPC-A, EAN-8 or GTIN-14 with a valid check digit, looked up as
+ *       scanned (GTIN-14 without its leading zero).</li>
+ * </ul>
+ * Only the GS1 symbology identifiers and those of EAN/UPC ({@code ]E0}, {@code ]E4}) and ITF
+ * ({@code ]I1}) are stripped. Anything else, including numbers with a wrong check digit and
+ * SKUs that merely start with {@code ]}, is looked up exactly as typed.
+ */
+final class BarcodeDecoder {
+
+    enum Kind { PLAIN, GTIN, GS1, VARIABLE_PRICE, VARIABLE_WEIGHT }
+
+    private static final char GS = '\u001D';
+    private static final int MAX_LENGTH = 256;
+    private static final boolean[] PRICE_PREFIXES = prefixes("smartcashpro.barcode.pricePrefixes", "20,24");
+    private static final boolean[] WEIGHT_PREFIXES = prefixes("smartcashpro.barcode.weightPrefixes", "21,22,23");
+
+    private final char[] input = new char[MAX_LENGTH];
+    private int start;
+    private int end;
+    private final char[] key = new char[MAX_LENGTH];
+    private int keyLength;
+    private String tooLong;
+
+    private Kind kind;
+    private int quantity;
+    private long priceCents;
+    private int weightGrams;
+
+    /** Decodes one scan; the results stay until the next call. Returns false if it was blank. */
+    boolean decode(CharSequence scanned) {
+        kind = Kind.PLAIN;
+        quantity = 1;
+        priceCents = -1;
+        weightGrams = -1;
+        tooLong = null;
+        start = 0;
+        end = 0;
+        int from = 0;
+        int to = scanned.length();
+        while (from < to && isBlank(scanned.charAt(from))) {
+            from++;
+        }
+        while (to > from && isBlank(scanned.charAt(to - 1))) {
+            to--;
+        }
+        if (from == to) {
+            keyLength = 0;
+            return false;
+        }
+        if (to - from > MAX_LENGTH) {
+            tooLong = scanned.subSequence(from, to).toString();
+            return true;
+        }
+        for (int i = from; i < to; i++) {
+            input[end++] = scanned.charAt(i);
+        }
+
+        boolean gs1 = false;
+        if (end - start >= 3 && input[start] == ']') { // symbology identifier, e.g. ]C1 for GS1-128
+            char symbology = input[start + 1];
+            char modifier = input[start + 2];
+            gs1 = symbology == 'C' && modifier == '1' || symbology == 'e' && modifier == '0'
+                    || symbology == 'd' && modifier == '2' || symbology == 'Q' && modifier == '3'
+                    || symbology == 'J' && modifier == '1';
+            boolean gtin = symbology == 'E' && (modifier == '0' || modifier == '4') // EAN-13/UPC-A, EAN-8
+                    || symbology == 'I' && modifier == '1'; // ITF-14
+            if (!gs1 && !gtin) {
+                keyLength = 0; // any other "]..." is a SKU that happens to start with a bracket
+                appendKey(start, end);
+                return true;
+            }
+            start += 3;
+            if (start == end) {
+                keyLength = 0;
+                return false;
+            }
+        }
+        if (gs1 || input[start] == '(' || contains(GS)) {
+            if (decodeGs1()) {
+                return true;
+            }
+            kind = Kind.PLAIN;
+            quantity = 1;
+            priceCents = -1;
+            weightGrams = -1;
+        } else if (allDigits(start, end) && decodeNumeric()) {
+            return true;
+        }
+        keyLength = 0;
+        appendKey(start, end);
+        return true;
+    }
+
+    Kind kind() { return kind; }
+    /** Units to add; 1 unless the barcode carries a count. */
+    int quantity() { return quantity; }
+    /** The price the barcode sets for this line in cents, or -1. */
+    long priceCents() { return priceCents; }
+    /** The weight the barcode gives for this line in grams, or -1. */
+    int weightGrams() { return weightGrams; }
+
+    /** The SKU to look up. */
+    String sku() {
+        return tooLong != null ? tooLong : new String(key, 0, keyLength);
+    }
+
+    private boolean decodeNumeric() {
+        int length = end - start;
+        if (!(length == 8 || length == 12 || length == 13 || length == 14) || !checkDigitValid(start, end)) {
+            return false;
+        }
+        keyLength = 0;
+        if (length == 13) {
+            int prefix = digit(start) * 10 + digit(start + 1);
+            if (PRICE_PREFIXES[prefix] || WEIGHT_PREFIXES[prefix]) {
+                long value = number(start + 7, start + 12);
+                if (PRICE_PREFIXES[prefix]) {
+                    kind = Kind.VARIABLE_PRICE;
+                    priceCents = value;
+                } else {
+                    kind = Kind.VARIABLE_WEIGHT;
+                    weightGrams = (int) value;
+                }
+                appendBaseItem(7);
+                return true;
+            }
+        } else if (length == 12 && input[start] == '2') {
+            kind = Kind.VARIABLE_PRICE;
+            priceCents = number(start + 6, start + 11);
+            appendBaseItem(6);
+            return true;
+        }
+        kind = Kind.GTIN;
+        appendKey(length == 14 && input[start] == '0' ? start + 1 : start, end);
+        return true;
+    }
+
+    /** The scanned code with the digits from {@code valueAt} zeroed and a new check digit. */
+    private void appendBaseItem(int valueAt) {
+        appendKey(start, start + valueAt);
+        for (int i = start + valueAt; i < end - 1; i++) {
+            key[keyLength++] = '0';
+        }
+        key[keyLength] = '0';
+        key[keyLength] = (char) ('0' + checkDigit(key, 0, keyLength + 1));
+        keyLength++;
+    }
+
+    private boolean decodeGs1() {
+        boolean bracketed = input[start] == '(';
+        boolean gtinFound = false;
+        int i = start;
+        while (i < end) {
+            if (input[i] == GS) {
+                i++;
+                continue;
+            }
+            int aiStart;
+            int aiEnd;
+            if (bracketed) {
+                if (input[i] != '(') {
+                    return false;
+                }
+                aiStart = i + 1;
+                aiEnd = aiStart;
+                while (aiEnd < end && input[aiEnd] != ')') {
+                    aiEnd++;
+                }
+                if (aiEnd == end || aiEnd - aiStart < 2 || !allDigits(aiStart, aiEnd)) {
+                    return false;
+                }
+                i = aiEnd + 1;
+            } else {
+                if (end - i < 2 || !allDigits(i, i + 2)) {
+                    return false;
+                }
+                aiStart = i;
+                aiEnd = i + aiLength(digit(i) * 10 + digit(i + 1));
+                if (aiEnd > end || !allDigits(aiStart, aiEnd)) {
+                    return false;
+                }
+                i = aiEnd;
+            }
+            int group = digit(aiStart) * 10 + digit(aiStart + 1);
+            int fixed = dataLength(group);
+            int dataEnd;
+            if (fixed > 0) {
+                dataEnd = i + fixed;
+                if (dataEnd > end) {
+                    return false;
+                }
+            } else {
+                dataEnd = i;
+                while (dataEnd < end && input[dataEnd] != GS && !(bracketed && input[dataEnd] == '(')) {
+                    dataEnd++;
+                }
+            }
+
+            int aiLength = aiEnd - aiStart;
+            if ((group == 1 || group == 2) && aiLength == 2) {
+                if (dataEnd - i != 14 || !allDigits(i, dataEnd) || !checkDigitValid(i, dataEnd)) {
+                    return false;
+                }
+                if (!gtinFound || group == 1) { // AI 01 wins over a contained GTIN (02)
+                    keyLength = 0;
+                    appendKey(input[i] == '0' ? i + 1 : i, dataEnd);
+                    gtinFound = true;
+                }
+            } else if ((group == 30 || group == 37) && aiLength == 2) {
+                long count = allDigits(i, dataEnd) && dataEnd - i <= 8 ? number(i, dataEnd) : -1;
+                if (count <= 0) {
+                    return false;
+                }
+                quantity = (int) count;
+            } else if (group == 31 && aiLength == 4 && digit(aiStart + 2) == 0) { // 310n: net weight, kg
+                if (!allDigits(i, dataEnd)) {
+                    return false;
+                }
+                weightGrams = (int) scale(number(i, dataEnd), digit(aiStart + 3), 3);
+            } else if (group == 39 && aiLength == 4 && digit(aiStart + 2) == 2) { // 392n: amount payable
+                if (dataEnd == i || dataEnd - i > 15 || !allDigits(i, dataEnd)) {
+                    return false;
+                }
+                priceCents = scale(number(i, dataEnd), digit(aiStart + 3), 2);
+            }
+            i = dataEnd;
+        }
+        if (!gtinFound) {
+            return false;
+        }
+        kind = priceCents >= 0 ? Kind.VARIABLE_PRICE : weightGrams >= 0 ? Kind.VARIABLE_WEIGHT : Kind.GS1;
+        return true;
+    }
+
+    /** Digits in an AI starting with this two-digit group (GS1 General Specifications, 3.2). */
+    private static int aiLength(int group) {
+        if (group <= 22 || group == 30 || group == 37 || group >= 90) {
+            return 2;
+        }
+        if (group >= 23 && group <= 29 || group >= 40 && group <= 42 || group == 71) { // 71: 710 to 715
+            return 3;
+        }
+        return 4;
+    }
+
+    /** Data length of the AIs with predefined fixed length, or 0 for variable length. */
+    private static int dataLength(int group) {
+        switch (group) {
+            case 0: return 18;
+            case 1: case 2: case 3: return 14;
+            case 4: return 16;
+            case 11: case 12: case 13: case 14: case 15: case 16: case 17: case 18: case 19: return 6;
+            case 20: return 2;
+            case 31: case 32: case 33: case 34: case 35: case 36: return 6;
+            case 41: return 13;
+            default: return 0;
+        }
+    }
+
+    /** {@code value} with {@code decimals} decimals, as a whole number of 10^-{@code wanted} units. */
+    private static long scale(long value, int decimals, int wanted) {
+        for (; decimals < wanted; decimals++) {
+            value *= 10;
+        }
+        for (; decimals > wanted; decimals--) {
+            value = (value + 5) / 10;
+        }
+        return value;
+    }
+
+    private boolean checkDigitValid(int from, int to) {
+        return checkDigit(input, from, to) == digit(to - 1);
+    }
+
+    /** The GS1 check digit for the digits in [from, to - 1). */
+    private static int checkDigit(char[] digits, int from, int to) {
+        int sum = 0;
+        boolean triple = true;
+        for (int i = to - 2; i >= from; i--) {
+            int d = digits[i] - '0';
+            sum += triple ? 3 * d : d;
+            triple = !triple;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    private long number(int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            value = value * 10 + digit(i);
+        }
+        return value;
+    }
+
+    private int digit(int i) {
+        return input[i] - '0';
+    }
+
+    private boolean allDigits(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (input[i] < '0' || input[i] > '9') {
+                return false;
+            }
+        }
+        return from < to;
+    }
+
+    private boolean contains(char c) {
+        for (int i = start; i < end; i++) {
+            if (input[i] == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void appendKey(int from, int to) {
+        System.arraycopy(input, from, key, keyLength, to - from);
+        keyLength += to - from;
+    }
+
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    private static boolean[] prefixes(String property, String defaults) {
+        boolean[] set = new boolean[100];
+        for (String prefix : System.getProperty(property, defaults).split(",")) {
+            try {
+                int p = Integer.parseInt(prefix.trim());
+                if (p >= 0 && p < 100) {
+                    set[p] = true;
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("Ignoring barcode prefix '" + prefix + "' in " + property);
+            }
+        }
+        return set;
+    }
+}
@@ -0,0 +1,196 @@
+package com.smartcashpro.ui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Lets the cashier paste a trade customer's list of SKUs, or load it from a text or CSV file,
+ * to add to the sale in one go. One item per line: the SKU, optionally followed by a quantity
+ * after a comma, semicolon, tab or space ({@code 4006381333931,12}). Blank lines and lines
+ * starting with {@code #} are skipped.
+ *
+ * Each SKU goes through the same {@link BarcodeDecoder} as a scan, so a list exported from
+ * a scanner or a supplier's system can hold GTIN-14s, GS1 element strings and variable
+ * price or weight EAN-13s. Lines for the same SKU are merged, ignoring case as the database
+ * does; a line whose barcode sets a price or weight stays on its own, one sale line per unit.
+ */
+class BasketImportDialog extends JDialog {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The parsed list: quantity per SKU in first-seen order (spelt as first seen), the lines
+     * with a price or weight from the barcode, and the lines that could not be read.
+     */
+    static final class Basket {
+        private final Map<String, Integer> quantities;
+        private final List<PricedLine> pricedLines;
+        private final List<String> invalidLines;
+
+        private Basket(Map<String, Integer> quantities, List<PricedLine> pricedLines, List<String> invalidLines) {
+            this.quantities = Collections.unmodifiableMap(quantities);
+            this.pricedLines = Collections.unmodifiableList(pricedLines);
+            this.invalidLines = Collections.unmodifiableList(invalidLines);
+        }
+
+        Map<String, Integer> getQuantities() { return quantities; }
+        List<PricedLine> getPricedLines() { return pricedLines; }
+        List<String> getInvalidLines() { return invalidLines; }
+        boolean isEmpty() { return quantities.isEmpty() && pricedLines.isEmpty(); }
+    }
+
+    /** A basket line whose barcode sets the price (in cents) or the weight (in grams), the other being -1. */
+    static final class PricedLine {
+        private final String sku;
+        private final int units;
+        private final long priceCents;
+        private final int weightGrams;
+
+        private PricedLine(String sku, int units, long priceCents, int weightGrams) {
+            this.sku = sku;
+            this.units = units;
+            this.priceCents = priceCents;
+            this.weightGrams = weightGrams;
+        }
+
+        String getSku() { return sku; }
+        int getUnits() { return units; }
+        long getPriceCents() { return priceCents; }
+        int getWeightGrams() { return weightGrams; }
+    }
+
+    private final JTextArea basketArea = new JTextArea(20, 40);
+    private final JButton loadFileButton = new JButton("Load File...");
+    private final JButton addButton = new JButton("Add to Cart");
+    private final JButton cancelButton = new JButton("Cancel");
+    private Basket basket;
+
+    BasketImportDialog(Window owner) {
+        super(owner, "Import Basket", ModalityType.APPLICATION_MODAL);
+        initComponents();
+        pack();
+        setLocationRelativeTo(owner);
+    }
+
+    /** The basket to add, or null if the dialog was cancelled. */
+    Basket getBasket() {
+        return basket;
+    }
+
+    private void initComponents() {
+        setLayout(new BorderLayout(10, 10));
+
+        JLabel helpLabel = new JLabel("<html>Paste one SKU or barcode per line, optionally followed by a quantity "
+                + "(e.g. <tt>4006381333931, 12</tt>).<br>Lines for the same SKU are added up.</html>");
+        helpLabel.setBorder(BorderFactory.createEmptyBorder(10, 10, 0, 10));
+
+        basketArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        JScrollPane basketScrollPane = new JScrollPane(basketArea);
+        basketScrollPane.setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createEmptyBorder(0, 10, 0, 10), basketScrollPane.getBorder()));
+
+        JPanel buttonPanel = new JPanel(new BorderLayout());
+        JPanel leftButtons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        leftButtons.add(loadFileButton);
+        JPanel rightButtons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        rightButtons.add(cancelButton);
+        rightButtons.add(addButton);
+        buttonPanel.add(leftButtons, BorderLayout.WEST);
+        buttonPanel.add(rightButtons, BorderLayout.EAST);
+
+        add(helpLabel, BorderLayout.NORTH);
+        add(basketScrollPane, BorderLayout.CENTER);
+        add(buttonPanel, BorderLayout.SOUTH);
+
+        loadFileButton.addActionListener(e -> loadFile());
+        addButton.addActionListener(e -> {
+            basket = parse(basketArea.getText());
+            dispose();
+        });
+        cancelButton.addActionListener(e -> dispose());
+        getRootPane().setDefaultButton(addButton);
+    }
+
+    private void loadFile() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Load Basket");
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Text or CSV files", "txt", "csv"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            basketArea.setText(new String(Files.readAllBytes(chooser.getSelectedFile().toPath()), StandardCharsets.UTF_8));
+            basketArea.setCaretPosition(0);
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Could not read the file:\n" + ex.getMessage(),
+                    "File Error", JOptionPane.ERROR_MESSAGE);
+            ex.printStackTrace();
+        }
+    }
+
+    /** Reads a pasted basket; see the class comment for the format. */
+    static Basket parse(String text) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        Map<String, String> firstSpelling = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        List<PricedLine> pricedLines = new ArrayList<>();
+        List<String> invalidLines = new ArrayList<>();
+        BarcodeDecoder decoder = new BarcodeDecoder();
+        int lineNumber = 0;
+        for (String line : text.split("\\r?\\n|\\r")) {
+            lineNumber++;
+            String trimmed = line.replace("\uFEFF", "").trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            int separator = lastSeparator(trimmed);
+            String sku = separator < 0 ? trimmed : trimmed.substring(0, separator).trim();
+            int quantity = 1;
+            if (separator >= 0) {
+                String quantityText = trimmed.substring(separator + 1).trim();
+                try {
+                    quantity = Integer.parseInt(quantityText);
+                } catch (NumberFormatException e) {
+                    quantity = -1;
+                }
+                if (quantity < 0 && trimmed.charAt(separator) == ' ') {
+                    sku = trimmed; // a SKU with a space in it
+                    quantity = 1;
+                } else if (quantity <= 0) {
+                    if (lineNumber == 1 && quantity < 0) {
+                        continue; // a header such as "SKU,Quantity"
+                    }
+                    invalidLines.add("Line " + lineNumber + ": '" + trimmed + "' (quantity must be a whole number above 0)");
+                    continue;
+                }
+            }
+            if (!decoder.decode(sku)) {
+                invalidLines.add("Line " + lineNumber + ": '" + trimmed + "' (no SKU)");
+                continue;
+            }
+            sku = decoder.sku();
+            if (decoder.priceCents() >= 0 || decoder.weightGrams() >= 0) {
+                pricedLines.add(new PricedLine(sku, quantity, decoder.priceCents(), decoder.weightGrams()));
+                continue;
+            }
+            int units = (int) Math.min(Integer.MAX_VALUE, (long) quantity * decoder.quantity());
+            sku = firstSpelling.computeIfAbsent(sku, s -> s);
+            quantities.merge(sku, units, (a, b) -> (int) Math.min(Integer.MAX_VALUE, (long) a + b));
+        }
+        return new Basket(quantities, pricedLines, invalidLines);
+    }
+
+    /** Where the quantity starts: after the last comma, semicolon or tab, or else the last space. */
+    private static int lastSeparator(String line) {
+        int separator = Math.max(line.lastIndexOf(','), Math.max(line.lastIndexOf(';'), line.lastIndexOf('\t')));
+        return separator >= 0 ? separator : line.lastIndexOf(' ');
+    }
+}
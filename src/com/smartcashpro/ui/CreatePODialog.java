@@ -1,15 +1,17 @@
 package com.smartcashpro.ui;
 
-import com.smartcashpro.db.ProductDAO;
+import com.smartcashpro.db.AsyncDAO;
 import com.smartcashpro.db.PurchaseOrderDAO;
+import com.smartcashpro.db.ReferenceData;
 import com.smartcashpro.model.Product;
-import com.smartcashpro.model.NonPerishableProduct; // Import for placeholder
 import com.smartcashpro.model.PurchaseOrder;
 import com.smartcashpro.model.PurchaseOrderItem;
 import com.smartcashpro.model.Supplier;
 import com.smartcashpro.model.User;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -18,11 +20,14 @@ import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class CreatePODialog extends JDialog {
 
     private JComboBox<Supplier> supplierComboBox;
-    private JComboBox<Product> productComboBox;
+    private JTextField productSearchField;
+    private ProductTypeahead productTypeahead;
+    private Product selectedProduct; // picked from the suggestions; cleared when the text is edited
     private JTextField quantityField;
     private JTextField costPriceField;
     private JButton addItemButton;
@@ -34,7 +39,8 @@ public class CreatePODialog extends JDialog {
     private JLabel totalCostLabel;
 
     private PurchaseOrderDAO poDAO;
-    private ProductDAO productDAO;
+    private AsyncDAO<PurchaseOrderDAO> asyncPurchaseOrders;
+    private CompletableFuture<List<Supplier>> pendingLoad;
 
     private List<PurchaseOrderItem> currentPOItems;
     private User currentUser;
@@ -43,7 +49,7 @@ public class CreatePODialog extends JDialog {
         super(owner, "Create New Purchase Order", ModalityType.APPLICATION_MODAL);
         this.currentUser = currentUser;
         this.poDAO = new PurchaseOrderDAO();
-        this.productDAO = new ProductDAO();
+        this.asyncPurchaseOrders = new AsyncDAO<>(poDAO);
         this.currentPOItems = new ArrayList<>();
 
         initComponents();
@@ -67,14 +73,10 @@ public class CreatePODialog extends JDialog {
         topPanel.add(supplierComboBox, gbc);
         gbc.gridwidth = 1; gbc.fill = GridBagConstraints.NONE;
 
-        gbc.gridx = 0; gbc.gridy = 1; topPanel.add(new JLabel("Product:"), gbc);
-        productComboBox = new JComboBox<>();
-        productComboBox.setPrototypeDisplayValue(
-            new NonPerishableProduct("PROTOTYPE_SKU", "Long Product Name To Set Width For ComboBox Display",
-                                     BigDecimal.ZERO, 0, BigDecimal.ZERO, 0)
-        );
+        gbc.gridx = 0; gbc.gridy = 1; topPanel.add(new JLabel("Product (name or SKU):"), gbc);
+        productSearchField = new JTextField(30);
         gbc.gridx = 1; gbc.gridy = 1; gbc.gridwidth = 3; gbc.fill = GridBagConstraints.HORIZONTAL;
-        topPanel.add(productComboBox, gbc);
+        topPanel.add(productSearchField, gbc);
         gbc.gridwidth = 1; gbc.fill = GridBagConstraints.NONE;
 
         gbc.gridx = 0; gbc.gridy = 2; topPanel.add(new JLabel("Quantity:"), gbc);
@@ -90,18 +92,17 @@ public class CreatePODialog extends JDialog {
         topPanel.add(addItemButton, gbc);
         gbc.anchor = GridBagConstraints.WEST;
 
-        productComboBox.addActionListener(e -> {
-            Product selectedProduct = (Product) productComboBox.getSelectedItem();
-            if (selectedProduct != null && selectedProduct.getProductId() != 0 && // Check not a placeholder
-                !"NO_PRODUCTS".equals(selectedProduct.getSku()) &&
-                !"PROTOTYPE_SKU".equals(selectedProduct.getSku())) {
-                costPriceField.setText(selectedProduct.getCurrentCostPrice().toPlainString());
-                quantityField.setText("1");
-                quantityField.requestFocus();
-            } else {
-                costPriceField.setText("");
-                quantityField.setText("");
-            }
+        productTypeahead = new ProductTypeahead(productSearchField, product -> {
+            productTypeahead.setTextQuietly(product.getName() + " [" + product.getSku() + "]");
+            selectedProduct = product; // after setting the text, which clears it
+            costPriceField.setText(product.getCurrentCostPrice().toPlainString());
+            quantityField.setText("1");
+            quantityField.requestFocus();
+        });
+        productSearchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { selectedProduct = null; }
+            @Override public void removeUpdate(DocumentEvent e) { selectedProduct = null; }
+            @Override public void changedUpdate(DocumentEvent e) { }
         });
 
         String[] columnNames = {"Product ID", "Product Name", "Quantity", "Cost/Unit", "Line Total"};
@@ -142,7 +143,20 @@ public class CreatePODialog extends JDialog {
     }
 
     private void loadInitialData() {
-        List<Supplier> suppliers = poDAO.getAllSuppliers();
+        addItemButton.setEnabled(false);
+        savePOButton.setEnabled(false);
+        CompletableFuture<List<Supplier>> suppliers = ReferenceData.suppliers().get(); // in memory after warm-up
+        // Products are not loaded here; the product field searches the shared index as you type.
+        pendingLoad = Edt.whenDone(Edt.busy(this, suppliers),
+            this::populateChoices,
+            ex -> {
+                JOptionPane.showMessageDialog(this, "Error loading suppliers:\n" + Edt.describe(ex), "Database Error", JOptionPane.ERROR_MESSAGE);
+                ex.printStackTrace();
+                populateChoices(null);
+            });
+    }
+
+    private void populateChoices(List<Supplier> suppliers) {
         supplierComboBox.removeAllItems(); 
         if (suppliers == null || suppliers.isEmpty()) { 
              supplierComboBox.addItem(new Supplier(0, "No Suppliers Found - Add in Mngmt"));
@@ -152,21 +166,6 @@ public class CreatePODialog extends JDialog {
             }
         }
 
-        List<Product> products = productDAO.getAllProducts();
-        productComboBox.removeAllItems(); 
-        if (products == null || products.isEmpty()) { 
-             productComboBox.addItem(
-                 new NonPerishableProduct("NO_PRODUCTS", "No Products Available - Add in Inventory", BigDecimal.ZERO, 0, BigDecimal.ZERO, 0)
-             );
-        } else {
-            for (Product p : products) {
-                productComboBox.addItem(p);
-            }
-            if (productComboBox.getItemCount() > 0) {
-                productComboBox.setSelectedIndex(0);
-            }
-        }
-
         boolean validSupplierSelected = false;
         if (supplierComboBox.getItemCount() > 0 && supplierComboBox.getItemAt(0) != null) {
             Supplier firstSupplier = (Supplier) supplierComboBox.getItemAt(0);
@@ -175,30 +174,20 @@ public class CreatePODialog extends JDialog {
             }
         }
 
-        boolean validProductAvailable = false;
-        if (productComboBox.getItemCount() > 0 && productComboBox.getItemAt(0) != null) {
-            Product firstProduct = (Product) productComboBox.getItemAt(0);
-            if (!"NO_PRODUCTS".equals(firstProduct.getSku())) { // Not the "No Products Available" placeholder
-                validProductAvailable = true;
-            }
-        }
-        
-        addItemButton.setEnabled(validSupplierSelected && validProductAvailable);
+        addItemButton.setEnabled(validSupplierSelected);
         savePOButton.setEnabled(validSupplierSelected); 
     }
 
     private void addItemToPOTable(ActionEvent e) {
-        Product selectedProduct = (Product) productComboBox.getSelectedItem();
         Supplier selectedSupplier = (Supplier) supplierComboBox.getSelectedItem();
 
         if (selectedSupplier == null || selectedSupplier.getSupplierId() == 0) {
             JOptionPane.showMessageDialog(this, "Please select a valid supplier.", "Input Error", JOptionPane.WARNING_MESSAGE);
             return;
         }
-        if (selectedProduct == null || selectedProduct.getProductId() == 0 || // Check for actual product ID
-            "NO_PRODUCTS".equals(selectedProduct.getSku()) || 
-            "PROTOTYPE_SKU".equals(selectedProduct.getSku())) {
-            JOptionPane.showMessageDialog(this, "Please select a valid product.", "Input Error", JOptionPane.WARNING_MESSAGE);
+        if (selectedProduct == null || selectedProduct.getProductId() == 0) {
+            JOptionPane.showMessageDialog(this, "Please select a product: type part of its name or SKU and pick it from the list.", "Input Error", JOptionPane.WARNING_MESSAGE);
+            productSearchField.requestFocus();
             return;
         }
 
@@ -227,8 +216,11 @@ public class CreatePODialog extends JDialog {
             currentPOItems.add(newItem);
             updatePOTableAndTotal();
 
-            quantityField.setText("1");
-            productComboBox.requestFocus();
+            productTypeahead.setTextQuietly("");
+            selectedProduct = null;
+            costPriceField.setText("");
+            quantityField.setText("");
+            productSearchField.requestFocus();
 
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Invalid quantity or cost price format.", "Input Error", JOptionPane.ERROR_MESSAGE);
@@ -292,16 +284,30 @@ public class CreatePODialog extends JDialog {
         poHeader.setExpectedDeliveryDate(expectedDate);
         poHeader.setStatus("Ordered");
 
-        try {
-            int newPOId = poDAO.createPurchaseOrder(poHeader, currentPOItems);
-            JOptionPane.showMessageDialog(this, "Purchase Order #" + newPOId + " created successfully!", "PO Saved", JOptionPane.INFORMATION_MESSAGE);
-            dispose();
-        } catch (SQLException | IllegalArgumentException ex) {
-            JOptionPane.showMessageDialog(this, "Failed to save Purchase Order:\n" + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-            ex.printStackTrace();
-        } catch (Exception exGen){
-            JOptionPane.showMessageDialog(this, "An unexpected error occurred:\n" + exGen.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            exGen.printStackTrace();
-        }
+        // No timeout on the write; the dialog stays open but locked until it finishes.
+        List<PurchaseOrderItem> items = new ArrayList<>(currentPOItems);
+        savePOButton.setEnabled(false);
+        cancelButton.setEnabled(false);
+        Edt.whenDone(Edt.busy(this, asyncPurchaseOrders.call(dao -> dao.createPurchaseOrder(poHeader, items), 0)),
+            newPOId -> {
+                JOptionPane.showMessageDialog(this, "Purchase Order #" + newPOId + " created successfully!", "PO Saved", JOptionPane.INFORMATION_MESSAGE);
+                dispose();
+            },
+            ex -> {
+                savePOButton.setEnabled(true);
+                cancelButton.setEnabled(true);
+                if (ex instanceof SQLException || ex instanceof IllegalArgumentException) {
+                    JOptionPane.showMessageDialog(this, "Failed to save Purchase Order:\n" + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(this, "An unexpected error occurred:\n" + Edt.describe(ex), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+                ex.printStackTrace();
+            });
+    }
+
+    @Override
+    public void dispose() {
+        Edt.cancel(pendingLoad);
+        super.dispose();
     }
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+package com.smartcashpro.ui;
+
+import com.smartcashpro.db.AsyncDAO;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Delivers {@link AsyncDAO} results on the Swing event thread.
+ */
+final class Edt {
+
+    private Edt() {
+    }
+
+    /**
+     * Calls {@code onSuccess} or {@code onFailure} on the EDT once {@code future} completes.
+     * Cancelled futures call neither. Returns {@code future} so the caller can keep it and
+     * cancel it, e.g. when the user starts a newer search.
+     */
+    static <T> CompletableFuture<T> whenDone(CompletableFuture<T> future, Consumer<? super T> onSuccess,
+                                             Consumer<Throwable> onFailure) {
+        future.whenCompleteAsync((result, error) -> {
+            if (error == null) {
+                onSuccess.accept(result);
+            } else if (!AsyncDAO.isCancellation(error)) {
+                onFailure.accept(AsyncDAO.unwrap(error));
+            }
+        }, SwingUtilities::invokeLater);
+        return future;
+    }
+
+    /** Shows the wait cursor on {@code component} until {@code future} completes. */
+    static <T> CompletableFuture<T> busy(Component component, CompletableFuture<T> future) {
+        component.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        future.whenCompleteAsync((result, error) -> component.setCursor(Cursor.getDefaultCursor()),
+                SwingUtilities::invokeLater);
+        return future;
+    }
+
+    /** A user-facing message for a failed call. */
+    static String describe(Throwable error) {
+        if (error instanceof TimeoutException) {
+            return "The database did not respond in time. Please try again.";
+        }
+        if (error instanceof RejectedExecutionException) {
+            return error.getMessage();
+        }
+        return error.getMessage() != null ? error.getMessage() : error.toString();
+    }
+
+    /** Cancels {@code future} if it is still running; null-safe. */
+    static void cancel(CompletableFuture<?> future) {
+        if (future != null && !future.isDone()) {
+            future.cancel(true);
+        }
+    }
+}
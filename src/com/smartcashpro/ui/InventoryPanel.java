@@ -1,21 +1,27 @@
 package com.smartcashpro.ui;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableColumn;
 import java.awt.*;
 import java.awt.event.*;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
 import com.smartcashpro.model.User;
 import com.smartcashpro.model.Product;
 import com.smartcashpro.model.PerishableProduct;
 import com.smartcashpro.model.NonPerishableProduct;
 import com.smartcashpro.model.PurchaseOrderItem;
 import com.smartcashpro.model.PurchaseOrder;
+import com.smartcashpro.db.AsyncDAO;
+import com.smartcashpro.db.ProductQuery;
 import com.smartcashpro.db.IProductDAO; // IMPORT THE INTERFACE
-import com.smartcashpro.db.ProductDAO;  // Keep for instantiation
+import com.smartcashpro.db.CachedProductDAO;
+import com.smartcashpro.db.CatalogChangeFeed;
 import com.smartcashpro.db.StockAdjustmentDAO;
 import com.smartcashpro.db.PurchaseOrderDAO;
 import com.smartcashpro.db.ShiftDAO;
@@ -28,18 +34,37 @@ public class InventoryPanel extends JPanel {
 
     private User currentUser;
     private JTable productTable;
-    private DefaultTableModel productTableModel;
+    private ProductPageTableModel productTableModel;
+    private JTextField filterField;
+    private JComboBox<String> typeFilterBox;
+    private JCheckBox lowStockOnlyBox;
+    private JLabel productCountLabel;
+    private Timer filterDelay;
     private IProductDAO productDAO; // USE THE INTERFACE TYPE
     private StockAdjustmentDAO stockAdjustmentDAO;
     private PurchaseOrderDAO purchaseOrderDAO;
     private ShiftDAO shiftDAO;
+    private AsyncDAO<IProductDAO> asyncProducts;
+    private AsyncDAO<PurchaseOrderDAO> asyncPurchaseOrders;
+    private AsyncDAO<ShiftDAO> asyncShifts;
+    // Products changed on other tills, shown in the loaded rows without a reload.
+    private final CatalogChangeFeed.Listener catalogChanges = (changed, version) -> SwingUtilities.invokeLater(() -> {
+        if (changed == null) {
+            loadProductData();
+        } else {
+            productTableModel.productsChanged(changed);
+        }
+    });
 
     public InventoryPanel(User user) {
         this.currentUser = user;
-        this.productDAO = new ProductDAO(); // INSTANTIATE THE CONCRETE CLASS
+        this.productDAO = CachedProductDAO.getInstance(); // shared with the POS; saves invalidate it
         this.stockAdjustmentDAO = new StockAdjustmentDAO();
         this.purchaseOrderDAO = new PurchaseOrderDAO();
         this.shiftDAO = new ShiftDAO();
+        this.asyncProducts = new AsyncDAO<>(productDAO);
+        this.asyncPurchaseOrders = new AsyncDAO<>(purchaseOrderDAO);
+        this.asyncShifts = new AsyncDAO<>(shiftDAO);
 
         setLayout(new BorderLayout(10, 10));
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
@@ -51,6 +76,8 @@ public class InventoryPanel extends JPanel {
         JButton btnViewPOHistory = new JButton("View PO History");
         JButton btnReceiveStock = new JButton("Receive Stock (PO)");
         JButton btnAdjustStock = new JButton("Adjust Stock");
+        JButton btnImportProducts = new JButton("Import CSV...");
+        JButton btnReprice = new JButton("Change Prices...");
         JButton btnRefresh = new JButton("Refresh List");
 
         actionPanel.add(btnAddProduct);
@@ -59,13 +86,38 @@ public class InventoryPanel extends JPanel {
         actionPanel.add(btnViewPOHistory);
         actionPanel.add(btnReceiveStock);
         actionPanel.add(btnAdjustStock);
+        actionPanel.add(btnImportProducts);
+        actionPanel.add(btnReprice);
         actionPanel.add(btnRefresh);
 
-        String[] columnNames = {"ID", "SKU", "Name", "Qty", "Unit Price", "Cost Price", "Reorder Lvl", "Type"};
-        productTableModel = new DefaultTableModel(columnNames, 0) {
-             @Override public boolean isCellEditable(int row, int column) { return false; }
-        };
+        // Filters are applied by the database; the list below only holds the rows in view.
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterField = new JTextField(20);
+        typeFilterBox = new JComboBox<>(new String[]{"All Types", "Perishable", "Non-Perishable"});
+        lowStockOnlyBox = new JCheckBox("Low stock only");
+        productCountLabel = new JLabel(" ");
+        filterPanel.add(new JLabel("Filter (name or SKU):"));
+        filterPanel.add(filterField);
+        filterPanel.add(typeFilterBox);
+        filterPanel.add(lowStockOnlyBox);
+        filterPanel.add(productCountLabel);
+
+        JPanel northPanel = new JPanel(new GridLayout(2, 1));
+        northPanel.add(actionPanel);
+        northPanel.add(filterPanel);
+
+        productTableModel = new ProductPageTableModel(asyncProducts, ex -> {
+            JOptionPane.showMessageDialog(this, "An unexpected error occurred while loading products:\n" + Edt.describe(ex), "Load Error", JOptionPane.ERROR_MESSAGE);
+            ex.printStackTrace();
+        });
         productTable = new JTable(productTableModel);
+        productTable.getTableHeader().setReorderingAllowed(false);
+        productTable.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                sortByColumn(productTable.columnAtPoint(e.getPoint()));
+            }
+        });
 
         productTable.getColumnModel().getColumn(0).setPreferredWidth(50);
         productTable.getColumnModel().getColumn(0).setMaxWidth(80);
@@ -78,9 +130,20 @@ public class InventoryPanel extends JPanel {
 
         JScrollPane tableScrollPane = new JScrollPane(productTable);
 
-        add(actionPanel, BorderLayout.NORTH);
+        add(northPanel, BorderLayout.NORTH);
         add(tableScrollPane, BorderLayout.CENTER);
 
+        filterDelay = new Timer(300, e -> applyFilters()); // typing pause
+        filterDelay.setRepeats(false);
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { filterDelay.restart(); }
+            @Override public void removeUpdate(DocumentEvent e) { filterDelay.restart(); }
+            @Override public void changedUpdate(DocumentEvent e) { filterDelay.restart(); }
+        });
+        filterField.addActionListener(e -> applyFilters());
+        typeFilterBox.addActionListener(e -> applyFilters());
+        lowStockOnlyBox.addActionListener(e -> applyFilters());
+
         btnRefresh.addActionListener(e -> loadProductData());
         btnAddProduct.addActionListener(e -> displayAddProductDialog());
         btnEditProduct.addActionListener(e -> displayEditProductDialog());
@@ -88,35 +151,77 @@ public class InventoryPanel extends JPanel {
         btnViewPOHistory.addActionListener(e -> displayPOHistoryDialog());
         btnAdjustStock.addActionListener(e -> displayAdjustStockDialog());
         btnReceiveStock.addActionListener(e -> displaySelectPODialog());
+        btnImportProducts.addActionListener(e -> displayImportProductsDialog());
+        btnReprice.addActionListener(e -> displayRepriceDialog());
 
+        updateSortIndicators(productTableModel.getQuery());
         loadProductData();
     }
 
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        CatalogChangeFeed.getInstance().addListener(catalogChanges);
+    }
+
+    @Override
+    public void removeNotify() {
+        CatalogChangeFeed.getInstance().removeListener(catalogChanges);
+        super.removeNotify();
+    }
+
     private void displayPOHistoryDialog() {
         ViewPOHistoryDialog historyDialog = new ViewPOHistoryDialog(SwingUtilities.getWindowAncestor(this));
         historyDialog.setVisible(true);
     }
 
     private void loadProductData() {
-        try {
-            productTableModel.setRowCount(0);
-            List<Product> products = productDAO.getAllProducts(); // Uses IProductDAO
-            if (products == null) { // Should not happen if DAO returns empty list on DB error, but good check
-                JOptionPane.showMessageDialog(this, "Error loading products: Product list is null.", "Load Error", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-            for (Product p : products) {
-                productTableModel.addRow(new Object[]{
-                        p.getProductId(), p.getSku(), p.getName(),
-                        p.getQuantityInStock(), p.getUnitPrice(), p.getCurrentCostPrice(),
-                        p.getReorderLevel(),
-                        p.getProductType()
-                });
-            }
-        } catch (Exception ex) { // Catching general Exception as getAllProducts() might not throw SQLException directly
-            JOptionPane.showMessageDialog(this, "An unexpected error occurred while loading products:\n" + ex.getMessage(), "Load Error", JOptionPane.ERROR_MESSAGE);
-            ex.printStackTrace();
+        showProductCount(productTableModel.reload());
+    }
+
+    /** Only the count is read up front; rows are read a page at a time as they scroll into view. */
+    private void showProductCount(CompletableFuture<Integer> reload) {
+        productCountLabel.setText("Loading...");
+        Edt.whenDone(Edt.busy(this, reload),
+                count -> productCountLabel.setText(count + " products"),
+                ex -> productCountLabel.setText(" ")); // the model has already reported it
+    }
+
+    private void applyFilters() {
+        filterDelay.stop();
+        ProductQuery.TypeFilter type = typeFilterBox.getSelectedIndex() == 1 ? ProductQuery.TypeFilter.PERISHABLE
+                : typeFilterBox.getSelectedIndex() == 2 ? ProductQuery.TypeFilter.NON_PERISHABLE
+                : ProductQuery.TypeFilter.ALL;
+        ProductQuery query = productTableModel.getQuery()
+                .withText(filterField.getText())
+                .withType(type)
+                .withLowStockOnly(lowStockOnlyBox.isSelected());
+        showProductCount(productTableModel.setQuery(query));
+    }
+
+    /** Sorts by the clicked column in the database; a second click reverses the order. */
+    private void sortByColumn(int column) {
+        if (column < 0) {
+            return;
+        }
+        ProductQuery.SortKey key = ProductPageTableModel.COLUMN_SORT_KEYS[column];
+        if (key == null) {
+            return;
         }
+        ProductQuery query = productTableModel.getQuery();
+        ProductQuery sorted = query.withSort(key, query.getSortKey() == key && !query.isDescending());
+        updateSortIndicators(sorted);
+        showProductCount(productTableModel.setQuery(sorted));
+    }
+
+    private void updateSortIndicators(ProductQuery query) {
+        for (int i = 0; i < productTable.getColumnCount(); i++) {
+            TableColumn column = productTable.getColumnModel().getColumn(i);
+            String name = ProductPageTableModel.COLUMN_NAMES[i];
+            column.setHeaderValue(ProductPageTableModel.COLUMN_SORT_KEYS[i] == query.getSortKey()
+                    ? name + (query.isDescending() ? " \u25BC" : " \u25B2") : name);
+        }
+        productTable.getTableHeader().repaint();
     }
 
     private void displayAddProductDialog() {
@@ -133,23 +238,29 @@ public class InventoryPanel extends JPanel {
             JOptionPane.showMessageDialog(this, "Please select a product to edit.", "Selection Required", JOptionPane.WARNING_MESSAGE);
             return;
         }
-        try {
-            int productId = (Integer) productTableModel.getValueAt(selectedRow, 0);
-            Product productToEdit = productDAO.findProductById(productId); // Uses IProductDAO
-            if (productToEdit != null) {
-                ProductDialog editDialog = new ProductDialog(SwingUtilities.getWindowAncestor(this), "Edit Product", productToEdit);
-                editDialog.setVisible(true);
-                if (editDialog.isSaved()) {
-                    loadProductData();
-                }
-            } else {
-                JOptionPane.showMessageDialog(this, "Could not retrieve product details for editing (ID: " + productId + "). It might have been deleted or an error occurred.", "Error", JOptionPane.ERROR_MESSAGE);
-                loadProductData(); // Refresh to reflect potential deletion
-            }
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, "Error preparing edit dialog:\n" + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            ex.printStackTrace();
+        Product selected = productTableModel.getProductAt(selectedRow);
+        if (selected == null) {
+            JOptionPane.showMessageDialog(this, "The selected row is still loading. Please try again.", "Please Wait", JOptionPane.INFORMATION_MESSAGE);
+            return;
         }
+        int productId = selected.getProductId();
+        Edt.whenDone(Edt.busy(this, asyncProducts.call(dao -> dao.findProductById(productId))), // Uses IProductDAO
+            productToEdit -> {
+                if (productToEdit != null) {
+                    ProductDialog editDialog = new ProductDialog(SwingUtilities.getWindowAncestor(this), "Edit Product", productToEdit);
+                    editDialog.setVisible(true);
+                    if (editDialog.isSaved()) {
+                        loadProductData();
+                    }
+                } else {
+                    JOptionPane.showMessageDialog(this, "Could not retrieve product details for editing (ID: " + productId + "). It might have been deleted or an error occurred.", "Error", JOptionPane.ERROR_MESSAGE);
+                    loadProductData(); // Refresh to reflect potential deletion
+                }
+            },
+            ex -> {
+                JOptionPane.showMessageDialog(this, "Error preparing edit dialog:\n" + Edt.describe(ex), "Error", JOptionPane.ERROR_MESSAGE);
+                ex.printStackTrace();
+            });
     }
 
     private void displayCreatePODialog() {
@@ -157,6 +268,33 @@ public class InventoryPanel extends JPanel {
         createPODialog.setVisible(true);
     }
 
+    private void displayImportProductsDialog() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Import Products from CSV");
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV files", "csv", "txt"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        ProductImportDialog importDialog = new ProductImportDialog(SwingUtilities.getWindowAncestor(this), chooser.getSelectedFile());
+        importDialog.setVisible(true);
+        loadProductData(); // even a stopped import may have added the first chunks
+    }
+
+    private void displayRepriceDialog() {
+        List<Integer> selectedIds = new java.util.ArrayList<>();
+        for (int row : productTable.getSelectedRows()) {
+            Product p = productTableModel.getProductAt(row);
+            if (p != null) {
+                selectedIds.add(p.getProductId());
+            }
+        }
+        RepriceDialog repriceDialog = new RepriceDialog(SwingUtilities.getWindowAncestor(this), currentUser, selectedIds);
+        repriceDialog.setVisible(true);
+        if (repriceDialog.isChanged()) {
+            loadProductData();
+        }
+    }
+
     private void displayAdjustStockDialog() {
         int selectedRow = productTable.getSelectedRow();
         if (selectedRow == -1) {
@@ -164,7 +302,22 @@ public class InventoryPanel extends JPanel {
             return;
         }
 
-        Shift currentShift = shiftDAO.findOpenShift();
+        Product selected = productTableModel.getProductAt(selectedRow);
+        if (selected == null) {
+            JOptionPane.showMessageDialog(this, "The selected row is still loading. Please try again.", "Please Wait", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        int productId = selected.getProductId();
+        String productName = selected.getName();
+        Edt.whenDone(Edt.busy(this, asyncShifts.call(ShiftDAO::findOpenShift)),
+            currentShift -> openAdjustStockDialog(currentShift, productId, productName),
+            ex -> {
+                JOptionPane.showMessageDialog(this, "Error checking the active shift:\n" + Edt.describe(ex), "Error", JOptionPane.ERROR_MESSAGE);
+                ex.printStackTrace();
+            });
+    }
+
+    private void openAdjustStockDialog(Shift currentShift, int productId, String productName) {
         if (currentShift == null) {
             JOptionPane.showMessageDialog(this, "Cannot adjust stock: No shift is currently active.\nPlease start a shift first.", "Shift Error", JOptionPane.ERROR_MESSAGE);
             return;
@@ -172,8 +325,6 @@ public class InventoryPanel extends JPanel {
         int shiftId = currentShift.getShiftId();
 
         try {
-            int productId = (Integer) productTableModel.getValueAt(selectedRow, 0);
-            String productName = (String) productTableModel.getValueAt(selectedRow, 2);
 
             StockAdjustmentDialog adjustDialog = new StockAdjustmentDialog(
                 SwingUtilities.getWindowAncestor(this),
@@ -201,31 +352,39 @@ public class InventoryPanel extends JPanel {
         int poId;
         try {
             poId = Integer.parseInt(poIdStr.trim());
-            PurchaseOrder po = purchaseOrderDAO.findPurchaseOrderById(poId);
-            if (po == null) {
-                JOptionPane.showMessageDialog(this, "Purchase Order ID " + poId + " not found.", "Error", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-            if ("Received".equals(po.getStatus()) || "Cancelled".equals(po.getStatus())) {
-                 String message = "Purchase Order ID " + poId + " is already '" + po.getStatus() + "' and cannot be received against.";
-                JOptionPane.showMessageDialog(this, message, "Info", JOptionPane.INFORMATION_MESSAGE);
-                return;
-            }
-            displayReceiveStockDialog(poId);
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Invalid Purchase Order ID format.", "Input Error", JOptionPane.ERROR_MESSAGE);
-        } catch (SQLException sqlEx) {
-             JOptionPane.showMessageDialog(this, "Database error checking PO status:\n" + sqlEx.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-             sqlEx.printStackTrace();
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, "Error checking Purchase Order status:\n" + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            ex.printStackTrace();
+            return;
         }
+        // Status check and item list in one background call, then the dialog on the EDT.
+        Edt.whenDone(Edt.busy(this, asyncPurchaseOrders.call(dao -> {
+                    PurchaseOrder po = dao.findPurchaseOrderById(poId);
+                    boolean receivable = po != null && !"Received".equals(po.getStatus()) && !"Cancelled".equals(po.getStatus());
+                    return new Object[]{po, receivable ? dao.getPurchaseOrderItems(poId) : null};
+                })),
+            result -> {
+                PurchaseOrder po = (PurchaseOrder) result[0];
+                if (po == null) {
+                    JOptionPane.showMessageDialog(this, "Purchase Order ID " + poId + " not found.", "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                if ("Received".equals(po.getStatus()) || "Cancelled".equals(po.getStatus())) {
+                     String message = "Purchase Order ID " + poId + " is already '" + po.getStatus() + "' and cannot be received against.";
+                    JOptionPane.showMessageDialog(this, message, "Info", JOptionPane.INFORMATION_MESSAGE);
+                    return;
+                }
+                @SuppressWarnings("unchecked")
+                List<PurchaseOrderItem> items = (List<PurchaseOrderItem>) result[1];
+                displayReceiveStockDialog(poId, items);
+            },
+            ex -> {
+                JOptionPane.showMessageDialog(this, "Database error checking PO status:\n" + Edt.describe(ex), "Database Error", JOptionPane.ERROR_MESSAGE);
+                ex.printStackTrace();
+            });
     }
 
-    private void displayReceiveStockDialog(int poId) {
+    private void displayReceiveStockDialog(int poId, List<PurchaseOrderItem> items) {
         try {
-            List<PurchaseOrderItem> items = purchaseOrderDAO.getPurchaseOrderItems(poId);
             if (items == null || items.isEmpty()) {
                 JOptionPane.showMessageDialog(this, "No receivable items found for PO ID: " + poId, "Info", JOptionPane.INFORMATION_MESSAGE);
                 return;
@@ -269,15 +428,20 @@ public class InventoryPanel extends JPanel {
 
             if (!itemsNeedReceiving) {
                 JOptionPane.showMessageDialog(this, "All items on PO " + poId + " have already been fully received.", "PO Complete", JOptionPane.INFORMATION_MESSAGE);
-                try {
-                    PurchaseOrder po = purchaseOrderDAO.findPurchaseOrderById(poId);
-                    if (po != null && !"Received".equals(po.getStatus())) {
-                       purchaseOrderDAO.receiveFullOrder(poId);
-                       JOptionPane.showMessageDialog(this, "PO status updated to 'Received'.", "Status Update", JOptionPane.INFORMATION_MESSAGE);
-                    }
-                } catch (SQLException exStatus) {
-                    System.err.println("Error trying to update status for already received PO: " + exStatus.getMessage());
-                }
+                Edt.whenDone(asyncPurchaseOrders.call(dao -> {
+                        PurchaseOrder po = dao.findPurchaseOrderById(poId);
+                        if (po != null && !"Received".equals(po.getStatus())) {
+                            dao.receiveFullOrder(poId);
+                            return true;
+                        }
+                        return false;
+                    }),
+                    updated -> {
+                        if (updated) {
+                            JOptionPane.showMessageDialog(this, "PO status updated to 'Received'.", "Status Update", JOptionPane.INFORMATION_MESSAGE);
+                        }
+                    },
+                    exStatus -> System.err.println("Error trying to update status for already received PO: " + exStatus.getMessage()));
                 receiveDialog.dispose();
                 return;
             }
@@ -310,30 +474,35 @@ public class InventoryPanel extends JPanel {
                     if (quantitiesToReceive.isEmpty()) {
                         JOptionPane.showMessageDialog(receiveDialog, "No quantities entered to receive.", "Info", JOptionPane.INFORMATION_MESSAGE);
                     } else {
-                        try {
-                            boolean success = purchaseOrderDAO.receiveStock(poId, quantitiesToReceive);
-                            if (success) {
-                                JOptionPane.showMessageDialog(SwingUtilities.getWindowAncestor(this),
-                                                              "Stock received successfully for PO: " + poId);
-                                loadProductData();
-                                receiveDialog.dispose();
-                            }
-                        } catch (SQLException sqlEx) {
-                            JOptionPane.showMessageDialog(SwingUtilities.getWindowAncestor(this),
-                                                          "Error receiving stock for PO " + poId + ":\n" + sqlEx.getMessage(),
-                                                          "Database Error", JOptionPane.ERROR_MESSAGE);
-                            sqlEx.printStackTrace();
-                        } catch (IllegalArgumentException iae) {
-                             JOptionPane.showMessageDialog(SwingUtilities.getWindowAncestor(this),
-                                                          "Input error for PO " + poId + ":\n" + iae.getMessage(),
-                                                          "Input Error", JOptionPane.ERROR_MESSAGE);
-                             iae.printStackTrace();
-                        } catch (Exception generalEx) {
-                            JOptionPane.showMessageDialog(SwingUtilities.getWindowAncestor(this),
-                                                          "An unexpected error occurred during stock receiving:\n" + generalEx.getMessage(),
-                                                          "Critical Error", JOptionPane.ERROR_MESSAGE);
-                            generalEx.printStackTrace();
-                        }
+                        // A write: no timeout, so a slow commit is never reported as a failure.
+                        confirmButton.setEnabled(false);
+                        Edt.whenDone(Edt.busy(receiveDialog, asyncPurchaseOrders.call(dao -> dao.receiveStock(poId, quantitiesToReceive), 0)),
+                            success -> {
+                                confirmButton.setEnabled(true);
+                                if (success) {
+                                    JOptionPane.showMessageDialog(SwingUtilities.getWindowAncestor(this),
+                                                                  "Stock received successfully for PO: " + poId);
+                                    loadProductData();
+                                    receiveDialog.dispose();
+                                }
+                            },
+                            error -> {
+                                confirmButton.setEnabled(true);
+                                if (error instanceof SQLException) {
+                                    JOptionPane.showMessageDialog(SwingUtilities.getWindowAncestor(this),
+                                                                  "Error receiving stock for PO " + poId + ":\n" + error.getMessage(),
+                                                                  "Database Error", JOptionPane.ERROR_MESSAGE);
+                                } else if (error instanceof IllegalArgumentException) {
+                                    JOptionPane.showMessageDialog(SwingUtilities.getWindowAncestor(this),
+                                                                  "Input error for PO " + poId + ":\n" + error.getMessage(),
+                                                                  "Input Error", JOptionPane.ERROR_MESSAGE);
+                                } else {
+                                    JOptionPane.showMessageDialog(SwingUtilities.getWindowAncestor(this),
+                                                                  "An unexpected error occurred during stock receiving:\n" + Edt.describe(error),
+                                                                  "Critical Error", JOptionPane.ERROR_MESSAGE);
+                                }
+                                error.printStackTrace();
+                            });
                     }
                 }
             });
@@ -349,9 +518,6 @@ public class InventoryPanel extends JPanel {
             receiveDialog.add(buttonPanel, BorderLayout.SOUTH);
             receiveDialog.setVisible(true);
 
-        } catch (SQLException sqlEx_main) {
-             JOptionPane.showMessageDialog(this, "Database error opening receiving dialog for PO " + poId + ":\n" + sqlEx_main.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-            sqlEx_main.printStackTrace();
         } catch (Exception ex_main) {
             JOptionPane.showMessageDialog(this, "Error opening receiving dialog for PO " + poId + ":\n" + ex_main.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             ex_main.printStackTrace();
@@ -583,7 +749,8 @@ public class InventoryPanel extends JPanel {
                     }
                 }
 
-                boolean success = InventoryPanel.this.productDAO.saveProduct(productToSave); // Use InventoryPanel.this.productDAO
+                boolean success = InventoryPanel.this.productDAO.saveProduct(productToSave, // Use InventoryPanel.this.productDAO
+                        currentUser != null ? currentUser.getUserId() : 0); // recorded in the price audit
 
                 if (success) {
                     saved = true;
@@ -7,7 +7,9 @@ import java.awt.event.*;
 // import java.sql.*;
 
 // Import necessary classes from your existing project
+import com.smartcashpro.db.StartupTimeline;
 import com.smartcashpro.db.UserDAO;
+import com.smartcashpro.db.WarmUp;
 import com.smartcashpro.model.User;
 import com.smartcashpro.ui.MainFrame; // Assuming MainFrame is in com.smartcashpro
                                     // Or adjust if it's in com.smartcashpro.ui.MainFrame
@@ -218,7 +220,13 @@ public class LoginPageCashierSystem extends JFrame implements ActionListener {
         }
 
         // Use your existing UserDAO
-        User authenticatedUser = userDAO.authenticate(username, password);
+        User authenticatedUser;
+        StartupTimeline.Phase authenticating = StartupTimeline.begin("authenticate");
+        try {
+            authenticatedUser = userDAO.authenticate(username, password);
+        } finally {
+            authenticating.close();
+        }
 
         if (authenticatedUser != null) {
             JOptionPane.showMessageDialog(this, "Login successful! Welcome, " + authenticatedUser.getUsername() +
@@ -229,10 +237,19 @@ public class LoginPageCashierSystem extends JFrame implements ActionListener {
             // --- Launch your existing MainFrame ---
             // Ensure MainFrame constructor can accept a User object or has a method to set it
             SwingUtilities.invokeLater(() -> {
-                MainFrame mainAppFrame = new MainFrame(authenticatedUser); // Pass the user
-                mainAppFrame.setVisible(true);
+                StartupTimeline.Phase building = StartupTimeline.begin("main window built");
+                try {
+                    MainFrame mainAppFrame = new MainFrame(authenticatedUser); // Pass the user
+                    mainAppFrame.setVisible(true);
+                } finally {
+                    building.close();
+                }
+                WarmUp.whenFinished().thenRun(StartupTimeline::printReportOnce);
             });
 
+        } else if (!com.smartcashpro.db.DatabaseConnector.isAvailable()) {
+            // Not the user's fault: don't count it as a failed attempt.
+            messageLabel.setText("Database unavailable. Please try again in a moment.");
         } else {
             loginAttempts++;
             if (loginAttempts >= 3) {
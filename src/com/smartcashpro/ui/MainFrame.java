@@ -5,6 +5,7 @@ import java.awt.*;
 import java.awt.event.*;
 import javax.swing.border.*;
 import com.smartcashpro.model.User;
+import com.smartcashpro.db.CircuitBreaker;
 import com.smartcashpro.db.DatabaseConnector;
 import com.smartcashpro.SmartCashProApp;
 
@@ -15,6 +16,9 @@ public class MainFrame extends JFrame {
     private CardLayout cardLayout;
     private JPanel sidebarPanel;
     private JLabel statusLabel;
+    private JLabel dbStatusLabel;
+    private final java.util.function.Consumer<CircuitBreaker.State> dbHealthListener =
+            state -> SwingUtilities.invokeLater(() -> showDatabaseState(state));
     private Color accentColor = new Color(41, 128, 185);
     private Color sidebarColor = new Color(52, 73, 94);
     private Color selectedButtonColor = new Color(44, 62, 80);
@@ -27,7 +31,7 @@ public class MainFrame extends JFrame {
     private static final String ORDER_HISTORY_PANEL = "OrderHistoryPanel";
     
     // Sidebar buttons
-    private JButton posButton, shiftButton, inventoryButton, userButton, orderHistoryButton;
+    private JButton posButton, shiftButton, inventoryButton, userButton, orderHistoryButton, slowQueryButton;
 
     public MainFrame(User authenticatedUser) {
         super("SmartCash Pro");
@@ -97,10 +101,12 @@ public class MainFrame extends JFrame {
              // Enable manager-only buttons
              inventoryButton.setEnabled(true);
              userButton.setEnabled(true);
+             slowQueryButton.setEnabled(true);
         } else {
              // Disable manager-only buttons for regular users
              inventoryButton.setEnabled(false);
              userButton.setEnabled(false);
+             slowQueryButton.setEnabled(false);
         }
         
         mainContainer.add(cardPanel, BorderLayout.CENTER);
@@ -173,6 +179,9 @@ public class MainFrame extends JFrame {
         });
         sidebar.add(userButton);
         
+        slowQueryButton = createSidebarButton("! Slow Queries", e -> new SlowQueryDialog(this).setVisible(true));
+        sidebar.add(slowQueryButton);
+        
         // Logout button at bottom
         sidebar.add(Box.createVerticalGlue());
         
@@ -257,13 +266,45 @@ public class MainFrame extends JFrame {
         JLabel versionLabel = new JLabel("v1.0");
         versionLabel.setFont(new Font("Arial", Font.PLAIN, 12));
         versionLabel.setForeground(Color.GRAY);
+
+        dbStatusLabel = new JLabel();
+        dbStatusLabel.setFont(new Font("Arial", Font.PLAIN, 12));
+        dbStatusLabel.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 15));
+        showDatabaseState(DatabaseConnector.getHealth());
+        DatabaseConnector.addHealthListener(dbHealthListener);
+
+        JPanel rightPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+        rightPanel.setOpaque(false);
+        rightPanel.add(dbStatusLabel);
+        rightPanel.add(versionLabel);
         
         statusBar.add(statusLabel, BorderLayout.WEST);
-        statusBar.add(versionLabel, BorderLayout.EAST);
+        statusBar.add(rightPanel, BorderLayout.EAST);
         
         return statusBar;
     }
 
+    private void showDatabaseState(CircuitBreaker.State state) {
+        switch (state) {
+            case OPEN:
+                dbStatusLabel.setText("Database: OFFLINE - retrying");
+                dbStatusLabel.setForeground(new Color(192, 57, 43));
+                statusLabel.setText("Database connection lost. Sales cannot be saved until it reconnects.");
+                break;
+            case HALF_OPEN:
+                dbStatusLabel.setText("Database: reconnecting...");
+                dbStatusLabel.setForeground(new Color(211, 84, 0));
+                break;
+            default:
+                dbStatusLabel.setText("Database: online");
+                dbStatusLabel.setForeground(new Color(39, 174, 96));
+                if (statusLabel.getText().startsWith("Database connection lost")) {
+                    statusLabel.setText("Database connection restored.");
+                }
+                break;
+        }
+    }
+
     private boolean isManagerOrAdmin() {
         return currentUser != null && ("Manager".equalsIgnoreCase(currentUser.getRole()) || "Admin".equalsIgnoreCase(currentUser.getRole()));
     }
@@ -276,6 +317,7 @@ public class MainFrame extends JFrame {
 
         if (confirm == JOptionPane.YES_OPTION) {
             statusLabel.setText("Logging out...");
+            DatabaseConnector.removeHealthListener(dbHealthListener);
             this.dispose();
             DatabaseConnector.closeConnection();
             SmartCashProApp.main(null);
@@ -290,6 +332,7 @@ public class MainFrame extends JFrame {
 
         if (confirm == JOptionPane.YES_OPTION) {
             statusLabel.setText("Shutting down...");
+            DatabaseConnector.removeHealthListener(dbHealthListener);
             DatabaseConnector.closeConnection();
             System.exit(0);
         }
@@ -10,18 +10,23 @@ import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.sql.SQLException;
 
 import com.smartcashpro.model.User;
 import com.smartcashpro.model.Order;
 import com.smartcashpro.model.OrderItem;
+import com.smartcashpro.db.AsyncDAO;
 import com.smartcashpro.db.OrderDAO;
+import com.smartcashpro.db.RowCursor;
 import com.smartcashpro.db.CustomerDAO;
 
 public class OrderHistoryPanel extends JPanel {
     
     private User currentUser;
     private OrderDAO orderDAO;
+    private AsyncDAO<OrderDAO> asyncOrders;
+    private CompletableFuture<List<Order>> pendingLoad;
     private CustomerDAO customerDAO;
     
     // UI Components
@@ -34,6 +39,7 @@ public class OrderHistoryPanel extends JPanel {
     private JDateChooser endDateChooser;
     private JComboBox<String> paymentTypeCombo;
     private JTextField customerSearchField;
+    private JLabel subtitleLabel;
     
     // Colors
     private Color primaryColor = new Color(41, 128, 185);
@@ -46,9 +52,13 @@ public class OrderHistoryPanel extends JPanel {
     // Currency formatter
     private final DecimalFormat currencyFormat = new DecimalFormat("$#,##0.00");
     
+    // "Refresh" shows at most this many orders; older ones are reached through Search.
+    private static final int MAX_ORDERS_SHOWN = 5000;
+    
     public OrderHistoryPanel(User user) {
         this.currentUser = user;
         this.orderDAO = new OrderDAO();
+        this.asyncOrders = new AsyncDAO<>(orderDAO);
         this.customerDAO = new CustomerDAO();
         
         setLayout(new BorderLayout(10, 10));
@@ -86,7 +96,7 @@ public class OrderHistoryPanel extends JPanel {
         JLabel titleLabel = new JLabel("Order History");
         titleLabel.setFont(new Font("Arial", Font.BOLD, 18));
         
-        JLabel subtitleLabel = new JLabel("View and search past orders");
+        subtitleLabel = new JLabel("View and search past orders");
         subtitleLabel.setFont(new Font("Arial", Font.PLAIN, 12));
         subtitleLabel.setForeground(Color.GRAY);
         
@@ -347,62 +357,82 @@ public class OrderHistoryPanel extends JPanel {
     }
     
     private void loadOrders() {
-        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        Edt.cancel(pendingLoad); // a newer request replaces whatever is still loading
         ordersTableModel.setRowCount(0);
-        
-        try {
-            List<Order> orders = orderDAO.getAllOrders();
-            displayOrders(orders);
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(this,
-                "Error loading orders: " + ex.getMessage(),
-                "Database Error",
-                JOptionPane.ERROR_MESSAGE);
-            ex.printStackTrace();
-        } finally {
-            setCursor(Cursor.getDefaultCursor());
+        subtitleLabel.setText("Loading orders...");
+        
+        // Stream on a worker instead of building a List of every order ever placed.
+        pendingLoad = Edt.whenDone(Edt.busy(this, asyncOrders.call(OrderHistoryPanel::readNewestOrders)),
+            orders -> {
+                boolean truncated = orders.size() > MAX_ORDERS_SHOWN;
+                if (truncated) {
+                    orders.remove(orders.size() - 1);
+                }
+                displayOrders(orders);
+                subtitleLabel.setText(truncated
+                    ? "Showing the newest " + MAX_ORDERS_SHOWN + " orders - search by date range to see older ones"
+                    : "View and search past orders");
+            },
+            ex -> {
+                subtitleLabel.setText("View and search past orders");
+                JOptionPane.showMessageDialog(this,
+                    "Error loading orders: " + Edt.describe(ex),
+                    "Database Error",
+                    JOptionPane.ERROR_MESSAGE);
+                ex.printStackTrace();
+            });
+    }
+    
+    /** Newest orders, one more than MAX_ORDERS_SHOWN if there are more. Runs on a worker thread. */
+    private static List<Order> readNewestOrders(OrderDAO dao) throws SQLException {
+        List<Order> orders = new ArrayList<>();
+        try (RowCursor<Order> cursor = dao.streamAllOrders()) {
+            while (orders.size() <= MAX_ORDERS_SHOWN && cursor.hasNext()) {
+                orders.add(cursor.next());
+            }
         }
+        return orders;
     }
     
     private void searchOrders() {
-        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-        ordersTableModel.setRowCount(0);
+        // Get selected dates
+        Date startDate = startDateChooser.getDate();
+        Date endDate = endDateChooser.getDate();
+        
+        // Get payment type
+        String paymentType = null;
+        if (paymentTypeCombo.getSelectedIndex() > 0) {
+            paymentType = (String) paymentTypeCombo.getSelectedItem();
+        }
         
-        try {
-            // Get selected dates
-            Date startDate = startDateChooser.getDate();
-            Date endDate = endDateChooser.getDate();
-            
-            // Get payment type
-            String paymentType = null;
-            if (paymentTypeCombo.getSelectedIndex() > 0) {
-                paymentType = (String) paymentTypeCombo.getSelectedItem();
-            }
-            
-            // Get customer info (placeholder for now, in a real app you'd search by name)
-            Integer customerId = null;
-            String customerText = customerSearchField.getText().trim();
-            if (!customerText.isEmpty()) {
-                // For simplicity, we'll assume customer search is handled separately
-                // and just display a message for now
-                JOptionPane.showMessageDialog(this,
-                    "Customer search not implemented in this demo",
-                    "Information",
-                    JOptionPane.INFORMATION_MESSAGE);
-            }
-            
-            List<Order> orders = orderDAO.searchOrders(startDate, endDate, customerId, paymentType);
-            displayOrders(orders);
-            
-        } catch (SQLException ex) {
+        // Get customer info (placeholder for now, in a real app you'd search by name)
+        Integer customerId = null;
+        String customerText = customerSearchField.getText().trim();
+        if (!customerText.isEmpty()) {
+            // For simplicity, we'll assume customer search is handled separately
+            // and just display a message for now
             JOptionPane.showMessageDialog(this,
-                "Error searching orders: " + ex.getMessage(),
-                "Database Error",
-                JOptionPane.ERROR_MESSAGE);
-            ex.printStackTrace();
-        } finally {
-            setCursor(Cursor.getDefaultCursor());
+                "Customer search not implemented in this demo",
+                "Information",
+                JOptionPane.INFORMATION_MESSAGE);
         }
+        
+        Edt.cancel(pendingLoad);
+        ordersTableModel.setRowCount(0);
+        String searchPaymentType = paymentType;
+        pendingLoad = Edt.whenDone(Edt.busy(this,
+                asyncOrders.call(dao -> dao.searchOrders(startDate, endDate, customerId, searchPaymentType))),
+            orders -> {
+                displayOrders(orders);
+                subtitleLabel.setText("View and search past orders");
+            },
+            ex -> {
+                JOptionPane.showMessageDialog(this,
+                    "Error searching orders: " + Edt.describe(ex),
+                    "Database Error",
+                    JOptionPane.ERROR_MESSAGE);
+                ex.printStackTrace();
+            });
     }
     
     private void displayOrders(List<Order> orders) {
@@ -415,18 +445,22 @@ public class OrderHistoryPanel extends JPanel {
         }
         
         for (Order order : orders) {
-            ordersTableModel.addRow(new Object[]{
-                order.getOrderId(),
-                dateFormat.format(order.getOrderDate()),
-                order.getCustomerName() != null ? order.getCustomerName() : "Guest",
-                order.getUserName(),
-                currencyFormat.format(order.getTotalAmount()),
-                order.getPaymentType(),
-                order.getOrderStatus()
-            });
+            addOrderRow(order);
         }
     }
     
+    private void addOrderRow(Order order) {
+        ordersTableModel.addRow(new Object[]{
+            order.getOrderId(),
+            dateFormat.format(order.getOrderDate()),
+            order.getCustomerName() != null ? order.getCustomerName() : "Guest",
+            order.getUserName(),
+            currencyFormat.format(order.getTotalAmount()),
+            order.getPaymentType(),
+            order.getOrderStatus()
+        });
+    }
+    
     private void resetFilters() {
         startDateChooser.setDate(getDefaultStartDate());
         endDateChooser.setDate(new Date());
@@ -449,23 +483,27 @@ public class OrderHistoryPanel extends JPanel {
         
         int orderId = (int) ordersTableModel.getValueAt(selectedRow, 0);
         
-        try {
-            Order order = orderDAO.getOrderDetails(orderId);
-            if (order != null) {
-                displayOrderDetailsDialog(order);
-            } else {
+        viewDetailsButton.setEnabled(false);
+        Edt.whenDone(Edt.busy(this, asyncOrders.call(dao -> dao.getOrderDetails(orderId))),
+            order -> {
+                viewDetailsButton.setEnabled(true);
+                if (order != null) {
+                    displayOrderDetailsDialog(order);
+                } else {
+                    JOptionPane.showMessageDialog(this,
+                        "Order details could not be loaded. The order may have been deleted.",
+                        "Order Not Found",
+                        JOptionPane.WARNING_MESSAGE);
+                }
+            },
+            ex -> {
+                viewDetailsButton.setEnabled(true);
                 JOptionPane.showMessageDialog(this,
-                    "Order details could not be loaded. The order may have been deleted.",
-                    "Order Not Found",
-                    JOptionPane.WARNING_MESSAGE);
-            }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(this,
-                "Error loading order details: " + ex.getMessage(),
-                "Database Error",
-                JOptionPane.ERROR_MESSAGE);
-            ex.printStackTrace();
-        }
+                    "Error loading order details: " + Edt.describe(ex),
+                    "Database Error",
+                    JOptionPane.ERROR_MESSAGE);
+                ex.printStackTrace();
+            });
     }
     
     private void displayOrderDetailsDialog(Order order) {
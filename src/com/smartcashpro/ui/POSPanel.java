@@ -4,21 +4,34 @@ import javax.swing.*;
 import javax.swing.border.*;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
 import java.awt.*;
 import java.awt.event.*;
 import com.smartcashpro.model.User;
 import com.smartcashpro.model.Product;
+import com.smartcashpro.model.ProductScan;
 import com.smartcashpro.model.OrderItem;
 import com.smartcashpro.model.Customer; 
 import com.smartcashpro.model.Shift; 
-import com.smartcashpro.db.ProductDAO;
+import com.smartcashpro.db.AsyncDAO;
+import com.smartcashpro.db.CachedProductDAO;
+import com.smartcashpro.db.CompactProductDAO;
+import com.smartcashpro.db.IProductDAO;
 import com.smartcashpro.db.OrderDAO;
 import com.smartcashpro.db.ShiftDAO;
 import com.smartcashpro.db.CustomerDAO;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.LinkedHashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.text.DecimalFormat;
 import java.sql.SQLException; 
 
@@ -26,10 +39,11 @@ public class POSPanel extends JPanel {
     
     private User currentUser;
     private JTextField skuInput;
+    private ProductTypeahead skuTypeahead;
     private JTable itemsTable;
     private DefaultTableModel tableModel;
     private JLabel totalLabel;
-    private JButton payCashButton, payCardButton, returnButton, customerButton, addItemButton; 
+    private JButton payCashButton, payCardButton, returnButton, customerButton, addItemButton, importBasketButton; 
     private JLabel customerLabel;
     private JPanel cartPanel;
     private JPanel actionPanel;
@@ -45,21 +59,40 @@ public class POSPanel extends JPanel {
     // Currency formatter
     private DecimalFormat currencyFormat = new DecimalFormat("$#,##0.00");
     
-    private ProductDAO productDAO;
+    private IProductDAO productDAO;
     private OrderDAO orderDAO;
     private ShiftDAO shiftDAO;
     private CustomerDAO customerDAO;
+    private AsyncDAO<IProductDAO> asyncProducts;
+    private AsyncDAO<OrderDAO> asyncOrders;
+    private AsyncDAO<ShiftDAO> asyncShifts;
+    private AsyncDAO<CustomerDAO> asyncCustomers;
+    /** Completes once every scan so far has been applied to the cart. */
+    private CompletableFuture<Void> pendingScans = CompletableFuture.completedFuture(null);
+    /** False while a payment is checked or saved; see {@link #setSaleControlsEnabled}. */
+    private boolean saleControlsEnabled = true;
     
     private List<OrderItem> currentSaleOrderItems = new ArrayList<>();
+    /** Cart lines by product ID; also read by scan lookups on the worker threads. */
+    private Map<Integer, OrderItem> cartLines = new ConcurrentHashMap<>();
+    /** Units in lines with a price from the barcode, which are never merged, by product ID. */
+    private Map<Integer, Integer> pricedLineUnits = new ConcurrentHashMap<>();
+    private final BarcodeDecoder barcodeDecoder = new BarcodeDecoder();
+    private final Segment scannedText = new Segment();
     private Customer currentCustomer = null; 
     
     public POSPanel(User user) {
         this.currentUser = user;
         
-        this.productDAO = new ProductDAO();
+        this.productDAO = CompactProductDAO.isSelected() // scans are answered from memory
+                ? CompactProductDAO.getInstance() : CachedProductDAO.getInstance();
         this.orderDAO = new OrderDAO();
         this.shiftDAO = new ShiftDAO(); 
         this.customerDAO = new CustomerDAO();
+        this.asyncProducts = new AsyncDAO<>(productDAO);
+        this.asyncOrders = new AsyncDAO<>(orderDAO);
+        this.asyncShifts = new AsyncDAO<>(shiftDAO);
+        this.asyncCustomers = new AsyncDAO<>(customerDAO);
 
         setLayout(new BorderLayout(15, 15));
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
@@ -93,7 +126,7 @@ public class POSPanel extends JPanel {
         JPanel skuPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
         skuPanel.setBackground(Color.WHITE);
         
-        JLabel skuLabel = new JLabel("Scan/Enter SKU:");
+        JLabel skuLabel = new JLabel("Scan SKU / Search Name:");
         skuLabel.setFont(new Font("Arial", Font.BOLD, 14));
         
         skuInput = new JTextField(15);
@@ -263,9 +296,12 @@ public class POSPanel extends JPanel {
         otherLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         otherLabel.setBorder(BorderFactory.createEmptyBorder(0, 0, 10, 0));
         
+        importBasketButton = createPaymentButton("Import Basket", secondaryColor, "B");
         returnButton = createPaymentButton("Process Return", warningColor, "<");
         
         otherActionsPanel.add(otherLabel);
+        otherActionsPanel.add(importBasketButton);
+        otherActionsPanel.add(Box.createRigidArea(new Dimension(0, 10)));
         otherActionsPanel.add(returnButton);
         
         // Add all components to action panel
@@ -344,10 +380,15 @@ public class POSPanel extends JPanel {
     private void registerEventHandlers() {
         addItemButton.addActionListener(e -> addItem());
         skuInput.addActionListener(e -> addItem()); 
+        skuTypeahead = new ProductTypeahead(skuInput, product -> { // a picked name is added like a scan
+            skuTypeahead.setTextQuietly(product.getSku());
+            addItem();
+        });
         customerButton.addActionListener(e -> findCustomer());
         payCashButton.addActionListener(e -> processPayment("Cash")); 
         payCardButton.addActionListener(e -> processPayment("Card")); 
         returnButton.addActionListener(e -> handleReturnAction());    
+        importBasketButton.addActionListener(e -> importBasket());
         
         itemsTable.addMouseListener(new MouseAdapter() {
             public void mousePressed(MouseEvent mouseEvent) {
@@ -362,85 +403,268 @@ public class POSPanel extends JPanel {
     }
 
     private void addItem() {
-        String sku = skuInput.getText().trim();
-        if (sku.isEmpty()) {
+        Document document = skuInput.getDocument();
+        boolean decoded;
+        try {
+            document.getText(0, document.getLength(), scannedText);
+            decoded = barcodeDecoder.decode(scannedText);
+        } catch (BadLocationException e) {
+            decoded = false;
+        }
+        if (!decoded) {
             skuInput.requestFocus();
             return;
         }
+        String sku = barcodeDecoder.sku();
+        long priceCents = barcodeDecoder.priceCents();
+        int weightGrams = barcodeDecoder.weightGrams();
+        int units = priceCents >= 0 || weightGrams >= 0 ? 1 : barcodeDecoder.quantity();
+        skuInput.setText(""); // ready for the next scan while this one is looked up
+        skuInput.requestFocus();
 
-        try {
-            Product product = productDAO.findProductBySku(sku);
-
-            if (product != null) {
-                 Product currentProductState = productDAO.findProductById(product.getProductId()); 
-                 if (currentProductState == null) {
-                    JOptionPane.showMessageDialog(this, 
-                        "Error retrieving current product state for stock check.",
-                        "Stock Check Error", 
-                        JOptionPane.ERROR_MESSAGE);
-                      return;
-                 }
-
-                boolean found = false;
-                for (int i = 0; i < currentSaleOrderItems.size(); i++) {
-                    OrderItem currentItem = currentSaleOrderItems.get(i);
-                    if (currentItem.getProductId() == product.getProductId()) {
-                        if (currentProductState.getQuantityInStock() > currentItem.getQuantity()) {
-                            currentItem.setQuantity(currentItem.getQuantity() + 1);
-                            found = true;
-                            break;
-                        } else {
-                            JOptionPane.showMessageDialog(this, 
-                                "<html><b>Cannot add more of '" + product.getName() + "'.</b><br>Only " 
-                                + currentProductState.getQuantityInStock() + " in stock total.</html>",
-                                "Stock Limit", 
-                                JOptionPane.WARNING_MESSAGE);
-                            skuInput.setText("");
-                            skuInput.requestFocus();
-                            return; 
-                        }
-                    }
-                }
-                
-                if (!found) {
-                    if (currentProductState.getQuantityInStock() > 0) {
-                         OrderItem newItem = new OrderItem(
-                            product.getProductId(), product.getName(), 1,
-                            product.getUnitPrice(), product.getCurrentCostPrice()
-                        );
-                        currentSaleOrderItems.add(newItem);
-                    } else {
+        // Lookups run in the background, possibly several at once, but are applied to the
+        // cart one at a time in scan order.
+        CompletableFuture<ProductScan> lookup = asyncProducts.call(dao -> dao.lookupForScan(sku, this::unitsInCart));
+        pendingScans = pendingScans.thenCompose(v -> lookup).handleAsync((result, error) -> {
+            try {
+                if (error != null) {
+                    if (!AsyncDAO.isCancellation(error)) {
+                        Throwable cause = AsyncDAO.unwrap(error);
                         JOptionPane.showMessageDialog(this, 
-                            "<html><b>Product '" + product.getName() + "' is out of stock!</b></html>",
-                            "Stock Alert", 
-                            JOptionPane.WARNING_MESSAGE);
-                         skuInput.setText("");
-                         skuInput.requestFocus();
-                         return; 
+                            "Error adding product:\n" + Edt.describe(cause),
+                            "Database Error", 
+                            JOptionPane.ERROR_MESSAGE);
+                        cause.printStackTrace();
                     }
+                } else {
+                    applyScan(sku, result, units, priceCents, weightGrams);
                 }
-                
-                updateTableAndTotal();
+            } catch (RuntimeException ex) {
+                ex.printStackTrace(); // keep the scan chain alive
+            }
+            skuInput.requestFocus();
+            return null;
+        }, SwingUtilities::invokeLater);
+    }
+
+    /** Units of a product in the cart, over all its lines; safe to call from the worker threads. */
+    private int unitsInCart(int productId) {
+        OrderItem line = cartLines.get(productId);
+        return (line == null ? 0 : line.getQuantity()) + pricedLineUnits.getOrDefault(productId, 0);
+    }
+
+    /**
+     * Adds a looked-up scan to the cart. A barcode with a price (or a weight, priced at the
+     * product's unit price per kg) becomes a line of its own with that price; stock is counted
+     * in whole units, so such a line is one unit.
+     */
+    private void applyScan(String sku, ProductScan scan, int units, long priceCents, int weightGrams) {
+        if (scan == null) {
+            JOptionPane.showMessageDialog(this, 
+                "Product with SKU '" + sku + "' not found!",
+                "Product Not Found", 
+                JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        Product product = scan.getProduct();
+        // Earlier scans of the same product may have been applied since the lookup ran.
+        scan = scan.withQuantityInCart(unitsInCart(product.getProductId()));
 
-                // Flash effect for success
-                showSuccessFlash();
+        if (scan.getAvailableQuantity() <= 0) {
+            if (scan.getQuantityInCart() > 0) {
+                JOptionPane.showMessageDialog(this, 
+                    "<html><b>Cannot add more of '" + product.getName() + "'.</b><br>Only " 
+                    + scan.getQuantityInStock() + " in stock total.</html>",
+                    "Stock Limit", 
+                    JOptionPane.WARNING_MESSAGE);
             } else {
                 JOptionPane.showMessageDialog(this, 
-                    "Product with SKU '" + sku + "' not found!",
-                    "Product Not Found", 
+                    "<html><b>Product '" + product.getName() + "' is out of stock!</b></html>",
+                    "Stock Alert", 
                     JOptionPane.WARNING_MESSAGE);
             }
-        } catch (Exception ex) { 
+            return; 
+        }
+        if (scan.getAvailableQuantity() < units) {
             JOptionPane.showMessageDialog(this, 
-                "Error adding product:\n" + ex.getMessage(),
-                "Database Error", 
-                JOptionPane.ERROR_MESSAGE);
-            ex.printStackTrace();
+                "<html><b>Cannot add " + units + " of '" + product.getName() + "'.</b><br>Only " 
+                + scan.getAvailableQuantity() + " more in stock.</html>",
+                "Stock Limit", 
+                JOptionPane.WARNING_MESSAGE);
+            return;
         }
 
-            skuInput.setText(""); 
+        if (priceCents >= 0 || weightGrams >= 0) {
+            addPricedUnit(product, priceCents, weightGrams);
+        } else {
+            addUnits(product, units);
+        }
+        
+        updateTableAndTotal();
+
+        // Flash effect for success
+        showSuccessFlash();
+    }
+
+    /** Adds units at the product's own price, to its existing line if it has one. */
+    private void addUnits(Product product, int units) {
+        OrderItem currentItem = cartLines.get(product.getProductId());
+        if (currentItem != null) {
+            currentItem.setQuantity(currentItem.getQuantity() + units);
+        } else {
+            OrderItem newItem = new OrderItem(
+                product.getProductId(), product.getName(), units,
+                product.getUnitPrice(), product.getCurrentCostPrice()
+            );
+            currentSaleOrderItems.add(newItem);
+            cartLines.put(newItem.getProductId(), newItem);
+        }
+    }
+
+    /** Adds one unit on a line of its own, at the price from the barcode or priced by weight. */
+    private void addPricedUnit(Product product, long priceCents, int weightGrams) {
+        BigDecimal linePrice;
+        String lineName = product.getName();
+        if (priceCents >= 0) {
+            linePrice = BigDecimal.valueOf(priceCents, 2);
+        } else {
+            BigDecimal kilograms = BigDecimal.valueOf(weightGrams, 3);
+            linePrice = product.getUnitPrice().multiply(kilograms).setScale(2, RoundingMode.HALF_UP);
+            lineName = lineName + " (" + kilograms.toPlainString() + " kg)";
+        }
+        OrderItem pricedItem = new OrderItem(
+            product.getProductId(), lineName, 1,
+            linePrice, product.getCurrentCostPrice()
+        );
+        currentSaleOrderItems.add(pricedItem);
+        pricedLineUnits.merge(pricedItem.getProductId(), 1, Integer::sum);
+    }
+
+    /**
+     * Adds a pasted or loaded list of SKUs to the sale. All of them are looked up together
+     * (see {@link IProductDAO#lookupAllForScan}), in turn with any scans still pending, and
+     * one summary lists the SKUs that were unknown, out of stock or short.
+     */
+    private void importBasket() {
+        BasketImportDialog dialog = new BasketImportDialog(SwingUtilities.getWindowAncestor(this));
+        dialog.setVisible(true);
+        BasketImportDialog.Basket basket = dialog.getBasket();
+        if (basket == null) {
+            return;
+        }
+        if (basket.isEmpty()) {
+            JOptionPane.showMessageDialog(this,
+                basket.getInvalidLines().isEmpty() ? "The basket is empty." : basketReport(0, 0, basket.getInvalidLines()),
+                "Import Basket",
+                JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        Set<String> skus = new LinkedHashSet<>(basket.getQuantities().keySet());
+        for (BasketImportDialog.PricedLine line : basket.getPricedLines()) {
+            skus.add(line.getSku());
+        }
+        CompletableFuture<Map<String, ProductScan>> lookup =
+                Edt.busy(this, asyncProducts.call(dao -> dao.lookupAllForScan(skus, this::unitsInCart)));
+        importBasketButton.setEnabled(false);
+        pendingScans = pendingScans.thenCompose(v -> lookup).handleAsync((result, error) -> {
+            importBasketButton.setEnabled(saleControlsEnabled);
+            try {
+                if (error != null) {
+                    if (!AsyncDAO.isCancellation(error)) {
+                        Throwable cause = AsyncDAO.unwrap(error);
+                        JOptionPane.showMessageDialog(this,
+                            "Error importing basket:\n" + Edt.describe(cause),
+                            "Database Error",
+                            JOptionPane.ERROR_MESSAGE);
+                        cause.printStackTrace();
+                    }
+                } else {
+                    applyBasket(basket, result);
+                }
+            } catch (RuntimeException ex) {
+                ex.printStackTrace(); // keep the scan chain alive
+            }
             skuInput.requestFocus();
+            return null;
+        }, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * Adds each basket line that is known and in stock, at most the units still available;
+     * lines priced by their barcode come after the others, as they would if scanned. The
+     * cart is redrawn once at the end.
+     */
+    private void applyBasket(BasketImportDialog.Basket basket, Map<String, ProductScan> scans) {
+        List<String> problems = new ArrayList<>(basket.getInvalidLines());
+        int linesAdded = 0;
+        int unitsAdded = 0;
+        for (Map.Entry<String, Integer> line : basket.getQuantities().entrySet()) {
+            String sku = line.getKey();
+            int wanted = line.getValue();
+            ProductScan scan = scans.get(sku);
+            if (scan == null) {
+                problems.add(sku + ": unknown SKU");
+                continue;
+            }
+            Product product = scan.getProduct();
+            scan = scan.withQuantityInCart(unitsInCart(product.getProductId()));
+            int units = Math.min(wanted, scan.getAvailableQuantity());
+            if (units <= 0) {
+                problems.add(sku + " (" + product.getName() + "): out of stock, " + wanted + " wanted");
+                continue;
+            }
+            if (units < wanted) {
+                problems.add(sku + " (" + product.getName() + "): only " + units + " of " + wanted + " added");
+            }
+            addUnits(product, units);
+            linesAdded++;
+            unitsAdded += units;
         }
+        for (BasketImportDialog.PricedLine line : basket.getPricedLines()) {
+            ProductScan scan = scans.get(line.getSku());
+            if (scan == null) {
+                problems.add(line.getSku() + ": unknown SKU");
+                continue;
+            }
+            Product product = scan.getProduct();
+            scan = scan.withQuantityInCart(unitsInCart(product.getProductId()));
+            int units = Math.min(line.getUnits(), scan.getAvailableQuantity());
+            if (units <= 0) {
+                problems.add(line.getSku() + " (" + product.getName() + "): out of stock, " + line.getUnits() + " wanted");
+                continue;
+            }
+            if (units < line.getUnits()) {
+                problems.add(line.getSku() + " (" + product.getName() + "): only " + units + " of " + line.getUnits() + " added");
+            }
+            for (int i = 0; i < units; i++) {
+                addPricedUnit(product, line.getPriceCents(), line.getWeightGrams());
+            }
+            linesAdded += units;
+            unitsAdded += units;
+        }
+        if (linesAdded > 0) {
+            updateTableAndTotal();
+            showSuccessFlash();
+        }
+        if (!problems.isEmpty()) {
+            JOptionPane.showMessageDialog(this,
+                basketReport(linesAdded, unitsAdded, problems),
+                "Import Basket",
+                JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    private Object basketReport(int linesAdded, int unitsAdded, List<String> problems) {
+        JTextArea problemArea = new JTextArea(String.join("\n", problems));
+        problemArea.setEditable(false);
+        problemArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        JScrollPane problemScrollPane = new JScrollPane(problemArea);
+        problemScrollPane.setPreferredSize(new Dimension(520, Math.min(300, 40 + 16 * problems.size())));
+        return new Object[]{
+            "Added " + linesAdded + " line(s), " + unitsAdded + " unit(s). Check these lines:",
+            problemScrollPane
+        };
+    }
 
     private void showSuccessFlash() {
         // Create a flash effect to indicate item was added
@@ -468,7 +692,11 @@ public class POSPanel extends JPanel {
                 JOptionPane.YES_NO_OPTION);
             
             if (confirm == JOptionPane.YES_OPTION) {
-                currentSaleOrderItems.remove(rowIndex);
+                OrderItem removed = currentSaleOrderItems.remove(rowIndex);
+                if (!cartLines.remove(removed.getProductId(), removed)) { // a line priced by its barcode
+                    pricedLineUnits.computeIfPresent(removed.getProductId(),
+                            (id, count) -> count > removed.getQuantity() ? count - removed.getQuantity() : null);
+                }
                 updateTableAndTotal();
             }
         }
@@ -518,12 +746,24 @@ public class POSPanel extends JPanel {
               return;
          }
 
-         try {
-              List<Customer> customers = customerDAO.findCustomers(customerSearch.trim());
+         customerButton.setEnabled(false);
+         Edt.whenDone(Edt.busy(this, asyncCustomers.call(dao -> dao.findCustomers(customerSearch.trim()))),
+             customers -> {
+                 customerButton.setEnabled(true);
+                 showCustomerMatches(customerSearch.trim(), customers);
+             },
+             ex -> {
+                 customerButton.setEnabled(true);
+                 JOptionPane.showMessageDialog(this, "Error searching for customer:\n" + Edt.describe(ex), "Database Error", JOptionPane.ERROR_MESSAGE);
+                 ex.printStackTrace();
+             });
+     }
+
+    private void showCustomerMatches(String customerSearch, List<Customer> customers) {
               if (customers == null || customers.isEmpty()) {
                   int addResult = JOptionPane.showConfirmDialog(this, "No customer found. Add new customer?", "Add Customer?", JOptionPane.YES_NO_OPTION);
                   if (addResult == JOptionPane.YES_OPTION){
-                      addCustomer(customerSearch.trim()); 
+                      addCustomer(customerSearch); 
                   } else {
                        currentCustomer = null;
                     customerLabel.setText("Customer: Not Selected");
@@ -547,10 +787,6 @@ public class POSPanel extends JPanel {
                 customerLabel.setText(currentCustomer != null ? "Customer: " + currentCustomer.getName() + " (ID: " + currentCustomer.getCustomerId() + ")" : "Customer: Not Selected");
                 customerLabel.setIcon(createTextIcon("O", new Font("Arial", Font.PLAIN, 16)));
               }
-         } catch (Exception ex) {
-               JOptionPane.showMessageDialog(this, "Error searching for customer:\n" + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-               ex.printStackTrace();
-         }
      }
 
     private void addCustomer(String initialName) {
@@ -570,8 +806,8 @@ public class POSPanel extends JPanel {
                     return;
                }
                Customer newCustomer = new Customer(name, contact, 0); 
-               try {
-                   Customer savedCustomer = customerDAO.saveCustomerAndRetrieve(newCustomer); 
+               Edt.whenDone(Edt.busy(this, asyncCustomers.call(dao -> dao.saveCustomerAndRetrieve(newCustomer), 0)),
+                   savedCustomer -> {
                     if (savedCustomer != null) {
                         JOptionPane.showMessageDialog(this, "Customer added successfully.");
                         currentCustomer = savedCustomer; 
@@ -580,27 +816,46 @@ public class POSPanel extends JPanel {
                     } else {
                          JOptionPane.showMessageDialog(this, "Failed to add customer (check logs).", "Database Error", JOptionPane.ERROR_MESSAGE);
                     }
-               } catch (SQLException sqle) {
-                   if (sqle.getMessage().contains("UNIQUE constraint failed")) { 
-                        JOptionPane.showMessageDialog(this, "Failed to add customer. A customer with similar details might already exist.", "Duplicate Entry", JOptionPane.WARNING_MESSAGE);
-                   } else {
-                        JOptionPane.showMessageDialog(this, "Error adding customer:\n" + sqle.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+                   },
+                   ex -> {
+                   if (ex instanceof SQLException) {
+                       if (ex.getMessage().contains("UNIQUE constraint failed")) { 
+                            JOptionPane.showMessageDialog(this, "Failed to add customer. A customer with similar details might already exist.", "Duplicate Entry", JOptionPane.WARNING_MESSAGE);
+                       } else {
+                            JOptionPane.showMessageDialog(this, "Error adding customer:\n" + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+                       }
+                   } else { 
+                       JOptionPane.showMessageDialog(this, "An unexpected error occurred while adding customer:\n" + Edt.describe(ex), "Error", JOptionPane.ERROR_MESSAGE);
                    }
-                   sqle.printStackTrace();
-               } catch (Exception ex) { 
-                   JOptionPane.showMessageDialog(this, "An unexpected error occurred while adding customer:\n" + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
                    ex.printStackTrace();
-               }
+                   });
           }
      }
     
     private void processPayment(String type) {
+        if (!pendingScans.isDone()) {
+            JOptionPane.showMessageDialog(this, "Still looking up scanned items. Please wait a moment.", "Payment", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
         if (currentSaleOrderItems.isEmpty()){
             JOptionPane.showMessageDialog(this, "No items in the sale.", "Payment Error", JOptionPane.WARNING_MESSAGE);
             return;
         }
         
-        Shift currentShift = shiftDAO.findOpenShift();
+        setSaleControlsEnabled(false);
+        Edt.whenDone(Edt.busy(this, asyncShifts.call(ShiftDAO::findOpenShift)),
+            currentShift -> {
+                setSaleControlsEnabled(true);
+                collectPayment(type, currentShift);
+            },
+            ex -> {
+                setSaleControlsEnabled(true);
+                JOptionPane.showMessageDialog(this, "Could not check the active shift:\n" + Edt.describe(ex), "Shift Error", JOptionPane.ERROR_MESSAGE);
+                ex.printStackTrace();
+            });
+    }
+
+    private void collectPayment(String type, Shift currentShift) {
         if (currentShift == null) {
               JOptionPane.showMessageDialog(this, "Cannot process sale: No shift is currently active.\nPlease start a shift first.", "Shift Error", JOptionPane.ERROR_MESSAGE);
               return;
@@ -646,32 +901,53 @@ public class POSPanel extends JPanel {
          }
         
         if (paymentSuccess) {
-            try {
-                boolean saved = orderDAO.saveOrder(
-                    currentSaleOrderItems,
+            // The cart stays locked while the order is saved. No timeout: a slow commit must
+            // never be reported as a failed sale.
+            List<OrderItem> items = new ArrayList<>(currentSaleOrderItems);
+            BigDecimal tendered = amountTendered;
+            setSaleControlsEnabled(false);
+            Edt.whenDone(Edt.busy(this, asyncOrders.call(dao -> dao.saveOrder(
+                    items,
                     customerId,
                     currentUser.getUserId(),
                     shiftId, 
                     type,
-                    amountTendered 
-                );
-
-                if (saved){
-                    JOptionPane.showMessageDialog(this, "Sale Completed Successfully!");
-                    clearSale(); 
-                } else {
-                     JOptionPane.showMessageDialog(this, "Failed to save the order!\nPossible insufficient stock or database error.\nPlease check application logs.", "Order Save Error", JOptionPane.ERROR_MESSAGE);
-                }
-            } catch (SQLException sqle) { 
-                 JOptionPane.showMessageDialog(this, "Database Error saving order:\n" + sqle.getMessage(), "Transaction Error", JOptionPane.ERROR_MESSAGE);
-                 sqle.printStackTrace();
-            } catch (Exception ex) { 
-                 JOptionPane.showMessageDialog(this, "Critical Error saving order:\n" + ex.getMessage(), "Transaction Error", JOptionPane.ERROR_MESSAGE);
-                 ex.printStackTrace();
-            }
+                    tendered 
+                ), 0)),
+                saved -> {
+                    setSaleControlsEnabled(true);
+                    if (saved){
+                        JOptionPane.showMessageDialog(this, "Sale Completed Successfully!");
+                        clearSale(); 
+                    } else {
+                         JOptionPane.showMessageDialog(this, "Failed to save the order!\nPossible insufficient stock or database error.\nPlease check application logs.", "Order Save Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                },
+                ex -> {
+                    setSaleControlsEnabled(true);
+                    if (ex instanceof SQLException) { 
+                         JOptionPane.showMessageDialog(this, "Database Error saving order:\n" + ex.getMessage(), "Transaction Error", JOptionPane.ERROR_MESSAGE);
+                    } else { 
+                         JOptionPane.showMessageDialog(this, "Critical Error saving order:\n" + Edt.describe(ex), "Transaction Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                    ex.printStackTrace();
+                });
         }
     }
 
+    /** Locks the cart while a payment is checked or saved, so it cannot change underneath. */
+    private void setSaleControlsEnabled(boolean enabled) {
+        saleControlsEnabled = enabled;
+        skuInput.setEnabled(enabled);
+        addItemButton.setEnabled(enabled);
+        importBasketButton.setEnabled(enabled);
+        customerButton.setEnabled(enabled);
+        returnButton.setEnabled(enabled);
+        boolean hasItems = enabled && !currentSaleOrderItems.isEmpty();
+        payCashButton.setEnabled(hasItems);
+        payCardButton.setEnabled(hasItems);
+    }
+
     private BigDecimal calculateCurrentTotal() {
         BigDecimal total = BigDecimal.ZERO;
         for (OrderItem item : currentSaleOrderItems) {
@@ -682,6 +958,8 @@ public class POSPanel extends JPanel {
 
     private void clearSale() {
         currentSaleOrderItems.clear();
+        cartLines.clear();
+        pricedLineUnits.clear();
         tableModel.setRowCount(0);
         totalLabel.setText("$0.00");
         customerLabel.setText("Customer: Not Selected");
@@ -691,7 +969,20 @@ public class POSPanel extends JPanel {
     }
     
     private void handleReturnAction() {
-         Shift currentShift = shiftDAO.findOpenShift();
+         returnButton.setEnabled(false);
+         Edt.whenDone(Edt.busy(this, asyncShifts.call(ShiftDAO::findOpenShift)),
+             currentShift -> {
+                 returnButton.setEnabled(true);
+                 collectReturn(currentShift);
+             },
+             ex -> {
+                 returnButton.setEnabled(true);
+                 JOptionPane.showMessageDialog(this, "Could not check the active shift:\n" + Edt.describe(ex), "Shift Error", JOptionPane.ERROR_MESSAGE);
+                 ex.printStackTrace();
+             });
+    }
+
+    private void collectReturn(Shift currentShift) {
          if (currentShift == null) {
               JOptionPane.showMessageDialog(this, "Cannot process return: No shift is currently active.\nPlease start a shift first.", "Shift Error", JOptionPane.ERROR_MESSAGE);
               return;
@@ -734,25 +1025,32 @@ public class POSPanel extends JPanel {
          int restockResult = JOptionPane.showConfirmDialog(this, "Should the returned item(s) be restocked into inventory?", "Restock Item?", JOptionPane.YES_NO_OPTION);
          boolean restockFlag = (restockResult == JOptionPane.YES_OPTION);
          
-         try {
-             boolean success = orderDAO.processReturn(
-                     originalOrderItemId,
-                     quantityToReturn,
+         int itemId = originalOrderItemId;
+         int quantity = quantityToReturn;
+         String returnReason = reason;
+         returnButton.setEnabled(false);
+         Edt.whenDone(Edt.busy(this, asyncOrders.call(dao -> dao.processReturn(
+                     itemId,
+                     quantity,
                      restockFlag,
-                     reason,
+                     returnReason,
                      currentUser.getUserId(), 
                      shiftId                
-             );
-
-             if (success) {
-                 JOptionPane.showMessageDialog(this, "Return processed successfully.");
-             }
-         } catch (SQLException | IllegalArgumentException ex) { 
-              JOptionPane.showMessageDialog(this, "Failed to process return:\n" + ex.getMessage(), "Return Error", JOptionPane.ERROR_MESSAGE);
-              ex.printStackTrace(); 
-         } catch (Exception ex) { 
-             JOptionPane.showMessageDialog(this, "An unexpected error occurred during return processing:\n" + ex.getMessage(), "Critical Error", JOptionPane.ERROR_MESSAGE);
-             ex.printStackTrace();
-         }
+             ), 0)),
+             success -> {
+                 returnButton.setEnabled(true);
+                 if (success) {
+                     JOptionPane.showMessageDialog(this, "Return processed successfully.");
+                 }
+             },
+             ex -> {
+                 returnButton.setEnabled(true);
+                 if (ex instanceof SQLException || ex instanceof IllegalArgumentException) { 
+                      JOptionPane.showMessageDialog(this, "Failed to process return:\n" + ex.getMessage(), "Return Error", JOptionPane.ERROR_MESSAGE);
+                 } else { 
+                     JOptionPane.showMessageDialog(this, "An unexpected error occurred during return processing:\n" + Edt.describe(ex), "Critical Error", JOptionPane.ERROR_MESSAGE);
+                 }
+                 ex.printStackTrace();
+             });
     }
 } 
\ No newline at end of file
@@ -0,0 +1,126 @@
+package com.smartcashpro.ui;
+
+import com.smartcashpro.db.AsyncDAO;
+import com.smartcashpro.db.ProductImporter;
+import com.smartcashpro.db.ProductSearchIndex;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Imports products from a CSV file and shows how it is going: rows read, imported and failed,
+ * rows per second, and why each failed row failed. The import runs in the background; Cancel
+ * stops it after the chunk being written (what was committed stays).
+ */
+class ProductImportDialog extends JDialog {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ProductImporter importer = new ProductImporter();
+    private final JLabel statusLabel = new JLabel("Starting import...");
+    private final JProgressBar progressBar = new JProgressBar();
+    private final JTextArea errorArea = new JTextArea(12, 60);
+    private final JButton closeButton = new JButton("Cancel");
+    private CompletableFuture<ProductImporter.Result> running;
+    private int errorsShown = 0;
+
+    ProductImportDialog(Window owner, File file) {
+        super(owner, "Import Products - " + file.getName(), ModalityType.APPLICATION_MODAL);
+        initComponents();
+        pack();
+        setLocationRelativeTo(owner);
+        start(file);
+    }
+
+    private void initComponents() {
+        setLayout(new BorderLayout(10, 10));
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+
+        JPanel topPanel = new JPanel(new GridLayout(2, 1, 5, 5));
+        topPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 0, 10));
+        progressBar.setIndeterminate(true);
+        topPanel.add(statusLabel);
+        topPanel.add(progressBar);
+
+        errorArea.setEditable(false);
+        errorArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        JScrollPane errorScrollPane = new JScrollPane(errorArea);
+        errorScrollPane.setBorder(BorderFactory.createTitledBorder("Rows not imported"));
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.add(closeButton);
+
+        add(topPanel, BorderLayout.NORTH);
+        add(errorScrollPane, BorderLayout.CENTER);
+        add(buttonPanel, BorderLayout.SOUTH);
+
+        closeButton.addActionListener(e -> closeOrCancel());
+        addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosing(java.awt.event.WindowEvent e) {
+                closeOrCancel();
+            }
+        });
+    }
+
+    private void start(File file) {
+        running = new AsyncDAO<>(importer).call(imp -> imp.importCsv(file.toPath(),
+                soFar -> SwingUtilities.invokeLater(() -> showProgress(soFar))), 0);
+        Edt.whenDone(running,
+                result -> {
+                    showProgress(result);
+                    finished(result.isCancelled() ? "Import cancelled: " : "Import finished: ", result);
+                },
+                ex -> {
+                    progressBar.setIndeterminate(false);
+                    statusLabel.setText("Import stopped: " + Edt.describe(ex));
+                    closeButton.setText("Close");
+                    JOptionPane.showMessageDialog(this, "The import stopped:\n" + Edt.describe(ex)
+                            + "\n\nProducts from earlier parts of the file may already have been added.",
+                            "Import Error", JOptionPane.ERROR_MESSAGE);
+                    ex.printStackTrace();
+                    ProductSearchIndex.getInstance().rebuild();
+                });
+    }
+
+    private void showProgress(ProductImporter.Result soFar) {
+        statusLabel.setText(String.format("%,d rows read, %,d imported, %,d failed  (%,.0f rows/s)",
+                soFar.getRowsRead(), soFar.getImported(), soFar.getFailed(), soFar.getRowsPerSecond()));
+        // Progress reports carry every error so far; append only the new ones.
+        StringBuilder newErrors = new StringBuilder();
+        for (int i = errorsShown; i < soFar.getErrors().size(); i++) {
+            newErrors.append(soFar.getErrors().get(i)).append('\n');
+        }
+        errorsShown = Math.max(errorsShown, soFar.getErrors().size());
+        if (newErrors.length() > 0) {
+            errorArea.append(newErrors.toString());
+        }
+    }
+
+    private void finished(String prefix, ProductImporter.Result result) {
+        progressBar.setIndeterminate(false);
+        progressBar.setValue(progressBar.getMaximum());
+        statusLabel.setText(prefix + statusLabel.getText());
+        if (result.getFailed() > result.getErrors().size()) {
+            errorArea.append("... and " + (result.getFailed() - result.getErrors().size()) + " more.\n");
+        }
+        closeButton.setText("Close");
+        if (result.getImported() > 0) {
+            ProductSearchIndex.getInstance().rebuild(); // one rebuild instead of one update per product
+        }
+    }
+
+    private void closeOrCancel() {
+        if (running != null && !running.isDone()) {
+            closeButton.setEnabled(false);
+            statusLabel.setText("Cancelling after the current chunk...");
+            importer.cancel();
+            closeButton.setText("Close");
+            Edt.whenDone(running, result -> closeButton.setEnabled(true), ex -> closeButton.setEnabled(true));
+            return;
+        }
+        dispose();
+    }
+}
@@ -0,0 +1,209 @@
+package com.smartcashpro.ui;
+
+import com.smartcashpro.db.AsyncDAO;
+import com.smartcashpro.db.IProductDAO;
+import com.smartcashpro.db.ProductQuery;
+import com.smartcashpro.model.Product;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Table model for the product list that reads pages from the database as they are scrolled into view.
+ *
+ * Only the row count is loaded up front. A page of {@value #PAGE_SIZE} rows is requested the
+ * first time one of its cells is painted; until it arrives its cells are empty. At most
+ * {@value #MAX_PAGES} pages are kept, least recently painted ones are dropped. A page that
+ * follows a page read before is fetched by keyset (continuing after that page's last row);
+ * only a jump into the middle of the list, e.g. dragging the scroll bar, falls back to an
+ * offset query. Sorting and filtering happen in the database: see {@link #setQuery}.
+ *
+ * All methods must be called on the EDT.
+ */
+class ProductPageTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+    static final int PAGE_SIZE = 200;
+    private static final int MAX_PAGES = 10;
+
+    static final String[] COLUMN_NAMES = {"ID", "SKU", "Name", "Qty", "Unit Price", "Cost Price", "Reorder Lvl", "Type"};
+    /** Sort key per column; null for columns the database cannot sort by. */
+    static final ProductQuery.SortKey[] COLUMN_SORT_KEYS = {
+            ProductQuery.SortKey.ID, ProductQuery.SortKey.SKU, ProductQuery.SortKey.NAME,
+            ProductQuery.SortKey.QUANTITY, ProductQuery.SortKey.UNIT_PRICE, null, null, null
+    };
+
+    private final AsyncDAO<IProductDAO> products;
+    private final Consumer<Throwable> onError;
+    private ProductQuery query = ProductQuery.ALL;
+    private int rowCount = 0;
+    /** Bumped by every reload, so pages requested for an older query or count are ignored. */
+    private int generation = 0;
+    private final LinkedHashMap<Integer, List<Product>> pages = new LinkedHashMap<>(16, 0.75f, true);
+    /** Last row of every page read so far, to continue after it; only one product per page. */
+    private final Map<Integer, Product> pageEnds = new HashMap<>();
+    private final Set<Integer> loading = new HashSet<>();
+    private CompletableFuture<Integer> pendingCount;
+    private boolean pageFailed = false;
+
+    ProductPageTableModel(AsyncDAO<IProductDAO> products, Consumer<Throwable> onError) {
+        this.products = products;
+        this.onError = onError;
+    }
+
+    ProductQuery getQuery() {
+        return query;
+    }
+
+    /** Shows the products matching {@code query}, from the top. */
+    CompletableFuture<Integer> setQuery(ProductQuery query) {
+        this.query = query;
+        return reload();
+    }
+
+    /**
+     * Reads the row count again and drops every page, e.g. after a product was saved. The
+     * future completes with the new count once the table shows it.
+     */
+    CompletableFuture<Integer> reload() {
+        int reloadGeneration = ++generation;
+        Edt.cancel(pendingCount);
+        ProductQuery countQuery = query;
+        CompletableFuture<Integer> shown = new CompletableFuture<>();
+        pendingCount = Edt.whenDone(products.call(dao -> dao.countProducts(countQuery)),
+                count -> {
+                    if (reloadGeneration != generation) {
+                        return;
+                    }
+                    pages.clear();
+                    pageEnds.clear();
+                    loading.clear();
+                    pageFailed = false;
+                    rowCount = count;
+                    fireTableDataChanged();
+                    shown.complete(count);
+                },
+                ex -> {
+                    shown.completeExceptionally(ex);
+                    onError.accept(ex);
+                });
+        return shown;
+    }
+
+    /** The product in {@code row}, or null while its page is still loading. */
+    Product getProductAt(int row) {
+        List<Product> page = pages.get(row / PAGE_SIZE);
+        int index = row % PAGE_SIZE;
+        if (page == null) {
+            requestPage(row / PAGE_SIZE);
+            return null;
+        }
+        return index < page.size() ? page.get(index) : null;
+    }
+
+    /**
+     * Shows the current values of products changed elsewhere (see {@link com.smartcashpro.db.CatalogChangeFeed})
+     * in the rows already loaded. Rows are updated where they are; whether a product still
+     * matches the filters or has moved in the sort order is only settled by the next reload.
+     */
+    void productsChanged(List<Product> changed) {
+        Map<Integer, Product> byId = new HashMap<>();
+        for (Product p : changed) {
+            byId.put(p.getProductId(), p);
+        }
+        for (Map.Entry<Integer, List<Product>> page : pages.entrySet()) {
+            List<Product> rows = page.getValue();
+            for (int i = 0; i < rows.size(); i++) {
+                Product current = byId.get(rows.get(i).getProductId());
+                if (current != null) {
+                    rows.set(i, current);
+                    int row = page.getKey() * PAGE_SIZE + i;
+                    if (row < rowCount) {
+                        fireTableRowsUpdated(row, row);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Product p = getProductAt(row);
+        if (p == null) {
+            return null;
+        }
+        switch (column) {
+            case 0: return p.getProductId();
+            case 1: return p.getSku();
+            case 2: return p.getName();
+            case 3: return p.getQuantityInStock();
+            case 4: return p.getUnitPrice();
+            case 5: return p.getCurrentCostPrice();
+            case 6: return p.getReorderLevel();
+            default: return p.getProductType();
+        }
+    }
+
+    private void requestPage(int pageIndex) {
+        if (!loading.add(pageIndex)) {
+            return;
+        }
+        int pageGeneration = generation;
+        ProductQuery pageQuery = query;
+        Product after = pageIndex == 0 ? null : pageEnds.get(pageIndex - 1);
+        boolean seek = pageIndex == 0 || after != null;
+        CompletableFuture<List<Product>> load = products.call(dao -> seek
+                ? dao.findProductPage(pageQuery, after, PAGE_SIZE)
+                : dao.findProductPage(pageQuery, pageIndex * PAGE_SIZE, PAGE_SIZE));
+        Edt.whenDone(load,
+                page -> {
+                    if (pageGeneration != generation) {
+                        return;
+                    }
+                    loading.remove(pageIndex);
+                    pages.put(pageIndex, page);
+                    if (!page.isEmpty()) {
+                        pageEnds.put(pageIndex, page.get(page.size() - 1));
+                    }
+                    while (pages.size() > MAX_PAGES) {
+                        Integer eldest = pages.keySet().iterator().next();
+                        pages.remove(eldest);
+                    }
+                    int first = pageIndex * PAGE_SIZE;
+                    int last = Math.min(first + PAGE_SIZE, rowCount) - 1;
+                    if (first <= last) {
+                        fireTableRowsUpdated(first, last);
+                    }
+                },
+                ex -> {
+                    // The page stays marked as loading, so painting does not retry it in a loop;
+                    // the next reload (Refresh) tries again. One message per reload is enough.
+                    if (pageGeneration == generation && !pageFailed) {
+                        pageFailed = true;
+                        onError.accept(ex);
+                    }
+                });
+    }
+}
@@ -0,0 +1,183 @@
+package com.smartcashpro.ui;
+
+import com.smartcashpro.db.ProductSearchIndex;
+import com.smartcashpro.model.Product;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.text.DecimalFormat;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Product suggestions under a text field, from the {@link ProductSearchIndex}.
+ *
+ * Suggestions appear once typing pauses, so a barcode scanner (which types a whole SKU and
+ * Enter at once) is not interrupted. Up/Down move through the list, Enter or a click picks
+ * the highlighted product, Escape closes it. Enter with nothing highlighted is left to the
+ * field's own action.
+ */
+final class ProductTypeahead {
+
+    private static final int MAX_RESULTS = 12;
+    private static final int TYPING_PAUSE_MS = 150;
+
+    private final JTextField field;
+    private final Consumer<Product> onPick;
+    private final DefaultListModel<Product> model = new DefaultListModel<>();
+    private final JList<Product> list = new JList<>(model);
+    private final JPopupMenu popup = new JPopupMenu();
+    private final Timer typingPause;
+    private final DecimalFormat currencyFormat = new DecimalFormat("$#,##0.00");
+    private boolean quiet = false;
+
+    ProductTypeahead(JTextField field, Consumer<Product> onPick) {
+        this.field = field;
+        this.onPick = onPick;
+
+        list.setFocusable(false);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> l, Object value, int index,
+                                                          boolean selected, boolean focused) {
+                Product p = (Product) value;
+                String text = p.getName() + "   [" + p.getSku() + "]   "
+                        + (p.getUnitPrice() != null ? currencyFormat.format(p.getUnitPrice()) : "");
+                return super.getListCellRendererComponent(l, text, index, selected, focused);
+            }
+        });
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = list.locationToIndex(e.getPoint());
+                if (index >= 0) {
+                    pick(model.get(index));
+                }
+            }
+        });
+        JScrollPane scrollPane = new JScrollPane(list);
+        scrollPane.setBorder(BorderFactory.createEmptyBorder());
+        popup.setFocusable(false);
+        popup.add(scrollPane);
+
+        typingPause = new Timer(TYPING_PAUSE_MS, e -> showSuggestions());
+        typingPause.setRepeats(false);
+
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { textChanged(); }
+            @Override public void removeUpdate(DocumentEvent e) { textChanged(); }
+            @Override public void changedUpdate(DocumentEvent e) { textChanged(); }
+        });
+        field.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                handleKey(e);
+            }
+        });
+        field.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                hidePopup();
+            }
+        });
+        field.addActionListener(e -> hidePopup()); // Enter without a highlighted suggestion
+        ProductSearchIndex.getInstance().ensureLoaded();
+    }
+
+    /** Sets the field's text without opening suggestions for it. */
+    void setTextQuietly(String text) {
+        quiet = true;
+        try {
+            field.setText(text);
+        } finally {
+            quiet = false;
+        }
+        hidePopup();
+    }
+
+    void hidePopup() {
+        typingPause.stop();
+        popup.setVisible(false);
+    }
+
+    private void textChanged() {
+        if (quiet) {
+            return;
+        }
+        typingPause.restart();
+    }
+
+    private void showSuggestions() {
+        if (!field.isShowing() || !field.isEnabled()) {
+            return;
+        }
+        List<Product> matches = ProductSearchIndex.getInstance().search(field.getText(), MAX_RESULTS);
+        if (matches.isEmpty()) {
+            popup.setVisible(false);
+            return;
+        }
+        model.clear();
+        for (Product p : matches) {
+            model.addElement(p);
+        }
+        list.clearSelection();
+        list.setVisibleRowCount(matches.size());
+        popup.setPopupSize(Math.max(field.getWidth(), 380), list.getPreferredScrollableViewportSize().height + 4);
+        if (!popup.isVisible()) {
+            popup.show(field, 0, field.getHeight());
+        } else {
+            popup.revalidate();
+            popup.repaint();
+        }
+        field.requestFocusInWindow();
+    }
+
+    private void handleKey(KeyEvent e) {
+        if (!popup.isVisible()) {
+            return;
+        }
+        int size = model.getSize();
+        int index = list.getSelectedIndex();
+        switch (e.getKeyCode()) {
+            case KeyEvent.VK_DOWN:
+                select(index < 0 ? 0 : Math.min(index + 1, size - 1));
+                e.consume();
+                break;
+            case KeyEvent.VK_UP:
+                select(Math.max(index - 1, 0));
+                e.consume();
+                break;
+            case KeyEvent.VK_ENTER:
+                if (index >= 0) {
+                    e.consume(); // the field's own Enter action does not run
+                    pick(model.get(index));
+                }
+                break;
+            case KeyEvent.VK_ESCAPE:
+                hidePopup();
+                e.consume();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void select(int index) {
+        list.setSelectedIndex(index);
+        list.ensureIndexIsVisible(index);
+    }
+
+    private void pick(Product product) {
+        hidePopup();
+        onPick.accept(product);
+    }
+}
@@ -0,0 +1,179 @@
+package com.smartcashpro.ui;
+
+import com.smartcashpro.db.AsyncDAO;
+import com.smartcashpro.db.PriceChangeDAO;
+import com.smartcashpro.db.ReferenceData;
+import com.smartcashpro.model.Category;
+import com.smartcashpro.model.Supplier;
+import com.smartcashpro.model.User;
+
+import javax.swing.*;
+import java.awt.*;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Raises or lowers the price of a group of products by a percentage: all products, one
+ * category, one supplier's products, or the rows selected in the inventory list. The change
+ * is saved as one change set attributed to the current user (see {@link PriceChangeDAO}).
+ */
+class RepriceDialog extends JDialog {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String ALL = "All products", CATEGORY = "Category", SUPPLIER = "Supplier", SELECTED = "Selected products";
+
+    private final User currentUser;
+    private final List<Integer> selectedProductIds;
+    private final AsyncDAO<PriceChangeDAO> asyncPriceChanges = new AsyncDAO<>(new PriceChangeDAO());
+    private final JComboBox<String> scopeBox;
+    private final JComboBox<Category> categoryBox = new JComboBox<>();
+    private final JComboBox<Supplier> supplierBox = new JComboBox<>();
+    private final JTextField percentField = new JTextField(6);
+    private final JTextField descriptionField = new JTextField(25);
+    private final JButton applyButton = new JButton("Apply");
+    private boolean changed = false;
+
+    RepriceDialog(Window owner, User currentUser, List<Integer> selectedProductIds) {
+        super(owner, "Change Prices", ModalityType.APPLICATION_MODAL);
+        this.currentUser = currentUser;
+        this.selectedProductIds = selectedProductIds;
+        scopeBox = new JComboBox<>(selectedProductIds.isEmpty()
+                ? new String[]{ALL, CATEGORY, SUPPLIER}
+                : new String[]{ALL, CATEGORY, SUPPLIER, SELECTED + " (" + selectedProductIds.size() + ")"});
+        initComponents();
+        loadChoices();
+        pack();
+        setLocationRelativeTo(owner);
+    }
+
+    /** True if a price change was saved, so the list should be reloaded. */
+    boolean isChanged() {
+        return changed;
+    }
+
+    private void initComponents() {
+        setLayout(new BorderLayout(10, 10));
+        JPanel form = new JPanel(new GridBagLayout());
+        form.setBorder(BorderFactory.createEmptyBorder(10, 10, 0, 10));
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(4, 4, 4, 4);
+        gbc.anchor = GridBagConstraints.WEST;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+
+        addRow(form, gbc, 0, "Products:", scopeBox);
+        addRow(form, gbc, 1, "Category:", categoryBox);
+        addRow(form, gbc, 2, "Supplier:", supplierBox);
+        addRow(form, gbc, 3, "Change (%):", percentField);
+        addRow(form, gbc, 4, "Reason:", descriptionField);
+
+        JButton cancelButton = new JButton("Cancel");
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.add(cancelButton);
+        buttonPanel.add(applyButton);
+
+        add(form, BorderLayout.CENTER);
+        add(buttonPanel, BorderLayout.SOUTH);
+
+        scopeBox.addActionListener(e -> updateEnabled());
+        applyButton.addActionListener(e -> apply());
+        cancelButton.addActionListener(e -> dispose());
+        getRootPane().setDefaultButton(applyButton);
+        updateEnabled();
+    }
+
+    private static void addRow(JPanel form, GridBagConstraints gbc, int row, String label, JComponent field) {
+        gbc.gridx = 0;
+        gbc.gridy = row;
+        gbc.weightx = 0;
+        form.add(new JLabel(label), gbc);
+        gbc.gridx = 1;
+        gbc.weightx = 1;
+        form.add(field, gbc);
+    }
+
+    private void loadChoices() {
+        CompletableFuture<List<Category>> categories = ReferenceData.categories().get();
+        CompletableFuture<List<Supplier>> suppliers = ReferenceData.suppliers().get();
+        Edt.whenDone(categories, list -> list.forEach(categoryBox::addItem),
+                ex -> System.err.println("Could not load categories: " + Edt.describe(ex)));
+        Edt.whenDone(suppliers, list -> list.forEach(supplierBox::addItem),
+                ex -> System.err.println("Could not load suppliers: " + Edt.describe(ex)));
+    }
+
+    private void updateEnabled() {
+        String scope = (String) scopeBox.getSelectedItem();
+        categoryBox.setEnabled(CATEGORY.equals(scope));
+        supplierBox.setEnabled(SUPPLIER.equals(scope));
+    }
+
+    private PriceChangeDAO.Scope selectedScope() {
+        String scope = (String) scopeBox.getSelectedItem();
+        if (CATEGORY.equals(scope)) {
+            Category category = (Category) categoryBox.getSelectedItem();
+            return category == null ? null : PriceChangeDAO.Scope.category(category);
+        }
+        if (SUPPLIER.equals(scope)) {
+            Supplier supplier = (Supplier) supplierBox.getSelectedItem();
+            return supplier == null ? null : PriceChangeDAO.Scope.supplier(supplier);
+        }
+        if (scope != null && scope.startsWith(SELECTED)) {
+            return PriceChangeDAO.Scope.products(selectedProductIds);
+        }
+        return PriceChangeDAO.Scope.allProducts();
+    }
+
+    private void apply() {
+        PriceChangeDAO.Scope scope = selectedScope();
+        if (scope == null) {
+            JOptionPane.showMessageDialog(this, "Please choose a category or supplier.", "Selection Required", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        BigDecimal percent;
+        try {
+            percent = new BigDecimal(percentField.getText().trim().replace("%", "").replace("+", ""));
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Please enter the change as a percentage, e.g. 3 or -10.", "Input Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (percent.signum() == 0 || percent.compareTo(new BigDecimal(-100)) <= 0) {
+            JOptionPane.showMessageDialog(this, "The change must be non-zero and greater than -100%.", "Input Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        String description = descriptionField.getText().trim();
+        if (description.isEmpty()) {
+            description = (percent.signum() > 0 ? "+" : "") + percent.toPlainString() + "% on " + scope;
+        }
+        int confirm = JOptionPane.showConfirmDialog(this,
+                "Change the price of " + scope + " by " + percent.toPlainString() + "%?",
+                "Confirm Price Change", JOptionPane.YES_NO_OPTION);
+        if (confirm != JOptionPane.YES_OPTION) {
+            return;
+        }
+
+        String changeDescription = description;
+        applyButton.setEnabled(false);
+        Edt.whenDone(Edt.busy(this, asyncPriceChanges.call(
+                        dao -> dao.applyPercentage(scope, percent, currentUser.getUserId(), changeDescription), 0)),
+                result -> {
+                    changed = result.getProductsChanged() > 0;
+                    JOptionPane.showMessageDialog(this,
+                            result.getProductsChanged() + " prices changed (change set " + result.getChangeSetId() + ").",
+                            "Prices Changed", JOptionPane.INFORMATION_MESSAGE);
+                    dispose();
+                },
+                ex -> {
+                    applyButton.setEnabled(true);
+                    if (ex instanceof IllegalArgumentException) { // rejected before any price was changed
+                        JOptionPane.showMessageDialog(this, ex.getMessage(), "Input Error", JOptionPane.WARNING_MESSAGE);
+                        return;
+                    }
+                    changed = true; // chunks committed before the failure stay changed
+                    JOptionPane.showMessageDialog(this, "The price change stopped:\n" + Edt.describe(ex)
+                            + "\n\nSome prices may already have been changed; see the price audit.",
+                            "Database Error", JOptionPane.ERROR_MESSAGE);
+                    ex.printStackTrace();
+                });
+    }
+}
@@ -11,11 +11,14 @@ import java.time.format.DateTimeFormatter;
 
 import com.smartcashpro.model.User;
 import com.smartcashpro.model.Shift; 
+import com.smartcashpro.db.AsyncDAO;
 import com.smartcashpro.db.ShiftDAO;
+import com.smartcashpro.db.WarmUp;
 
 import java.math.BigDecimal; 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit; 
+import java.util.concurrent.CompletableFuture;
 
 public class ShiftPanel extends JPanel {
     
@@ -26,6 +29,8 @@ public class ShiftPanel extends JPanel {
     private JButton endShiftButton;
     private JTextArea reconciliationArea;
     private ShiftDAO shiftDAO;
+    private AsyncDAO<ShiftDAO> asyncShifts;
+    private CompletableFuture<Shift> pendingStatus;
     private Shift activeShift = null; 
     private Timer shiftTimer;
     private JProgressBar animatedBar;
@@ -44,6 +49,7 @@ public class ShiftPanel extends JPanel {
     public ShiftPanel(User user) {
         this.currentUser = user;
         this.shiftDAO = new ShiftDAO(); 
+        this.asyncShifts = new AsyncDAO<>(shiftDAO);
         setLayout(new BorderLayout(10, 10)); 
         setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
         setBackground(new Color(240, 240, 245));
@@ -238,17 +244,24 @@ public class ShiftPanel extends JPanel {
     }
     
     private void loadCurrentShiftStatus() {
-        try {
-            activeShift = shiftDAO.findOpenShift(); 
-            updateUIState(); 
-        } catch (Exception ex) {
-            statusLabel.setText("Error: Can't load shift status");
-            startShiftButton.setEnabled(false);
-            endShiftButton.setEnabled(false);
-            reconciliationArea.setText("⚠️ Error connecting to database:\n" + ex.getMessage());
-            JOptionPane.showMessageDialog(this, "Error connecting to database to check shift status:\n" + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-            ex.printStackTrace(); 
+        Edt.cancel(pendingStatus);
+        startShiftButton.setEnabled(false);
+        endShiftButton.setEnabled(false);
+        CompletableFuture<Shift> lookup = WarmUp.takeOpenShift(); // preloaded at login, first time only
+        if (lookup == null) {
+            lookup = asyncShifts.call(ShiftDAO::findOpenShift);
         }
+        pendingStatus = Edt.whenDone(lookup,
+            shift -> {
+                activeShift = shift; 
+                updateUIState(); 
+            },
+            ex -> {
+                statusLabel.setText("Error: Can't load shift status");
+                reconciliationArea.setText("⚠️ Error connecting to database:\n" + Edt.describe(ex));
+                JOptionPane.showMessageDialog(this, "Error connecting to database to check shift status:\n" + Edt.describe(ex), "Database Error", JOptionPane.ERROR_MESSAGE);
+                ex.printStackTrace(); 
+            });
     }
     
     private void updateUIState() {
@@ -360,36 +373,38 @@ public class ShiftPanel extends JPanel {
         int result = JOptionPane.showConfirmDialog(this, inputPanel, "Start New Shift", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
         
         if (result == JOptionPane.OK_OPTION) {
+            BigDecimal startingFloat;
             try {
-                BigDecimal startingFloat = new BigDecimal(cashSpinner.getValue().toString());
-                
-                // Show loading animation
-                setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-            
-            int shiftId = shiftDAO.startShift(currentUser.getUserId(), startingFloat);
+                startingFloat = new BigDecimal(cashSpinner.getValue().toString());
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this, "Invalid starting amount. Please enter a valid number (e.g., 100.00).", "Input Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
 
-                // Reset cursor
-                setCursor(Cursor.getDefaultCursor());
-            
-            if (shiftId > 0) {
-                    // Show success animation
-                    showSuccessToast("Shift #" + shiftId + " started!");
-                    
-                    // Play success sound
-                    Toolkit.getDefaultToolkit().beep();
-                    
-                loadCurrentShiftStatus(); 
-            } else {
-                    if (shiftDAO.findOpenShift() == null) {
+            // Writes get no timeout: a slow insert must not be reported as a failure.
+            startShiftButton.setEnabled(false);
+            Edt.whenDone(Edt.busy(this, asyncShifts.call(dao -> {
+                    int shiftId = dao.startShift(currentUser.getUserId(), startingFloat);
+                    return new Object[]{shiftId, shiftId > 0 ? null : dao.findOpenShift()};
+                }, 0)),
+                outcome -> {
+                    int shiftId = (Integer) outcome[0];
+                    if (shiftId > 0) {
+                        // Show success animation
+                        showSuccessToast("Shift #" + shiftId + " started!");
+                        
+                        // Play success sound
+                        Toolkit.getDefaultToolkit().beep();
+                    } else if (outcome[1] == null) {
                         JOptionPane.showMessageDialog(this, "Failed to start shift. Please check database connection.", "Error", JOptionPane.ERROR_MESSAGE);
                     }
-            }
-        } catch (NumberFormatException ex) {
-            JOptionPane.showMessageDialog(this, "Invalid starting amount. Please enter a valid number (e.g., 100.00).", "Input Error", JOptionPane.ERROR_MESSAGE);
-        } catch (Exception ex) { 
-            JOptionPane.showMessageDialog(this, "Error starting shift:\n" + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-            ex.printStackTrace(); 
-            }
+                    loadCurrentShiftStatus(); 
+                },
+                ex -> {
+                    JOptionPane.showMessageDialog(this, "Error starting shift:\n" + Edt.describe(ex), "Database Error", JOptionPane.ERROR_MESSAGE);
+                    ex.printStackTrace(); 
+                    loadCurrentShiftStatus();
+                });
         }
     }
 
@@ -461,18 +476,19 @@ public class ShiftPanel extends JPanel {
                 JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
 
         if (result == JOptionPane.OK_OPTION) {
+            BigDecimal endingFloat;
+            BigDecimal cashRemoved;
             try {
-                BigDecimal endingFloat = new BigDecimal(endingFloatField.getValue().toString());
-                BigDecimal cashRemoved = new BigDecimal(cashRemovedField.getValue().toString());
-                
-                // Show loading animation
-                setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-                
-                ShiftDAO.ReconciliationResult summary = shiftDAO.endShift(shiftIdToEnd, currentUser.getUserId(), endingFloat, cashRemoved);
+                endingFloat = new BigDecimal(endingFloatField.getValue().toString());
+                cashRemoved = new BigDecimal(cashRemovedField.getValue().toString());
+            } catch (NumberFormatException ex) {
+                 JOptionPane.showMessageDialog(this, "Invalid number format for amounts. Please enter valid numbers (e.g., 550.75).", "Input Error", JOptionPane.ERROR_MESSAGE);
+                 return;
+            }
 
-                // Reset cursor
-                setCursor(Cursor.getDefaultCursor());
-                
+            endShiftButton.setEnabled(false);
+            Edt.whenDone(Edt.busy(this, asyncShifts.call(dao -> dao.endShift(shiftIdToEnd, currentUser.getUserId(), endingFloat, cashRemoved), 0)),
+                summary -> {
                 if (summary != null) {
                     // Format summary text with emoji and colors
                     String formattedSummary = formatReconciliationSummary(summary);
@@ -486,12 +502,12 @@ public class ShiftPanel extends JPanel {
                      JOptionPane.showMessageDialog(this, "Failed to end shift or reconcile. Please check application logs.", "Error", JOptionPane.ERROR_MESSAGE);
                      loadCurrentShiftStatus();
                 }
-            } catch (NumberFormatException ex) {
-                 JOptionPane.showMessageDialog(this, "Invalid number format for amounts. Please enter valid numbers (e.g., 550.75).", "Input Error", JOptionPane.ERROR_MESSAGE);
-            } catch (Exception ex) { 
-                JOptionPane.showMessageDialog(this, "Error ending shift:\n" + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-                ex.printStackTrace(); 
-            }
+                },
+                ex -> {
+                    JOptionPane.showMessageDialog(this, "Error ending shift:\n" + Edt.describe(ex), "Database Error", JOptionPane.ERROR_MESSAGE);
+                    ex.printStackTrace(); 
+                    loadCurrentShiftStatus();
+                });
         }
     }
     
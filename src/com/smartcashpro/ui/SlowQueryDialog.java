@@ -0,0 +1,141 @@
+package com.smartcashpro.ui;
+
+import com.smartcashpro.db.SlowQueryLog;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+public class SlowQueryDialog extends JDialog {
+
+    private static final long serialVersionUID = 1L;
+
+    private JTable entryTable;
+    private DefaultTableModel entryTableModel;
+    private JTextArea detailArea;
+    private JSpinner thresholdSpinner;
+    private JLabel summaryLabel;
+
+    private List<SlowQueryLog.Entry> entries;
+    private DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public SlowQueryDialog(Window owner) {
+        super(owner, "Slow Queries", ModalityType.MODELESS);
+
+        initComponents();
+        loadEntries();
+        setSize(1000, 650);
+        setLocationRelativeTo(owner);
+    }
+
+    private void initComponents() {
+        setLayout(new BorderLayout(10, 10));
+
+        // --- Top Panel: Threshold ---
+        JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        topPanel.add(new JLabel("Log queries slower than (ms, 0 = off):"));
+        thresholdSpinner = new JSpinner(new SpinnerNumberModel((int) SlowQueryLog.getThresholdMs(), 0, 600000, 100));
+        thresholdSpinner.addChangeListener(e -> SlowQueryLog.setThresholdMs((Integer) thresholdSpinner.getValue()));
+        topPanel.add(thresholdSpinner);
+        summaryLabel = new JLabel();
+        summaryLabel.setBorder(BorderFactory.createEmptyBorder(0, 20, 0, 0));
+        topPanel.add(summaryLabel);
+
+        // --- Entry Table ---
+        String[] columns = {"Time", "Duration (ms)", "Caller", "Thread", "SQL"};
+        entryTableModel = new DefaultTableModel(columns, 0) {
+            @Override public boolean isCellEditable(int row, int col) { return false; }
+        };
+        entryTable = new JTable(entryTableModel);
+        entryTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        entryTable.getColumnModel().getColumn(0).setPreferredWidth(130);
+        entryTable.getColumnModel().getColumn(1).setPreferredWidth(80);
+        entryTable.getColumnModel().getColumn(2).setPreferredWidth(200);
+        entryTable.getColumnModel().getColumn(3).setPreferredWidth(100);
+        entryTable.getColumnModel().getColumn(4).setPreferredWidth(450);
+        entryTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                showDetails(entryTable.getSelectedRow());
+            }
+        });
+
+        // --- Detail Area ---
+        detailArea = new JTextArea();
+        detailArea.setEditable(false);
+        detailArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+
+        JScrollPane tableScrollPane = new JScrollPane(entryTable);
+        tableScrollPane.setBorder(BorderFactory.createTitledBorder("Recent Slow Queries (newest first)"));
+        JScrollPane detailScrollPane = new JScrollPane(detailArea);
+        detailScrollPane.setBorder(BorderFactory.createTitledBorder("Details"));
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, tableScrollPane, detailScrollPane);
+        splitPane.setDividerLocation(300);
+
+        // --- Bottom Panel: Buttons ---
+        JPanel bottomPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton refreshButton = new JButton("Refresh");
+        refreshButton.addActionListener(e -> loadEntries());
+        JButton clearButton = new JButton("Clear");
+        clearButton.addActionListener(e -> {
+            SlowQueryLog.getInstance().clear();
+            loadEntries();
+        });
+        JButton closeButton = new JButton("Close");
+        closeButton.addActionListener(e -> dispose());
+        bottomPanel.add(refreshButton);
+        bottomPanel.add(clearButton);
+        bottomPanel.add(closeButton);
+
+        add(topPanel, BorderLayout.NORTH);
+        add(splitPane, BorderLayout.CENTER);
+        add(bottomPanel, BorderLayout.SOUTH);
+        getRootPane().setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+    }
+
+    private void loadEntries() {
+        SlowQueryLog log = SlowQueryLog.getInstance();
+        entries = log.getRecent();
+        entryTableModel.setRowCount(0);
+        for (SlowQueryLog.Entry entry : entries) {
+            entryTableModel.addRow(new Object[]{
+                    entry.getTime().format(timeFormatter),
+                    entry.getDurationMs(),
+                    entry.getCaller(),
+                    entry.getThread(),
+                    entry.getSql().replaceAll("\\s+", " ").trim()
+            });
+        }
+        summaryLabel.setText(entries.size() + " in memory. Full log: " + log.getFile().toAbsolutePath()
+                + (log.getDroppedCount() > 0 ? " (" + log.getDroppedCount() + " not written)" : ""));
+        detailArea.setText("");
+    }
+
+    private void showDetails(int row) {
+        if (row < 0 || row >= entries.size()) {
+            detailArea.setText("");
+            return;
+        }
+        SlowQueryLog.Entry entry = entries.get(row);
+        StringBuilder sb = new StringBuilder();
+        sb.append("Time:       ").append(entry.getTime().format(timeFormatter)).append('\n');
+        sb.append("Duration:   ").append(entry.getDurationMs()).append(" ms").append(entry.isFailed() ? " (failed)" : "").append('\n');
+        sb.append("Caller:     ").append(entry.getCaller()).append('\n');
+        sb.append("Thread:     ").append(entry.getThread()).append('\n');
+        if (entry.getBatchSize() > 0) {
+            sb.append("Batch size: ").append(entry.getBatchSize()).append('\n');
+        }
+        sb.append("Parameters: ").append(entry.getParameters().isEmpty() ? "(none)" : entry.getParameters()).append("\n\n");
+        sb.append(entry.getSql().trim()).append("\n\n");
+        String explain = entry.getExplain();
+        if (explain != null) {
+            sb.append("EXPLAIN:\n").append(explain);
+        } else if (entry.getSql().trim().regionMatches(true, 0, "SELECT", 0, 6)) {
+            sb.append("EXPLAIN: pending or skipped (same query shape explained recently). Press Refresh.");
+        }
+        detailArea.setText(sb.toString());
+        detailArea.setCaretPosition(0);
+    }
+}
@@ -8,7 +8,9 @@ import javax.swing.border.*;
 import java.awt.*;
 import java.awt.event.*; 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import com.smartcashpro.model.User;
+import com.smartcashpro.db.ReferenceData;
 import com.smartcashpro.db.UserDAO;
 import java.sql.SQLException; 
 
@@ -100,7 +102,7 @@ public class UserPanel extends JPanel {
         // Add action listeners
         addUserButton.addActionListener(e -> displayAddUserDialog());
         editUserButton.addActionListener(e -> displayEditUserDialog());
-        refreshButton.addActionListener(e -> loadUserData());
+        refreshButton.addActionListener(e -> showUsers(ReferenceData.users().refresh())); // re-read, e.g. after changes on another till
         
         headerPanel.add(titlePanel, BorderLayout.WEST);
         headerPanel.add(buttonsPanel, BorderLayout.EAST);
@@ -268,20 +270,22 @@ public class UserPanel extends JPanel {
     }
 
      private void loadUserData() {
-        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-        
+        showUsers(ReferenceData.users().get()); // from memory unless a user was saved since
+    }
+
+    private void showUsers(CompletableFuture<List<User>> pending) {
+        Edt.whenDone(Edt.busy(this, pending), this::populateUsers, ex -> {
+            JOptionPane.showMessageDialog(this, 
+                "Error loading users:\n" + Edt.describe(ex), 
+                "Load Error", 
+                JOptionPane.ERROR_MESSAGE);
+            ex.printStackTrace();
+        });
+    }
+
+    private void populateUsers(List<User> users) {
          try {
             userTableModel.setRowCount(0);
-            List<User> users = userDAO.getAllUsers();
-            
-             if (users == null) { 
-                JOptionPane.showMessageDialog(this, 
-                    "Error loading users: Could not connect to database.", 
-                    "Load Error", 
-                    JOptionPane.ERROR_MESSAGE);
-                 return;
-             }
-            
             for (User u : users) {
                 userTableModel.addRow(new Object[]{
                     u.getUserId(), 
@@ -304,9 +308,7 @@ public class UserPanel extends JPanel {
                 "Load Error", 
                 JOptionPane.ERROR_MESSAGE);
               ex.printStackTrace();
-        } finally {
-            setCursor(Cursor.getDefaultCursor());
-         }
+        }
     }
     
     private void displayAddUserDialog() {
@@ -0,0 +1,172 @@
+package com.smartcashpro.db;
+
+import com.smartcashpro.model.NonPerishableProduct;
+import com.smartcashpro.model.PerishableProduct;
+import com.smartcashpro.model.Product;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Writes catalog snapshots to a temporary directory and reads them back: lookups by SKU and
+ * by ID of perishable and non-perishable products, damaged files refused (truncated, or with
+ * a byte changed under the checksum) with an older snapshot used instead, and a new snapshot
+ * written while the previous one is mapped. No database needed.
+ */
+public class CatalogSnapshotTest {
+
+    private static int checks = 0;
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("catalog-snapshot-test");
+        try {
+            roundTrip(dir.resolve("round-trip"));
+            damagedFiles(dir.resolve("damaged"));
+            rewriteWhileMapped(dir.resolve("rewrite"));
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+            }
+        }
+        System.out.println("CatalogSnapshotTest: " + checks + " checks passed");
+    }
+
+    private static void roundTrip(Path dir) throws IOException {
+        List<Product> products = catalog(1000, "");
+        products.add(new PerishableProduct(5001, "ÄPFEL-Ø1", "Äpfel (Bio) – 1 kg", new BigDecimal("3.49"), 12,
+                null, 0, null)); // no cost price, no storage requirement
+        products.add(new NonPerishableProduct(5002, "X", "", new BigDecimal("0.01"), 0, new BigDecimal("0.00"), 0));
+        Path file = CatalogSnapshot.write(dir, 42, 77, products);
+        CatalogSnapshot snapshot = CatalogSnapshot.open(file);
+
+        expect("catalog version", 42L, snapshot.getCatalogVersion());
+        expect("stock version", 77L, snapshot.getStockVersion());
+        expect("size", products.size(), snapshot.size());
+        for (Product p : products) {
+            expect("by SKU " + p.getSku(), describe(p), describe(snapshot.findBySku(p.getSku())));
+            expect("by ID " + p.getProductId(), describe(p), describe(snapshot.findById(p.getProductId())));
+        }
+        expect("perishable type", true, snapshot.findBySku("SKU-3") instanceof PerishableProduct);
+        expect("non-perishable type", true, snapshot.findBySku("SKU-4") instanceof NonPerishableProduct);
+        expect("unknown SKU", null, snapshot.findBySku("SKU-1001"));
+        expect("SKU case matters", null, snapshot.findBySku("sku-3"));
+        expect("unknown ID", null, snapshot.findById(999_999));
+        List<Product> all = new ArrayList<>();
+        snapshot.forEach(all::add);
+        expect("forEach order", describe(products.get(products.size() - 1)), describe(all.get(all.size() - 1)));
+        expect("forEach count", products.size(), all.size());
+
+        Path empty = CatalogSnapshot.write(dir.resolve("empty"), 0, 0, new ArrayList<>());
+        CatalogSnapshot none = CatalogSnapshot.open(empty);
+        expect("empty size", 0, none.size());
+        expect("empty lookup", null, none.findBySku("SKU-1"));
+    }
+
+    private static void damagedFiles(Path dir) throws IOException {
+        Path good = CatalogSnapshot.write(dir, 1, 0, catalog(50, ""));
+        byte[] bytes = Files.readAllBytes(good);
+
+        Path truncated = dir.resolve("truncated.bin");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 7));
+        expectRefused("truncated", truncated);
+        Path header = dir.resolve("header.bin");
+        Files.write(header, Arrays.copyOf(bytes, 20));
+        expectRefused("cut inside the header", header);
+
+        byte[] flipped = bytes.clone();
+        flipped[flipped.length - 3] ^= 0x01; // in the string heap, which only the checksum covers
+        Path corrupt = dir.resolve("corrupt.bin");
+        Files.write(corrupt, flipped);
+        expectRefused("changed byte", corrupt);
+
+        // A damaged newest snapshot is skipped in favour of the older good one.
+        Path newest = dir.resolve("catalog-2-" + System.currentTimeMillis() + ".snapshot");
+        Files.write(newest, flipped);
+        CatalogSnapshot latest = CatalogSnapshot.openLatest(dir);
+        expect("fallback to the good snapshot", good, latest == null ? null : latest.getFile());
+        Files.delete(newest);
+        Files.delete(good);
+        expect("nothing readable left", null, CatalogSnapshot.openLatest(dir));
+    }
+
+    private static void rewriteWhileMapped(Path dir) throws IOException {
+        Path first = CatalogSnapshot.write(dir, 7, 3, catalog(200, ""));
+        CatalogSnapshot mapped = CatalogSnapshot.openLatest(dir);
+        expect("first snapshot found", first, mapped.getFile());
+
+        Path second = CatalogSnapshot.write(dir, 8, 3, catalog(200, " v2"));
+        expect("old mapping unchanged", "Product 17", mapped.findBySku("SKU-17").getName());
+        CatalogSnapshot latest = CatalogSnapshot.openLatest(dir);
+        expect("new snapshot found", second, latest.getFile());
+        expect("new contents", "Product 17 v2", latest.findBySku("SKU-17").getName());
+
+        // Same catalog version again, as after a sync that only re-read expired products.
+        Path third = CatalogSnapshot.write(dir, 8, 3, catalog(200, " v3"));
+        latest = CatalogSnapshot.openLatest(dir);
+        expect("same-version rewrite found", third, latest.getFile());
+        expect("same-version contents", "Product 17 v3", latest.findBySku("SKU-17").getName());
+
+        CatalogSnapshot.deleteOthers(dir, third);
+        expect("only the newest left", List.of(third.getFileName().toString()), fileNames(dir));
+        expect("deleted file still mapped", "Product 17", mapped.findBySku("SKU-17").getName());
+    }
+
+    /** Products 1 to {@code count}; every third is perishable. */
+    private static List<Product> catalog(int count, String nameSuffix) {
+        List<Product> products = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            BigDecimal price = BigDecimal.valueOf(100 + i, 2);
+            BigDecimal cost = BigDecimal.valueOf(60 + i, 2);
+            if (i % 3 == 0) {
+                products.add(new PerishableProduct(i, "SKU-" + i, "Product " + i + nameSuffix, price, i % 40, cost, 5,
+                        i % 2 == 0 ? "Frozen" : "Chilled"));
+            } else {
+                products.add(new NonPerishableProduct(i, "SKU-" + i, "Product " + i + nameSuffix, price, i % 40, cost, 5));
+            }
+        }
+        return products;
+    }
+
+    private static String describe(Product p) {
+        if (p == null) {
+            return null;
+        }
+        return p.getClass().getSimpleName() + "[" + p.getProductId() + ", " + p.getSku() + ", " + p.getName()
+                + ", " + p.getUnitPrice() + ", " + p.getQuantityInStock() + ", " + p.getCurrentCostPrice()
+                + ", " + p.getReorderLevel()
+                + (p instanceof PerishableProduct ? ", " + ((PerishableProduct) p).getStorageTempRequirement() : "") + "]";
+    }
+
+    private static List<String> fileNames(Path dir) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            files.forEach(f -> names.add(f.getFileName().toString()));
+        }
+        return names;
+    }
+
+    private static void expectRefused(String what, Path file) {
+        checks++;
+        try {
+            CatalogSnapshot.open(file);
+        } catch (IOException e) {
+            return;
+        }
+        throw new AssertionError(what + ": opened a damaged snapshot");
+    }
+
+    private static void expect(String what, Object expected, Object actual) {
+        checks++;
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            throw new AssertionError(what + ": expected " + expected + " but got " + actual);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.smartcashpro.db;
+
+import com.smartcashpro.model.NonPerishableProduct;
+import com.smartcashpro.model.Order;
+import com.smartcashpro.model.PerishableProduct;
+import com.smartcashpro.model.Product;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Compares the cost of turning product and order rows into objects by column label (as
+ * mapRowToProduct and mapRowToOrder did before ColumnPlan) and by positions cached in a
+ * {@link ColumnPlan}.
+ *
+ * The product list and the order history are multiplied by a cross join so there are enough
+ * rows to time; the rows are fetched in full before the clock starts, so only the mapping is
+ * measured. Needs the database from {@code SmartCashPro.sql} with at least one order.
+ * Arguments: copies of each row (default 20000).
+ */
+public class ColumnPlanBenchmark {
+
+    private static final String[] PRODUCT_COLUMNS = {
+            "ProductID", "SKU", "Name", "UnitPrice", "QuantityInStock", "CurrentCostPrice", "ReorderLevel",
+            "PerishableProductID", "StorageTempRequirement"
+    };
+    /** OrderDAO.ORDER_COLUMNS. */
+    private static final String[] ORDER_COLUMNS = {
+            "OrderID", "OrderDate", "TotalAmount", "CustomerID", "CustomerName",
+            "UserID", "UserName", "ShiftID", "OrderStatus", "PaymentType"
+    };
+    private static final int ROUNDS = 10;
+
+    /** Maps one row and returns its ID, so the work cannot be optimised away. */
+    @FunctionalInterface
+    private interface LabelMapping {
+        int map(ResultSet rs) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface IndexMapping {
+        int map(ResultSet rs, int[] col) throws SQLException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int copies = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        String copiesJoin = "CROSS JOIN (SELECT a.d + 10 * b.d + 100 * c.d + 1000 * e.d + 10000 * f.d AS n "
+                + "FROM " + digits("a") + ", " + digits("b") + ", " + digits("c") + ", " + digits("e") + ", " + digits("f")
+                + ") copies WHERE copies.n < ?";
+        String productSql = "SELECT p.ProductID, p.SKU, p.Name, p.UnitPrice, p.QuantityInStock, p.CurrentCostPrice, "
+                + "p.ReorderLevel, pp.ProductID AS PerishableProductID, pp.StorageTempRequirement "
+                + "FROM PRODUCT p LEFT JOIN PERISHABLE_PRODUCT pp ON p.ProductID = pp.ProductID " + copiesJoin;
+        // OrderDAO.ALL_ORDERS_SQL without its ORDER BY
+        String orderSql = "SELECT o.OrderID, o.OrderDate, o.TotalAmount, o.CustomerID, "
+                + "c.Name AS CustomerName, o.UserID, u.Username AS UserName, o.ShiftID, o.OrderStatus, "
+                + "CASE WHEN cp.PaymentID IS NOT NULL THEN 'Cash' WHEN cdp.PaymentID IS NOT NULL THEN 'Card' "
+                + "ELSE 'Unknown' END AS PaymentType "
+                + "FROM `ORDER` o LEFT JOIN CUSTOMER c ON o.CustomerID = c.CustomerID "
+                + "LEFT JOIN USER u ON o.UserID = u.UserID LEFT JOIN PAYMENT p ON o.OrderID = p.OrderID "
+                + "LEFT JOIN CASH_PAYMENT cp ON p.PaymentID = cp.PaymentID "
+                + "LEFT JOIN CARD_PAYMENT cdp ON p.PaymentID = cdp.PaymentID " + copiesJoin;
+
+        try (Connection conn = DatabaseConnector.leaseConnection()) {
+            compare(conn, "product", productSql, copies, PRODUCT_COLUMNS,
+                    rs -> mapProductByLabel(rs).getProductId(), (rs, col) -> mapProductByIndex(rs, col).getProductId());
+            compare(conn, "order", orderSql, copies, ORDER_COLUMNS,
+                    rs -> mapOrderByLabel(rs).getOrderId(), (rs, col) -> mapOrderByIndex(rs, col).getOrderId());
+        }
+        System.exit(0); // the pool's housekeeping thread would keep the JVM alive
+    }
+
+    private static void compare(Connection conn, String what, String sql, int copies, String[] columns,
+                                LabelMapping byLabel, IndexMapping byIndex) throws SQLException {
+        double[] labelNanos = new double[ROUNDS];
+        double[] indexNanos = new double[ROUNDS];
+        for (int i = 0; i < 3; i++) {
+            map(conn, sql, copies, columns, byLabel, null); // warm up both paths
+            map(conn, sql, copies, columns, null, byIndex);
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            labelNanos[round] = map(conn, sql, copies, columns, byLabel, null);
+            indexNanos[round] = map(conn, sql, copies, columns, null, byIndex);
+            System.out.printf("%s rows, round %d: by label %.0f ns/row, by ColumnPlan index %.0f ns/row%n",
+                    what, round + 1, labelNanos[round], indexNanos[round]);
+        }
+        double label = median(labelNanos);
+        double index = median(indexNanos);
+        System.out.printf("%s rows, median: by label %.0f ns/row, by ColumnPlan index %.0f ns/row (%+.1f%%)%n",
+                what, label, index, (index - label) * 100 / label);
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static String digits(String alias) {
+        return "(SELECT 0 AS d UNION ALL SELECT 1 UNION ALL SELECT 2 UNION ALL SELECT 3 UNION ALL SELECT 4 "
+                + "UNION ALL SELECT 5 UNION ALL SELECT 6 UNION ALL SELECT 7 UNION ALL SELECT 8 UNION ALL SELECT 9) " + alias;
+    }
+
+    /** Nanoseconds per row to map the fetched result set, with whichever mapping is given. */
+    private static double map(Connection conn, String sql, int copies, String[] columns,
+                              LabelMapping byLabel, IndexMapping byIndex) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, copies);
+            try (ResultSet rs = stmt.executeQuery()) {
+                long rows = 0;
+                long sink = 0;
+                long start = System.nanoTime();
+                if (byIndex != null) {
+                    int[] col = ColumnPlan.indexes(sql, rs, columns);
+                    while (rs.next()) {
+                        sink += byIndex.map(rs, col);
+                        rows++;
+                    }
+                } else {
+                    while (rs.next()) {
+                        sink += byLabel.map(rs);
+                        rows++;
+                    }
+                }
+                long elapsed = System.nanoTime() - start;
+                if (rows == 0) {
+                    throw new SQLException("No rows to map: " + sql);
+                }
+                if (sink == Long.MIN_VALUE) {
+                    System.out.println(sink);
+                }
+                return (double) elapsed / rows;
+            }
+        }
+    }
+
+    /** mapRowToProduct as it was before ColumnPlan. */
+    private static Product mapProductByLabel(ResultSet rs) throws SQLException {
+        int productId = rs.getInt("p.ProductID");
+        String sku = rs.getString("p.SKU");
+        String name = rs.getString("p.Name");
+        BigDecimal unitPrice = rs.getBigDecimal("p.UnitPrice");
+        int quantityInStock = rs.getInt("p.QuantityInStock");
+        BigDecimal currentCostPrice = rs.getBigDecimal("p.CurrentCostPrice");
+        int reorderLevel = rs.getInt("p.ReorderLevel");
+        if (rs.getObject("PerishableProductID") != null) {
+            return new PerishableProduct(productId, sku, name, unitPrice, quantityInStock,
+                    currentCostPrice, reorderLevel, rs.getString("StorageTempRequirement"));
+        }
+        return new NonPerishableProduct(productId, sku, name, unitPrice, quantityInStock,
+                currentCostPrice, reorderLevel);
+    }
+
+    /** mapRowToProduct as it is now. */
+    private static Product mapProductByIndex(ResultSet rs, int[] col) throws SQLException {
+        int productId = rs.getInt(col[0]);
+        String sku = rs.getString(col[1]);
+        String name = rs.getString(col[2]);
+        BigDecimal unitPrice = rs.getBigDecimal(col[3]);
+        int quantityInStock = rs.getInt(col[4]);
+        BigDecimal currentCostPrice = rs.getBigDecimal(col[5]);
+        int reorderLevel = rs.getInt(col[6]);
+        if (!ColumnPlan.isNull(rs, col[7])) {
+            return new PerishableProduct(productId, sku, name, unitPrice, quantityInStock,
+                    currentCostPrice, reorderLevel, rs.getString(col[8]));
+        }
+        return new NonPerishableProduct(productId, sku, name, unitPrice, quantityInStock,
+                currentCostPrice, reorderLevel);
+    }
+
+    /** mapRowToOrder as it was before ColumnPlan. */
+    private static Order mapOrderByLabel(ResultSet rs) throws SQLException {
+        return new Order(
+                rs.getInt("OrderID"),
+                rs.getTimestamp("OrderDate"),
+                rs.getBigDecimal("TotalAmount"),
+                rs.getObject("CustomerID") != null ? rs.getInt("CustomerID") : null,
+                rs.getString("CustomerName"),
+                rs.getInt("UserID"),
+                rs.getString("UserName"),
+                rs.getInt("ShiftID"),
+                rs.getString("OrderStatus"),
+                rs.getString("PaymentType")
+        );
+    }
+
+    /** mapRowToOrder as it is now. */
+    private static Order mapOrderByIndex(ResultSet rs, int[] col) throws SQLException {
+        return new Order(
+                rs.getInt(col[0]),
+                rs.getTimestamp(col[1]),
+                rs.getBigDecimal(col[2]),
+                ColumnPlan.getInteger(rs, col[3]),
+                rs.getString(col[4]),
+                rs.getInt(col[5]),
+                rs.getString(col[6]),
+                rs.getInt(col[7]),
+                rs.getString(col[8]),
+                rs.getString(col[9])
+        );
+    }
+}
@@ -0,0 +1,171 @@
+package com.smartcashpro.db;
+
+import com.smartcashpro.model.NonPerishableProduct;
+import com.smartcashpro.model.PerishableProduct;
+import com.smartcashpro.model.Product;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares the {@link CompactProductDAO} with the same catalog held as objects in a map (as
+ * {@link CachedProductDAO} holds it): heap after GC and the cost of a scan lookup. Then renames
+ * and re-labels a tenth of the catalog again and again through the change feed path, to show
+ * that the store's heap stays bounded.
+ *
+ * The catalog is synthetic and reaches the store through a stand-in for ProductDAO, but the
+ * reload still reads CATALOG_VERSION, so it needs the database from {@code SmartCashPro.sql}.
+ * Arguments: products (default 200000), rounds of changes (default 30).
+ */
+public class CompactCatalogBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int LOOKUPS = 1_000_000;
+    private static final String[] STORAGE = {"Frozen", "Chilled", "Ambient"};
+
+    public static void main(String[] args) throws Exception {
+        int products = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int changeRounds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        String[] vocabulary = new String[2000];
+        for (int w = 0; w < vocabulary.length; w++) {
+            vocabulary[w] = "Word" + Integer.toString(w * 7919, 36);
+        }
+
+        long before = usedHeap();
+        Map<String, Product> objects = new HashMap<>();
+        for (int i = 0; i < products; i++) {
+            Product p = product(i, vocabulary, -1);
+            objects.put(p.getSku(), p);
+        }
+        long objectBytes = usedHeap() - before;
+
+        CompactProductDAO store = new CompactProductDAO(new ProductDAO() {
+            @Override
+            public void forEachProduct(RowCursor.RowCallback<Product> callback) throws SQLException {
+                for (int i = 0; i < products; i++) {
+                    callback.accept(product(i, vocabulary, -1));
+                }
+            }
+        });
+        before = usedHeap();
+        store.reload();
+        long compactBytes = usedHeap() - before;
+        System.out.printf("%d products: objects %.1f MB, compact %.1f MB after GC (store's own estimate %.1f MB)%n",
+                products, mb(objectBytes), mb(compactBytes), mb(store.getFootprintBytes()));
+
+        compareLookups(objects, store, products);
+        objects = null;
+
+        int changedPerRound = Math.max(1, products / 10);
+        long version = 0;
+        for (int round = 0; round < changeRounds; round++) {
+            List<Product> changed = new ArrayList<>(changedPerRound);
+            for (int i = 0; i < changedPerRound; i++) {
+                changed.add(product(i, vocabulary, round));
+            }
+            store.applyChanges(changed, ++version);
+            if ((round + 1) % 5 == 0 || round == 0) {
+                System.out.printf("after %d rounds of %d changed SKUs and names: %.1f MB%n",
+                        round + 1, changedPerRound, mb(store.getFootprintBytes()));
+            }
+        }
+        check(store, products, vocabulary, changeRounds - 1, changedPerRound);
+        System.exit(0); // the pool's housekeeping thread would keep the JVM alive
+    }
+
+    /** Product {@code i}; from {@code round} 0 on, the changed version with its own SKU and an extra word. */
+    private static Product product(int i, String[] vocabulary, int round) {
+        String sku = round < 0 ? sku(i) : "R" + round + "-" + i;
+        String name = vocabulary[i % vocabulary.length] + " " + vocabulary[(i / 7) % vocabulary.length]
+                + " " + (i % 50 + 1) + "x" + (i % 3 == 0 ? "" : " " + vocabulary[(i / 13) % vocabulary.length])
+                + (round < 0 ? "" : " Edition" + round);
+        BigDecimal price = BigDecimal.valueOf(100 + i % 9900, 2);
+        BigDecimal cost = BigDecimal.valueOf(60 + i % 6000, 2);
+        if (i % 5 == 0) {
+            return new PerishableProduct(i + 1, sku, name, price, i % 200, cost, 10, STORAGE[i % STORAGE.length]);
+        }
+        return new NonPerishableProduct(i + 1, sku, name, price, i % 200, cost, 10);
+    }
+
+    private static String sku(int i) {
+        return String.format("20%011d", i);
+    }
+
+    private static void compareLookups(Map<String, Product> objects, CompactProductDAO store, int products)
+            throws Exception {
+        Random random = new Random(42);
+        String[] skus = new String[LOOKUPS];
+        for (int k = 0; k < LOOKUPS; k++) {
+            skus[k] = sku(random.nextInt(products));
+        }
+        double[] fromMap = new double[ROUNDS];
+        double[] fromStore = new double[ROUNDS];
+        lookUp(objects, store, skus, false); // warm up both paths
+        lookUp(objects, store, skus, true);
+        for (int round = 0; round < ROUNDS; round++) {
+            fromMap[round] = lookUp(objects, store, skus, false);
+            fromStore[round] = lookUp(objects, store, skus, true);
+        }
+        System.out.printf("median lookup by SKU: map + copy %.0f ns, compact %.0f ns%n", median(fromMap), median(fromStore));
+    }
+
+    /** Nanoseconds per lookup. */
+    private static double lookUp(Map<String, Product> objects, CompactProductDAO store, String[] skus,
+                                 boolean compact) throws Exception {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (String sku : skus) {
+            Product p = compact ? store.findProductBySku(sku) : CachedProductDAO.copyOf(objects.get(sku));
+            sink += p.getProductId();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == Long.MIN_VALUE) {
+            System.out.println(sink);
+        }
+        return (double) elapsed / skus.length;
+    }
+
+    /** Fails unless the changed products and an unchanged one read back exactly as last written. */
+    private static void check(CompactProductDAO store, int products, String[] vocabulary, int lastRound,
+                              int changed) throws Exception {
+        for (int i : new int[]{0, changed / 2, changed - 1}) {
+            Product expected = product(i, vocabulary, lastRound);
+            Product actual = store.findProductBySku(expected.getSku());
+            if (actual == null || !expected.getName().equals(actual.getName())) {
+                throw new AssertionError("product " + i + " read back as " + (actual == null ? null : actual.getName()));
+            }
+        }
+        if (changed < products) {
+            Product expected = product(products - 1, vocabulary, -1);
+            Product actual = store.findProductBySku(expected.getSku());
+            if (actual == null || !expected.getName().equals(actual.getName())) {
+                throw new AssertionError("unchanged product read back as " + (actual == null ? null : actual.getName()));
+            }
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static double mb(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+}
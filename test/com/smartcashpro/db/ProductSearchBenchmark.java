@@ -0,0 +1,70 @@
+package com.smartcashpro.db;
+
+import com.smartcashpro.model.NonPerishableProduct;
+import com.smartcashpro.model.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times {@link ProductSearchIndex#search} as the typeahead calls it (10 results) on a large
+ * synthetic catalog: short queries that stop at the candidate cap, longer ones that rank every
+ * prefix and substring match, multi-word queries, SKUs and queries with no match. Prints the
+ * median and the slowest time per query. No database needed.
+ * Arguments: products (default 200000).
+ */
+public class ProductSearchBenchmark {
+
+    private static final int LIMIT = 10; // ProductTypeahead.MAX_RESULTS
+    private static final int ROUNDS = 200;
+    private static final String[] BRANDS = {"Acme", "Bio Farm", "Choco Land", "Daily", "Everfresh", "Fine Foods",
+            "Golden", "Harvest", "Island", "Jolly", "Kitchen Pro", "Lakeside", "Morning", "Nordic", "Orchard"};
+    private static final String[] KINDS = {"Chocolate Bar", "Dark Chocolate", "Milk", "Whole Milk", "Orange Juice",
+            "Apple Juice", "Butter", "Cheddar Cheese", "Yoghurt", "Bread", "Pasta", "Rice", "Coffee Beans",
+            "Green Tea", "Olive Oil", "Tomato Sauce", "Cornflakes", "Oat Biscuits", "Peanut Butter", "Sparkling Water"};
+    private static final String[] SIZES = {"100 g", "250 g", "500 g", "1 kg", "330 ml", "1 l", "6 x 1.5 l", "Family Pack"};
+    private static final String[] QUERIES = {"c", "ch", "cho", "choc", "chocolate", "late", "ate", "milk", "dark choc",
+            "choco land dark", "juice 1 l", "SKU-1234", "SKU-199999", "4006", "zzzz", "ml"};
+
+    public static void main(String[] args) {
+        int products = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Random random = new Random(42);
+        List<Product> catalog = new ArrayList<>(products);
+        for (int i = 1; i <= products; i++) {
+            String name = BRANDS[random.nextInt(BRANDS.length)] + " " + KINDS[random.nextInt(KINDS.length)] + " "
+                    + SIZES[random.nextInt(SIZES.length)];
+            String sku = i % 4 == 0 ? "400" + String.format("%010d", i) : "SKU-" + i;
+            catalog.add(new NonPerishableProduct(i, sku, name, BigDecimal.valueOf(100 + i % 900, 2), 10,
+                    BigDecimal.ONE, 0));
+        }
+        ProductSearchIndex index = new ProductSearchIndex(null);
+        long start = System.nanoTime();
+        index.replaceAll(catalog);
+        System.out.printf("%d products indexed in %.0f ms%n", index.size(), (System.nanoTime() - start) / 1e6);
+
+        for (int warmUp = 0; warmUp < 20; warmUp++) {
+            for (String query : QUERIES) {
+                index.search(query, LIMIT);
+            }
+        }
+        double worstMedian = 0;
+        for (String query : QUERIES) {
+            long[] nanos = new long[ROUNDS];
+            int found = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long t = System.nanoTime();
+                found = index.search(query, LIMIT).size();
+                nanos[round] = System.nanoTime() - t;
+            }
+            Arrays.sort(nanos);
+            double median = nanos[ROUNDS / 2] / 1e3;
+            worstMedian = Math.max(worstMedian, median);
+            System.out.printf("%-18s %2d results: median %7.1f us, slowest %7.1f us%n",
+                    "'" + query + "'", found, median, nanos[ROUNDS - 1] / 1e3);
+        }
+        System.out.printf("slowest query median: %.1f us%n", worstMedian);
+    }
+}
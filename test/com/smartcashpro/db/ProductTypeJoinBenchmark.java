@@ -0,0 +1,192 @@
+package com.smartcashpro.db;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares product reads as ProductDAO ran them before migration V5 (the type found by joining
+ * PERISHABLE_PRODUCT and NONPERISHABLE_PRODUCT) and as it runs them now (the ProductType
+ * column on PRODUCT): the scan lookup by SKU, and the first page of the perishable filter.
+ * Prints the tables each form reads according to EXPLAIN, then latencies.
+ *
+ * Adds synthetic products, a third of them perishable, in a transaction that is rolled back
+ * at the end, so the database is left as it was. Needs the database from
+ * {@code SmartCashPro.sql} with migration V5 applied. Arguments: products (default 20000),
+ * lookups per round (default 2000; the page is read a twentieth as often). The benchmark
+ * holds one connection throughout, so keep runs under the pool's one-minute leak warning.
+ */
+public class ProductTypeJoinBenchmark {
+
+    /** ProductDAO.JOINED_SELECT, the form used before V5. */
+    private static final String JOINED =
+            "SELECT p.ProductID, p.SKU, p.Name, p.UnitPrice, p.QuantityInStock, p.CurrentCostPrice, p.ReorderLevel, " +
+            "pp.ProductID AS PerishableProductID, pp.StorageTempRequirement, " +
+            "np.ProductID AS NonPerishableProductID " +
+            "FROM PRODUCT p " +
+            "LEFT JOIN PERISHABLE_PRODUCT pp ON p.ProductID = pp.ProductID " +
+            "LEFT JOIN NONPERISHABLE_PRODUCT np ON p.ProductID = np.ProductID ";
+    /** ProductDAO.TYPED_SELECT, the form used since V5. */
+    private static final String TYPED =
+            "SELECT p.ProductID, p.SKU, p.Name, p.UnitPrice, p.QuantityInStock, p.CurrentCostPrice, p.ReorderLevel, " +
+            "IF(p.ProductType = 'P', p.ProductID, NULL) AS PerishableProductID, p.StorageTempRequirement " +
+            "FROM PRODUCT p ";
+    private static final String BY_SKU = "WHERE p.SKU = ?";
+    private static final String JOINED_PAGE = "WHERE 1=1 AND pp.ProductID IS NOT NULL ORDER BY p.Name, p.ProductID LIMIT 50";
+    private static final String TYPED_PAGE = "WHERE 1=1 AND p.ProductType = 'P' ORDER BY p.Name, p.ProductID LIMIT 50";
+    private static final String SKU_PREFIX = "BENCH-V5-";
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int products = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        try (Connection conn = DatabaseConnector.leaseConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                seed(conn, products);
+                System.out.println("tables read by SKU lookup: joined " + tablesRead(conn, JOINED + BY_SKU)
+                        + ", typed " + tablesRead(conn, TYPED + BY_SKU));
+                System.out.println("tables read by perishable page: joined " + tablesRead(conn, JOINED + JOINED_PAGE)
+                        + ", typed " + tablesRead(conn, TYPED + TYPED_PAGE));
+
+                Random random = new Random(42);
+                String[] skus = new String[lookups];
+                for (int k = 0; k < lookups; k++) {
+                    skus[k] = SKU_PREFIX + random.nextInt(products);
+                }
+                time(conn, "SKU lookup", JOINED + BY_SKU, TYPED + BY_SKU, skus, lookups);
+                time(conn, "perishable page", JOINED + JOINED_PAGE, TYPED + TYPED_PAGE, null, Math.max(1, lookups / 20));
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        }
+        System.exit(0); // the pool's housekeeping thread would keep the JVM alive
+    }
+
+    private static void seed(Connection conn, int products) throws SQLException {
+        List<Integer> perishable = new ArrayList<>();
+        List<Integer> nonPerishable = new ArrayList<>();
+        for (int from = 0; from < products; from += 500) {
+            int to = Math.min(products, from + 500);
+            StringBuilder sql = new StringBuilder(
+                    "INSERT INTO PRODUCT (SKU, Name, UnitPrice, QuantityInStock, CurrentCostPrice, ReorderLevel) VALUES ");
+            for (int i = from; i < to; i++) {
+                sql.append(i == from ? "" : ", ").append("(?, ?, ?, ?, ?, 10)");
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                int p = 1;
+                for (int i = from; i < to; i++) {
+                    pstmt.setString(p++, SKU_PREFIX + i);
+                    pstmt.setString(p++, "Benchmark product " + Integer.toString(i * 7919 % products, 36));
+                    pstmt.setBigDecimal(p++, BigDecimal.valueOf(100 + i % 9900, 2));
+                    pstmt.setInt(p++, i % 200);
+                    pstmt.setBigDecimal(p++, BigDecimal.valueOf(60 + i % 6000, 2));
+                }
+                pstmt.executeUpdate();
+            }
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT ProductID FROM PRODUCT WHERE SKU LIKE ?")) {
+            pstmt.setString(1, SKU_PREFIX + "%");
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    (id % 3 == 0 ? perishable : nonPerishable).add(id);
+                }
+            }
+        }
+        // One statement per chunk: the V5 triggers copy each subtype row to PRODUCT.
+        insertSubtypes(conn, "INSERT INTO PERISHABLE_PRODUCT (ProductID, StorageTempRequirement) VALUES ", "(?, 'Chilled')", perishable);
+        insertSubtypes(conn, "INSERT INTO NONPERISHABLE_PRODUCT (ProductID) VALUES ", "(?)", nonPerishable);
+        System.out.printf("added %d products (%d perishable) in the benchmark's transaction%n", products, perishable.size());
+    }
+
+    private static void insertSubtypes(Connection conn, String insert, String row, List<Integer> ids) throws SQLException {
+        for (int from = 0; from < ids.size(); from += 500) {
+            List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + 500));
+            StringBuilder sql = new StringBuilder(insert);
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "" : ", ").append(row);
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    pstmt.setInt(i + 1, chunk.get(i));
+                }
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    /** The tables in the statement's EXPLAIN plan. */
+    private static List<String> tablesRead(Connection conn, String sql) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN " + sql)) {
+            if (sql.contains("?")) {
+                pstmt.setString(1, SKU_PREFIX + 0);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    tables.add(rs.getString("table"));
+                }
+            }
+        }
+        return tables;
+    }
+
+    private static void time(Connection conn, String what, String joined, String typed, String[] skus,
+                             int runs) throws SQLException {
+        long[] joinedNanos = new long[runs * ROUNDS];
+        long[] typedNanos = new long[runs * ROUNDS];
+        run(conn, joined, skus, new long[runs]); // warm up both forms
+        run(conn, typed, skus, new long[runs]);
+        for (int round = 0; round < ROUNDS; round++) {
+            long[] j = new long[runs];
+            long[] t = new long[runs];
+            run(conn, joined, skus, j);
+            run(conn, typed, skus, t);
+            System.arraycopy(j, 0, joinedNanos, round * runs, runs);
+            System.arraycopy(t, 0, typedNanos, round * runs, runs);
+        }
+        Arrays.sort(joinedNanos);
+        Arrays.sort(typedNanos);
+        System.out.printf("%s, %d runs each: joined p50 %.0f / p95 %.0f / p99 %.0f us, typed p50 %.0f / p95 %.0f / p99 %.0f us (p50 %+.1f%%)%n",
+                what, joinedNanos.length,
+                micros(joinedNanos, 0.50), micros(joinedNanos, 0.95), micros(joinedNanos, 0.99),
+                micros(typedNanos, 0.50), micros(typedNanos, 0.95), micros(typedNanos, 0.99),
+                (micros(typedNanos, 0.50) - micros(joinedNanos, 0.50)) * 100 / micros(joinedNanos, 0.50));
+    }
+
+    /** Runs the statement once per slot of {@code nanos}, prepared and read in full as the DAO does. */
+    private static void run(Connection conn, String sql, String[] skus, long[] nanos) throws SQLException {
+        long sink = 0;
+        for (int k = 0; k < nanos.length; k++) {
+            long start = System.nanoTime();
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                if (skus != null) {
+                    pstmt.setString(1, skus[k % skus.length]);
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        sink += rs.getInt(1) + rs.getString(2).length() + rs.getString(3).length()
+                                + rs.getBigDecimal(4).scale() + rs.getInt(5) + rs.getBigDecimal(6).scale()
+                                + rs.getInt(7) + rs.getInt(8) + (rs.getString(9) == null ? 0 : 1);
+                    }
+                }
+            }
+            nanos[k] = System.nanoTime() - start;
+        }
+        if (sink == Long.MIN_VALUE) {
+            System.out.println(sink);
+        }
+    }
+
+    private static double micros(long[] sortedNanos, double percentile) {
+        return sortedNanos[Math.min(sortedNanos.length - 1, (int) (percentile * sortedNanos.length))] / 1000.0;
+    }
+}
@@ -0,0 +1,67 @@
+package com.smartcashpro.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Measures what the slow-query log costs a statement that is not slow: the same primary-key
+ * read as a scan's stock check, prepared, bound, executed and read through the pool, first
+ * with the log off and then with a threshold no statement reaches.
+ *
+ * Needs the database from {@code SmartCashPro.sql}. Arguments: iterations (default 20000).
+ */
+public class SlowQueryOverheadBenchmark {
+
+    private static final String SQL = "SELECT QuantityInStock FROM PRODUCT WHERE ProductID = ?";
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int productId = firstProductId();
+
+        run(0, iterations, productId); // warm up the JIT, the pool and the statement cache
+        run(60_000, iterations, productId);
+        for (int round = 1; round <= ROUNDS; round++) {
+            double off = run(0, iterations, productId);
+            double on = run(60_000, iterations, productId);
+            System.out.printf("round %d: log off %.1f us/stmt, log on %.1f us/stmt (%+.1f%%)%n",
+                    round, off, on, (on - off) * 100 / off);
+        }
+        System.exit(0); // the pool's housekeeping thread would keep the JVM alive
+    }
+
+    /** Average microseconds per statement with the given threshold (0 = log off). */
+    private static double run(long thresholdMs, int iterations, int productId) throws SQLException {
+        SlowQueryLog.setThresholdMs(thresholdMs);
+        long sink = 0;
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseConnector.leaseConnection()) {
+            for (int i = 0; i < iterations; i++) {
+                try (PreparedStatement stmt = conn.prepareStatement(SQL)) {
+                    stmt.setInt(1, productId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            sink += rs.getInt(1);
+                        }
+                    }
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == Long.MIN_VALUE) {
+            System.out.println(sink);
+        }
+        return elapsed / 1000.0 / iterations;
+    }
+
+    private static int firstProductId() throws SQLException {
+        try (Connection conn = DatabaseConnector.leaseConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT MIN(ProductID) FROM PRODUCT");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.smartcashpro.ui;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Measures {@link BarcodeDecoder} throughput over a mix of code shapes a till sees (plain
+ * EAN-13 and EAN-8, GTIN-14, price and weight EAN-13, UPC-A prices, GS1-128 and bracketed GS1,
+ * SKUs that are not barcodes), and the heap it allocates per decode. Each scan is timed with
+ * and without building the lookup String. No database needed. Arguments: decodes per round
+ * (default 2000000).
+ */
+public class BarcodeDecoderBenchmark {
+
+    private static final String[] SCANS = {
+            "4006381333931", "96385074", "04006381333931", "2012345012998", "2112345034560",
+            "212345012994", "]C10109506000134352", "]C101095060001343523103001250",
+            "]C10109506000134352" + "10ABC123\u001D3724", "(01)09506000134352(3922)500(30)3",
+            "4006381333932", "ABC-123", " 4006381333931\r\n"
+    };
+    private static final int ROUNDS = 7;
+
+    public static void main(String[] args) {
+        int decodes = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        BarcodeDecoder decoder = new BarcodeDecoder();
+        for (int i = 0; i < 3; i++) {
+            run(decoder, decodes, false); // warm up both paths
+            run(decoder, decodes, true);
+        }
+        double[] decodeOnly = new double[ROUNDS];
+        double[] withSku = new double[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            decodeOnly[round] = run(decoder, decodes, false);
+            withSku[round] = run(decoder, decodes, true);
+            System.out.printf("round %d: decode %.1f ns/scan, decode + sku() %.1f ns/scan%n",
+                    round + 1, decodeOnly[round], withSku[round]);
+        }
+        System.out.printf("median over %d shapes: decode %.1f ns/scan (%.1f M scans/s), decode + sku() %.1f ns/scan%n",
+                SCANS.length, median(decodeOnly), 1000 / median(decodeOnly), median(withSku));
+        System.out.printf("allocated: decode %.2f bytes/scan, decode + sku() %.2f bytes/scan%n",
+                allocatedPerScan(decoder, decodes, false), allocatedPerScan(decoder, decodes, true));
+    }
+
+    /** Nanoseconds per scan. */
+    private static double run(BarcodeDecoder decoder, int decodes, boolean buildSku) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < decodes; i++) {
+            decoder.decode(SCANS[i % SCANS.length]);
+            sink += buildSku ? decoder.sku().length() : decoder.quantity() + decoder.priceCents();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == Long.MIN_VALUE) {
+            System.out.println(sink);
+        }
+        return (double) elapsed / decodes;
+    }
+
+    private static double allocatedPerScan(BarcodeDecoder decoder, int decodes, boolean buildSku) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        run(decoder, decodes, buildSku);
+        return (double) (threads.getThreadAllocatedBytes(thread) - before) / decodes;
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
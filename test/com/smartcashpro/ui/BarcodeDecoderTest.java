@@ -0,0 +1,106 @@
+package com.smartcashpro.ui;
+
+/**
+ * Decodes known barcodes and checks the SKU, kind, quantity, price and weight read from each:
+ * GS1 element strings as scanners send them and typed in brackets, EAN-13 and UPC-A with the
+ * price or weight embedded, plain GTINs, and input that must be looked up as typed. Uses the
+ * default prefixes (price 20 and 24, weight 21 to 23). No database needed.
+ */
+public class BarcodeDecoderTest {
+
+    private static final String GS = "\u001D";
+    private static final BarcodeDecoder.Kind PLAIN = BarcodeDecoder.Kind.PLAIN, GTIN = BarcodeDecoder.Kind.GTIN,
+            GS1 = BarcodeDecoder.Kind.GS1, PRICE = BarcodeDecoder.Kind.VARIABLE_PRICE,
+            WEIGHT = BarcodeDecoder.Kind.VARIABLE_WEIGHT;
+
+    private static final BarcodeDecoder decoder = new BarcodeDecoder();
+    private static int checks = 0;
+
+    public static void main(String[] args) {
+        // EAN-13 with an embedded price (prefix 20, 24) or weight (prefix 21 to 23)
+        expect("2012345012998", "2012345000001", PRICE, 1, 1299, -1);
+        expect("2412345000504", "2412345000009", PRICE, 1, 50, -1);
+        expect("2112345034560", "2112345000008", WEIGHT, 1, -1, 3456);
+        expect("2212345001255", "2212345000005", WEIGHT, 1, -1, 125);
+        // UPC-A number system 2: price in cents
+        expect("212345012994", "212345000007", PRICE, 1, 1299, -1);
+
+        // GTINs with a valid check digit
+        expect("4006381333931", "4006381333931", GTIN, 1, -1, -1);
+        expect("04006381333931", "4006381333931", GTIN, 1, -1, -1); // GTIN-14 without its leading 0
+        expect("96385074", "96385074", GTIN, 1, -1, -1); // EAN-8
+        expect(" 4006381333931\r\n", "4006381333931", GTIN, 1, -1, -1);
+
+        // GS1 element strings as sent by the scanner
+        expect("]C10109506000134352", "9506000134352", GS1, 1, -1, -1);
+        expect("]C10109506000134352" + "3103001250", "9506000134352", WEIGHT, 1, -1, 1250); // 1.250 kg
+        expect("]C10109506000134352" + "3102001250", "9506000134352", WEIGHT, 1, -1, 12500); // 12.50 kg
+        expect("]C10109506000134352" + "3103000750" + "39221999", "9506000134352", PRICE, 1, 1999, 750);
+        expect("]C10109506000134352" + "10ABC123" + GS + "3724", "9506000134352", GS1, 24, -1, -1);
+        expect("]e00109506000134352" + "17261231" + "3012", "9506000134352", GS1, 12, -1, -1);
+        expect("0109506000134352" + "10LOT7" + GS + "30" + "5", "9506000134352", GS1, 5, -1, -1); // no identifier
+        expect("]C10109506000134352" + "710" + "DE12345" + GS + "3012", "9506000134352", GS1, 12, -1, -1); // AI 710: 3 digits
+        expect("]C10109506000134352" + "7003" + "2612311200" + GS + "3012", "9506000134352", GS1, 12, -1, -1); // AI 7003: 4 digits
+        // GTINs with the EAN/UPC or ITF identifier
+        expect("]E04006381333931", "4006381333931", GTIN, 1, -1, -1);
+        expect("]E496385074", "96385074", GTIN, 1, -1, -1);
+        expect("]I104006381333931", "4006381333931", GTIN, 1, -1, -1);
+        expect("]E02112345034560", "2112345000008", WEIGHT, 1, -1, 3456);
+        // and typed with the AIs in brackets
+        expect("(01)09506000134352(30)12", "9506000134352", GS1, 12, -1, -1);
+        expect("(01)09506000134352(3101)000125", "9506000134352", WEIGHT, 1, -1, 12500); // 12.5 kg
+        expect("(01)09506000134352(3923)12345", "9506000134352", PRICE, 1, 1235, -1); // 12.345 rounded to cents
+        expect("(02)09506000134352(01)04006381333931(37)2", "4006381333931", GS1, 2, -1, -1); // 01 wins over 02
+
+        // looked up exactly as typed
+        expect("4006381333932", "4006381333932", PLAIN, 1, -1, -1); // wrong check digit
+        expect("2012345012990", "2012345012990", PLAIN, 1, -1, -1); // wrong check digit, price prefix
+        expect("ABC-123", "ABC-123", PLAIN, 1, -1, -1);
+        expect("(01)123", "(01)123", PLAIN, 1, -1, -1); // not a GTIN
+        expect("(01)09506000134352(30)0", "(01)09506000134352(30)0", PLAIN, 1, -1, -1); // count 0
+        expect("(01)09506000134353", "(01)09506000134353", PLAIN, 1, -1, -1); // wrong GTIN check digit
+        expect("]AB12", "]AB12", PLAIN, 1, -1, -1); // not a symbology identifier
+        expect("]X0ABC", "]X0ABC", PLAIN, 1, -1, -1);
+        expect("]C0ABC", "]C0ABC", PLAIN, 1, -1, -1); // Code 128 without GS1: identifier kept
+        expect("]A", "]A", PLAIN, 1, -1, -1);
+        String tooLong = "X".repeat(300);
+        expect(tooLong, tooLong, PLAIN, 1, -1, -1);
+
+        // blank scans
+        expectBlank("");
+        expectBlank(" \t\r\n");
+        expectBlank("]C1");
+
+        // the decoder is reused: nothing carries over from the previous scan
+        expect("(01)09506000134352(3922)500(30)3", "9506000134352", PRICE, 3, 500, -1);
+        expect("4006381333931", "4006381333931", GTIN, 1, -1, -1);
+
+        System.out.println("BarcodeDecoderTest: " + checks + " barcodes decoded as expected");
+    }
+
+    private static void expect(String scanned, String sku, BarcodeDecoder.Kind kind, int quantity,
+                               long priceCents, int weightGrams) {
+        checks++;
+        if (!decoder.decode(scanned)) {
+            throw new AssertionError(describe(scanned) + ": treated as blank");
+        }
+        String actual = decoder.sku() + " " + decoder.kind() + " qty=" + decoder.quantity()
+                + " price=" + decoder.priceCents() + " weight=" + decoder.weightGrams();
+        String expected = sku + " " + kind + " qty=" + quantity + " price=" + priceCents + " weight=" + weightGrams;
+        if (!actual.equals(expected)) {
+            throw new AssertionError(describe(scanned) + ": expected " + expected + " but got " + actual);
+        }
+    }
+
+    private static void expectBlank(String scanned) {
+        checks++;
+        if (decoder.decode(scanned)) {
+            throw new AssertionError(describe(scanned) + ": expected blank but got " + decoder.sku());
+        }
+    }
+
+    private static String describe(String scanned) {
+        String shown = scanned.length() > 40 ? scanned.substring(0, 40) + "..." : scanned;
+        return "'" + shown.replace(GS, "<GS>").replace("\r", "\\r").replace("\n", "\\n").replace("\t", "\\t") + "'";
+    }
+}